@@ -0,0 +1,38 @@
+package cn.lihongjie.dht.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * 基准测试入口
+ * 接受 JMH 的全部命令行参数，默认附加 GC profiler，吞吐量结果旁同时给出 gc.alloc.rate.norm（每次操作分配的字节数）。
+ * <pre>
+ * java -jar dht-benchmarks/target/benchmarks.jar RawInfoParser -p corpus=FILES_100K
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList() || cmdOptions.shouldListWithParams()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+        Options options = new OptionsBuilder()
+            .parent(cmdOptions)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
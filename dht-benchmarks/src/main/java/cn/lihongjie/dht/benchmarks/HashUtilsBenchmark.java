@@ -0,0 +1,79 @@
+package cn.lihongjie.dht.benchmarks;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.util.HashUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InfoHash 十六进制编解码与 SHA1
+ * 每个 announce、日志和 Redis 键都会经过这些方法，关注每次操作的分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashUtilsBenchmark {
+
+    /** ut_metadata 的 piece 大小 */
+    private static final int PIECE_SIZE = 16 * 1024;
+
+    private byte[] hash;
+    private String hex;
+    private InfoHash infoHash;
+    private byte[] piece;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        hash = new byte[InfoHash.LENGTH];
+        random.nextBytes(hash);
+        hex = HashUtils.bytesToHex(hash);
+        infoHash = InfoHash.of(hash);
+        piece = new byte[PIECE_SIZE];
+        random.nextBytes(piece);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return HashUtils.bytesToHex(hash);
+    }
+
+    @Benchmark
+    public byte[] hexToBytes() {
+        return HashUtils.hexToBytes(hex);
+    }
+
+    @Benchmark
+    public boolean isValidInfoHash() {
+        return HashUtils.isValidInfoHash(hex);
+    }
+
+    @Benchmark
+    public InfoHash infoHashFromHex() {
+        return InfoHash.fromHex(hex);
+    }
+
+    @Benchmark
+    public String infoHashToHex() {
+        return infoHash.toHex();
+    }
+
+    @Benchmark
+    public String sha1Piece() {
+        return HashUtils.sha1(piece);
+    }
+}
@@ -0,0 +1,163 @@
+package cn.lihongjie.dht.benchmarks;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.TorrentMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的 info 字典语料
+ * 按固定种子生成，结构与 ut_metadata 取回的 info 字典一致：多级目录路径、中文文件名、按总大小计算的 pieces 哈希。
+ * 同一份文件列表同时生成 bencode 字节和对应的 TorrentMetadata。
+ */
+public enum InfoDictCorpus {
+
+    /** 单文件种子 */
+    SMALL(0),
+
+    /** 1000 个文件，常见的剧集/图集种子 */
+    FILES_1K(1_000),
+
+    /** 100000 个文件，接近 ut_metadata 能取回的上限 */
+    FILES_100K(100_000);
+
+    private static final String[] DIRS = {"Season 01", "Extras", "字幕", "CD1", "CD2", "images", "资料"};
+    private static final String[] EXTENSIONS = {".mkv", ".mp4", ".srt", ".jpg", ".flac", ".nfo", ".txt"};
+
+    private final int fileCount;
+
+    InfoDictCorpus(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    /**
+     * 生成的一份语料
+     */
+    public record Sample(InfoHash infoHash, byte[] infoBytes, TorrentMetadata metadata) {
+    }
+
+    public Sample generate() {
+        Random random = new Random(fileCount + 1L);
+        byte[] hash = new byte[InfoHash.LENGTH];
+        random.nextBytes(hash);
+        InfoHash infoHash = InfoHash.of(hash);
+        String name = "[DHT] 基准测试 " + name() + " 1080p";
+
+        List<TorrentMetadata.FileInfo> files = new ArrayList<>();
+        List<List<String>> paths = new ArrayList<>();
+        long totalSize = 0;
+        if (fileCount == 0) {
+            long length = 1_500_000_000L + random.nextInt(1 << 30);
+            files.add(TorrentMetadata.FileInfo.builder().path(name).length(length).build());
+            totalSize = length;
+        } else {
+            for (int i = 0; i < fileCount; i++) {
+                List<String> path = new ArrayList<>();
+                int depth = random.nextInt(3);
+                for (int d = 0; d < depth; d++) {
+                    path.add(DIRS[random.nextInt(DIRS.length)]);
+                }
+                path.add(String.format("文件 %06d - %08x%s", i, random.nextInt(), EXTENSIONS[random.nextInt(EXTENSIONS.length)]));
+                long length = 1 + (long) (random.nextDouble() * random.nextDouble() * 200_000_000L);
+                paths.add(path);
+                files.add(TorrentMetadata.FileInfo.builder().path(String.join("/", path)).length(length).build());
+                totalSize += length;
+            }
+        }
+
+        long pieceLength = pieceLength(totalSize);
+        byte[] pieces = new byte[(int) ((totalSize + pieceLength - 1) / pieceLength) * InfoHash.LENGTH];
+        random.nextBytes(pieces);
+
+        // 键按字节序排列：files | length, name, piece length, pieces
+        BencodeWriter out = new BencodeWriter();
+        out.dict();
+        if (fileCount == 0) {
+            out.string("length").integer(totalSize);
+        } else {
+            out.string("files").list();
+            for (int i = 0; i < fileCount; i++) {
+                out.dict().string("length").integer(files.get(i).getLength()).string("path").list();
+                for (String element : paths.get(i)) {
+                    out.string(element);
+                }
+                out.end().end();
+            }
+            out.end();
+        }
+        out.string("name").string(name)
+            .string("piece length").integer(pieceLength)
+            .string("pieces").bytes(pieces)
+            .end();
+
+        TorrentMetadata metadata = TorrentMetadata.builder()
+            .infoHash(infoHash)
+            .name(name)
+            .totalSize(totalSize)
+            .files(files)
+            .fetchedAt(Instant.parse("2024-01-01T00:00:00Z"))
+            .status("SUCCESS")
+            .peerIp("203.0.113.7")
+            .peerPort(51413)
+            .build();
+        return new Sample(infoHash, out.toByteArray(), metadata);
+    }
+
+    /**
+     * 与常见客户端一致：piece 数控制在 2000 左右，piece 大小为 2 的幂，介于 256 KiB 与 16 MiB 之间
+     */
+    private static long pieceLength(long totalSize) {
+        long pieceLength = 256 * 1024;
+        while (pieceLength < 16 * 1024 * 1024 && totalSize / pieceLength > 2000) {
+            pieceLength <<= 1;
+        }
+        return pieceLength;
+    }
+
+    /**
+     * 按顺序写出 bencode 元素，字典键由调用方按字节序给出
+     */
+    static final class BencodeWriter {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+
+        BencodeWriter dict() {
+            out.write('d');
+            return this;
+        }
+
+        BencodeWriter list() {
+            out.write('l');
+            return this;
+        }
+
+        BencodeWriter end() {
+            out.write('e');
+            return this;
+        }
+
+        BencodeWriter integer(long value) {
+            out.writeBytes(("i" + value + "e").getBytes(StandardCharsets.US_ASCII));
+            return this;
+        }
+
+        BencodeWriter string(String value) {
+            return bytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        BencodeWriter bytes(byte[] value) {
+            out.writeBytes((value.length + ":").getBytes(StandardCharsets.US_ASCII));
+            out.writeBytes(value);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.lihongjie.dht.benchmarks;
+
+import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.common.serde.InfoHashMessageDeserializer;
+import cn.lihongjie.dht.common.serde.InfoHashMessageSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InfoHashMessage 的 Kafka 序列化
+ * 对比当前的二进制信封（一条 Kafka 消息打包 batchSize 条记录）与旧版逐条 JSON 消息，两者的结果都按整批计。
+ * 反序列化都经过 InfoHashMessageDeserializer，旧版 JSON 走其兼容分支。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfoHashMessageSerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private final InfoHashMessageSerializer codecSerializer = new InfoHashMessageSerializer();
+    private final InfoHashMessageDeserializer codecDeserializer = new InfoHashMessageDeserializer();
+
+    private JsonSerializer<InfoHashMessage> jsonSerializer;
+    private List<InfoHashMessage> messages;
+    private byte[] envelope;
+    private List<byte[]> jsonMessages;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(batchSize);
+        messages = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            byte[] hash = new byte[InfoHash.LENGTH];
+            random.nextBytes(hash);
+            DiscoverySource source = DiscoverySource.values()[i % DiscoverySource.values().length];
+            messages.add(InfoHashMessage.builder()
+                .infoHash(InfoHash.of(hash))
+                .discoveredAt(Instant.ofEpochMilli(1_700_000_000_000L + i))
+                .sourceIp(i % 4 == 0 ? "2001:db8::" + Integer.toHexString(i) : "198.51.100." + (i % 250))
+                .sourcePort(1024 + random.nextInt(64_000))
+                .source(source)
+                .confidence(source.confidence())
+                .popularity(random.nextInt(50))
+                .swarmSeeds(i % 3 == 0 ? null : random.nextInt(500))
+                .swarmPeers(i % 3 == 0 ? null : random.nextInt(500))
+                .build());
+        }
+        jsonSerializer = new JsonSerializer<>();
+        envelope = codecSerializer.serialize(KafkaTopics.INFOHASH_DISCOVERED, messages);
+        jsonMessages = new ArrayList<>(batchSize);
+        for (InfoHashMessage message : messages) {
+            jsonMessages.add(jsonSerializer.serialize(KafkaTopics.INFOHASH_DISCOVERED, message));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jsonSerializer.close();
+    }
+
+    @Benchmark
+    public byte[] codecSerialize() {
+        return codecSerializer.serialize(KafkaTopics.INFOHASH_DISCOVERED, messages);
+    }
+
+    @Benchmark
+    public List<InfoHashMessage> codecDeserialize() {
+        return codecDeserializer.deserialize(KafkaTopics.INFOHASH_DISCOVERED, envelope);
+    }
+
+    @Benchmark
+    public void jsonSerialize(Blackhole blackhole) {
+        for (InfoHashMessage message : messages) {
+            blackhole.consume(jsonSerializer.serialize(KafkaTopics.INFOHASH_DISCOVERED, message));
+        }
+    }
+
+    @Benchmark
+    public void jsonDeserialize(Blackhole blackhole) {
+        for (byte[] json : jsonMessages) {
+            blackhole.consume(codecDeserializer.deserialize(KafkaTopics.INFOHASH_DISCOVERED, json));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cn.lihongjie.dht.benchmarks;
+
+import cn.lihongjie.dht.btclient.parser.RawInfoParser;
+import com.dampcake.bencode.Bencode;
+import com.dampcake.bencode.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * info 字典解析
+ * decode 只做 bencode 解码，用于区分库本身的开销和 RawInfoParser 提取文件列表的开销；
+ * MetadataPublisher.publishRawInfo 在解析前还会单独解码一次做校验，两者之和才是发布一条元数据的解析成本。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawInfoParserBenchmark {
+
+    @Param({"SMALL", "FILES_1K", "FILES_100K"})
+    private InfoDictCorpus corpus;
+
+    private final RawInfoParser parser = new RawInfoParser();
+    private final Bencode bencode = new Bencode(StandardCharsets.UTF_8);
+
+    private String infoHashHex;
+    private byte[] infoBytes;
+
+    @Setup
+    public void setup() {
+        InfoDictCorpus.Sample sample = corpus.generate();
+        infoHashHex = sample.infoHash().toHex();
+        infoBytes = sample.infoBytes();
+    }
+
+    @Benchmark
+    public RawInfoParser.RawInfoResult parse() {
+        return parser.parse(infoHashHex, infoBytes);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return bencode.decode(infoBytes, Type.DICTIONARY);
+    }
+}
@@ -0,0 +1,68 @@
+package cn.lihongjie.dht.benchmarks;
+
+import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.TorrentMetadata;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TorrentMetadata 的 Kafka JSON 序列化
+ * 发送端与 bt-client 配置一致，使用 spring-kafka 的 JsonSerializer；
+ * 接收端与 metadata-service 一致，StringDeserializer 之后用注册了 JavaTimeModule 的 ObjectMapper 解析。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TorrentMetadataSerializationBenchmark {
+
+    @Param({"SMALL", "FILES_1K", "FILES_100K"})
+    private InfoDictCorpus corpus;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private JsonSerializer<TorrentMetadata> serializer;
+    private TorrentMetadata metadata;
+    private byte[] json;
+
+    @Setup
+    public void setup() {
+        serializer = new JsonSerializer<>();
+        metadata = corpus.generate().metadata();
+        json = serializer.serialize(KafkaTopics.METADATA_FETCHED, metadata);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(KafkaTopics.METADATA_FETCHED, metadata);
+    }
+
+    @Benchmark
+    public TorrentMetadata deserialize() throws JsonProcessingException {
+        return objectMapper.readValue(new String(json, StandardCharsets.UTF_8), TorrentMetadata.class);
+    }
+}
@@ -0,0 +1,84 @@
+package cn.lihongjie.dht.btclient.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageBuffer 累积 TCP 分段并按长度前缀取出消息
+ * 每次操作写入一批 ut_metadata piece 消息（每条 16 KiB 数据），按 chunkSize 分段写入，每段写入后尽量取出完整消息。
+ * read 每次都复制整个缓冲区，分段越小、积压越多，复制量越大。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBufferBenchmark {
+
+    private static final int MESSAGES = 8;
+
+    /** 每条消息：长度前缀 + 扩展消息头 + piece 字典 + 16 KiB 数据 */
+    private static final int MESSAGE_BODY = 2 + 48 + PeerProtocolUtil.METADATA_PIECE_SIZE;
+
+    /** 单次 socket 读取的字节数：以太网 MSS、常见读缓冲区大小 */
+    @Param({"1460", "16384", "65536"})
+    private int chunkSize;
+
+    private byte[] stream;
+
+    @Setup
+    public void setup() {
+        byte[] body = new byte[MESSAGE_BODY];
+        new Random(1).nextBytes(body);
+        stream = new byte[MESSAGES * (4 + MESSAGE_BODY)];
+        for (int m = 0, off = 0; m < MESSAGES; m++) {
+            stream[off++] = (byte) (MESSAGE_BODY >>> 24);
+            stream[off++] = (byte) (MESSAGE_BODY >>> 16);
+            stream[off++] = (byte) (MESSAGE_BODY >>> 8);
+            stream[off++] = (byte) MESSAGE_BODY;
+            System.arraycopy(body, 0, stream, off, MESSAGE_BODY);
+            off += MESSAGE_BODY;
+        }
+    }
+
+    @Benchmark
+    public int readMessages(Blackhole blackhole) {
+        MessageBuffer buffer = new MessageBuffer();
+        int pending = -1;
+        int messages = 0;
+        for (int off = 0; off < stream.length; off += chunkSize) {
+            buffer.write(stream, off, Math.min(chunkSize, stream.length - off));
+            while (true) {
+                if (pending < 0) {
+                    byte[] header = buffer.read(4);
+                    if (header == null) {
+                        break;
+                    }
+                    pending = PeerProtocolUtil.toInt(header);
+                }
+                byte[] body = buffer.read(pending);
+                if (body == null) {
+                    break;
+                }
+                blackhole.consume(body);
+                pending = -1;
+                messages++;
+            }
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,83 @@
+package cn.lihongjie.dht.btclient.service;
+
+import cn.lihongjie.dht.benchmarks.InfoDictCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peer 协议解析
+ * PeerProtocolUtil 的方法是包内可见的，基准测试放在同名包下。
+ * piece 消息的数据取自对应语料 info 字典的开头，与 ut_metadata 实际传输的内容一致；
+ * findBencodeElementEnd 扫描整个 info 字典，衡量逐元素跳过的成本。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeerProtocolBenchmark {
+
+    private static final int UT_METADATA_ID = 3;
+
+    @Param({"SMALL", "FILES_1K", "FILES_100K"})
+    private InfoDictCorpus corpus;
+
+    private byte[] infoBytes;
+    private byte[] pieceBody;
+    private byte[] pieceMessage;
+
+    @Setup
+    public void setup() {
+        infoBytes = corpus.generate().infoBytes();
+        int length = Math.min(PeerProtocolUtil.METADATA_PIECE_SIZE, infoBytes.length);
+        String header = "d8:msg_typei1e5:piecei0e10:total_sizei" + infoBytes.length + "ee";
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(20);
+        body.write(UT_METADATA_ID);
+        body.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+        body.write(infoBytes, 0, length);
+        pieceBody = body.toByteArray();
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        int len = pieceBody.length;
+        message.writeBytes(new byte[]{(byte) (len >>> 24), (byte) (len >>> 16), (byte) (len >>> 8), (byte) len});
+        message.writeBytes(pieceBody);
+        pieceMessage = message.toByteArray();
+    }
+
+    @Benchmark
+    public PeerProtocolUtil.MetadataPiece readMetadataPiece() throws Exception {
+        return PeerProtocolUtil.readMetadataPiece(new ByteArrayInputStream(pieceMessage), UT_METADATA_ID);
+    }
+
+    @Benchmark
+    public PeerProtocolUtil.MetadataPiece parseMetadataPiece() {
+        return PeerProtocolUtil.parseMetadataPiece(pieceBody, UT_METADATA_ID);
+    }
+
+    @Benchmark
+    public int findPieceDictEnd() {
+        return PeerProtocolUtil.findBencodeElementEnd(pieceBody, 2);
+    }
+
+    @Benchmark
+    public int findInfoDictEnd() {
+        return PeerProtocolUtil.findBencodeElementEnd(infoBytes, 0);
+    }
+}
@@ -2,6 +2,7 @@ package cn.lihongjie.dht.btclient.runner;
 
 import cn.lihongjie.dht.btclient.service.BtClientPool;
 import cn.lihongjie.dht.btclient.service.MetadataPublisher;
+import cn.lihongjie.dht.common.model.InfoHash;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -40,7 +41,7 @@ public class SingleDownloadRunner implements CommandLineRunner {
         log.info("[TEST] 开始单次元数据下载验证 infoHash={}", infoHash);
         BtClientPool.DownloadResult result = btClientPool.download(infoHash, t -> {
             log.info("[TEST] 回调获取到元数据 name={} size={}", t.getName(), t.getSize());
-            metadataPublisher.publish(infoHash, t);
+            metadataPublisher.publish(InfoHash.fromHex(infoHash), t);
         });
         log.info("[TEST] 下载状态 status={} elapsed={}ms", result.status(), result.elapsedMillis());
         if (result.isSuccess()) {
@@ -0,0 +1,297 @@
+package cn.lihongjie.dht.btclient.service;
+
+import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.PeerLookupReply;
+import cn.lihongjie.dht.common.model.PeerLookupRequest;
+import cn.lihongjie.dht.common.serde.PeerLookupCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.stereotype.Service;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DHT Peer 查找客户端
+ * 通过 Kafka 请求/回复主题向 MLDHT 查询 InfoHash 的 peer，MLDHT 用已经预热的路由表做 get_peers，
+ * 查找服务确认可用时可以配置 libtorrent.dht.enabled=false，不在 libtorrent 里再启动一个 DHT。
+ * 短时间内的查找合并成一个批量请求；回复以本实例ID为 key，回复线程直接订阅回复主题的全部分区并从末尾开始读，只处理自己的回复。
+ * 超时或服务不可用时返回空列表，调用方退回 announce 提示等其他 peer 来源。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DhtPeerLookupClient {
+
+    private final KafkaProperties kafkaProperties;
+
+    @Value("${peer-lookup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${peer-lookup.batch-size:32}")
+    private int batchSize;
+
+    @Value("${peer-lookup.batch-delay-millis:20}")
+    private long batchDelayMillis;
+
+    @Value("${peer-lookup.timeout-millis:8000}")
+    private long timeoutMillis;
+
+    @Value("${peer-lookup.max-peers:50}")
+    private int maxPeers;
+
+    /**
+     * 已发出、等待回复的请求
+     */
+    private record InFlight(long sentNanos, Map<InfoHash, CompletableFuture<List<InetSocketAddress>>> futures) {
+    }
+
+    private final String clientId = "bt-client-" + UUID.randomUUID().toString().substring(0, 8);
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private final AtomicLong lookups = new AtomicLong(0);
+    private final AtomicLong skipped = new AtomicLong(0);
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong replies = new AtomicLong(0);
+    private final AtomicLong timeouts = new AtomicLong(0);
+    private final AtomicLong peersReturned = new AtomicLong(0);
+    private final AtomicLong replyNanos = new AtomicLong(0);
+
+    private Map<InfoHash, CompletableFuture<List<InetSocketAddress>>> batch = new LinkedHashMap<>();
+    private KafkaProducer<String, byte[]> producer;
+    private ScheduledExecutorService scheduler;
+    private Thread replyThread;
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Object> producerProps = new HashMap<>(kafkaProperties.buildProducerProperties(null));
+        producer = new KafkaProducer<>(producerProps, new StringSerializer(), new ByteArraySerializer());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "peer-lookup-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, batchDelayMillis, batchDelayMillis, TimeUnit.MILLISECONDS);
+        running = true;
+        replyThread = Thread.ofPlatform().daemon().name("peer-lookup-replies").start(this::consumeReplies);
+        log.info("DHT peer lookup client {} started: batchSize={}, batchDelayMs={}, timeoutMs={}, maxPeers={}",
+                 clientId, batchSize, batchDelayMillis, timeoutMillis, maxPeers);
+    }
+
+    /**
+     * 是否启用（启用且配置 libtorrent.dht.enabled=false 时下载器关闭 libtorrent 自带的 DHT）
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找 InfoHash 的 peer，未启用、回复主题尚未就绪或超时时得到空列表
+     */
+    public CompletableFuture<List<InetSocketAddress>> lookup(InfoHash infoHash) {
+        if (!enabled || !ready) {
+            skipped.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of());
+        }
+        lookups.incrementAndGet();
+        Map<InfoHash, CompletableFuture<List<InetSocketAddress>>> full = null;
+        CompletableFuture<List<InetSocketAddress>> future;
+        synchronized (this) {
+            future = batch.computeIfAbsent(infoHash, k -> new CompletableFuture<>());
+            if (batch.size() >= batchSize) {
+                full = batch;
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    private void flush() {
+        Map<InfoHash, CompletableFuture<List<InetSocketAddress>>> pending;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending = batch;
+            batch = new LinkedHashMap<>();
+        }
+        send(pending);
+    }
+
+    private void send(Map<InfoHash, CompletableFuture<List<InetSocketAddress>>> futures) {
+        String requestId = clientId + "-" + sequence.incrementAndGet();
+        inFlight.put(requestId, new InFlight(System.nanoTime(), futures));
+        try {
+            byte[] payload = PeerLookupCodec.encodeRequest(PeerLookupRequest.builder()
+                    .requestId(requestId)
+                    .replyTo(clientId)
+                    .maxPeers(maxPeers)
+                    .infoHashes(new ArrayList<>(futures.keySet()))
+                    .build());
+            producer.send(new ProducerRecord<>(KafkaTopics.PEER_LOOKUP_REQUEST, requestId, payload), (metadata, ex) -> {
+                if (ex != null) {
+                    log.debug("Failed to send peer lookup request {}: {}", requestId, ex.getMessage());
+                    expire(requestId);
+                }
+            });
+            requests.incrementAndGet();
+            scheduler.schedule(() -> {
+                if (expire(requestId)) {
+                    timeouts.incrementAndGet();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to send peer lookup request {}: {}", requestId, e.getMessage());
+            expire(requestId);
+        }
+    }
+
+    /**
+     * 放弃一个请求，未完成的查找得到空列表
+     *
+     * @return 请求仍在等待回复时返回 true
+     */
+    private boolean expire(String requestId) {
+        InFlight request = inFlight.remove(requestId);
+        if (request == null) {
+            return false;
+        }
+        request.futures().values().forEach(f -> f.complete(List.of()));
+        return true;
+    }
+
+    /**
+     * 回复线程：assign 回复主题的全部分区并跳到末尾，之后发出的请求的回复都能收到
+     */
+    private void consumeReplies() {
+        Map<String, Object> props = new HashMap<>(kafkaProperties.buildConsumerProperties(null));
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        try (KafkaConsumer<String, byte[]> consumer =
+                     new KafkaConsumer<>(props, new StringDeserializer(), new ByteArrayDeserializer())) {
+            while (running && !ready) {
+                try {
+                    List<PartitionInfo> partitions = consumer.partitionsFor(KafkaTopics.PEER_LOOKUP_REPLY);
+                    if (partitions != null && !partitions.isEmpty()) {
+                        List<TopicPartition> assigned = new ArrayList<>();
+                        for (PartitionInfo partition : partitions) {
+                            assigned.add(new TopicPartition(partition.topic(), partition.partition()));
+                        }
+                        consumer.assign(assigned);
+                        consumer.seekToEnd(assigned);
+                        assigned.forEach(consumer::position);
+                        ready = true;
+                        log.info("Peer lookup replies subscribed on {} partitions", assigned.size());
+                        break;
+                    }
+                } catch (Exception e) {
+                    log.debug("Peer lookup reply topic not available yet: {}", e.getMessage());
+                }
+                Thread.sleep(1000);
+            }
+            while (running) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (clientId.equals(record.key()) && record.value() != null) {
+                        onReply(record.value());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (running) {
+                log.error("Peer lookup reply consumer stopped", e);
+            }
+        } finally {
+            ready = false;
+        }
+    }
+
+    private void onReply(byte[] payload) {
+        PeerLookupReply reply;
+        try {
+            reply = PeerLookupCodec.decodeReply(payload);
+        } catch (IllegalArgumentException e) {
+            log.debug("Dropping invalid peer lookup reply: {}", e.getMessage());
+            return;
+        }
+        InFlight request = inFlight.remove(reply.getRequestId());
+        if (request == null) {
+            return;
+        }
+        replies.incrementAndGet();
+        replyNanos.addAndGet(System.nanoTime() - request.sentNanos());
+        for (Map.Entry<InfoHash, CompletableFuture<List<InetSocketAddress>>> entry : request.futures().entrySet()) {
+            List<InetSocketAddress> peers = reply.getPeers().getOrDefault(entry.getKey(), List.of());
+            peersReturned.addAndGet(peers.size());
+            entry.getValue().complete(peers);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (String requestId : List.copyOf(inFlight.keySet())) {
+            expire(requestId);
+        }
+        if (producer != null) {
+            producer.close(Duration.ofSeconds(1));
+        }
+        if (replyThread != null) {
+            replyThread.interrupt();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        long answered = replies.get();
+        return String.format("peerLookup[ready=%s, lookups=%d, skipped=%d, requests=%d, replies=%d, timeouts=%d, "
+                             + "avgPeers=%.1f, avgReplyMs=%.0f]",
+                             ready, lookups.get(), skipped.get(), requests.get(), answered, timeouts.get(),
+                             lookups.get() == 0 ? 0.0 : (double) peersReturned.get() / lookups.get(),
+                             answered == 0 ? 0.0 : replyNanos.get() / 1e6 / answered);
+    }
+}
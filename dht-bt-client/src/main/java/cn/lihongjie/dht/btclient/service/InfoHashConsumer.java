@@ -1,21 +1,43 @@
 package cn.lihongjie.dht.btclient.service;
 
 import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.Confidence;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
 import cn.lihongjie.dht.common.model.InfoHashMessage;
-import cn.lihongjie.dht.common.util.BloomFilterUtils;
+import cn.lihongjie.dht.springcommon.bloom.BloomFilterBatcher;
 import cn.lihongjie.dht.springcommon.bloom.BloomFilterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * InfoHash消费者
- * 从Kafka消费InfoHash，使用Bloom Filter去重后触发元数据下载
+ * 从Kafka批量消费InfoHash，一批消息用一次 BF.MEXISTS 管道去重后触发元数据下载
+ * 每条 Kafka 消息是一个二进制信封，可能包含多条 InfoHashMessage
+ * 同一批内按可信度从高到低发起下载（announce 优先于 sample，再优先于 get_peers），下载并发满时先被拒绝的是低可信度的
+ * 同一批内相同 InfoHash 合并为一次下载，所有 announce 发送方的地址作为初始 peer 交给下载器
+ * 同一可信度内按 MLDHT scrape 估计的 swarm 大小从大到小发起，没有估计的其次，死种最后；开启 swarm.skip-dead 时直接跳过死种
  */
 @Slf4j
 @Service
@@ -31,49 +53,191 @@ public class InfoHashConsumer {
     @Value("${dedup.bloom.key:dht:bloom:infohash}")
     private String bloomFilterKey;
     
+    @Value("${dedup.batch.max-size:512}")
+    private int batchMaxSize;
+    
+    @Value("${dedup.batch.max-delay-micros:2000}")
+    private long batchMaxDelayMicros;
+    
+    @Value("${dedup.batch.queue-capacity:65536}")
+    private int batchQueueCapacity;
+    
+    @Value("${swarm.skip-dead:false}")
+    private boolean skipDeadSwarms;
+    
+    @Value("${swarm.stats-interval-seconds:60}")
+    private int swarmStatsIntervalSeconds;
+    
+    /**
+     * 可信度为空的旧消息只可能来自 announce，按最高可信度处理；同一可信度内按 swarm 估计排序
+     */
+    static final Comparator<InfoHashMessage> BY_PRIORITY = Comparator.<InfoHashMessage, Confidence>comparing(
+            m -> m.getConfidence() == null ? Confidence.HIGH : m.getConfidence())
+            .thenComparingInt(InfoHashConsumer::swarmRank);
+    
     private final AtomicLong processedCount = new AtomicLong(0);
     private final AtomicLong duplicateCount = new AtomicLong(0);
+    private final AtomicLong skippedDeadCount = new AtomicLong(0);
+    private final SwarmFetchStats swarmStats = new SwarmFetchStats();
+    
+    private BloomFilterBatcher bloomBatcher;
+    private ScheduledExecutorService statsScheduler;
+    
+    @PostConstruct
+    public void init() {
+        if (dedupEnabled) {
+            bloomBatcher = new BloomFilterBatcher(bloomFilterService, bloomFilterKey,
+                                                  batchMaxSize, batchMaxDelayMicros, batchQueueCapacity);
+        }
+        if (swarmStatsIntervalSeconds > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "swarm-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Swarm: {}", getSwarmStats()),
+                                               swarmStatsIntervalSeconds, swarmStatsIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (bloomBatcher != null) {
+            bloomBatcher.close();
+        }
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
     
     @KafkaListener(
         topics = KafkaTopics.INFOHASH_DISCOVERED,
         groupId = "${spring.kafka.consumer.group-id}",
         concurrency = "3"
     )
-    public void consume(InfoHashMessage message, Acknowledgment acknowledgment) {
+    public void consume(List<ConsumerRecord<String, List<InfoHashMessage>>> records, Acknowledgment acknowledgment) {
         try {
-            String infoHash = message.getInfoHash();
-            log.debug("Received InfoHash: {}", infoHash);
+            List<InfoHashMessage> messages = new ArrayList<>();
+            for (ConsumerRecord<String, List<InfoHashMessage>> record : records) {
+                if (record.value() != null) {
+                    messages.addAll(record.value());
+                }
+            }
+            log.debug("Received {} InfoHashes in {} records", messages.size(), records.size());
+            messages.sort(BY_PRIORITY);
+            Map<InfoHash, List<InetSocketAddress>> hintsByHash = groupPeerHints(messages);
+            Map<InfoHash, SwarmFetchStats.Bucket> buckets = new HashMap<>();
+            for (InfoHashMessage message : messages) {
+                buckets.merge(message.getInfoHash(), SwarmFetchStats.bucketOf(message),
+                              (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+            List<InfoHash> infoHashes = new ArrayList<>(hintsByHash.keySet());
+            
+            // Bloom Filter批量去重检查（成员为十六进制字符串）；Redis不可用时全部视为已存在
+            List<String> hexes = new ArrayList<>(infoHashes.size());
+            for (InfoHash infoHash : infoHashes) {
+                hexes.add(infoHash.toHex());
+            }
+            boolean[] exists = dedupEnabled
+                    ? bloomFilterService.existsAll(bloomFilterKey, hexes)
+                    : new boolean[infoHashes.size()];
             
-            // Bloom Filter去重检查
-            if (dedupEnabled && bloomFilterService.exists(bloomFilterKey, infoHash)) {
-                long count = duplicateCount.incrementAndGet();
-                if (count % 100 == 0) {
-                    log.debug("Skipped {} duplicate downloads", count);
+            List<CompletableFuture<?>> downloads = new ArrayList<>();
+            for (int i = 0; i < infoHashes.size(); i++) {
+                if (exists[i]) {
+                    long count = duplicateCount.incrementAndGet();
+                    if (count % 100 == 0) {
+                        log.debug("Skipped {} duplicate downloads", count);
+                    }
+                    continue;
                 }
-                acknowledgment.acknowledge();
-                return;
+                InfoHash infoHash = infoHashes.get(i);
+                SwarmFetchStats.Bucket bucket = buckets.get(infoHash);
+                if (skipDeadSwarms && bucket == SwarmFetchStats.Bucket.DEAD) {
+                    skippedDeadCount.incrementAndGet();
+                    continue;
+                }
+                downloads.add(download(infoHash, hexes.get(i), hintsByHash.get(infoHash), bucket));
             }
             
-            // 统一使用 libtorrent4j 异步获取元数据
-            libtorrentMetadataDownloader.downloadAsync(infoHash)
-                    .whenComplete((data, ex) -> {
+            // 整批下载结束（成功或失败）后再提交位移
+            CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0]))
+                    .whenComplete((r, ex) -> acknowledgment.acknowledge());
+            
+        } catch (Exception e) {
+            log.error("Error processing InfoHash batch", e);
+            acknowledgment.acknowledge(); // 避免重复处理
+        }
+    }
+    
+    /**
+     * 按 InfoHash 合并消息（保持排序后的先后顺序），收集可作为初始 peer 的地址
+     * 只有 announce（及没有来源字段的旧消息）的发送方确实持有资源；get_peers 的发起方和 sample 的回复方只是 DHT 节点
+     */
+    static Map<InfoHash, List<InetSocketAddress>> groupPeerHints(List<InfoHashMessage> messages) {
+        Map<InfoHash, List<InetSocketAddress>> grouped = new LinkedHashMap<>();
+        for (InfoHashMessage message : messages) {
+            List<InetSocketAddress> hints = grouped.computeIfAbsent(message.getInfoHash(), k -> new ArrayList<>(1));
+            DiscoverySource source = message.getSource();
+            if ((source == null || source == DiscoverySource.ANNOUNCE)
+                    && message.getSourceIp() != null && message.getSourcePort() != null
+                    && message.getSourcePort() > 0) {
+                InetSocketAddress peer = InetSocketAddress.createUnresolved(message.getSourceIp(), message.getSourcePort());
+                if (!hints.contains(peer)) {
+                    hints.add(peer);
+                }
+            }
+        }
+        return grouped;
+    }
+    
+    /**
+     * swarm 排序键：有估计的按大小从大到小，没有估计的其次，死种最后
+     */
+    static int swarmRank(InfoHashMessage message) {
+        return switch (SwarmFetchStats.bucketOf(message)) {
+            case UNKNOWN -> 0;
+            case DEAD -> 1;
+            default -> -(message.getSwarmSeeds() + message.getSwarmPeers());
+        };
+    }
+    
+    /**
+     * 统一使用 libtorrent4j 异步获取元数据，结果只记录日志，返回的 future 不会异常结束
+     * 因并发已满被拒绝的下载与 swarm 无关，不计入分组统计
+     */
+    private CompletableFuture<?> download(InfoHash infoHash, String infoHashHex, List<InetSocketAddress> peerHints,
+                                          SwarmFetchStats.Bucket bucket) {
+        long startNanos = System.nanoTime();
+        try {
+            return libtorrentMetadataDownloader.downloadAsync(infoHash, peerHints)
+                    .handle((data, ex) -> {
+                        if (!(ex instanceof RejectedExecutionException)) {
+                            swarmStats.record(bucket, ex == null && data != null, System.nanoTime() - startNanos);
+                        }
                         if (ex != null) {
                             log.debug("libtorrent metadata failed infoHash={} reason={}", infoHash, ex.getMessage());
                         } else if (data != null) {
-                            if (dedupEnabled) bloomFilterService.add(bloomFilterKey, infoHash);
+                            if (dedupEnabled) bloomBatcher.add(infoHashHex);
                             processedCount.incrementAndGet();
                             log.info("libtorrent metadata success infoHash={} size={} bytes", infoHash, data.length);
                         } else {
                             log.debug("libtorrent metadata empty infoHash={}", infoHash);
                         }
-                        acknowledgment.acknowledge();
+                        return null;
                     });
-            
         } catch (Exception e) {
-            log.error("Error processing InfoHash message", e);
-            acknowledgment.acknowledge(); // 避免重复处理
+            log.error("Error processing InfoHash: {}", infoHash, e);
+            return CompletableFuture.completedFuture(null);
         }
     }
     
+    /**
+     * 按 swarm 估计分组的获取成功率与跳过的死种数
+     */
+    public String getSwarmStats() {
+        return "skippedDead=" + skippedDeadCount.get() + " " + swarmStats.getStats();
+    }
+    
     // 旧的直连与回退逻辑已停用
 }
@@ -1,10 +1,12 @@
 package cn.lihongjie.dht.btclient.service;
 
+import cn.lihongjie.dht.common.model.InfoHash;
 import lombok.extern.slf4j.Slf4j;
 import org.libtorrent4j.SessionManager;
 import org.libtorrent4j.SettingsPack;
 import org.libtorrent4j.SessionParams;
 import org.libtorrent4j.AddTorrentParams;
+import org.libtorrent4j.TcpEndpoint;
 import org.libtorrent4j.TorrentHandle;
 import org.libtorrent4j.alerts.Alert;
 import org.libtorrent4j.AlertListener;
@@ -15,16 +17,23 @@ import org.libtorrent4j.TorrentFlags;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 使用 libtorrent4j 通过 magnet 异步获取 .torrent 元数据 (info 字典)。
  * 只拉取元数据, 拉取后立即移除 torrent，避免长时间占用资源。
+ * 调用方可以附带已知的 peer 地址（通常是 announce_peer 的发送方），torrent 加入会话后直接连接，
+ * 不必等 libtorrent 自己的 DHT 查找；成功率和耗时按是否带提示分别统计。
+ * 启用 DhtPeerLookupClient 时 peer 由 MLDHT 已经预热的路由表查找，libtorrent 默认不再启动自己的 DHT。
  */
 @Service
 @Slf4j
@@ -39,11 +48,21 @@ public class LibtorrentMetadataDownloader {
     @Value("${libtorrent.metadata.remove-delay-millis:2000}")
     private long removeDelayMillis;
 
+    @Value("${libtorrent.metadata.max-peer-hints:8}")
+    private int maxPeerHints;
+
+    @Value("${libtorrent.metadata.stats-interval-seconds:60}")
+    private int statsIntervalSeconds;
+
     private SessionManager session;
-    private final ConcurrentMap<String, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, TorrentHandle> handles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<InfoHash, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<InfoHash, TorrentHandle> handles = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private final AtomicInteger active = new AtomicInteger(0);
+    private final ConcurrentMap<InfoHash, List<InetSocketAddress>> peerHints = new ConcurrentHashMap<>();
+    private final AtomicLong hintedPeersConnected = new AtomicLong(0);
+    private final AtomicLong lookupPeersReceived = new AtomicLong(0);
+    private final MetadataFetchStats fetchStats = new MetadataFetchStats();
 
     private final AlertListener alertListener = new AlertListener() {
         @Override
@@ -54,37 +73,41 @@ public class LibtorrentMetadataDownloader {
             try {
                 if (alert instanceof AddTorrentAlert ata) {
                     TorrentHandle h = ata.handle();
-                    String ih = h.infoHash().toHex();
+                    InfoHash ih = InfoHash.fromHex(h.infoHash().toHex());
                     handles.putIfAbsent(ih, h);
+                    List<InetSocketAddress> hints = peerHints.remove(ih);
+                    if (hints != null) {
+                        connectPeers(h, hints);
+                    }
                 } else if (alert instanceof MetadataReceivedAlert mra) {
                     TorrentHandle h = mra.handle();
-                    String ih = h.infoHash().toHex();
+                    InfoHash ih = InfoHash.fromHex(h.infoHash().toHex());
                     CompletableFuture<byte[]> future = pending.get(ih);
                     if (future != null && !future.isDone()) {
                         try {
                             // Request resume data containing the info dictionary once metadata is received
                             h.saveResumeData(TorrentHandle.SAVE_INFO_DICT);
-                            statusService.setStatus(ih, "METADATA");
+                            statusService.setStatus(ih.toHex(), "METADATA");
                         } catch (Exception e) {
                             future.completeExceptionally(e);
-                            statusService.setStatus(ih, "FAILED");
+                            statusService.setStatus(ih.toHex(), "FAILED");
                         }
                     }
                 } else if (alert instanceof SaveResumeDataAlert srda) {
                     AddTorrentParams atp = srda.params();
                     TorrentHandle h = srda.handle();
-                    String ih = h.infoHash().toHex();
+                    InfoHash ih = InfoHash.fromHex(h.infoHash().toHex());
                     CompletableFuture<byte[]> future = pending.get(ih);
                     if (future != null && !future.isDone()) {
                         try {
                             byte[] resume = AddTorrentParams.writeResumeDataBuf(atp);
                             metadataPublisher.publishRawInfo(ih, extractInfoDictionary(resume));
-                            statusService.setStatus(ih, "SUCCESS");
+                            statusService.setStatus(ih.toHex(), "SUCCESS");
                             future.complete(resume);
                             scheduleRemoval(h, ih);
                         } catch (Exception e) {
                             future.completeExceptionally(e);
-                            statusService.setStatus(ih, "FAILED");
+                            statusService.setStatus(ih.toHex(), "FAILED");
                         }
                     }
                 }
@@ -96,10 +119,20 @@ public class LibtorrentMetadataDownloader {
 
     private final MetadataPublisher metadataPublisher;
     private final MetadataStatusService statusService;
+    private final DhtPeerLookupClient peerLookup;
+    /**
+     * libtorrent 自带 DHT 是否开启：默认开启；只有启用了 MLDHT 查找且显式配置 libtorrent.dht.enabled=false 时关闭，
+     * 查找服务不可用或总是返回空列表时，没有 announce 提示的 InfoHash 仍能从自带 DHT 找到 peer
+     */
+    private final boolean sessionDht;
 
-    public LibtorrentMetadataDownloader(MetadataPublisher metadataPublisher, MetadataStatusService statusService) {
+    public LibtorrentMetadataDownloader(MetadataPublisher metadataPublisher, MetadataStatusService statusService,
+                                        DhtPeerLookupClient peerLookup,
+                                        @Value("${libtorrent.dht.enabled:true}") boolean dhtEnabled) {
         this.metadataPublisher = metadataPublisher;
         this.statusService = statusService;
+        this.peerLookup = peerLookup;
+        this.sessionDht = dhtEnabled || !peerLookup.isEnabled();
         initSession();
     }
 
@@ -113,63 +146,93 @@ public class LibtorrentMetadataDownloader {
             session = new SessionManager();
             SettingsPack sp = new SettingsPack();
             sp.listenInterfaces("0.0.0.0:" + listenPort + ",[::]:" + listenPort);
-            sp.setEnableDht(true);
+            sp.setEnableDht(sessionDht);
             sp.setAnnouncePort(listenPort);
             SessionParams params = new SessionParams(sp);
             session.start(params);
             session.addListener(alertListener);
-            log.info("Initialized libtorrent SessionManager listenPort={} maxConcurrent={}", listenPort, maxConcurrent);
+            log.info("Initialized libtorrent SessionManager listenPort={} maxConcurrent={} dht={}",
+                     listenPort, maxConcurrent, sessionDht);
         } catch (Throwable e) {
             available = false;
             log.error("Libtorrent native load failed, downloader disabled: {}", e.getMessage(), e);
         }
     }
 
+    @jakarta.annotation.PostConstruct
+    public void startStatsReporter() {
+        if (statsIntervalSeconds > 0) {
+            scheduler.scheduleAtFixedRate(() -> log.info("Libtorrent metadata: {}", getStats()),
+                                          statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * 异步下载 info 字典原始 bencode 数据 (.torrent 的 info 部分)
-     * @param infoHashHex 40位十六进制 infohash
+     * @param infoHash 待获取元数据的 infohash
      */
-    public CompletableFuture<byte[]> downloadAsync(String infoHashHex) {
-        Objects.requireNonNull(infoHashHex, "infoHash");
+    public CompletableFuture<byte[]> downloadAsync(InfoHash infoHash) {
+        return downloadAsync(infoHash, List.of());
+    }
+
+    /**
+     * 异步下载 info 字典，并把已知 peer 作为初始连接注入 torrent
+     * @param infoHash 待获取元数据的 infohash
+     * @param hints    已知持有该资源的 peer，最多使用 max-peer-hints 个
+     */
+    public CompletableFuture<byte[]> downloadAsync(InfoHash infoHash, List<InetSocketAddress> hints) {
+        Objects.requireNonNull(infoHash, "infoHash");
+        List<InetSocketAddress> usable = hints == null || hints.isEmpty()
+                ? List.of()
+                : List.copyOf(hints.subList(0, Math.min(hints.size(), maxPeerHints)));
         if (!available) {
             CompletableFuture<byte[]> failed = new CompletableFuture<>();
             failed.completeExceptionally(new IllegalStateException("libtorrent native library unavailable"));
             return failed;
         }
-        if (infoHashHex.length() != 40) {
-            CompletableFuture<byte[]> failed = new CompletableFuture<>();
-            failed.completeExceptionally(new IllegalArgumentException("Invalid infoHash length:" + infoHashHex));
-            return failed;
+        String infoHashHex = infoHash.toHex();
+        CompletableFuture<byte[]> existing = pending.get(infoHash);
+        if (existing != null) {
+            // 已在下载中：新的提示直接连到现有 handle
+            TorrentHandle h = handles.get(infoHash);
+            if (h != null && !usable.isEmpty()) connectPeers(h, usable);
+            return existing;
         }
-        CompletableFuture<byte[]> existing = pending.get(infoHashHex);
-        if (existing != null) return existing;
         if (active.get() >= maxConcurrent) {
             CompletableFuture<byte[]> failed = new CompletableFuture<>();
             failed.completeExceptionally(new RejectedExecutionException("Too many active metadata downloads"));
             return failed;
         }
         CompletableFuture<byte[]> future = new CompletableFuture<>();
-        pending.put(infoHashHex, future);
+        pending.put(infoHash, future);
         active.incrementAndGet();
         statusService.setStatus(infoHashHex, "FETCHING");
+        boolean withHints = !usable.isEmpty();
+        if (withHints) peerHints.put(infoHash, usable);
+        long startNanos = System.nanoTime();
         future.whenComplete((r, ex) -> {
             active.decrementAndGet();
-            pending.remove(infoHashHex);
-            handles.remove(infoHashHex);
-            if (ex != null) metadataPublisher.publishFailure(infoHashHex, ex.getMessage());
+            pending.remove(infoHash);
+            handles.remove(infoHash);
+            peerHints.remove(infoHash);
+            fetchStats.record(withHints, ex == null && r != null, System.nanoTime() - startNanos);
+            if (ex != null) metadataPublisher.publishFailure(infoHash, ex.getMessage());
         });
         try {
             String magnet = "magnet:?xt=urn:btih:" + infoHashHex;
             // Use SessionManager.download to add magnet with flags suitable for metadata-only acquisition
             TorrentFlags.UPLOAD_MODE.or_(TorrentFlags.STOP_WHEN_READY); // ensure objects loaded
             session.download(magnet, new java.io.File(System.getProperty("java.io.tmpdir")), TorrentFlags.UPLOAD_MODE.or_(TorrentFlags.STOP_WHEN_READY));
+            if (peerLookup.isEnabled()) {
+                peerLookup.lookup(infoHash).thenAccept(peers -> addLookupPeers(infoHash, peers));
+            }
             // schedule timeout
             scheduler.schedule(() -> {
-                CompletableFuture<byte[]> f = pending.get(infoHashHex);
+                CompletableFuture<byte[]> f = pending.get(infoHash);
                 if (f != null && !f.isDone()) {
                     f.completeExceptionally(new TimeoutException("TIMEOUT"));
                     statusService.setStatus(infoHashHex, "TIMEOUT");
-                    TorrentHandle h = handles.get(infoHashHex);
+                    TorrentHandle h = handles.get(infoHash);
                     if (h != null) {
                         try { session.remove(h); } catch (Exception ignored) {}
                     }
@@ -181,15 +244,53 @@ public class LibtorrentMetadataDownloader {
         return future;
     }
 
-    private void scheduleRemoval(TorrentHandle h, String infoHashHex) {
+    /**
+     * MLDHT 查找到的 peer：torrent 已加入会话则直接连接，否则和 announce 提示一起等 AddTorrentAlert 时连接
+     */
+    private void addLookupPeers(InfoHash infoHash, List<InetSocketAddress> peers) {
+        CompletableFuture<byte[]> future = pending.get(infoHash);
+        if (peers.isEmpty() || future == null || future.isDone()) {
+            return;
+        }
+        lookupPeersReceived.addAndGet(peers.size());
+        TorrentHandle h = handles.get(infoHash);
+        if (h != null) {
+            connectPeers(h, peers);
+            return;
+        }
+        peerHints.merge(infoHash, peers, (a, b) -> {
+            List<InetSocketAddress> merged = new ArrayList<>(a);
+            merged.addAll(b);
+            return merged;
+        });
+        // AddTorrentAlert 可能恰好在合并前处理完，此时由这里补连
+        h = handles.get(infoHash);
+        List<InetSocketAddress> late = h == null ? null : peerHints.remove(infoHash);
+        if (late != null) {
+            connectPeers(h, late);
+        }
+    }
+
+    private void connectPeers(TorrentHandle h, List<InetSocketAddress> hints) {
+        for (InetSocketAddress peer : hints) {
+            try {
+                h.connectPeer(new TcpEndpoint(peer.getHostString(), peer.getPort()));
+                hintedPeersConnected.incrementAndGet();
+            } catch (Exception e) {
+                log.debug("Failed to connect hinted peer {}: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleRemoval(TorrentHandle h, InfoHash infoHash) {
         scheduler.schedule(() -> {
             try {
-                if (handles.get(infoHashHex) == h) {
+                if (handles.get(infoHash) == h) {
                     session.remove(h);
-                    handles.remove(infoHashHex);
+                    handles.remove(infoHash);
                 }
             } catch (Exception ex) {
-                log.warn("Failed to remove torrent {}: {}", infoHashHex, ex.getMessage());
+                log.warn("Failed to remove torrent {}: {}", infoHash, ex.getMessage());
             }
         }, removeDelayMillis, TimeUnit.MILLISECONDS);
     }
@@ -226,7 +327,13 @@ public class LibtorrentMetadataDownloader {
         }
     }
 
-    public String getStats() { return "active=" + active.get() + " pending=" + pending.size(); }
+    public String getStats() {
+        return "active=" + active.get() + " pending=" + pending.size()
+                + " hintedPeers=" + hintedPeersConnected.get() + " lookupPeers=" + lookupPeersReceived.get()
+                + " " + fetchStats.getStats() + " " + peerLookup.getStats();
+    }
+
+    public MetadataFetchStats getFetchStats() { return fetchStats; }
 
     @jakarta.annotation.PreDestroy
     public void shutdown() {
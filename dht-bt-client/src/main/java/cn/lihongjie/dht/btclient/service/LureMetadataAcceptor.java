@@ -0,0 +1,280 @@
+package cn.lihongjie.dht.btclient.service;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 诱导连接元数据获取
+ * MLDHT 开启 dht.lure 后，get_peers 的回复会把本端口作为 peer 返回，正在下载的客户端会主动连过来。
+ * 入站连接的握手里带着对方要下载的 InfoHash：尚未获取过的就回应握手和扩展握手，用 ut_metadata 向对方请求
+ * info 字典，校验 SHA-1 后直接发布。不必做任何出站 peer 查找，每次查找都变成一次元数据获取机会。
+ * libtorrent 会丢弃未加入会话的 InfoHash 的入站连接，所以诱导连接使用独立端口，由本服务自己处理。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LureMetadataAcceptor {
+
+    /** 本端声明的 ut_metadata 扩展消息ID，对端的 piece 响应使用该ID */
+    private static final int LOCAL_UT_METADATA_ID = 1;
+
+    private final MetadataPublisher metadataPublisher;
+    private final MetadataStatusService statusService;
+
+    @Value("${lure.enabled:false}")
+    private boolean enabled;
+
+    @Value("${lure.listen-port:6892}")
+    private int listenPort;
+
+    @Value("${lure.max-connections:256}")
+    private int maxConnections;
+
+    @Value("${lure.timeout-millis:15000}")
+    private int timeoutMillis;
+
+    @Value("${lure.max-metadata-bytes:10485760}")
+    private int maxMetadataBytes;
+
+    @Value("${lure.stats-interval-seconds:60}")
+    private int statsIntervalSeconds;
+
+    private final Set<InfoHash> fetching = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong connections = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong badHandshakes = new AtomicLong(0);
+    private final AtomicLong handshakes = new AtomicLong(0);
+    private final AtomicLong alreadyFetched = new AtomicLong(0);
+    private final AtomicLong noExtension = new AtomicLong(0);
+    private final AtomicLong noMetadata = new AtomicLong(0);
+    private final AtomicLong fetched = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong fetchNanos = new AtomicLong(0);
+
+    private Semaphore permits;
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+    private ScheduledExecutorService statsScheduler;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(listenPort), 512);
+        } catch (Exception e) {
+            log.error("Failed to listen for lured peers on port {}: {}", listenPort, e.getMessage());
+            return;
+        }
+        permits = new Semaphore(Math.max(1, maxConnections));
+        workers = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        Thread.ofPlatform().daemon().name("lure-acceptor").start(this::acceptLoop);
+        if (statsIntervalSeconds > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "lure-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Lure: {}", getStats()),
+                                               statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        }
+        log.info("Lure acceptor listening on port {}: maxConnections={}, timeoutMs={}",
+                 listenPort, maxConnections, timeoutMillis);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                if (!permits.tryAcquire()) {
+                    rejected.incrementAndGet();
+                    closeQuietly(socket);
+                    continue;
+                }
+                workers.execute(() -> {
+                    try (socket) {
+                        handle(socket);
+                    } catch (Exception e) {
+                        log.debug("Lured connection from {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Lure accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一个入站连接：读取对方握手拿到 InfoHash，再通过 ut_metadata 拉取 info 字典
+     */
+    private void handle(Socket socket) throws Exception {
+        socket.setSoTimeout(timeoutMillis);
+        socket.setTcpNoDelay(true);
+        InputStream in = socket.getInputStream();
+        OutputStream out = socket.getOutputStream();
+
+        PeerProtocolUtil.Handshake handshake = PeerProtocolUtil.parseHandshake(in.readNBytes(68));
+        if (handshake == null) {
+            badHandshakes.incrementAndGet();
+            return;
+        }
+        handshakes.incrementAndGet();
+        InfoHash infoHash = InfoHash.of(handshake.infoHash());
+        if ("SUCCESS".equals(statusService.getStatus(infoHash.toHex())) || !fetching.add(infoHash)) {
+            alreadyFetched.incrementAndGet();
+            return;
+        }
+        try {
+            if (!handshake.supportsExtensions()) {
+                noExtension.incrementAndGet();
+                return;
+            }
+            long startNanos = System.nanoTime();
+            byte[] reserved = new byte[8];
+            reserved[5] |= 0x10;
+            out.write(PeerProtocolUtil.buildHandshake(handshake.infoHash(), PeerProtocolUtil.generatePeerId(), reserved));
+            out.write(PeerProtocolUtil.buildExtendedMessage(0,
+                      PeerProtocolUtil.buildExtendedHandshakePayload(LOCAL_UT_METADATA_ID)));
+            out.flush();
+
+            byte[] info = fetchMetadata(in, out, infoHash);
+            if (info == null) {
+                failed.incrementAndGet();
+                return;
+            }
+            fetched.incrementAndGet();
+            fetchNanos.addAndGet(System.nanoTime() - startNanos);
+            metadataPublisher.publishRawInfo(infoHash, info);
+            log.debug("Fetched metadata of {} ({} bytes) from lured peer {}",
+                      infoHash, info.length, socket.getRemoteSocketAddress());
+        } finally {
+            fetching.remove(infoHash);
+        }
+    }
+
+    /**
+     * 等待对方的扩展握手，按 16KB 分片请求全部 info 字典并校验 SHA-1
+     *
+     * @return 校验通过的 info 字典，失败返回 null
+     */
+    private byte[] fetchMetadata(InputStream in, OutputStream out, InfoHash infoHash) throws Exception {
+        PeerProtocolUtil.ExtendedHandshake extended = null;
+        // 扩展握手之前对方可能先发 bitfield/have 等消息，跳过
+        for (int i = 0; i < 32 && extended == null; i++) {
+            byte[] body = PeerProtocolUtil.readMessage(in);
+            if (body == null) {
+                return null;
+            }
+            extended = PeerProtocolUtil.parseExtendedHandshake(body);
+        }
+        if (extended == null || extended.utMetadataId() <= 0
+                || extended.metadataSize() <= 0 || extended.metadataSize() > maxMetadataBytes) {
+            noMetadata.incrementAndGet();
+            return null;
+        }
+        int size = extended.metadataSize();
+        int pieces = (size + PeerProtocolUtil.METADATA_PIECE_SIZE - 1) / PeerProtocolUtil.METADATA_PIECE_SIZE;
+        for (int piece = 0; piece < pieces; piece++) {
+            out.write(PeerProtocolUtil.buildExtendedMessage(extended.utMetadataId(),
+                      PeerProtocolUtil.buildMetadataRequestPayload(piece)));
+        }
+        out.flush();
+
+        byte[][] received = new byte[pieces][];
+        int remaining = pieces;
+        for (int i = 0; i < pieces * 8 + 32 && remaining > 0; i++) {
+            byte[] body = PeerProtocolUtil.readMessage(in);
+            if (body == null) {
+                return null;
+            }
+            PeerProtocolUtil.MetadataPiece piece = PeerProtocolUtil.parseMetadataPiece(body, LOCAL_UT_METADATA_ID);
+            if (piece != null && piece.pieceIndex() < pieces && received[piece.pieceIndex()] == null) {
+                received[piece.pieceIndex()] = piece.data();
+                remaining--;
+            }
+        }
+        if (remaining > 0) {
+            return null;
+        }
+        ByteArrayOutputStream info = new ByteArrayOutputStream(size);
+        for (byte[] data : received) {
+            info.write(data);
+        }
+        byte[] raw = info.toByteArray();
+        if (raw.length != size || !Arrays.equals(MessageDigest.getInstance("SHA-1").digest(raw), infoHash.toBytes())) {
+            return null;
+        }
+        return raw;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (Exception ignore) {
+            }
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取统计信息：入站连接数、有效握手数、成功获取元数据数及其占连接的比例
+     */
+    public String getStats() {
+        long connected = connections.get();
+        long done = fetched.get();
+        return String.format("lure[connections=%d, rejected=%d, badHandshakes=%d, handshakes=%d, alreadyFetched=%d, "
+                             + "noExtension=%d, noMetadata=%d, failed=%d, fetched=%d, yield=%.1f%%, avgFetchMs=%.0f]",
+                             connected, rejected.get(), badHandshakes.get(), handshakes.get(), alreadyFetched.get(),
+                             noExtension.get(), noMetadata.get(), failed.get(), done,
+                             connected == 0 ? 0.0 : done * 100.0 / connected,
+                             done == 0 ? 0.0 : fetchNanos.get() / 1e6 / done);
+    }
+}
@@ -0,0 +1,79 @@
+package cn.lihongjie.dht.btclient.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 元数据获取结果统计，按是否带有初始 peer 提示分组
+ * 用于对比直接连接 announce 来源 peer 与单纯依赖 libtorrent 自身 DHT 查找的成功率和耗时。
+ */
+public class MetadataFetchStats {
+
+    private final Group hinted = new Group();
+    private final Group unhinted = new Group();
+
+    /**
+     * 记录一次获取结果
+     *
+     * @param withHints    是否带有 peer 提示
+     * @param success      是否拿到元数据
+     * @param elapsedNanos 从提交到结束的耗时
+     */
+    public void record(boolean withHints, boolean success, long elapsedNanos) {
+        (withHints ? hinted : unhinted).record(success, elapsedNanos);
+    }
+
+    public Group hinted() {
+        return hinted;
+    }
+
+    public Group unhinted() {
+        return unhinted;
+    }
+
+    public String getStats() {
+        return "hinted" + hinted + " unhinted" + unhinted;
+    }
+
+    /**
+     * 单组统计；平均耗时只统计成功的请求（time-to-metadata）
+     */
+    public static class Group {
+
+        private final AtomicLong attempts = new AtomicLong(0);
+        private final AtomicLong successes = new AtomicLong(0);
+        private final AtomicLong successNanos = new AtomicLong(0);
+
+        void record(boolean success, long elapsedNanos) {
+            attempts.incrementAndGet();
+            if (success) {
+                successes.incrementAndGet();
+                successNanos.addAndGet(elapsedNanos);
+            }
+        }
+
+        public long getAttempts() {
+            return attempts.get();
+        }
+
+        public long getSuccesses() {
+            return successes.get();
+        }
+
+        public double getSuccessRate() {
+            long n = attempts.get();
+            return n == 0 ? 0.0 : successes.get() * 100.0 / n;
+        }
+
+        public long getAvgTimeToMetadataMillis() {
+            long ok = successes.get();
+            return ok == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(successNanos.get() / ok);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[attempts=%d, success=%d, rate=%.1f%%, avgTtm=%dms]",
+                                 getAttempts(), getSuccesses(), getSuccessRate(), getAvgTimeToMetadataMillis());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.dampcake.bencode.Bencode;
 import com.dampcake.bencode.Type;
 import cn.lihongjie.dht.btclient.parser.RawInfoParser;
 import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.InfoHash;
 import cn.lihongjie.dht.common.model.TorrentMetadata;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,19 +38,20 @@ public class MetadataPublisher {
     /**
      * 发布Torrent元数据
      */
-    public void publish(String infoHash, Torrent torrent) {
+    public void publish(InfoHash infoHash, Torrent torrent) {
+        String infoHashHex = infoHash.toHex();
         try {
             TorrentMetadata metadata = convertToMetadata(infoHash, torrent);
             metadata.setStatus("SUCCESS");
             
-            kafkaTemplate.send(KafkaTopics.METADATA_FETCHED, infoHash, metadata)
+            kafkaTemplate.send(KafkaTopics.METADATA_FETCHED, infoHashHex, metadata)
                 .whenComplete((result, ex) -> {
                     if (ex != null) {
-                        log.error("Failed to publish metadata for InfoHash: {}", infoHash, ex);
-                        statusService.setStatus(infoHash, "FAILED");
+                        log.error("Failed to publish metadata for InfoHash: {}", infoHashHex, ex);
+                        statusService.setStatus(infoHashHex, "FAILED");
                     } else {
                         long count = publishedCount.incrementAndGet();
-                        statusService.setStatus(infoHash, "SUCCESS");
+                        statusService.setStatus(infoHashHex, "SUCCESS");
                         if (count % 10 == 0) {
                             log.info("Published {} metadata to Kafka", count);
                         }
@@ -57,7 +59,7 @@ public class MetadataPublisher {
                 });
             
         } catch (Exception e) {
-            log.error("Error publishing metadata for InfoHash: {}", infoHash, e);
+            log.error("Error publishing metadata for InfoHash: {}", infoHashHex, e);
             publishFailure(infoHash, e.getMessage());
         }
     }
@@ -65,7 +67,7 @@ public class MetadataPublisher {
     /**
      * 转换Bt的Torrent对象为我们的TorrentMetadata
      */
-    private TorrentMetadata convertToMetadata(String infoHash, Torrent torrent) {
+    private TorrentMetadata convertToMetadata(InfoHash infoHash, Torrent torrent) {
         List<TorrentMetadata.FileInfo> files = torrent.getFiles().stream()
             .map(this::convertFileInfo)
             .collect(Collectors.toList());
@@ -91,44 +93,45 @@ public class MetadataPublisher {
 
     /**
      * 直接发布从 ut_metadata 获取的原始 info 字典（不再二次下载）。
-     * @param infoHash 十六进制 infohash
+     * @param infoHash infohash
      * @param rawInfoBytes ut_metadata 拼装完整后的 info 字典原始字节
      */
-    public void publishRawInfo(String infoHash, byte[] rawInfoBytes) {
+    public void publishRawInfo(InfoHash infoHash, byte[] rawInfoBytes) {
+        String infoHashHex = infoHash.toHex();
         try {
             // Validate it's a dictionary quickly (optional fast-fail)
             Object decoded = bencode.decode(rawInfoBytes, Type.DICTIONARY);
             if (!(decoded instanceof java.util.Map)) {
-                log.warn("Raw info decode not a dict infoHash={}", infoHash);
+                log.warn("Raw info decode not a dict infoHash={}", infoHashHex);
                 return;
             }
 
-            RawInfoParser.RawInfoResult result = rawInfoParser.parse(infoHash, rawInfoBytes);
+            RawInfoParser.RawInfoResult result = rawInfoParser.parse(infoHashHex, rawInfoBytes);
 
             TorrentMetadata metadata = TorrentMetadata.builder()
                     .infoHash(infoHash)
-                    .name(result.getName() != null ? result.getName() : infoHash)
+                    .name(result.getName() != null ? result.getName() : infoHashHex)
                     .totalSize(result.getTotalSize())
                     .files(result.getFiles())
                     .fetchedAt(java.time.Instant.now())
                     .status("SUCCESS")
                     .build();
 
-            kafkaTemplate.send(KafkaTopics.METADATA_FETCHED, infoHash, metadata)
+            kafkaTemplate.send(KafkaTopics.METADATA_FETCHED, infoHashHex, metadata)
                     .whenComplete((res, ex) -> {
                         if (ex != null) {
-                            log.error("Failed publish raw info metadata infoHash={}", infoHash, ex);
-                            statusService.setStatus(infoHash, "FAILED");
+                            log.error("Failed publish raw info metadata infoHash={}", infoHashHex, ex);
+                            statusService.setStatus(infoHashHex, "FAILED");
                         } else {
                             long c = publishedCount.incrementAndGet();
-                            statusService.setStatus(infoHash, "SUCCESS");
+                            statusService.setStatus(infoHashHex, "SUCCESS");
                             if (c % 10 == 0) {
                                 log.info("Published {} metadata (raw) to Kafka", c);
                             }
                         }
                     });
         } catch (Exception e) {
-            log.debug("Publish raw info failed infoHash={} err={}", infoHash, e.getMessage());
+            log.debug("Publish raw info failed infoHash={} err={}", infoHashHex, e.getMessage());
             publishFailure(infoHash, e.getMessage());
         }
     }
@@ -143,7 +146,8 @@ public class MetadataPublisher {
     /**
      * 发布失败消息到失败主题，并记录状态
      */
-    public void publishFailure(String infoHash, String reason) {
+    public void publishFailure(InfoHash infoHash, String reason) {
+        String infoHashHex = infoHash.toHex();
         try {
             TorrentMetadata metadata = TorrentMetadata.builder()
                     .infoHash(infoHash)
@@ -154,18 +158,18 @@ public class MetadataPublisher {
                     .status("FAILED")
                     .failureMessage(reason)
                     .build();
-            kafkaTemplate.send(KafkaTopics.METADATA_FAILED, infoHash, metadata)
+            kafkaTemplate.send(KafkaTopics.METADATA_FAILED, infoHashHex, metadata)
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
-                            log.error("Failed to publish FAILURE metadata infoHash={} reason={} err={}", infoHash, reason, ex.getMessage());
+                            log.error("Failed to publish FAILURE metadata infoHash={} reason={} err={}", infoHashHex, reason, ex.getMessage());
                         } else {
                             failedCount.incrementAndGet();
-                            statusService.setStatus(infoHash, "FAILED");
-                            log.info("Published FAILURE metadata infoHash={} reason={}", infoHash, reason);
+                            statusService.setStatus(infoHashHex, "FAILED");
+                            log.info("Published FAILURE metadata infoHash={} reason={}", infoHashHex, reason);
                         }
                     });
         } catch (Exception e) {
-            log.error("Error building FAILURE metadata infoHash={} err={}", infoHash, e.getMessage());
+            log.error("Error building FAILURE metadata infoHash={} err={}", infoHashHex, e.getMessage());
         }
     }
 }
@@ -9,8 +9,9 @@ import java.util.HexFormat;
 
 /**
  * 抽取出的 BitTorrent 基础与扩展协议处理工具，便于单元测试。
- * 仅包含本项目 DirectPeerDownloader 需要的最小功能：
+ * 仅包含本项目 DirectPeerDownloader 与 LureMetadataAcceptor 需要的最小功能：
  * - 握手构造与解析（只验证协议字符串与 infohash）
+ * - 长度前缀消息读取（限制单条消息大小）
  * - 扩展握手消息构造与解析 (ut_metadata 相关字段)
  * - ut_metadata piece 消息解析
  * - 基本 bencode 片段终止位置查找（有限度，满足当前解析需求）
@@ -18,6 +19,9 @@ import java.util.HexFormat;
 class PeerProtocolUtil {
 
     static final int METADATA_PIECE_SIZE = 16 * 1024; // 16384
+    /** 单条消息长度上限，防止对端用超大长度前缀耗尽内存 */
+    static final int MAX_MESSAGE_LENGTH = 1024 * 1024;
+    private static final byte[] PROTOCOL = "BitTorrent protocol".getBytes();
     private static final Bencode BENCODE = new Bencode();
     private static final SecureRandom RANDOM = new SecureRandom();
 
@@ -33,6 +37,19 @@ class PeerProtocolUtil {
         return hs;
     }
 
+    /** 解析对端发来的 68 字节握手，协议字符串不符时返回 null */
+    static Handshake parseHandshake(byte[] hs) {
+        if (hs == null || hs.length < 68 || hs[0] != 19) return null;
+        for (int i = 0; i < PROTOCOL.length; i++) {
+            if (hs[1 + i] != PROTOCOL[i]) return null;
+        }
+        byte[] reserved = new byte[8];
+        byte[] infoHash = new byte[20];
+        System.arraycopy(hs, 20, reserved, 0, 8);
+        System.arraycopy(hs, 28, infoHash, 0, 20);
+        return new Handshake(reserved, infoHash);
+    }
+
     /** 生成简单 peerId (-PC0001- + 随机) */
     static byte[] generatePeerId() {
         String prefix = "-PC0001-";
@@ -61,14 +78,46 @@ class PeerProtocolUtil {
         return msg;
     }
 
-    /** 读取并解析扩展握手 (ext id 0) */
-    static ExtendedHandshake readExtendedHandshake(InputStream in) throws Exception {
+    /** 构造扩展握手负载，声明本端 ut_metadata 的扩展消息ID */
+    static byte[] buildExtendedHandshakePayload(int localUtMetadataId) {
+        java.util.Map<String,Object> m = new java.util.HashMap<>();
+        m.put("ut_metadata", (long) localUtMetadataId);
+        java.util.Map<String,Object> root = new java.util.HashMap<>();
+        root.put("m", m);
+        return BENCODE.encode(root);
+    }
+
+    /** 构造 ut_metadata 请求负载 (msg_type 0) */
+    static byte[] buildMetadataRequestPayload(int piece) {
+        java.util.Map<String,Object> root = new java.util.HashMap<>();
+        root.put("msg_type", 0L);
+        root.put("piece", (long) piece);
+        return BENCODE.encode(root);
+    }
+
+    /**
+     * 读取一条长度前缀消息的消息体（不含长度），keep-alive 返回空数组
+     * 连接关闭、消息不完整或超过 MAX_MESSAGE_LENGTH 时返回 null
+     */
+    static byte[] readMessage(InputStream in) throws Exception {
         byte[] header = in.readNBytes(4);
         if (header.length < 4) return null;
         int len = toInt(header);
-        if (len <= 2) return null;
+        if (len < 0 || len > MAX_MESSAGE_LENGTH) return null;
         byte[] body = in.readNBytes(len);
-        if (body.length < len) return null;
+        return body.length < len ? null : body;
+    }
+
+    /** 读取并解析扩展握手 (ext id 0) */
+    static ExtendedHandshake readExtendedHandshake(InputStream in) throws Exception {
+        byte[] body = readMessage(in);
+        return body == null ? null : parseExtendedHandshake(body);
+    }
+
+    /** 解析扩展握手消息体，不是扩展握手时返回 null */
+    static ExtendedHandshake parseExtendedHandshake(byte[] body) {
+        int len = body.length;
+        if (len <= 2) return null;
         if (body[0] != 20 || body[1] != 0) return null; // not ext handshake
         byte[] payload = new byte[len - 2];
         System.arraycopy(body, 2, payload, 0, payload.length);
@@ -93,12 +142,13 @@ class PeerProtocolUtil {
 
     /** 读取并解析 ut_metadata piece 响应 */
     static MetadataPiece readMetadataPiece(InputStream in, int utMetadataId) throws Exception {
-        byte[] header = in.readNBytes(4);
-        if (header.length < 4) return null;
-        int len = toInt(header);
-        if (len <= 2) return null;
-        byte[] body = in.readNBytes(len);
-        if (body.length < len) return null;
+        byte[] body = readMessage(in);
+        return body == null ? null : parseMetadataPiece(body, utMetadataId);
+    }
+
+    /** 解析 ut_metadata piece 消息体，其他消息返回 null */
+    static MetadataPiece parseMetadataPiece(byte[] body, int utMetadataId) {
+        if (body.length <= 2) return null;
         if (body[0] != 20 || body[1] != (byte) utMetadataId) return null;
         
         // 使用 ISO-8859-1 转字符串查找 bencode 字典结尾 "ee"（参考 PeerWireClient 实现）
@@ -176,6 +226,10 @@ class PeerProtocolUtil {
         return ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16) | ((header[2] & 0xff) << 8) | (header[3] & 0xff);
     }
 
+    static record Handshake(byte[] reserved, byte[] infoHash) {
+        /** 对端是否支持扩展协议 (BEP 10) */
+        boolean supportsExtensions() { return (reserved[5] & 0x10) != 0; }
+    }
     static record ExtendedHandshake(int utMetadataId, int metadataSize) {}
     static record MetadataPiece(int pieceIndex, byte[] data) {}
 }
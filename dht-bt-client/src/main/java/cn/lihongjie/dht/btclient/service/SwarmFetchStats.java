@@ -0,0 +1,70 @@
+package cn.lihongjie.dht.btclient.service;
+
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 元数据获取结果统计，按 MLDHT 用 BEP 33 scrape 估计的 swarm 大小分组
+ * 用于验证估计是否有区分度：死种的成功率应明显低于有 peer 的 swarm，否则不应开启 swarm.skip-dead。
+ */
+public class SwarmFetchStats {
+
+    /** 做种者与下载者合计少于该值视为小 swarm */
+    public static final int SMALL_SWARM = 10;
+
+    /**
+     * 分组按信息量从少到多排列，同一 InfoHash 的多条消息取序号最大的分组
+     */
+    public enum Bucket {
+        UNKNOWN,
+        DEAD,
+        SMALL,
+        LARGE
+    }
+
+    private final Map<Bucket, MetadataFetchStats.Group> groups = new EnumMap<>(Bucket.class);
+
+    public SwarmFetchStats() {
+        for (Bucket bucket : Bucket.values()) {
+            groups.put(bucket, new MetadataFetchStats.Group());
+        }
+    }
+
+    /**
+     * 按消息中的 swarm 估计分组，未 scrape 或没有估计的旧消息为 UNKNOWN
+     */
+    public static Bucket bucketOf(InfoHashMessage message) {
+        if (message.getSwarmSeeds() == null || message.getSwarmPeers() == null) {
+            return Bucket.UNKNOWN;
+        }
+        int size = message.getSwarmSeeds() + message.getSwarmPeers();
+        if (size == 0) {
+            return Bucket.DEAD;
+        }
+        return size < SMALL_SWARM ? Bucket.SMALL : Bucket.LARGE;
+    }
+
+    /**
+     * 记录一次获取结果
+     */
+    public void record(Bucket bucket, boolean success, long elapsedNanos) {
+        groups.get(bucket).record(success, elapsedNanos);
+    }
+
+    public MetadataFetchStats.Group group(Bucket bucket) {
+        return groups.get(bucket);
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Bucket, MetadataFetchStats.Group> entry : groups.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(entry.getKey().name().toLowerCase()).append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
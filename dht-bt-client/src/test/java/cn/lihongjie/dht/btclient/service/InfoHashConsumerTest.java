@@ -0,0 +1,118 @@
+package cn.lihongjie.dht.btclient.service;
+
+import cn.lihongjie.dht.common.model.Confidence;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InfoHashConsumerTest {
+
+    private static final InfoHash A = InfoHash.fromHex("ccbd47a30a5a13a5260295e4bd65c038244e9df0");
+    private static final InfoHash B = InfoHash.fromHex("0000000000000000000000000000000000000001");
+
+    @Test
+    @DisplayName("Messages for the same InfoHash merge into one download with every announcer as a peer hint")
+    void testGroupPeerHints() {
+        List<InfoHashMessage> messages = List.of(
+                message(A, "1.2.3.4", 6881, DiscoverySource.ANNOUNCE),
+                message(B, "9.9.9.9", 1000, DiscoverySource.LOOKUP),
+                message(A, "5.6.7.8", 51413, null),
+                message(A, "1.2.3.4", 6881, DiscoverySource.ANNOUNCE),
+                message(A, "7.7.7.7", 2000, DiscoverySource.SAMPLE),
+                message(B, "2001:db8::1", 6881, DiscoverySource.ANNOUNCE));
+
+        Map<InfoHash, List<InetSocketAddress>> grouped = InfoHashConsumer.groupPeerHints(messages);
+
+        assertEquals(List.of(A, B), List.copyOf(grouped.keySet()));
+        assertEquals(List.of(InetSocketAddress.createUnresolved("1.2.3.4", 6881),
+                             InetSocketAddress.createUnresolved("5.6.7.8", 51413)), grouped.get(A));
+        assertEquals(List.of(InetSocketAddress.createUnresolved("2001:db8::1", 6881)), grouped.get(B));
+    }
+
+    @Test
+    @DisplayName("Messages without a usable address still produce a download without hints")
+    void testNoHints() {
+        InfoHashMessage noAddress = InfoHashMessage.builder().infoHash(A).build();
+
+        Map<InfoHash, List<InetSocketAddress>> grouped = InfoHashConsumer.groupPeerHints(List.of(noAddress));
+
+        assertTrue(grouped.get(A).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Fetch outcomes are reported separately for hinted and unhinted downloads")
+    void testFetchStats() {
+        MetadataFetchStats stats = new MetadataFetchStats();
+        stats.record(true, true, TimeUnit.MILLISECONDS.toNanos(200));
+        stats.record(true, true, TimeUnit.MILLISECONDS.toNanos(400));
+        stats.record(true, false, TimeUnit.SECONDS.toNanos(30));
+        stats.record(false, false, TimeUnit.SECONDS.toNanos(30));
+
+        assertEquals(3, stats.hinted().getAttempts());
+        assertEquals(300, stats.hinted().getAvgTimeToMetadataMillis());
+        assertEquals(200.0 / 3, stats.hinted().getSuccessRate(), 0.001);
+        assertEquals(1, stats.unhinted().getAttempts());
+        assertEquals(0, stats.unhinted().getSuccesses());
+    }
+
+    @Test
+    @DisplayName("Within a confidence level larger swarms go first, unknown next and dead swarms last")
+    void testSwarmOrdering() {
+        InfoHashMessage dead = swarm(0, 0, Confidence.HIGH);
+        InfoHashMessage unknown = swarm(null, null, Confidence.HIGH);
+        InfoHashMessage small = swarm(1, 2, Confidence.HIGH);
+        InfoHashMessage large = swarm(40, 200, Confidence.HIGH);
+        InfoHashMessage lowLarge = swarm(500, 500, Confidence.LOW);
+        List<InfoHashMessage> messages = new ArrayList<>(List.of(lowLarge, dead, small, unknown, large));
+
+        messages.sort(InfoHashConsumer.BY_PRIORITY);
+
+        assertEquals(List.of(large, small, unknown, dead, lowLarge), messages);
+        assertEquals(SwarmFetchStats.Bucket.DEAD, SwarmFetchStats.bucketOf(dead));
+        assertEquals(SwarmFetchStats.Bucket.UNKNOWN, SwarmFetchStats.bucketOf(unknown));
+        assertEquals(SwarmFetchStats.Bucket.SMALL, SwarmFetchStats.bucketOf(small));
+        assertEquals(SwarmFetchStats.Bucket.LARGE, SwarmFetchStats.bucketOf(large));
+    }
+
+    @Test
+    @DisplayName("Fetch outcomes are reported per swarm-size bucket")
+    void testSwarmFetchStats() {
+        SwarmFetchStats stats = new SwarmFetchStats();
+        stats.record(SwarmFetchStats.Bucket.DEAD, false, TimeUnit.SECONDS.toNanos(30));
+        stats.record(SwarmFetchStats.Bucket.LARGE, true, TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertEquals(1, stats.group(SwarmFetchStats.Bucket.DEAD).getAttempts());
+        assertEquals(0, stats.group(SwarmFetchStats.Bucket.DEAD).getSuccesses());
+        assertEquals(100.0, stats.group(SwarmFetchStats.Bucket.LARGE).getSuccessRate(), 0.001);
+        assertEquals(0, stats.group(SwarmFetchStats.Bucket.UNKNOWN).getAttempts());
+        assertTrue(stats.getStats().startsWith("unknown[attempts=0"));
+    }
+
+    private static InfoHashMessage swarm(Integer seeds, Integer peers, Confidence confidence) {
+        return InfoHashMessage.builder()
+                .infoHash(A)
+                .confidence(confidence)
+                .swarmSeeds(seeds)
+                .swarmPeers(peers)
+                .build();
+    }
+
+    private static InfoHashMessage message(InfoHash infoHash, String ip, int port, DiscoverySource source) {
+        return InfoHashMessage.builder()
+                .infoHash(infoHash)
+                .sourceIp(ip)
+                .sourcePort(port)
+                .source(source)
+                .build();
+    }
+}
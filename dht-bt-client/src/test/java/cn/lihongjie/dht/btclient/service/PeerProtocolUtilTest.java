@@ -144,4 +144,43 @@ class PeerProtocolUtilTest {
         PeerProtocolUtil.MetadataPiece piece = PeerProtocolUtil.readMetadataPiece(new ByteArrayInputStream(full), utId);
         assertNull(piece);
     }
+
+    @Test
+    @DisplayName("Incoming handshake yields infohash and extension flag, foreign protocol returns null")
+    void testParseHandshake() {
+        byte[] infoHash = HexFormat.of().parseHex("ccbd47a30a5a13a5260295e4bd65c038244e9df0");
+        byte[] reserved = new byte[8];
+        reserved[5] |= 0x10;
+        byte[] hs = PeerProtocolUtil.buildHandshake(infoHash, PeerProtocolUtil.generatePeerId(), reserved);
+
+        PeerProtocolUtil.Handshake parsed = PeerProtocolUtil.parseHandshake(hs);
+        assertNotNull(parsed);
+        assertArrayEquals(infoHash, parsed.infoHash());
+        assertTrue(parsed.supportsExtensions());
+        assertFalse(PeerProtocolUtil.parseHandshake(
+                PeerProtocolUtil.buildHandshake(infoHash, PeerProtocolUtil.generatePeerId(), new byte[8])).supportsExtensions());
+
+        hs[5] = 'X';
+        assertNull(PeerProtocolUtil.parseHandshake(hs));
+        assertNull(PeerProtocolUtil.parseHandshake(new byte[10]));
+    }
+
+    @Test
+    @DisplayName("Messages are read one by one, keep-alive is empty and oversized lengths are refused")
+    void testReadMessage() throws Exception {
+        byte[] ext = PeerProtocolUtil.buildExtendedMessage(0, PeerProtocolUtil.buildExtendedHandshakePayload(1));
+        byte[] stream = new byte[4 + ext.length];
+        System.arraycopy(ext, 0, stream, 4, ext.length); // keep-alive 后跟扩展握手
+        ByteArrayInputStream in = new ByteArrayInputStream(stream);
+
+        assertEquals(0, PeerProtocolUtil.readMessage(in).length);
+        PeerProtocolUtil.ExtendedHandshake eh = PeerProtocolUtil.parseExtendedHandshake(PeerProtocolUtil.readMessage(in));
+        assertNotNull(eh);
+        assertEquals(1, eh.utMetadataId());
+        assertNull(PeerProtocolUtil.readMessage(in));
+
+        int len = PeerProtocolUtil.MAX_MESSAGE_LENGTH + 1;
+        byte[] huge = new byte[]{(byte)(len>>>24),(byte)(len>>>16),(byte)(len>>>8),(byte)len};
+        assertNull(PeerProtocolUtil.readMessage(new ByteArrayInputStream(huge)));
+    }
 }
@@ -10,6 +10,21 @@ public class KafkaTopics {
      */
     public static final String INFOHASH_DISCOVERED = "dht.infohash.discovered";
     
+    /**
+     * 热门InfoHash主题：MLDHT 定期发布滑动窗口内 announce 次数最多的 Top-K
+     */
+    public static final String INFOHASH_POPULAR = "dht.infohash.popular";
+    
+    /**
+     * Peer 查找请求主题：BT Client -> MLDHT
+     */
+    public static final String PEER_LOOKUP_REQUEST = "dht.peers.lookup.request";
+    
+    /**
+     * Peer 查找回复主题：MLDHT -> BT Client，key 为发起请求的客户端实例ID
+     */
+    public static final String PEER_LOOKUP_REPLY = "dht.peers.lookup.reply";
+    
     /**
      * 元数据下载主题：BT Client -> Metadata Service
      */
@@ -0,0 +1,10 @@
+package cn.lihongjie.dht.common.model;
+
+/**
+ * InfoHash可信度等级（能否获取到元数据的可能性），声明顺序即优先级从高到低
+ */
+public enum Confidence {
+    HIGH,
+    MEDIUM,
+    LOW
+}
@@ -0,0 +1,35 @@
+package cn.lihongjie.dht.common.model;
+
+/**
+ * InfoHash发现来源
+ */
+public enum DiscoverySource {
+
+    /**
+     * announce_peer：对方声明自己正在下载/做种，几乎一定能拿到元数据
+     */
+    ANNOUNCE(Confidence.HIGH),
+
+    /**
+     * BEP 51 sample_infohashes：对方节点存有该 InfoHash 的 peer 列表
+     */
+    SAMPLE(Confidence.MEDIUM),
+
+    /**
+     * get_peers：有人在查找该 InfoHash，但不保证有人持有
+     */
+    LOOKUP(Confidence.LOW);
+
+    private final Confidence confidence;
+
+    DiscoverySource(Confidence confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * 该来源默认的可信度等级
+     */
+    public Confidence confidence() {
+        return confidence;
+    }
+}
@@ -0,0 +1,223 @@
+package cn.lihongjie.dht.common.model;
+
+import cn.lihongjie.dht.common.util.HashUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 20字节 InfoHash 值类型
+ * 用两个 long 加一个 int 保存，比 40 位十六进制 String 占用更少的堆内存，equals/hashCode 也不需要逐字符比较。
+ * JSON 中仍然序列化为 40 位小写十六进制字符串，与原有消息格式兼容。
+ */
+@JsonSerialize(using = InfoHash.Serializer.class)
+@JsonDeserialize(using = InfoHash.Deserializer.class)
+public final class InfoHash implements Serializable, Comparable<InfoHash> {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** 二进制长度 */
+    public static final int LENGTH = 20;
+
+    /** 十六进制长度 */
+    public static final int HEX_LENGTH = 40;
+
+    private final long high;
+    private final long middle;
+    private final int low;
+
+    private InfoHash(long high, long middle, int low) {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
+    }
+
+    /**
+     * 从20字节数组创建
+     */
+    public static InfoHash of(byte[] bytes) {
+        if (bytes == null || bytes.length != LENGTH) {
+            throw new IllegalArgumentException("InfoHash must be 20 bytes");
+        }
+        return of(bytes, 0);
+    }
+
+    /**
+     * 从缓冲区的指定偏移量读取20字节创建（不复制数组）
+     */
+    public static InfoHash of(byte[] buf, int off) {
+        if (off < 0 || off + LENGTH > buf.length) {
+            throw new IllegalArgumentException("InfoHash out of buffer bounds");
+        }
+        return new InfoHash(readBits(buf, off, 8), readBits(buf, off + 8, 8), (int) readBits(buf, off + 16, 4));
+    }
+
+    /**
+     * 从40位十六进制字符串创建（大小写均可）
+     */
+    public static InfoHash fromHex(CharSequence hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("Invalid InfoHash: " + hex);
+        }
+        long high = 0;
+        long middle = 0;
+        long low = 0;
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            int v = HashUtils.hexValue(hex.charAt(i));
+            if (v < 0) {
+                throw new IllegalArgumentException("Invalid InfoHash: " + hex);
+            }
+            if (i < 16) {
+                high = (high << 4) | v;
+            } else if (i < 32) {
+                middle = (middle << 4) | v;
+            } else {
+                low = (low << 4) | v;
+            }
+        }
+        return new InfoHash(high, middle, (int) low);
+    }
+
+    /**
+     * 校验是否为合法的40位十六进制字符串
+     */
+    public static boolean isValidHex(CharSequence hex) {
+        return HashUtils.isValidInfoHash(hex);
+    }
+
+    /**
+     * 写入20字节到 dst 的指定偏移量
+     */
+    public void writeTo(byte[] dst, int off) {
+        writeBits(high, dst, off, 8);
+        writeBits(middle, dst, off + 8, 8);
+        writeBits(low, dst, off + 16, 4);
+    }
+
+    /** 第0-7字节（大端序） */
+    public long highBits() {
+        return high;
+    }
+
+    /** 第8-15字节（大端序） */
+    public long middleBits() {
+        return middle;
+    }
+
+    /** 第16-19字节（大端序） */
+    public int lowBits() {
+        return low;
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[LENGTH];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * 40位小写十六进制字符串
+     */
+    public String toHex() {
+        byte[] out = new byte[HEX_LENGTH];
+        HashUtils.writeHex(high, 8, out, 0);
+        HashUtils.writeHex(middle, 8, out, 16);
+        HashUtils.writeHex(low, 4, out, 32);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof InfoHash other
+                && high == other.high && middle == other.middle && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // InfoHash 本身是 SHA-1 输出，取前8字节即可得到均匀分布
+        return Long.hashCode(high);
+    }
+
+    @Override
+    public int compareTo(InfoHash o) {
+        int c = Long.compareUnsigned(high, o.high);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compareUnsigned(middle, o.middle);
+        return c != 0 ? c : Integer.compareUnsigned(low, o.low);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    private static long readBits(byte[] buf, int off, int count) {
+        long v = 0;
+        for (int i = 0; i < count; i++) {
+            v = (v << 8) | (buf[off + i] & 0xff);
+        }
+        return v;
+    }
+
+    private static void writeBits(long value, byte[] dst, int off, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            dst[off + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * JSON 序列化为十六进制字符串
+     */
+    public static class Serializer extends StdSerializer<InfoHash> {
+
+        public Serializer() {
+            super(InfoHash.class);
+        }
+
+        @Override
+        public void serialize(InfoHash value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeString(value.toHex());
+        }
+    }
+
+    /**
+     * 从十六进制字符串反序列化，直接读取解析器的字符缓冲区
+     */
+    public static class Deserializer extends StdDeserializer<InfoHash> {
+
+        public Deserializer() {
+            super(InfoHash.class);
+        }
+
+        @Override
+        public InfoHash deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != JsonToken.VALUE_STRING) {
+                return (InfoHash) ctxt.handleUnexpectedToken(InfoHash.class, p);
+            }
+            try {
+                return fromHex(CharBuffer.wrap(p.getTextCharacters(), p.getTextOffset(), p.getTextLength()));
+            } catch (IllegalArgumentException e) {
+                return (InfoHash) ctxt.handleWeirdStringValue(InfoHash.class, p.getText(), "expected 40 hex characters");
+            }
+        }
+    }
+}
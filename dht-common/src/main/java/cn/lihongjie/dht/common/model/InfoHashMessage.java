@@ -20,9 +20,9 @@ public class InfoHashMessage implements Serializable {
     private static final long serialVersionUID = 1L;
     
     /**
-     * InfoHash (40位十六进制字符串)
+     * InfoHash（JSON 中为40位十六进制字符串）
      */
-    private String infoHash;
+    private InfoHash infoHash;
     
     /**
      * 发现时间
@@ -38,4 +38,31 @@ public class InfoHashMessage implements Serializable {
      * 来源节点端口
      */
     private Integer sourcePort;
+    
+    /**
+     * 发现来源（announce / sample / lookup），旧消息为空
+     */
+    private DiscoverySource source;
+    
+    /**
+     * 可信度等级，旧消息为空
+     */
+    private Confidence confidence;
+    
+    /**
+     * 流行度：滑动窗口内该 InfoHash 被 announce 的估计次数（含重复），旧消息为空
+     * dht.infohash.discovered 中为发送时（scrape 等待之后）的计数，同一 InfoHash 只发布一次，不会随后续 announce 更新；
+     * 持续的热度以 dht.infohash.popular 定期发布的 Top-K 为准
+     */
+    private Integer popularity;
+    
+    /**
+     * BEP 33 scrape 估计的做种者数量，未 scrape 或没有得到任何 swarm 信息时为空，没有节点返回 Bloom Filter 时为 0
+     */
+    private Integer swarmSeeds;
+    
+    /**
+     * BEP 33 scrape 估计的下载者数量，未 scrape 或没有得到任何 swarm 信息时为空，没有节点返回 Bloom Filter 时为 get_peers 直接返回的 peer 数
+     */
+    private Integer swarmPeers;
 }
@@ -0,0 +1,33 @@
+package cn.lihongjie.dht.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peer 查找回复：MLDHT -> BT客户端
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PeerLookupReply implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 对应请求的ID
+     */
+    private String requestId;
+    
+    /**
+     * 每个 InfoHash 找到的 peer（TCP 地址），没有找到时为空列表
+     */
+    private Map<InfoHash, List<InetSocketAddress>> peers;
+}
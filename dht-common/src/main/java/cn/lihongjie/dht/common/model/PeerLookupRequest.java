@@ -0,0 +1,42 @@
+package cn.lihongjie.dht.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Peer 查找请求：BT客户端 -> MLDHT
+ * MLDHT 用已经预热的路由表对每个 InfoHash 做 get_peers 查找，结果以 PeerLookupReply 返回
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PeerLookupRequest implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 请求ID，回复中原样带回
+     */
+    private String requestId;
+    
+    /**
+     * 发起请求的客户端实例ID，作为回复的 Kafka key，各实例只处理自己的回复
+     */
+    private String replyTo;
+    
+    /**
+     * 待查找的 InfoHash
+     */
+    private List<InfoHash> infoHashes;
+    
+    /**
+     * 每个 InfoHash 最多返回的 peer 数
+     */
+    private int maxPeers;
+}
@@ -21,9 +21,9 @@ public class TorrentMetadata implements Serializable {
     private static final long serialVersionUID = 1L;
     
     /**
-     * InfoHash (40位十六进制字符串)
+     * InfoHash（JSON 中为40位十六进制字符串）
      */
-    private String infoHash;
+    private InfoHash infoHash;
     
     /**
      * 种子名称
@@ -0,0 +1,251 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.Confidence;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * InfoHashMessage 二进制编解码
+ * <pre>
+ * 信封头（4字节）：magic(1) | version(1) | 记录数(2, 无符号)
+ * 记录（55字节）：infoHash(20) | discoveredAt 毫秒(8) | sourceIp(16, IPv4 使用 ::ffff:a.b.c.d 映射) | sourcePort(2, 无符号)
+ *                | 来源(高4位) + 可信度(低4位)(1)，取值为枚举序号加1，0 表示为空 | 流行度(4, -1 表示为空)
+ *                | 做种者估计(2, 无符号) | 下载者估计(2, 无符号)，0xFFFF 表示为空
+ * </pre>
+ * 版本1的记录没有来源字节和流行度（46字节），版本2没有流行度（47字节），版本3没有 swarm 估计（51字节），解码时仍然支持。
+ * 一条 Kafka 消息可以打包多条记录；解码时遇到以 '{' 开头的旧版 JSON 消息会按 JSON 解析，便于滚动升级。
+ */
+public final class InfoHashMessageCodec {
+
+    public static final byte MAGIC = (byte) 0xD1;
+
+    public static final byte VERSION = 4;
+
+    public static final int HEADER_LENGTH = 4;
+
+    public static final int RECORD_LENGTH_V1 = InfoHash.LENGTH + 8 + 16 + 2;
+
+    public static final int RECORD_LENGTH_V2 = RECORD_LENGTH_V1 + 1;
+
+    public static final int RECORD_LENGTH_V3 = RECORD_LENGTH_V2 + 4;
+
+    public static final int RECORD_LENGTH = RECORD_LENGTH_V3 + 4;
+
+    private static final DiscoverySource[] SOURCES = DiscoverySource.values();
+
+    private static final Confidence[] CONFIDENCES = Confidence.values();
+
+    /** 单个信封最多记录数 */
+    public static final int MAX_RECORDS = 0xFFFF;
+
+    /** discoveredAt 为空时写入的占位值 */
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /** popularity 为空时写入的占位值 */
+    private static final int NO_POPULARITY = -1;
+
+    /** swarm 估计为空时写入的占位值，更大的估计值截断到 MAX_SWARM */
+    private static final int NO_SWARM = 0xFFFF;
+
+    private static final int MAX_SWARM = NO_SWARM - 1;
+
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private InfoHashMessageCodec() {
+    }
+
+    /**
+     * 编码一组消息为一个信封
+     */
+    public static byte[] encode(List<InfoHashMessage> messages) {
+        if (messages.size() > MAX_RECORDS) {
+            throw new IllegalArgumentException("Too many records in one envelope: " + messages.size());
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH + messages.size() * RECORD_LENGTH);
+        buf.put(MAGIC).put(VERSION).putShort((short) messages.size());
+        byte[] hash = new byte[InfoHash.LENGTH];
+        for (InfoHashMessage message : messages) {
+            message.getInfoHash().writeTo(hash, 0);
+            buf.put(hash);
+            buf.putLong(message.getDiscoveredAt() == null ? NO_TIMESTAMP : message.getDiscoveredAt().toEpochMilli());
+            writeIp(buf, message.getSourceIp());
+            buf.putShort((short) (message.getSourcePort() == null ? 0 : message.getSourcePort()));
+            buf.put((byte) (code(message.getSource()) << 4 | code(message.getConfidence())));
+            buf.putInt(message.getPopularity() == null ? NO_POPULARITY : message.getPopularity());
+            buf.putShort(swarm(message.getSwarmSeeds()));
+            buf.putShort(swarm(message.getSwarmPeers()));
+        }
+        return buf.array();
+    }
+
+    /**
+     * 解码信封（或旧版单条 JSON 消息）
+     */
+    public static List<InfoHashMessage> decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return List.of();
+        }
+        if (data[0] == '{') {
+            return List.of(decodeJson(data));
+        }
+        if (data.length < HEADER_LENGTH || data[0] != MAGIC) {
+            throw new IllegalArgumentException("Not an InfoHash envelope");
+        }
+        int version = data[1];
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported InfoHash envelope version: " + version);
+        }
+        int recordLength = switch (version) {
+            case 1 -> RECORD_LENGTH_V1;
+            case 2 -> RECORD_LENGTH_V2;
+            case 3 -> RECORD_LENGTH_V3;
+            default -> RECORD_LENGTH;
+        };
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        buf.position(2);
+        int count = buf.getShort() & 0xFFFF;
+        if (data.length != HEADER_LENGTH + count * recordLength) {
+            throw new IllegalArgumentException("Truncated InfoHash envelope: " + data.length + " bytes for " + count + " records");
+        }
+        List<InfoHashMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int offset = buf.position();
+            InfoHash infoHash = InfoHash.of(data, offset);
+            buf.position(offset + InfoHash.LENGTH);
+            long millis = buf.getLong();
+            String sourceIp = readIp(buf);
+            int port = buf.getShort() & 0xFFFF;
+            int flags = version == 1 ? 0 : buf.get() & 0xFF;
+            int popularity = version < 3 ? NO_POPULARITY : buf.getInt();
+            int seeds = version < 4 ? NO_SWARM : buf.getShort() & 0xFFFF;
+            int peers = version < 4 ? NO_SWARM : buf.getShort() & 0xFFFF;
+            messages.add(InfoHashMessage.builder()
+                    .infoHash(infoHash)
+                    .discoveredAt(millis == NO_TIMESTAMP ? null : Instant.ofEpochMilli(millis))
+                    .sourceIp(sourceIp)
+                    .sourcePort(port == 0 ? null : port)
+                    .source(decode(SOURCES, flags >>> 4))
+                    .confidence(decode(CONFIDENCES, flags & 0x0F))
+                    .popularity(popularity == NO_POPULARITY ? null : popularity)
+                    .swarmSeeds(seeds == NO_SWARM ? null : seeds)
+                    .swarmPeers(peers == NO_SWARM ? null : peers)
+                    .build());
+        }
+        return messages;
+    }
+
+    private static short swarm(Integer estimate) {
+        return (short) (estimate == null ? NO_SWARM : Math.max(0, Math.min(estimate, MAX_SWARM)));
+    }
+
+    private static int code(Enum<?> value) {
+        return value == null ? 0 : value.ordinal() + 1;
+    }
+
+    /**
+     * 未知的取值（更新版本新增的枚举）按空处理
+     */
+    private static <E> E decode(E[] values, int code) {
+        return code == 0 || code > values.length ? null : values[code - 1];
+    }
+
+    private static InfoHashMessage decodeJson(byte[] data) {
+        try {
+            return JSON.readValue(data, InfoHashMessage.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid InfoHash JSON message", e);
+        }
+    }
+
+    /**
+     * IP 字面量写成16字节；IPv4 使用映射地址，未知或为空时全部写0
+     */
+    private static void writeIp(ByteBuffer buf, String ip) {
+        byte[] address = parseIp(ip);
+        if (address == null) {
+            buf.put(new byte[16]);
+        } else if (address.length == 4) {
+            buf.putLong(0).putShort((short) 0).putShort((short) 0xFFFF).put(address);
+        } else {
+            buf.put(address);
+        }
+    }
+
+    private static String readIp(ByteBuffer buf) {
+        long high = buf.getLong();
+        int mid = buf.getInt();
+        int low = buf.getInt();
+        if (high == 0 && mid == 0xFFFF) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+        if (high == 0 && mid == 0 && low == 0) {
+            return null;
+        }
+        byte[] address = ByteBuffer.allocate(16).putLong(high).putInt(mid).putInt(low).array();
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只解析 IP 字面量，不做 DNS 查询
+     */
+    private static byte[] parseIp(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') < 0) {
+            return parseIpv4(ip);
+        }
+        try {
+            // 含冒号的字符串只可能是 IPv6 字面量，getByName 不会触发 DNS 查询
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            return address.length == 16 || address.length == 4 ? address : null;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        byte[] address = new byte[4];
+        int part = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || part > 3) {
+                    return null;
+                }
+                address[part++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? address : null;
+    }
+}
@@ -0,0 +1,25 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.List;
+
+/**
+ * Kafka 反序列化器：解码 InfoHash 信封，兼容旧版 JSON 消息
+ */
+public class InfoHashMessageDeserializer implements Deserializer<List<InfoHashMessage>> {
+
+    @Override
+    public List<InfoHashMessage> deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return InfoHashMessageCodec.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Failed to decode InfoHash message from topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.List;
+
+/**
+ * Kafka 序列化器：一条 Kafka 消息对应一个 InfoHash 信封
+ */
+public class InfoHashMessageSerializer implements Serializer<List<InfoHashMessage>> {
+
+    @Override
+    public byte[] serialize(String topic, List<InfoHashMessage> data) {
+        return data == null ? null : InfoHashMessageCodec.encode(data);
+    }
+}
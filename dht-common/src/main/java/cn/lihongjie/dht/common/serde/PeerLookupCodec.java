@@ -0,0 +1,191 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.PeerLookupReply;
+import cn.lihongjie.dht.common.model.PeerLookupRequest;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peer 查找请求/回复的二进制编解码
+ * <pre>
+ * 请求：magic(1) | version(1) | requestId | replyTo | maxPeers(2) | 数量(2) | infoHash(20) * 数量
+ * 回复：magic(1) | version(1) | requestId | 数量(2) | 每项：infoHash(20) | peer数(2) | peer * peer数
+ * 字符串：长度(1) | UTF-8 字节；peer：地址长度(1, 4 或 16) | 地址 | 端口(2)
+ * </pre>
+ */
+public final class PeerLookupCodec {
+
+    public static final byte REQUEST_MAGIC = (byte) 0xD2;
+
+    public static final byte REPLY_MAGIC = (byte) 0xD3;
+
+    public static final byte VERSION = 1;
+
+    /** 单个请求最多 InfoHash 数，单个 InfoHash 最多 peer 数 */
+    public static final int MAX_ENTRIES = 0xFFFF;
+
+    private static final int MAX_STRING_LENGTH = 0xFF;
+
+    private PeerLookupCodec() {
+    }
+
+    /**
+     * 编码请求
+     */
+    public static byte[] encodeRequest(PeerLookupRequest request) {
+        List<InfoHash> infoHashes = request.getInfoHashes() == null ? List.of() : request.getInfoHashes();
+        if (infoHashes.size() > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many infohashes in one lookup request: " + infoHashes.size());
+        }
+        byte[] requestId = utf8(request.getRequestId());
+        byte[] replyTo = utf8(request.getReplyTo());
+        ByteBuffer buf = ByteBuffer.allocate(2 + 1 + requestId.length + 1 + replyTo.length + 4
+                                             + infoHashes.size() * InfoHash.LENGTH);
+        buf.put(REQUEST_MAGIC).put(VERSION);
+        buf.put((byte) requestId.length).put(requestId);
+        buf.put((byte) replyTo.length).put(replyTo);
+        buf.putShort((short) Math.min(request.getMaxPeers(), MAX_ENTRIES));
+        buf.putShort((short) infoHashes.size());
+        for (InfoHash infoHash : infoHashes) {
+            buf.put(infoHash.toBytes());
+        }
+        return buf.array();
+    }
+
+    /**
+     * 解码请求
+     */
+    public static PeerLookupRequest decodeRequest(byte[] data) {
+        ByteBuffer buf = open(data, REQUEST_MAGIC);
+        try {
+            String requestId = readString(buf);
+            String replyTo = readString(buf);
+            int maxPeers = buf.getShort() & 0xFFFF;
+            int count = buf.getShort() & 0xFFFF;
+            List<InfoHash> infoHashes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                infoHashes.add(readInfoHash(buf));
+            }
+            return PeerLookupRequest.builder()
+                    .requestId(requestId)
+                    .replyTo(replyTo)
+                    .maxPeers(maxPeers)
+                    .infoHashes(infoHashes)
+                    .build();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated peer lookup request", e);
+        }
+    }
+
+    /**
+     * 编码回复，非 IPv4/IPv6 地址（未解析的主机名）会被跳过
+     */
+    public static byte[] encodeReply(PeerLookupReply reply) {
+        Map<InfoHash, List<InetSocketAddress>> peers = reply.getPeers() == null ? Map.of() : reply.getPeers();
+        if (peers.size() > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many infohashes in one lookup reply: " + peers.size());
+        }
+        byte[] requestId = utf8(reply.getRequestId());
+        int length = 2 + 1 + requestId.length + 2;
+        for (List<InetSocketAddress> list : peers.values()) {
+            length += InfoHash.LENGTH + 2 + Math.min(list.size(), MAX_ENTRIES) * (1 + 16 + 2);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.put(REPLY_MAGIC).put(VERSION);
+        buf.put((byte) requestId.length).put(requestId);
+        buf.putShort((short) peers.size());
+        for (Map.Entry<InfoHash, List<InetSocketAddress>> entry : peers.entrySet()) {
+            buf.put(entry.getKey().toBytes());
+            int countPosition = buf.position();
+            buf.putShort((short) 0);
+            int written = 0;
+            for (InetSocketAddress peer : entry.getValue()) {
+                if (written == MAX_ENTRIES || peer.getAddress() == null) {
+                    continue;
+                }
+                byte[] address = peer.getAddress().getAddress();
+                buf.put((byte) address.length).put(address).putShort((short) peer.getPort());
+                written++;
+            }
+            buf.putShort(countPosition, (short) written);
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    /**
+     * 解码回复
+     */
+    public static PeerLookupReply decodeReply(byte[] data) {
+        ByteBuffer buf = open(data, REPLY_MAGIC);
+        try {
+            String requestId = readString(buf);
+            int count = buf.getShort() & 0xFFFF;
+            Map<InfoHash, List<InetSocketAddress>> peers = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                InfoHash infoHash = readInfoHash(buf);
+                int peerCount = buf.getShort() & 0xFFFF;
+                List<InetSocketAddress> list = new ArrayList<>(peerCount);
+                for (int j = 0; j < peerCount; j++) {
+                    int addressLength = buf.get() & 0xFF;
+                    if (addressLength != 4 && addressLength != 16) {
+                        throw new IllegalArgumentException("Invalid peer address length: " + addressLength);
+                    }
+                    byte[] address = new byte[addressLength];
+                    buf.get(address);
+                    int port = buf.getShort() & 0xFFFF;
+                    list.add(new InetSocketAddress(InetAddress.getByAddress(address), port));
+                }
+                peers.put(infoHash, list);
+            }
+            return PeerLookupReply.builder().requestId(requestId).peers(peers).build();
+        } catch (BufferUnderflowException | UnknownHostException e) {
+            throw new IllegalArgumentException("Truncated peer lookup reply", e);
+        }
+    }
+
+    private static ByteBuffer open(byte[] data, byte magic) {
+        if (data == null || data.length < 2 || data[0] != magic) {
+            throw new IllegalArgumentException("Not a peer lookup " + (magic == REQUEST_MAGIC ? "request" : "reply"));
+        }
+        if (data[1] < 1 || data[1] > VERSION) {
+            throw new IllegalArgumentException("Unsupported peer lookup version: " + data[1]);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        buf.position(2);
+        return buf;
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("String too long for peer lookup message: " + value);
+        }
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.get() & 0xFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static InfoHash readInfoHash(ByteBuffer buf) {
+        if (buf.remaining() < InfoHash.LENGTH) {
+            throw new BufferUnderflowException();
+        }
+        InfoHash infoHash = InfoHash.of(buf.array(), buf.position());
+        buf.position(buf.position() + InfoHash.LENGTH);
+        return infoHash;
+    }
+}
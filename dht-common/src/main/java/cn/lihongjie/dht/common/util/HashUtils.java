@@ -3,24 +3,63 @@ package cn.lihongjie.dht.common.util;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
  * Hash工具类
  */
 public class HashUtils {
     
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+    
+    /**
+     * 十六进制字符 -> 数值的查找表，非法字符为 -1
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+    
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+    
     /**
-     * 字节数组转十六进制字符串
+     * 字节数组转十六进制字符串（小写）
      */
     public static String bytesToHex(byte[] bytes) {
         if (bytes == null) {
             return null;
         }
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xff));
+        byte[] out = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        // Latin-1 字节数组构造 String 不需要再做编码转换
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * 把 value 的低 byteCount 个字节（大端序）以十六进制写入 dst
+     */
+    public static void writeHex(long value, int byteCount, byte[] dst, int off) {
+        for (int i = byteCount - 1; i >= 0; i--) {
+            int b = (int) (value >>> (i * 8));
+            dst[off++] = HEX_DIGITS[(b >> 4) & 0xf];
+            dst[off++] = HEX_DIGITS[b & 0xf];
         }
-        return sb.toString();
+    }
+    
+    /**
+     * 十六进制字符对应的数值，非法字符返回 -1
+     */
+    public static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
     }
     
     /**
@@ -32,7 +71,12 @@ public class HashUtils {
         }
         byte[] bytes = new byte[hex.length() / 2];
         for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+            int high = hexValue(hex.charAt(i * 2));
+            int low = hexValue(hex.charAt(i * 2 + 1));
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            bytes[i] = (byte) ((high << 4) | low);
         }
         return bytes;
     }
@@ -60,8 +104,16 @@ public class HashUtils {
     /**
      * 验证InfoHash格式
      */
-    public static boolean isValidInfoHash(String infoHash) {
-        return infoHash != null && infoHash.matches("^[a-fA-F0-9]{40}$");
+    public static boolean isValidInfoHash(CharSequence infoHash) {
+        if (infoHash == null || infoHash.length() != 40) {
+            return false;
+        }
+        for (int i = 0; i < 40; i++) {
+            if (hexValue(infoHash.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
     
     private HashUtils() {
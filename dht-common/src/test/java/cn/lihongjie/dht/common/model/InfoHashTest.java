@@ -0,0 +1,92 @@
+package cn.lihongjie.dht.common.model;
+
+import cn.lihongjie.dht.common.util.HashUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InfoHashTest {
+
+    private static final String HEX = "ccbd47a30a5a13a5260295e4bd65c038244e9df0";
+
+    @Test
+    @DisplayName("Hex and byte representations round-trip")
+    void testRoundTrip() {
+        InfoHash fromHex = InfoHash.fromHex(HEX);
+        InfoHash fromBytes = InfoHash.of(HashUtils.hexToBytes(HEX));
+
+        assertEquals(HEX, fromHex.toHex());
+        assertEquals(fromHex, fromBytes);
+        assertEquals(fromHex.hashCode(), fromBytes.hashCode());
+        assertArrayEquals(HashUtils.hexToBytes(HEX), fromHex.toBytes());
+        assertEquals(fromHex, InfoHash.fromHex(HEX.toUpperCase()));
+    }
+
+    @Test
+    @DisplayName("Reads 20 bytes from an offset without copying")
+    void testOfOffset() {
+        byte[] buf = new byte[30];
+        System.arraycopy(HashUtils.hexToBytes(HEX), 0, buf, 7, 20);
+
+        assertEquals(InfoHash.fromHex(HEX), InfoHash.of(buf, 7));
+        assertThrows(IllegalArgumentException.class, () -> InfoHash.of(buf, 11));
+    }
+
+    @Test
+    @DisplayName("Invalid hex is rejected")
+    void testInvalidHex() {
+        assertThrows(IllegalArgumentException.class, () -> InfoHash.fromHex(HEX.substring(1)));
+        assertThrows(IllegalArgumentException.class, () -> InfoHash.fromHex("g" + HEX.substring(1)));
+        assertFalse(InfoHash.isValidHex("zz" + HEX.substring(2)));
+        assertTrue(InfoHash.isValidHex(HEX));
+    }
+
+    @Test
+    @DisplayName("Ordering is unsigned big-endian")
+    void testCompare() {
+        InfoHash low = InfoHash.fromHex("0000000000000000000000000000000000000001");
+        InfoHash high = InfoHash.fromHex("ff00000000000000000000000000000000000000");
+
+        assertTrue(low.compareTo(high) < 0);
+        assertTrue(high.compareTo(low) > 0);
+        assertEquals(0, low.compareTo(InfoHash.fromHex("0000000000000000000000000000000000000001")));
+    }
+
+    @Test
+    @DisplayName("JSON keeps the hex string wire format")
+    void testJson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        InfoHashMessage message = InfoHashMessage.builder()
+                .infoHash(InfoHash.fromHex(HEX))
+                .discoveredAt(Instant.ofEpochSecond(1_700_000_000L))
+                .sourceIp("1.2.3.4")
+                .sourcePort(6881)
+                .build();
+
+        String json = mapper.writeValueAsString(message);
+        assertTrue(json.contains("\"infoHash\":\"" + HEX + "\""));
+        assertEquals(message, mapper.readValue(json, InfoHashMessage.class));
+
+        String invalid = json.replace(HEX, "xyz");
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue(invalid, InfoHashMessage.class));
+    }
+
+    @Test
+    @DisplayName("HashUtils hex helpers match the previous behaviour")
+    void testHashUtils() {
+        byte[] bytes = {0, 1, 0x7f, (byte) 0x80, (byte) 0xff};
+
+        assertEquals("00017f80ff", HashUtils.bytesToHex(bytes));
+        assertArrayEquals(bytes, HashUtils.hexToBytes("00017F80ff"));
+        assertTrue(HashUtils.isValidInfoHash(HEX.toUpperCase()));
+        assertFalse(HashUtils.isValidInfoHash(HEX + "0"));
+        assertFalse(HashUtils.isValidInfoHash("-" + HEX.substring(1)));
+        assertThrows(IllegalArgumentException.class, () -> HashUtils.hexToBytes("0g"));
+    }
+}
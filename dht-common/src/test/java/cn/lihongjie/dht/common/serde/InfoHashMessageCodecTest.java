@@ -0,0 +1,139 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.Confidence;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InfoHashMessageCodecTest {
+
+    private static final String HEX = "ccbd47a30a5a13a5260295e4bd65c038244e9df0";
+
+    @Test
+    @DisplayName("Envelope round-trips IPv4, IPv6 and missing fields with a fixed record size")
+    void testRoundTrip() {
+        InfoHashMessage lookup = message(HEX, "5.6.7.8", 1234);
+        lookup.setSource(DiscoverySource.LOOKUP);
+        lookup.setConfidence(Confidence.LOW);
+        lookup.setPopularity(42);
+        lookup.setSwarmSeeds(0);
+        lookup.setSwarmPeers(1234);
+        List<InfoHashMessage> messages = List.of(
+                message(HEX, "1.2.3.4", 6881),
+                lookup,
+                message("0000000000000000000000000000000000000001", "2001:db8:0:0:0:0:0:1", 65535),
+                InfoHashMessage.builder().infoHash(InfoHash.fromHex(HEX)).build());
+
+        byte[] data = new InfoHashMessageSerializer().serialize("topic", messages);
+
+        assertEquals(InfoHashMessageCodec.HEADER_LENGTH + 4 * InfoHashMessageCodec.RECORD_LENGTH, data.length);
+        assertEquals(55, InfoHashMessageCodec.RECORD_LENGTH);
+        assertEquals(messages, new InfoHashMessageDeserializer().deserialize("topic", data));
+    }
+
+    @Test
+    @DisplayName("Large envelopes keep record order")
+    void testLargeEnvelope() {
+        List<InfoHashMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[InfoHash.LENGTH];
+            bytes[0] = (byte) i;
+            bytes[19] = (byte) (i >> 8);
+            messages.add(InfoHashMessage.builder()
+                    .infoHash(InfoHash.of(bytes))
+                    .discoveredAt(Instant.ofEpochMilli(1_700_000_000_000L + i))
+                    .sourceIp("10.0." + (i >> 8) + "." + (i & 0xff))
+                    .sourcePort(1 + i)
+                    .build());
+        }
+
+        assertEquals(messages, InfoHashMessageCodec.decode(InfoHashMessageCodec.encode(messages)));
+    }
+
+    @Test
+    @DisplayName("Version 1 envelopes without source flags are still accepted")
+    void testVersion1() {
+        InfoHashMessage message = message(HEX, "1.2.3.4", 6881);
+        byte[] v4 = InfoHashMessageCodec.encode(List.of(message));
+        byte[] v1 = Arrays.copyOf(v4, v4.length - 9);
+        v1[1] = 1;
+
+        assertEquals(List.of(message), InfoHashMessageCodec.decode(v1));
+    }
+
+    @Test
+    @DisplayName("Version 2 envelopes without popularity are still accepted")
+    void testVersion2() {
+        InfoHashMessage message = message(HEX, "1.2.3.4", 6881);
+        message.setSource(DiscoverySource.ANNOUNCE);
+        message.setConfidence(Confidence.HIGH);
+        byte[] v4 = InfoHashMessageCodec.encode(List.of(message));
+        byte[] v2 = Arrays.copyOf(v4, v4.length - 8);
+        v2[1] = 2;
+
+        assertEquals(List.of(message), InfoHashMessageCodec.decode(v2));
+    }
+
+    @Test
+    @DisplayName("Version 3 envelopes without swarm estimates are still accepted, oversized estimates are capped")
+    void testVersion3() {
+        InfoHashMessage message = message(HEX, "1.2.3.4", 6881);
+        message.setPopularity(7);
+        byte[] v4 = InfoHashMessageCodec.encode(List.of(message));
+        byte[] v3 = Arrays.copyOf(v4, v4.length - 4);
+        v3[1] = 3;
+
+        assertEquals(List.of(message), InfoHashMessageCodec.decode(v3));
+
+        message.setSwarmSeeds(1_000_000);
+        message.setSwarmPeers(-5);
+        InfoHashMessage decoded = InfoHashMessageCodec.decode(InfoHashMessageCodec.encode(List.of(message))).get(0);
+        assertEquals(0xFFFE, decoded.getSwarmSeeds());
+        assertEquals(0, decoded.getSwarmPeers());
+    }
+
+    @Test
+    @DisplayName("Legacy JSON messages are still accepted")
+    void testLegacyJson() throws Exception {
+        InfoHashMessage message = message(HEX, "1.2.3.4", 6881);
+        byte[] json = new ObjectMapper().registerModule(new JavaTimeModule()).writeValueAsBytes(message);
+
+        assertEquals(List.of(message), InfoHashMessageCodec.decode(json));
+    }
+
+    @Test
+    @DisplayName("Corrupt or unknown payloads are rejected")
+    void testRejectsCorrupt() {
+        byte[] data = InfoHashMessageCodec.encode(List.of(message(HEX, "1.2.3.4", 6881)));
+        InfoHashMessageDeserializer deserializer = new InfoHashMessageDeserializer();
+
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("topic", Arrays.copyOf(data, data.length - 1)));
+        data[1] = 99;
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("topic", data));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("topic", "garbage".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private InfoHashMessage message(String hex, String ip, int port) {
+        return InfoHashMessage.builder()
+                .infoHash(InfoHash.fromHex(hex))
+                .discoveredAt(Instant.ofEpochMilli(1_700_000_000_123L))
+                .sourceIp(ip)
+                .sourcePort(port)
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package cn.lihongjie.dht.common.serde;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.PeerLookupReply;
+import cn.lihongjie.dht.common.model.PeerLookupRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerLookupCodecTest {
+
+    private static final InfoHash A = InfoHash.fromHex("ccbd47a30a5a13a5260295e4bd65c038244e9df0");
+    private static final InfoHash B = InfoHash.fromHex("0000000000000000000000000000000000000001");
+
+    @Test
+    @DisplayName("Request round-trips id, reply key, peer limit and infohashes")
+    void testRequestRoundTrip() {
+        PeerLookupRequest request = PeerLookupRequest.builder()
+                .requestId("req-1")
+                .replyTo("bt-client-7f3a")
+                .maxPeers(50)
+                .infoHashes(List.of(A, B))
+                .build();
+
+        PeerLookupRequest decoded = PeerLookupCodec.decodeRequest(PeerLookupCodec.encodeRequest(request));
+
+        assertEquals(request, decoded);
+    }
+
+    @Test
+    @DisplayName("Reply round-trips IPv4 and IPv6 peers and empty results, skipping unresolved addresses")
+    void testReplyRoundTrip() {
+        Map<InfoHash, List<InetSocketAddress>> peers = new LinkedHashMap<>();
+        peers.put(A, List.of(new InetSocketAddress("1.2.3.4", 6881),
+                             InetSocketAddress.createUnresolved("example.invalid", 1),
+                             new InetSocketAddress("2001:db8::1", 51413)));
+        peers.put(B, List.of());
+        PeerLookupReply reply = PeerLookupReply.builder().requestId("req-1").peers(peers).build();
+
+        PeerLookupReply decoded = PeerLookupCodec.decodeReply(PeerLookupCodec.encodeReply(reply));
+
+        assertEquals("req-1", decoded.getRequestId());
+        assertEquals(List.of(A, B), List.copyOf(decoded.getPeers().keySet()));
+        assertEquals(List.of(new InetSocketAddress("1.2.3.4", 6881), new InetSocketAddress("2001:db8::1", 51413)),
+                     decoded.getPeers().get(A));
+        assertTrue(decoded.getPeers().get(B).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Reject foreign and truncated payloads")
+    void testRejectInvalid() {
+        byte[] request = PeerLookupCodec.encodeRequest(PeerLookupRequest.builder()
+                .requestId("r").replyTo("c").infoHashes(List.of(A)).build());
+        byte[] reply = PeerLookupCodec.encodeReply(PeerLookupReply.builder()
+                .requestId("r").peers(Map.of(A, List.of(new InetSocketAddress("1.2.3.4", 1)))).build());
+
+        assertThrows(IllegalArgumentException.class, () -> PeerLookupCodec.decodeReply(request));
+        assertThrows(IllegalArgumentException.class, () -> PeerLookupCodec.decodeRequest(reply));
+        assertThrows(IllegalArgumentException.class,
+                     () -> PeerLookupCodec.decodeRequest(Arrays.copyOf(request, request.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> PeerLookupCodec.decodeReply(Arrays.copyOf(reply, reply.length - 1)));
+    }
+}
@@ -40,4 +40,20 @@ public class KafkaConfig {
         
         return factory;
     }
+    
+    /**
+     * 批量消费容器工厂：一次拉取的消息整体交给监听器，便于批量查询 Bloom Filter
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory) {
+        
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        
+        return factory;
+    }
 }
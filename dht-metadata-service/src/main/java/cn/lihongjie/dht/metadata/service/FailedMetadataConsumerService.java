@@ -1,5 +1,6 @@
 package cn.lihongjie.dht.metadata.service;
 
+import cn.lihongjie.dht.common.model.InfoHash;
 import cn.lihongjie.dht.common.model.TorrentMetadata;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -29,7 +30,7 @@ public class FailedMetadataConsumerService {
         statsService.incrementFailed();
         try {
             TorrentMetadata metadata = objectMapper.readValue(message, TorrentMetadata.class);
-            String infoHash = metadata.getInfoHash();
+            InfoHash infoHash = metadata.getInfoHash();
             if (metadata.getStatus() == null) {
                 metadata.setStatus("FAILED");
             }
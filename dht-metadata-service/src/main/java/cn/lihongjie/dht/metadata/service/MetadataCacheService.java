@@ -36,7 +36,7 @@ public class MetadataCacheService {
      */
     public void cache(TorrentMetadata metadata) {
         try {
-            String key = buildKey(metadata.getInfoHash());
+            String key = buildKey(metadata.getInfoHash().toHex());
             String value = objectMapper.writeValueAsString(metadata);
             
             redisTemplate.opsForValue().set(key, value, CACHE_TTL);
@@ -4,9 +4,13 @@ import cn.lihongjie.dht.common.model.TorrentMetadata;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 元数据消费服务
  * 从Kafka消费已下载的元数据并持久化到数据库
@@ -21,30 +25,58 @@ public class MetadataConsumerService {
     private final ObjectMapper objectMapper;
     
     /**
-     * 消费元数据消息
+     * 批量消费元数据消息
+     * 整批先用一次 BF.MEXISTS 管道做 Bloom Filter 预检查，再逐条持久化（每条独立事务）
      */
     @KafkaListener(
         topics = "${kafka.topic.metadata}",
         groupId = "${spring.kafka.consumer.group-id}",
-        concurrency = "3"
+        concurrency = "3",
+        containerFactory = "batchKafkaListenerContainerFactory"
     )
-    public void consumeMetadata(String message) {
-        statsService.incrementConsumed();
+    public void consumeMetadata(List<String> messages) {
+        List<TorrentMetadata> batch = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            statsService.incrementConsumed();
+            try {
+                log.debug("Received metadata message: {}", message);
+                
+                // 解析消息
+                batch.add(objectMapper.readValue(message, TorrentMetadata.class));
+            } catch (Exception e) {
+                statsService.incrementFailed();
+                log.error("Failed to parse metadata message: {}", message, e);
+            }
+        }
         
+        boolean[] mightExist = persistenceService.mightExistAll(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            TorrentMetadata metadata = batch.get(i);
+            try {
+                // 持久化
+                persist(metadata, mightExist[i]);
+                
+                log.info("Successfully persisted metadata for InfoHash: {}", metadata.getInfoHash());
+                
+            } catch (Exception e) {
+                statsService.incrementFailed();
+                log.error("Failed to persist metadata for InfoHash: {}", metadata.getInfoHash(), e);
+            }
+        }
+    }
+    
+    /**
+     * Bloom Filter 判定不存在但插入时唯一索引冲突（记录已由之前的批次插入、标记尚未生效），在新事务中改走更新路径
+     */
+    private void persist(TorrentMetadata metadata, boolean mightExist) {
         try {
-            log.debug("Received metadata message: {}", message);
-            
-            // 解析消息
-            TorrentMetadata metadata = objectMapper.readValue(message, TorrentMetadata.class);
-            
-            // 持久化
-            persistenceService.save(metadata);
-            
-            log.info("Successfully persisted metadata for InfoHash: {}", metadata.getInfoHash());
-            
-        } catch (Exception e) {
-            statsService.incrementFailed();
-            log.error("Failed to process metadata message: {}", message, e);
+            persistenceService.save(metadata, mightExist);
+        } catch (DataIntegrityViolationException e) {
+            if (mightExist) {
+                throw e;
+            }
+            log.debug("InfoHash {} already persisted, retrying as update", metadata.getInfoHash());
+            persistenceService.save(metadata, true);
         }
     }
 }
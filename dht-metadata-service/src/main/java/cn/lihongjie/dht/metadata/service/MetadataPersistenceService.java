@@ -7,11 +7,20 @@ import cn.lihongjie.dht.metadata.repository.TorrentMetadataRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Qualifier;
+import cn.lihongjie.dht.springcommon.bloom.BloomFilterBatcher;
 import cn.lihongjie.dht.springcommon.bloom.BloomFilterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -42,16 +51,50 @@ public class MetadataPersistenceService {
     @Value("${dedup.bloom.key:dht:bloom:infohash}")
     private String bloomFilterKey;
     
+    @Value("${dedup.batch.max-size:512}")
+    private int batchMaxSize;
+    
+    @Value("${dedup.batch.max-delay-micros:2000}")
+    private long batchMaxDelayMicros;
+    
+    @Value("${dedup.batch.queue-capacity:65536}")
+    private int batchQueueCapacity;
+    
+    private BloomFilterBatcher bloomBatcher;
+    
+    @PostConstruct
+    public void init() {
+        if (dedupEnabled) {
+            bloomBatcher = new BloomFilterBatcher(bloomFilterService, bloomFilterKey,
+                    batchMaxSize, batchMaxDelayMicros, batchQueueCapacity);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (bloomBatcher != null) {
+            bloomBatcher.close();
+        }
+    }
+    
     /**
      * 保存元数据
      * 使用三级检查：Bloom Filter预检查 -> 数据库查询 -> 保存
      */
     @Transactional
     public void save(TorrentMetadata metadata) {
-        String infoHash = metadata.getInfoHash();
+        save(metadata, !dedupEnabled || mightExist(metadata.getInfoHash().toHex()));
+    }
+    
+    /**
+     * 保存元数据，Bloom Filter 预检查结果由调用方批量查询后传入（见 mightExistAll）
+     */
+    @Transactional
+    public void save(TorrentMetadata metadata, boolean mightExist) {
+        String infoHash = metadata.getInfoHash().toHex();
         
         // 第一级：Bloom Filter预检查（快速排除肯定不存在的）
-        if (dedupEnabled && !mightExist(infoHash)) {
+        if (dedupEnabled && !mightExist) {
             // Bloom Filter说不存在，直接保存（跳过数据库查询）
             log.debug("Bloom Filter: {} not exists, saving directly", infoHash);
         } else if (repository.existsByInfoHash(infoHash)) {
@@ -109,12 +152,39 @@ public class MetadataPersistenceService {
             log.info("Saved metadata for InfoHash: {}, status: {}, name: {}, size: {} bytes", 
                     infoHash, metadata.getStatus(), metadata.getName(), metadata.getTotalSize());
             
+        } catch (DataIntegrityViolationException e) {
+            // 唯一索引冲突：Bloom Filter 尚未标记到的已有记录，由调用方改走更新路径
+            throw e;
         } catch (Exception e) {
             log.error("Failed to save metadata for InfoHash: {}", infoHash, e);
             throw new RuntimeException("Failed to save metadata", e);
         }
     }
     
+    /**
+     * 批量Bloom Filter预检查（BF.MEXISTS + 管道，一次往返）；未启用去重时全部返回 true，走数据库检查
+     * 同一批内重复出现的 InfoHash（如先 FAILED 后 SUCCESS）只有第一条可能直接插入，之后的按可能存在处理，走数据库检查
+     */
+    public boolean[] mightExistAll(List<TorrentMetadata> batch) {
+        if (!dedupEnabled) {
+            boolean[] all = new boolean[batch.size()];
+            Arrays.fill(all, true);
+            return all;
+        }
+        List<String> infoHashes = new ArrayList<>(batch.size());
+        for (TorrentMetadata metadata : batch) {
+            infoHashes.add(metadata.getInfoHash().toHex());
+        }
+        boolean[] mightExist = bloomFilterService.existsAll(bloomFilterKey, infoHashes);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < infoHashes.size(); i++) {
+            if (!seen.add(infoHashes.get(i))) {
+                mightExist[i] = true;
+            }
+        }
+        return mightExist;
+    }
+    
     /**
      * Bloom Filter预检查（使用Redis原生BF.EXISTS命令，单元素）
      */
@@ -123,10 +193,11 @@ public class MetadataPersistenceService {
     }
     
     /**
-     * 标记到Bloom Filter（使用Redis原生BF.ADD命令，单元素）
+     * 标记到Bloom Filter（经微批合并为BF.MADD）
+     * 标记是异步的，紧接着的下一批可能还查不到，插入冲突时由调用方按已存在重试
      */
     private void markAsProcessed(String infoHash) {
-        bloomFilterService.add(bloomFilterKey, infoHash);
+        bloomBatcher.add(infoHash);
     }
     
     /**
@@ -136,7 +207,7 @@ public class MetadataPersistenceService {
         Instant now = Instant.now();
         
         TorrentMetadataEntity entity = TorrentMetadataEntity.builder()
-                .infoHash(metadata.getInfoHash())
+                .infoHash(metadata.getInfoHash().toHex())
                 .name(metadata.getName())
                 .totalSize(metadata.getTotalSize())
                 .status(metadata.getStatus() != null ? metadata.getStatus() : "SUCCESS")
@@ -60,7 +60,7 @@ public class MetadataQueryService {
      */
     private TorrentMetadataDTO convertToDTO(TorrentMetadata metadata) {
         return TorrentMetadataDTO.builder()
-                .infoHash(metadata.getInfoHash())
+                .infoHash(metadata.getInfoHash().toHex())
                 .name(metadata.getName())
                 .totalSize(metadata.getTotalSize())
                 .files(metadata.getFiles())
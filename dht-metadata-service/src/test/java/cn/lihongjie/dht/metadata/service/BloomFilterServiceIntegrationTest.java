@@ -1,6 +1,7 @@
 package cn.lihongjie.dht.metadata.service;
 
 import org.junit.jupiter.api.BeforeAll;
+import cn.lihongjie.dht.springcommon.bloom.BloomFilterBatcher;
 import cn.lihongjie.dht.springcommon.bloom.BloomFilterService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -12,6 +13,11 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 import org.testcontainers.containers.GenericContainer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -46,4 +52,49 @@ class BloomFilterServiceIntegrationTest {
         bloomFilterService.add(key, value);
         assertTrue(bloomFilterService.exists(key, value), "Value should exist after add");
     }
+
+    @Test
+    void addAllAndExistsAllAcrossChunks() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            values.add("batch-" + i);
+        }
+        List<String> added = values.subList(0, 1200);
+        bloomFilterService.addAll(key, added);
+
+        boolean[] flags = bloomFilterService.existsAll(key, values);
+        assertEquals(values.size(), flags.length);
+        for (int i = 0; i < added.size(); i++) {
+            assertTrue(flags[i], "Added value should exist: " + values.get(i));
+        }
+        assertEquals(0, bloomFilterService.existsAll(key, List.of()).length);
+    }
+
+    @Test
+    void batcherCoalescesCalls() throws Exception {
+        try (BloomFilterBatcher batcher = new BloomFilterBatcher(bloomFilterService, key, 64, 2000, 1024)) {
+            batcher.add("batcher-present");
+            // add 与 exists 可能落在同一批，先等 add 落盘
+            assertTrue(waitUntilExists("batcher-present"));
+
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(batcher.exists(i == 0 ? "batcher-present" : "batcher-missing-" + i));
+            }
+            assertTrue(futures.get(0).get(5, TimeUnit.SECONDS));
+            for (CompletableFuture<Boolean> future : futures) {
+                assertNotNull(future.get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    private boolean waitUntilExists(String value) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (bloomFilterService.exists(key, value)) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
 }
@@ -38,10 +38,474 @@ public class DhtConfig {
      */
     private boolean distributeNodeIds = true;
     
+    /**
+     * 爬虫引擎：MLDHT（完整DHT实现）或 KRPC（仅实现爬虫所需协议的轻量引擎）
+     */
+    private Engine engine = Engine.MLDHT;
+    
+    /**
+     * KRPC引擎配置
+     */
+    private Krpc krpc = new Krpc();
+    
+    /**
+     * BEP 51 sample_infohashes 主动采集配置
+     */
+    private Harvest harvest = new Harvest();
+    
+    /**
+     * get_peers 查找捕获配置
+     */
+    private Lookup lookup = new Lookup();
+    
+    /**
+     * 节点自动伸缩配置
+     */
+    private Autoscale autoscale = new Autoscale();
+    
+    /**
+     * 节点ID与路由表持久化配置
+     */
+    private Persistence persistence = new Persistence();
+    
+    /**
+     * 多实例 keyspace 分区配置
+     */
+    private Cluster cluster = new Cluster();
+    
+    /**
+     * IPv6 DHT 配置
+     */
+    private Ipv6 ipv6 = new Ipv6();
+    
+    /**
+     * 节点监督配置
+     */
+    private Supervisor supervisor = new Supervisor();
+    
+    /**
+     * get_peers 诱导应答配置
+     */
+    private Lure lure = new Lure();
+    
+    /**
+     * BEP 33 scrape 估计 swarm 大小配置
+     */
+    private Scrape scrape = new Scrape();
+    
     /**
      * 获取指定索引的端口
      */
     public int getPortForNode(int nodeIndex) {
         return startPort + nodeIndex;
     }
+    
+    /**
+     * 获取当前引擎下需要启动的节点数量
+     */
+    public int getEffectiveNodeCount() {
+        return engine == Engine.KRPC ? krpc.getSocketCount() : nodeCount;
+    }
+    
+    public enum Engine {
+        MLDHT,
+        KRPC
+    }
+    
+    public enum NodeIdMode {
+        DISTRIBUTED,
+        NEIGHBOR,
+        MIXED;
+        
+        /**
+         * 指定序号的socket是否使用邻居ID
+         */
+        public boolean isNeighbor(int nodeIndex) {
+            return this == NEIGHBOR || (this == MIXED && nodeIndex % 2 == 0);
+        }
+    }
+    
+    @Data
+    public static class Krpc {
+        
+        /**
+         * UDP socket数量（每个socket一个事件循环线程）
+         */
+        private int socketCount = 2;
+        
+        /**
+         * 每个socket承载的虚拟节点身份数（同一端口上以多个NodeId应答，按target选择最近的身份）
+         */
+        private int identitiesPerSocket = 1;
+        
+        /**
+         * 回复查询时使用的节点ID：DISTRIBUTED（固定的均匀分布ID）、NEIGHBOR（紧邻查询目标的ID）、
+         * MIXED（偶数序号socket用 NEIGHBOR、奇数用 DISTRIBUTED，便于同条件下对比两种模式的产出）
+         */
+        private NodeIdMode nodeIdMode = NodeIdMode.DISTRIBUTED;
+        
+        /**
+         * NEIGHBOR 模式下从查询目标复制的前缀字节数
+         */
+        private int neighborPrefixBytes = 15;
+        
+        /**
+         * 每个socket每秒主动发送的find_node数量
+         */
+        private int walkRate = 2000;
+        
+        /**
+         * 最近联系人表容量
+         */
+        private int contactCapacity = 65536;
+        
+        /**
+         * 是否校验announce_peer的token
+         */
+        private boolean verifyTokens = true;
+        
+        /**
+         * token密钥轮换间隔（秒）
+         */
+        private int tokenRotateSeconds = 300;
+        
+        /**
+         * socket收发缓冲区大小（字节）
+         */
+        private int socketBufferBytes = 4 * 1024 * 1024;
+    }
+    
+    @Data
+    public static class Harvest {
+        
+        /**
+         * 是否启用sample_infohashes主动采集（MLDHT引擎下会额外启动一个KRPC节点负责采集）
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 每个socket每秒发送的sample_infohashes查询数量（独立于find_node的预算）
+         */
+        private int queryRate = 200;
+        
+        /**
+         * 对方未返回interval时，同一节点两次查询的最小间隔（秒）
+         */
+        private int defaultIntervalSeconds = 300;
+        
+        /**
+         * 对方不支持BEP 51时的重试间隔（秒）
+         */
+        private int unsupportedBackoffSeconds = 3600;
+        
+        /**
+         * 记录查询间隔的节点数量上限
+         */
+        private int maxTrackedNodes = 200000;
+        
+        /**
+         * 统计去重产出时使用的指纹表容量
+         */
+        private int uniqueCapacity = 1 << 20;
+    }
+    
+    @Data
+    public static class Lookup {
+        
+        /**
+         * 是否把收到的 get_peers 的 info_hash 作为低可信度来源发布
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 每个节点去重过滤器单代大小（KB），两代合计占用两倍内存
+         */
+        private int filterSizeKb = 1024;
+        
+        /**
+         * 去重过滤器目标误判率
+         */
+        private double falsePositiveRate = 0.001;
+    }
+    
+    @Data
+    public static class Autoscale {
+        
+        /**
+         * 是否按每核去重产出自动增减节点（node-count / krpc.socket-count 作为初始节点数）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 节点数下限
+         */
+        private int minNodes = 1;
+        
+        /**
+         * 节点数上限
+         */
+        private int maxNodes = 64;
+        
+        /**
+         * 评估间隔（秒）
+         */
+        private int intervalSeconds = 60;
+        
+        /**
+         * 新节点预热时间（秒），预热期内不参与退役评估，也不再继续扩容
+         */
+        private int warmupSeconds = 600;
+        
+        /**
+         * 进程CPU占用上限（0~1，占整机的比例），超过后退役产出最低的节点
+         */
+        private double maxCpuLoad = 0.8;
+        
+        /**
+         * 去重产出低于中位数该比例的节点会被退役，空出的位置用新的keyspace区段补上
+         */
+        private double retireRatio = 0.25;
+        
+        /**
+         * 扩容后每核产出下降超过该比例时撤销扩容
+         */
+        private double efficiencyTolerance = 0.05;
+        
+        /**
+         * 撤销扩容后暂停扩容的评估周期数
+         */
+        private int cooldownIntervals = 10;
+        
+        /**
+         * 统计各节点去重产出的进程内过滤器单代大小（KB）
+         */
+        private int yieldFilterSizeKb = 4096;
+    }
+    
+    @Data
+    public static class Persistence {
+        
+        /**
+         * 是否持久化节点ID和路由表联系人，重启后热启动
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 存储根目录，每个节点使用 node-{序号} 子目录
+         */
+        private String storageDir = "./dht-data";
+        
+        /**
+         * 路由表快照间隔（秒），停止时也会保存一次
+         */
+        private int snapshotIntervalSeconds = 300;
+        
+        /**
+         * 快照最多保存的联系人数
+         */
+        private int maxContacts = 2000;
+        
+        /**
+         * 路由表达到该条目数视为就绪
+         */
+        private int readyEntries = 32;
+        
+        /**
+         * 等待路由表就绪的最长时间（秒），超时后照常运行
+         */
+        private int readyTimeoutSeconds = 30;
+        
+        /**
+         * 统计启动后收到前 N 个 announce 的耗时
+         */
+        private int firstAnnounces = 10;
+    }
+    
+    @Data
+    public static class Cluster {
+        
+        /**
+         * 分区方式：NONE（单实例，使用整个keyspace）、STATIC（固定分片序号）、REDIS（通过Redis心跳自动分配并在实例增减时重新平衡）
+         */
+        private ClusterMode mode = ClusterMode.NONE;
+        
+        /**
+         * STATIC 模式下本实例的分片序号，从0开始
+         */
+        private int shardIndex = 0;
+        
+        /**
+         * STATIC 模式下的分片总数
+         */
+        private int shardCount = 1;
+        
+        /**
+         * REDIS 模式下的实例ID，为空时使用 主机名:起始端口
+         */
+        private String instanceId = "";
+        
+        /**
+         * REDIS 模式下保存成员心跳的有序集合
+         */
+        private String membersKey = "dht:cluster:members";
+        
+        /**
+         * 心跳间隔（秒）
+         */
+        private int heartbeatSeconds = 10;
+        
+        /**
+         * 超过该时间没有心跳的实例视为已离开（秒）
+         */
+        private int memberTtlSeconds = 30;
+    }
+    
+    @Data
+    public static class Ipv6 {
+        
+        /**
+         * 是否同时加入 IPv6 DHT（mldht 引擎），需要本机有全局 IPv6 地址
+         */
+        private boolean enabled = false;
+        
+        /**
+         * IPv6 节点数量，与 IPv4 的 node-count 相互独立
+         */
+        private int nodeCount = 4;
+        
+        /**
+         * IPv6 节点的起始监听端口
+         */
+        private int startPort = 7881;
+        
+        /**
+         * 获取第 i 个 IPv6 节点的端口
+         */
+        public int getPortForNode(int i) {
+            return startPort + i;
+        }
+    }
+    
+    @Data
+    public static class Supervisor {
+        
+        /**
+         * 是否监督节点并自动重启已停止或卡死的节点
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 检查间隔（秒）
+         */
+        private int intervalSeconds = 10;
+        
+        /**
+         * 节点（重）启动后的宽限期（秒），期间只检查节点是否停止
+         */
+        private int graceSeconds = 60;
+        
+        /**
+         * 连续多少秒没有收到任何消息视为卡死
+         */
+        private int stallSeconds = 120;
+        
+        /**
+         * 首次重启后的退避时间（秒），之后每次翻倍
+         */
+        private int initialBackoffSeconds = 5;
+        
+        /**
+         * 退避时间上限（秒）
+         */
+        private int maxBackoffSeconds = 600;
+        
+        /**
+         * 重启后稳定运行多少秒，退避恢复到初始值
+         */
+        private int resetAfterSeconds = 600;
+    }
+    
+    @Data
+    public static class Lure {
+        
+        /**
+         * 是否在 get_peers 回复中把 bt-client 的诱导端点作为 peer 返回（mldht 引擎）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * bt-client 对外可达的 IPv4 地址，为空时 IPv4 节点不诱导
+         */
+        private String host = "";
+        
+        /**
+         * bt-client 对外可达的 IPv6 地址，为空时 IPv6 节点不诱导
+         */
+        private String host6 = "";
+        
+        /**
+         * bt-client 诱导连接监听端口（lure.listen-port）
+         */
+        private int port = 6892;
+        
+        /**
+         * 同一 InfoHash 重新存入诱导端点的间隔（秒），应小于 mldht peer 条目的过期时间
+         */
+        private int refreshSeconds = 900;
+        
+        /**
+         * 每个节点已诱导过滤器大小（KB）
+         */
+        private int filterSizeKb = 256;
+        
+        /**
+         * 已诱导过滤器目标误判率
+         */
+        private double falsePositiveRate = 0.001;
+    }
+    
+    @Data
+    public static class Scrape {
+        
+        /**
+         * 是否在发布新 InfoHash 之前用 BEP 33 scrape 估计 swarm 大小（由 KRPC 节点执行，MLDHT 引擎下由采集节点执行）
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 每个节点每秒发送的 scrape 查询数量（独立于 find_node 和 sample_infohashes 的预算）
+         */
+        private int queryRate = 100;
+        
+        /**
+         * 每次 scrape 最多查询的节点数
+         */
+        private int maxQueriesPerScrape = 16;
+        
+        /**
+         * 每次 scrape 同时进行的查询数
+         */
+        private int alpha = 3;
+        
+        /**
+         * 单次 scrape 的最长时间（毫秒），超时后按已收到的响应估计
+         */
+        private int timeoutMillis = 3000;
+        
+        /**
+         * 每个节点同时进行的 scrape 数
+         */
+        private int maxActive = 64;
+        
+        /**
+         * 每个节点排队等待的 scrape 上限，超过后直接发布不做估计
+         */
+        private int maxPending = 4096;
+    }
+        
+    public enum ClusterMode {
+        NONE,
+        STATIC,
+        REDIS
+    }
 }
@@ -0,0 +1,168 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 节点自动伸缩决策
+ * 优化目标是每核每秒的去重 InfoHash 数，而不是固定的节点数量：
+ * <ul>
+ *     <li>CPU 超过上限时退役产出最低的节点</li>
+ *     <li>产出远低于中位数的节点被退役，下一轮用新的 keyspace 区段补上</li>
+ *     <li>CPU 有余量且没有节点在预热时扩容一个节点；预热结束后若每核产出下降则撤销这次扩容并冷却</li>
+ * </ul>
+ * 只在伸缩线程内调用，不需要同步。
+ */
+public class AutoscalePolicy {
+
+    /**
+     * 单个节点一个评估周期内的采样
+     *
+     * @param nodeIndex  节点序号
+     * @param ageSeconds 节点已运行时间
+     * @param uniqueRate 每秒去重产出
+     * @param packetRate 每秒处理消息数
+     */
+    public record NodeSample(int nodeIndex, long ageSeconds, double uniqueRate, double packetRate) {
+    }
+
+    public enum Action {
+        HOLD,
+        ADD,
+        RETIRE
+    }
+
+    /**
+     * @param nodeIndex 退役的节点序号，其他动作为 -1
+     */
+    public record Decision(Action action, int nodeIndex, String reason) {
+
+        static Decision hold(String reason) {
+            return new Decision(Action.HOLD, -1, reason);
+        }
+
+        static Decision add(String reason) {
+            return new Decision(Action.ADD, -1, reason);
+        }
+
+        static Decision retire(NodeSample node, String reason) {
+            return new Decision(Action.RETIRE, node.nodeIndex(), reason);
+        }
+    }
+
+    private static final Comparator<NodeSample> BY_YIELD = Comparator.comparingDouble(NodeSample::uniqueRate);
+
+    private final DhtConfig.Autoscale config;
+
+    private int pendingAddIndex = -1;
+    private double baselineEfficiency;
+    private int cooldown;
+
+    public AutoscalePolicy(DhtConfig.Autoscale config) {
+        this.config = config;
+    }
+
+    /**
+     * @param nodes     参与伸缩的节点采样
+     * @param coresUsed 本周期进程平均占用的核数
+     * @param cpuLoad   进程CPU占整机的比例（0~1），小于0表示无法获取
+     */
+    public Decision decide(List<NodeSample> nodes, double coresUsed, double cpuLoad) {
+        int n = nodes.size();
+        double efficiency = efficiency(nodes, coresUsed);
+        if (cooldown > 0) {
+            cooldown--;
+        }
+
+        // 上一次扩容的节点预热结束后检查是否带来了每核产出的提升
+        if (pendingAddIndex >= 0) {
+            NodeSample added = find(nodes, pendingAddIndex);
+            if (added != null && added.ageSeconds() < config.getWarmupSeconds()) {
+                return Decision.hold("waiting for node " + pendingAddIndex + " to warm up");
+            }
+            pendingAddIndex = -1;
+            if (added != null && n > config.getMinNodes()
+                    && efficiency < baselineEfficiency * (1 - config.getEfficiencyTolerance())) {
+                cooldown = config.getCooldownIntervals();
+                return Decision.retire(added, String.format("revert scale-up, unique/s/core %.2f -> %.2f",
+                                                            baselineEfficiency, efficiency));
+            }
+        }
+
+        if (n > config.getMaxNodes()) {
+            return Decision.retire(nodes.stream().min(BY_YIELD).orElseThrow(), "above max-nodes");
+        }
+        if (n < config.getMinNodes()) {
+            return Decision.add("below min-nodes");
+        }
+
+        List<NodeSample> warm = new ArrayList<>();
+        for (NodeSample node : nodes) {
+            if (node.ageSeconds() >= config.getWarmupSeconds()) {
+                warm.add(node);
+            }
+        }
+        warm.sort(BY_YIELD);
+
+        if (cpuLoad > config.getMaxCpuLoad()) {
+            if (n > config.getMinNodes() && !warm.isEmpty()) {
+                return Decision.retire(warm.get(0), String.format("cpu %.0f%% above limit", cpuLoad * 100));
+            }
+            return Decision.hold("cpu above limit");
+        }
+
+        if (warm.size() >= 3 && n > config.getMinNodes()) {
+            double median = warm.get(warm.size() / 2).uniqueRate();
+            NodeSample worst = warm.get(0);
+            if (worst.uniqueRate() < median * config.getRetireRatio()) {
+                return Decision.retire(worst, String.format("unique/s %.2f below %.0f%% of median %.2f",
+                                                            worst.uniqueRate(), config.getRetireRatio() * 100, median));
+            }
+        }
+
+        if (warm.size() < n) {
+            return Decision.hold("nodes warming up");
+        }
+        if (cooldown > 0) {
+            return Decision.hold("cooling down after reverted scale-up");
+        }
+        if (cpuLoad < 0) {
+            return Decision.hold("cpu load unavailable");
+        }
+        if (n >= config.getMaxNodes()) {
+            return Decision.hold("at max-nodes");
+        }
+        baselineEfficiency = efficiency;
+        return Decision.add(String.format("cpu %.0f%% below limit, unique/s/core %.2f", cpuLoad * 100, efficiency));
+    }
+
+    /**
+     * 扩容成功后登记新节点，预热结束时评估
+     */
+    public void onAdded(int nodeIndex) {
+        pendingAddIndex = nodeIndex;
+    }
+
+    /**
+     * 每核每秒去重产出
+     */
+    public static double efficiency(List<NodeSample> nodes, double coresUsed) {
+        double total = 0;
+        for (NodeSample node : nodes) {
+            total += node.uniqueRate();
+        }
+        return total / Math.max(coresUsed, 0.01);
+    }
+
+    private static NodeSample find(List<NodeSample> nodes, int nodeIndex) {
+        for (NodeSample node : nodes) {
+            if (node.nodeIndex() == nodeIndex) {
+                return node;
+            }
+        }
+        return null;
+    }
+}
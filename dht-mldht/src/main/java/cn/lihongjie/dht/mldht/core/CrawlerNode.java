@@ -0,0 +1,76 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.mldht.metrics.NodeMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 爬虫节点抽象
+ * DhtNodeManager 通过该接口统一管理 mldht 节点与轻量 KRPC 节点
+ */
+public interface CrawlerNode extends AutoCloseable {
+
+    /**
+     * 节点序号
+     */
+    int getNodeIndex();
+
+    /**
+     * 监听端口
+     */
+    int getPort();
+
+    /**
+     * 是否是 IPv6 DHT 节点
+     */
+    default boolean isIpv6() {
+        return false;
+    }
+
+    /**
+     * 活跃的 RPC 服务器（UDP socket）数，为 0 时节点收不到任何消息
+     */
+    default int getActiveServerCount() {
+        return 1;
+    }
+
+    /**
+     * 启动节点（阻塞直到节点停止），停止后可以再次启动
+     */
+    void start() throws Exception;
+
+    /**
+     * 停止节点
+     */
+    void stop();
+
+    /**
+     * 已处理的消息数
+     */
+    AtomicLong getMessageCount();
+
+    /**
+     * 已发现的InfoHash数
+     */
+    AtomicLong getDiscoveredCount();
+
+    /**
+     * 路由表条目数（KRPC 节点为最近联系人表大小）
+     */
+    int getRoutingTableSize();
+
+    /**
+     * 按消息类型、announce 距离和已见节点ID的指标，由 MetricsExporter 导出
+     */
+    NodeMetrics getMetrics();
+
+    /**
+     * 节点统计信息
+     */
+    String getStats();
+
+    @Override
+    default void close() {
+        stop();
+    }
+}
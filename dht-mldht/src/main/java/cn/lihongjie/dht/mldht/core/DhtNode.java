@@ -1,51 +1,120 @@
 package cn.lihongjie.dht.mldht.core;
 
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
 import cn.lihongjie.dht.common.model.InfoHashMessage;
-import cn.lihongjie.dht.mldht.service.InfoHashPublisher;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.metrics.NodeMetrics;
+import cn.lihongjie.dht.mldht.service.InfoHashIngestQueue;
 import lbms.plugins.mldht.DHTConfiguration;
 import lbms.plugins.mldht.kad.DHT;
 import lbms.plugins.mldht.kad.DHT.DHTtype;
 import lbms.plugins.mldht.kad.DHT.LogLevel;
+import lbms.plugins.mldht.kad.KBucketEntry;
+import lbms.plugins.mldht.kad.Key;
+import lbms.plugins.mldht.kad.Node;
 import lbms.plugins.mldht.kad.messages.AnnounceRequest;
+import lbms.plugins.mldht.kad.messages.GetPeersRequest;
+import lbms.plugins.mldht.kad.messages.MessageBase;
 import lbms.plugins.mldht.kad.PeerAddressDBItem;
+import lbms.plugins.mldht.kad.tasks.PeerLookupTask;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * DHT节点
  * 基于 the8472/mldht 库实现
+ * 启用持久化时由 mldht 保存节点ID，本节点定期把已验证的路由表联系人写入快照，重启后先用快照填充路由表；
+ * 启动完成以路由表实际条目数为准，而不是固定等待。
+ * 节点加入 IPv4 或 IPv6 其中一个 DHT 网络，双栈运行时由 DhtNodeManager 分别启动两组节点，共用同一条发布链路去重。
+ * 启用诱导应答时，收到 get_peers 的 InfoHash 会把 bt-client 的诱导端点存为 peer，让下载者主动连到 bt-client。
  */
 @Slf4j
 @Getter
-public class DhtNode implements AutoCloseable {
+public class DhtNode implements CrawlerNode {
     
     private final int nodeIndex;
     private final int port;
     private final byte[] nodeId;
     private final List<String> bootstrapNodes;
-    private final InfoHashPublisher publisher;
+    private final InfoHashIngestQueue ingestQueue;
+    
+    /**
+     * get_peers 捕获与来源统计，未启用 get_peers 捕获时为 null
+     */
+    private final DiscoveryTracker discoveryTracker;
+    
+    private final DhtConfig.Persistence persistence;
+    
+    /**
+     * 加入的 DHT 网络：IPV4_DHT 或 IPV6_DHT
+     */
+    private final DHTtype type;
+    
+    /**
+     * get_peers 诱导应答，未启用或本地址族未配置端点时为 null
+     */
+    private final LureResponder lure;
+    
+    /**
+     * 节点指标；mldht 不采用传入的 nodeId，DHT 启动后绑定到节点实际的根ID，再按它计算 announce 距离和网络规模
+     */
+    private final NodeMetrics metrics;
     
     private DHT dht;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicLong discoveredCount = new AtomicLong(0);
     private final AtomicLong messageCount = new AtomicLong(0);
+    private final AtomicLong announceCount = new AtomicLong(0);
+    
+    private volatile long startedAtNanos;
+    /** 路由表就绪耗时（毫秒），未就绪为 -1 */
+    private volatile long readyMillis = -1;
+    /** 收到前 N 个 announce 的耗时（毫秒），未达到为 -1 */
+    private volatile long firstAnnouncesMillis = -1;
+    private volatile int restoredContacts;
+    
+    public DhtNode(int nodeIndex, int port, byte[] nodeId, 
+                   List<String> bootstrapNodes, InfoHashIngestQueue ingestQueue, DhtConfig.Lookup lookup,
+                   DhtConfig.Persistence persistence) {
+        this(nodeIndex, port, nodeId, bootstrapNodes, ingestQueue, lookup, persistence, DHTtype.IPV4_DHT, null);
+    }
     
     public DhtNode(int nodeIndex, int port, byte[] nodeId, 
-                   List<String> bootstrapNodes, InfoHashPublisher publisher) {
+                   List<String> bootstrapNodes, InfoHashIngestQueue ingestQueue, DhtConfig.Lookup lookup,
+                   DhtConfig.Persistence persistence, DHTtype type, DhtConfig.Lure lure) {
         this.nodeIndex = nodeIndex;
         this.port = port;
         this.nodeId = nodeId;
         this.bootstrapNodes = bootstrapNodes;
-        this.publisher = publisher;
+        this.ingestQueue = ingestQueue;
+        this.discoveryTracker = lookup.isEnabled()
+                ? new DiscoveryTracker(lookup.getFilterSizeKb() * 1024L, lookup.getFalsePositiveRate())
+                : null;
+        this.persistence = persistence;
+        this.type = type;
+        this.lure = LureResponder.create(lure, type == DHTtype.IPV6_DHT);
+        this.metrics = new NodeMetrics();
+    }
+    
+    @Override
+    public boolean isIpv6() {
+        return type == DHTtype.IPV6_DHT;
     }
     
     /**
@@ -61,12 +130,12 @@ public class DhtNode implements AutoCloseable {
         DHTConfiguration config = new DHTConfiguration() {
             @Override
             public boolean isPersistingID() {
-                return false; // 不持久化节点ID
+                return persistence.isEnabled();
             }
             
             @Override
             public Path getStoragePath() {
-                return Paths.get("./dht-data/node-" + nodeIndex);
+                return storagePath();
             }
             
             @Override
@@ -92,8 +161,8 @@ public class DhtNode implements AutoCloseable {
             }
         };
         
-        // 创建DHT实例（IPv4）
-        dht = new DHT(DHTtype.IPV4_DHT);
+        // 创建DHT实例（IPv4 或 IPv6）
+        dht = new DHT(type);
         dht.setLogLevel(LogLevel.Error); // 只记录错误日志，减少RPC噪音
         
         // 如果指定了NodeId，使用指定的ID
@@ -106,12 +175,39 @@ public class DhtNode implements AutoCloseable {
         dht.addIncomingMessageListener((d, m) -> {
             messageCount.incrementAndGet();
             try {
+                recordMetrics(m);
                 if (m instanceof AnnounceRequest announce) {
                     byte[] infoHashBytes = announce.getTarget().getHash();
                     if (infoHashBytes != null && infoHashBytes.length == 20) {
-                        String infoHash = bytesToHex(infoHashBytes);
+                        InfoHash infoHash = InfoHash.of(infoHashBytes);
                         InetSocketAddress origin = announce.getOrigin();
-                        onInfoHashDiscovered(infoHash, origin.getAddress(), origin.getPort());
+                        if (discoveryTracker != null) {
+                            discoveryTracker.onAnnounce(infoHash);
+                        }
+                        metrics.onAnnounce(infoHashBytes, 0);
+                        if (announceCount.incrementAndGet() == persistence.getFirstAnnounces()) {
+                            firstAnnouncesMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+                            log.info("Node {} received first {} announces after {} ms",
+                                     nodeIndex, persistence.getFirstAnnounces(), firstAnnouncesMillis);
+                        }
+                        // 发布 announce 声明的 TCP 端口（bt-client 直接连接该 peer），未声明时退回 UDP 源端口
+                        int peerPort = announce.getPort() > 0 ? announce.getPort() : origin.getPort();
+                        onInfoHashDiscovered(infoHash, origin.getAddress(), peerPort, DiscoverySource.ANNOUNCE);
+                    }
+                } else if (m instanceof GetPeersRequest getPeers && (discoveryTracker != null || lure != null)) {
+                    byte[] infoHashBytes = getPeers.getTarget().getHash();
+                    if (infoHashBytes != null && infoHashBytes.length == 20) {
+                        InfoHash infoHash = InfoHash.of(infoHashBytes);
+                        if (lure != null && lure.shouldLure(infoHash, System.nanoTime())) {
+                            // 存入后本次及之后对该 InfoHash 的 get_peers 回复都会带上诱导端点
+                            InetSocketAddress endpoint = lure.getEndpoint();
+                            d.getDatabase().store(new Key(infoHashBytes),
+                                                  PeerAddressDBItem.createFromAddress(endpoint.getAddress(), endpoint.getPort(), false));
+                        }
+                        if (discoveryTracker != null && discoveryTracker.onLookup(infoHash)) {
+                            InetSocketAddress origin = getPeers.getOrigin();
+                            onInfoHashDiscovered(infoHash, origin.getAddress(), origin.getPort(), DiscoverySource.LOOKUP);
+                        }
                     }
                 }
                 if (messageCount.get() % 1000 == 0) {
@@ -123,24 +219,27 @@ public class DhtNode implements AutoCloseable {
         });
 
         // 启动DHT（会自动触发 bootstrap 流程）
+        startedAtNanos = System.nanoTime();
         dht.start(config);
+        bindMetrics();
         
-        // 等待DHT初始化和服务器绑定
-        log.info("Node {} waiting for DHT initialization...", nodeIndex);
-        Thread.sleep(3000);
+        // 用上次保存的联系人填充路由表，再等待路由表达到就绪条目数
+        restoreContacts();
+        log.info("Node {} waiting for routing table to reach {} entries...", nodeIndex, persistence.getReadyEntries());
+        awaitRoutingTable();
         
         // 检查服务器状态
         int serverCount = dht.getServerManager().getServerCount();
         int activeServerCount = dht.getServerManager().getActiveServerCount();
         
         log.info("DHT Node {} started - Port: {}, Type: {}, Running: {}, Servers: {}/{}, RoutingTableSize: {}", 
-                 nodeIndex, port, dht.getType(), dht.isRunning(), 
+                 nodeIndex, port, type, dht.isRunning(), 
                  activeServerCount, serverCount,
                  dht.getNode().getNumEntriesInRoutingTable());
         
         if (serverCount == 0) {
-            log.error("Node {} CRITICAL: No RPC servers created! DHT cannot bind to port {}. Check firewall/permissions.", 
-                      nodeIndex, port);
+            log.error("Node {} CRITICAL: No RPC servers created! DHT cannot bind to port {}. Check firewall/permissions{}.", 
+                      nodeIndex, port, isIpv6() ? " and that a global IPv6 address is configured" : "");
         }
         
         running.set(true);
@@ -152,15 +251,21 @@ public class DhtNode implements AutoCloseable {
                 Thread.sleep(1000);
                 statsInterval++;
                 
+                if (persistence.isEnabled() && persistence.getSnapshotIntervalSeconds() > 0
+                        && statsInterval % persistence.getSnapshotIntervalSeconds() == 0) {
+                    saveContacts();
+                }
+                
                 // 每30秒输出统计信息
                 if (statsInterval % 30 == 0) {
                     log.info("Node {} Stats: Running={}, Messages={}, Discovered={}", 
                              nodeIndex, dht.isRunning(), messageCount.get(), discoveredCount.get());
                 }
                 
-                // 检查DHT状态
+                // 检查DHT状态，意外停止时退出，由 NodeSupervisor 按退避重启
                 if (!dht.isRunning()) {
                     log.error("Node {} DHT stopped unexpectedly", nodeIndex);
+                    running.set(false);
                     break;
                 }
             } catch (InterruptedException e) {
@@ -170,10 +275,39 @@ public class DhtNode implements AutoCloseable {
         }
     }
     
+    /**
+     * 按消息类型计数，并记录发送方的节点ID
+     */
+    private void recordMetrics(MessageBase m) {
+        NodeMetrics.MessageKind kind;
+        if (m.getType() == MessageBase.Type.RSP_MSG) {
+            kind = NodeMetrics.MessageKind.RESPONSE;
+        } else if (m.getType() == MessageBase.Type.ERR_MSG) {
+            kind = NodeMetrics.MessageKind.ERROR;
+        } else if (m.getMethod() == null) {
+            kind = NodeMetrics.MessageKind.OTHER_QUERY;
+        } else {
+            kind = switch (m.getMethod()) {
+                case PING -> NodeMetrics.MessageKind.PING;
+                case FIND_NODE -> NodeMetrics.MessageKind.FIND_NODE;
+                case GET_PEERS -> NodeMetrics.MessageKind.GET_PEERS;
+                case ANNOUNCE_PEER -> NodeMetrics.MessageKind.ANNOUNCE_PEER;
+                case SAMPLE_INFOHASHES -> NodeMetrics.MessageKind.SAMPLE_INFOHASHES;
+                default -> NodeMetrics.MessageKind.OTHER_QUERY;
+            };
+        }
+        metrics.onMessage(kind);
+        Key sender = m.getID();
+        byte[] senderId = sender != null ? sender.getHash() : null;
+        if (senderId != null && senderId.length == 20) {
+            metrics.onNodeSeen(senderId, 0);
+        }
+    }
+    
     /**
      * 当发现新的InfoHash时调用
      */
-    private void onInfoHashDiscovered(String infoHash, InetAddress sourceIp, int sourcePort) {
+    private void onInfoHashDiscovered(InfoHash infoHash, InetAddress sourceIp, int sourcePort, DiscoverySource source) {
         discoveredCount.incrementAndGet();
         
         // 创建消息
@@ -182,10 +316,12 @@ public class DhtNode implements AutoCloseable {
             .discoveredAt(Instant.now())
             .sourceIp(sourceIp.getHostAddress())
             .sourcePort(sourcePort)
+            .source(source)
+            .confidence(source.confidence())
             .build();
         
-        // 发布到Kafka
-        publisher.publish(message);
+        // 放入接入队列，由发布线程异步去重并发送到Kafka，不阻塞RPC线程
+        ingestQueue.submit(message, nodeIndex);
         
         if (discoveredCount.get() % 10 == 0) {
             log.info("Node {} discovered {} InfoHashes (latest: {})", 
@@ -197,15 +333,18 @@ public class DhtNode implements AutoCloseable {
      * 停止DHT节点
      */
     public void stop() {
-        if (!running.get()) {
-            return;
-        }
-        
-        running.set(false);
+        boolean wasRunning = running.getAndSet(false);
         
+        // 启动失败或仍在等待路由表时 running 为 false，但 DHT 可能已经占用了端口，同样需要停止
         if (dht != null && dht.isRunning()) {
+            if (wasRunning) {
+                saveContacts();
+            }
             dht.stop();
         }
+        if (!wasRunning) {
+            return;
+        }
         
         log.info("Node {} stopped. Discovered {} InfoHashes from {} messages", 
                  nodeIndex, discoveredCount.get(), messageCount.get());
@@ -216,15 +355,135 @@ public class DhtNode implements AutoCloseable {
         stop();
     }
     
+    private Path storagePath() {
+        return Paths.get(persistence.getStorageDir(), "node-" + nodeIndex);
+    }
+    
+    /**
+     * 把节点指标绑定到 mldht 实际使用的根ID（多个时取第一个）
+     */
+    private void bindMetrics() {
+        for (Key rootId : dht.getNode().getRootIDs()) {
+            metrics.bindOwnId(rootId.getHash(), 0);
+            return;
+        }
+        log.warn("Node {} has no root ID, announce distance and network size metrics are disabled", nodeIndex);
+    }
+    
     /**
-     * 字节数组转十六进制字符串
+     * 从快照恢复联系人，交给 mldht 发 ping 验证后加入路由表
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xff));
+    private void restoreContacts() {
+        if (!persistence.isEnabled()) {
+            return;
         }
-        return sb.toString();
+        try {
+            RoutingSnapshot.Snapshot snapshot = RoutingSnapshot.read(storagePath());
+            if (snapshot == null) {
+                return;
+            }
+            for (RoutingSnapshot.Contact contact : snapshot.contacts()) {
+                // 只恢复与本节点同一地址族的联系人
+                if ((contact.address().getAddress() instanceof Inet6Address) == isIpv6()) {
+                    dht.addDHTNode(contact.address().getAddress().getHostAddress(), contact.address().getPort());
+                }
+            }
+            restoredContacts = snapshot.contacts().size();
+            log.info("Node {} restored {} contacts from snapshot saved {} s ago", nodeIndex, restoredContacts,
+                     TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - snapshot.savedAtMillis()));
+        } catch (Exception e) {
+            log.warn("Node {} failed to restore routing snapshot: {}", nodeIndex, e.getMessage());
+        }
+    }
+    
+    /**
+     * 轮询路由表条目数直到就绪或超时
+     */
+    private void awaitRoutingTable() throws InterruptedException {
+        long deadline = startedAtNanos + TimeUnit.SECONDS.toNanos(persistence.getReadyTimeoutSeconds());
+        while (System.nanoTime() < deadline) {
+            if (dht.getNode().getNumEntriesInRoutingTable() >= persistence.getReadyEntries()) {
+                readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+                log.info("Node {} routing table ready after {} ms", nodeIndex, readyMillis);
+                return;
+            }
+            Thread.sleep(100);
+        }
+        log.warn("Node {} routing table not ready after {} s ({} entries), continuing", nodeIndex,
+                 persistence.getReadyTimeoutSeconds(), dht.getNode().getNumEntriesInRoutingTable());
+    }
+    
+    /**
+     * 保存已验证可达的路由表联系人
+     */
+    private void saveContacts() {
+        if (!persistence.isEnabled() || dht == null) {
+            return;
+        }
+        try {
+            List<RoutingSnapshot.Contact> contacts = new ArrayList<>();
+            for (Node.RoutingTableEntry entry : dht.getNode().table()) {
+                for (KBucketEntry e : entry.getBucket().getEntries()) {
+                    if (contacts.size() >= persistence.getMaxContacts()) {
+                        break;
+                    }
+                    if (e.verifiedReachable()) {
+                        contacts.add(new RoutingSnapshot.Contact(e.getID().getHash(), e.getAddress()));
+                    }
+                }
+            }
+            if (!contacts.isEmpty()) {
+                RoutingSnapshot.write(storagePath(), contacts);
+                log.debug("Node {} saved {} contacts", nodeIndex, contacts.size());
+            }
+        } catch (Exception e) {
+            log.warn("Node {} failed to save routing snapshot: {}", nodeIndex, e.getMessage());
+        }
+    }
+    
+    /**
+     * 用本节点已预热的路由表做一次 get_peers 查找（不 announce），供 PeerLookupService 使用
+     * 找到 maxPeers 个 peer、查找结束或超时时完成，超时返回已经找到的部分结果
+     *
+     * @return 节点未运行时返回 null
+     */
+    public CompletableFuture<List<InetSocketAddress>> lookupPeers(InfoHash infoHash, int maxPeers, long timeoutMillis) {
+        DHT current = dht;
+        if (!running.get() || current == null || !current.isRunning()) {
+            return null;
+        }
+        PeerLookupTask task = current.createPeerLookup(infoHash.toBytes());
+        if (task == null) {
+            return null;
+        }
+        Set<InetSocketAddress> peers = ConcurrentHashMap.newKeySet();
+        CompletableFuture<List<InetSocketAddress>> result = new CompletableFuture<>();
+        task.setNoAnnounce(true);
+        task.setResultHandler((source, item) -> {
+            if (peers.size() < maxPeers) {
+                peers.add(new InetSocketAddress(item.getInetAddress(), item.getPort()));
+            }
+            if (peers.size() >= maxPeers) {
+                result.complete(List.copyOf(peers));
+            }
+        });
+        task.addListener(t -> result.complete(List.copyOf(peers)));
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS)
+                .execute(() -> result.complete(List.copyOf(peers)));
+        current.getTaskManager().addTask(task);
+        return result;
+    }
+    
+    @Override
+    public int getRoutingTableSize() {
+        DHT current = dht;
+        return current != null && current.isRunning() ? current.getNode().getNumEntriesInRoutingTable() : 0;
+    }
+    
+    @Override
+    public int getActiveServerCount() {
+        DHT current = dht;
+        return current != null && current.isRunning() ? current.getServerManager().getActiveServerCount() : 0;
     }
     
     /**
@@ -236,8 +495,12 @@ public class DhtNode implements AutoCloseable {
             numPeers = dht.getServerManager().getActiveServerCount();
         }
         
-        return String.format("Node[%d] port=%d, running=%s, servers=%d, messages=%d, discovered=%d", 
-                           nodeIndex, port, dht != null && dht.isRunning(), 
-                           numPeers, messageCount.get(), discoveredCount.get());
+        return String.format("Node[%d] %s port=%d, running=%s, servers=%d, messages=%d, discovered=%d, "
+                           + "restored=%d, readyMs=%d, firstAnnouncesMs=%d", 
+                           nodeIndex, isIpv6() ? "IPv6" : "IPv4", port, dht != null && dht.isRunning(), 
+                           numPeers, messageCount.get(), discoveredCount.get(),
+                           restoredContacts, readyMillis, firstAnnouncesMillis)
+             + (discoveryTracker != null ? ", " + discoveryTracker.getStats() : "")
+             + (lure != null ? ", " + lure.getStats() : "");
     }
 }
@@ -0,0 +1,72 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.dedup.RotatingBloomFilter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个节点的发现来源统计与 get_peers 去重
+ * announce 一律发布并记入节点本地过滤器；get_peers 的 target 只有在本节点最近既没被 announce 过、
+ * 也没被查找过时才发布，用于衡量 get_peers 带来的额外去重产出。
+ */
+public class DiscoveryTracker {
+
+    private final RotatingBloomFilter seen;
+
+    private final AtomicLong announces = new AtomicLong(0);
+    private final AtomicLong lookups = new AtomicLong(0);
+    private final AtomicLong lookupsPublished = new AtomicLong(0);
+
+    /**
+     * @param filterBytes       节点本地过滤器单代大小（字节）
+     * @param falsePositiveRate 目标误判率
+     */
+    public DiscoveryTracker(long filterBytes, double falsePositiveRate) {
+        this.seen = new RotatingBloomFilter(filterBytes, 1, falsePositiveRate);
+    }
+
+    /**
+     * 记录一次 announce
+     */
+    public void onAnnounce(InfoHash infoHash) {
+        announces.incrementAndGet();
+        seen.checkAndPut(infoHash);
+    }
+
+    /**
+     * 记录一次 get_peers
+     *
+     * @return 是否需要发布（本节点最近没有见过该 InfoHash）
+     */
+    public boolean onLookup(InfoHash infoHash) {
+        lookups.incrementAndGet();
+        if (seen.checkAndPut(infoHash)) {
+            return false;
+        }
+        lookupsPublished.incrementAndGet();
+        return true;
+    }
+
+    public long getAnnounces() {
+        return announces.get();
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * get_peers 带来的额外去重产出
+     */
+    public long getLookupsPublished() {
+        return lookupsPublished.get();
+    }
+
+    public String getStats() {
+        long published = lookupsPublished.get();
+        long announced = announces.get();
+        return String.format("lookup[seen=%d, extraUnique=%d, extraYield=%.1f%%]",
+                             lookups.get(), published, announced == 0 ? 0.0 : published * 100.0 / announced);
+    }
+}
@@ -0,0 +1,67 @@
+package cn.lihongjie.dht.mldht.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 集群中一个实例负责的 keyspace 区段
+ * 按节点ID前32位把 160 位地址空间等分为 count 份，实例只在第 index 份内生成节点ID，
+ * 多台爬虫主机的节点互不重叠，各自收到不同 InfoHash 附近的 announce。
+ *
+ * @param index 分片序号（0 ~ count-1）
+ * @param count 分片总数
+ */
+public record KeyspaceSlice(int index, int count) {
+
+    /** 单实例：整个 keyspace */
+    public static final KeyspaceSlice FULL = new KeyspaceSlice(0, 1);
+
+    private static final long SPACE = 1L << 32;
+
+    public KeyspaceSlice {
+        if (count <= 0 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid keyspace slice " + index + "/" + count);
+        }
+    }
+
+    /**
+     * 按成员ID排序后的位置分配区段，所有实例看到同一成员列表时得到互不重叠的区段
+     *
+     * @return 成员列表中不包含 instanceId 时返回 FULL
+     */
+    public static KeyspaceSlice forMember(String instanceId, Collection<String> members) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(members));
+        int index = sorted.indexOf(instanceId);
+        return index < 0 ? FULL : new KeyspaceSlice(index, sorted.size());
+    }
+
+    /**
+     * 区段起点（前32位，无符号）
+     */
+    public long start() {
+        return SPACE * index / count;
+    }
+
+    /**
+     * 区段长度（前32位空间内）
+     */
+    public long length() {
+        return SPACE * (index + 1) / count - start();
+    }
+
+    /**
+     * 节点ID是否落在本区段
+     */
+    public boolean contains(byte[] nodeId) {
+        long prefix = ((nodeId[0] & 0xFFL) << 24) | ((nodeId[1] & 0xFFL) << 16)
+                    | ((nodeId[2] & 0xFFL) << 8) | (nodeId[3] & 0xFFL);
+        return prefix >= start() && prefix < start() + length();
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count + String.format(" [%08x, %08x)", start(), start() + length());
+    }
+}
@@ -0,0 +1,105 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.dedup.RotatingBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * get_peers 诱导应答
+ * 节点收到 get_peers 时把 bt-client 的诱导端点作为 peer 存入 mldht 的 peer 数据库，之后对该 InfoHash 的 get_peers
+ * 回复里就会带上这个端点，正在下载的客户端会主动连过来，由 bt-client 在入站连接上用 ut_metadata 拉取元数据。
+ * mldht 的 peer 条目会过期，每个 InfoHash 在一个刷新窗口内只存一次，窗口到期后整体清空过滤器重新存入。
+ */
+@Slf4j
+public class LureResponder {
+
+    private final InetSocketAddress endpoint;
+    private final long filterBytes;
+    private final double falsePositiveRate;
+    private final long refreshNanos;
+
+    private volatile RotatingBloomFilter stored;
+    private volatile long windowStartNanos;
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong lured = new AtomicLong(0);
+
+    public LureResponder(InetSocketAddress endpoint, long filterBytes, double falsePositiveRate,
+                         long refreshSeconds, long nowNanos) {
+        this.endpoint = endpoint;
+        this.filterBytes = filterBytes;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(Math.max(1, refreshSeconds));
+        this.stored = new RotatingBloomFilter(filterBytes, 1, falsePositiveRate);
+        this.windowStartNanos = nowNanos;
+    }
+
+    /**
+     * 按配置为指定地址族的节点创建诱导应答
+     *
+     * @return 未启用、该地址族没有配置端点或端点无法解析时返回 null
+     */
+    public static LureResponder create(DhtConfig.Lure lure, boolean ipv6) {
+        if (lure == null || !lure.isEnabled()) {
+            return null;
+        }
+        String host = ipv6 ? lure.getHost6() : lure.getHost();
+        if (host == null || host.isBlank()) {
+            return null;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(host.trim());
+            if ((address instanceof Inet6Address) != ipv6) {
+                log.warn("Lure host {} is not an {} address, lure disabled for this family", host, ipv6 ? "IPv6" : "IPv4");
+                return null;
+            }
+            return new LureResponder(new InetSocketAddress(address, lure.getPort()), lure.getFilterSizeKb() * 1024L,
+                                     lure.getFalsePositiveRate(), lure.getRefreshSeconds(), System.nanoTime());
+        } catch (Exception e) {
+            log.warn("Failed to resolve lure host {}: {}", host, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 记录一次 get_peers
+     *
+     * @return 是否需要把诱导端点存入该 InfoHash 的 peer 列表（当前窗口内第一次见到）
+     */
+    public boolean shouldLure(InfoHash infoHash, long nowNanos) {
+        requests.incrementAndGet();
+        if (nowNanos - windowStartNanos >= refreshNanos) {
+            synchronized (this) {
+                if (nowNanos - windowStartNanos >= refreshNanos) {
+                    stored = new RotatingBloomFilter(filterBytes, 1, falsePositiveRate);
+                    windowStartNanos = nowNanos;
+                }
+            }
+        }
+        if (stored.checkAndPut(infoHash)) {
+            return false;
+        }
+        lured.incrementAndGet();
+        return true;
+    }
+
+    public InetSocketAddress getEndpoint() {
+        return endpoint;
+    }
+
+    public long getLured() {
+        return lured.get();
+    }
+
+    public String getStats() {
+        return String.format("lure[endpoint=%s, getPeers=%d, lured=%d]",
+                             endpoint, requests.get(), lured.get());
+    }
+}
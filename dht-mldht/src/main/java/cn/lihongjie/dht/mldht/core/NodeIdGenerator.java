@@ -1,11 +1,13 @@
 package cn.lihongjie.dht.mldht.core;
 
+import cn.lihongjie.dht.common.util.HashUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -27,6 +29,17 @@ public class NodeIdGenerator {
      * @return NodeId列表
      */
     public List<byte[]> generateDistributedNodeIds(int nodeCount) {
+        return generateDistributedNodeIds(nodeCount, KeyspaceSlice.FULL);
+    }
+    
+    /**
+     * 在集群分配给本实例的 keyspace 区段内生成均匀分布的NodeId列表
+     * 
+     * @param nodeCount 节点数量
+     * @param slice     本实例负责的区段
+     * @return NodeId列表
+     */
+    public List<byte[]> generateDistributedNodeIds(int nodeCount, KeyspaceSlice slice) {
         List<byte[]> nodeIds = new ArrayList<>(nodeCount);
         
         if (nodeCount <= 0) {
@@ -36,9 +49,9 @@ public class NodeIdGenerator {
         // 计算每个节点在160位空间中的间隔
         // 使用BigInteger的概念：将2^160空间划分为nodeCount个区间
         for (int i = 0; i < nodeCount; i++) {
-            byte[] nodeId = generateDistributedNodeId(i, nodeCount);
+            byte[] nodeId = generateDistributedNodeId(i, nodeCount, slice);
             nodeIds.add(nodeId);
-            log.debug("Generated NodeId for node {}: {}", i, bytesToHex(nodeId));
+            log.debug("Generated NodeId for node {}: {}", i, HashUtils.bytesToHex(nodeId));
         }
         
         return nodeIds;
@@ -48,7 +61,7 @@ public class NodeIdGenerator {
      * 为指定索引的节点生成NodeId
      * 使用均匀分布算法
      */
-    private byte[] generateDistributedNodeId(int nodeIndex, int totalNodes) {
+    private byte[] generateDistributedNodeId(int nodeIndex, int totalNodes, KeyspaceSlice slice) {
         byte[] nodeId = new byte[NODE_ID_LENGTH];
         
         // 计算该节点在地址空间中的位置
@@ -56,7 +69,7 @@ public class NodeIdGenerator {
         // 这样可以确保节点在DHT网络中均匀分布
         
         // 使用前4个字节（32位）来分布节点
-        long segment = (long) nodeIndex * (1L << 32) / totalNodes;
+        long segment = slice.start() + nodeIndex * slice.length() / totalNodes;
         
         // 将segment写入nodeId的前4个字节
         nodeId[0] = (byte) ((segment >> 24) & 0xFF);
@@ -72,6 +85,87 @@ public class NodeIdGenerator {
         return nodeId;
     }
     
+    /**
+     * 在已有节点之间生成新的NodeId
+     * 每次取前32位（环形）最大空隙的中点，新节点落在当前覆盖最稀疏的keyspace区段
+     *
+     * @param existingNodeIds 正在运行的节点ID
+     * @param count           需要生成的数量
+     * @return 新的NodeId列表
+     */
+    public List<byte[]> generateNodeIdsInGaps(List<byte[]> existingNodeIds, int count) {
+        return generateNodeIdsInGaps(existingNodeIds, count, KeyspaceSlice.FULL);
+    }
+    
+    /**
+     * 在本实例负责的区段内生成新的NodeId，区段外的已有节点不参与计算
+     * 空隙在区段内按环形计算，结果始终落在区段内
+     */
+    public List<byte[]> generateNodeIdsInGaps(List<byte[]> existingNodeIds, int count, KeyspaceSlice slice) {
+        long base = slice.start();
+        long length = slice.length();
+        // 以区段起点为0的相对位置
+        List<Long> prefixes = new ArrayList<>(existingNodeIds.size() + count);
+        for (byte[] nodeId : existingNodeIds) {
+            if (slice.contains(nodeId)) {
+                prefixes.add(prefixOf(nodeId) - base);
+            }
+        }
+        List<byte[]> nodeIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long segment;
+            if (prefixes.isEmpty()) {
+                segment = 0;
+            } else {
+                Collections.sort(prefixes);
+                long bestStart = prefixes.get(prefixes.size() - 1);
+                long bestGap = prefixes.get(0) + length - bestStart;
+                for (int j = 1; j < prefixes.size(); j++) {
+                    long gap = prefixes.get(j) - prefixes.get(j - 1);
+                    if (gap > bestGap) {
+                        bestGap = gap;
+                        bestStart = prefixes.get(j - 1);
+                    }
+                }
+                segment = (bestStart + bestGap / 2) % length;
+            }
+            prefixes.add(segment);
+            segment += base;
+            byte[] nodeId = generateRandomNodeId();
+            nodeId[0] = (byte) ((segment >> 24) & 0xFF);
+            nodeId[1] = (byte) ((segment >> 16) & 0xFF);
+            nodeId[2] = (byte) ((segment >> 8) & 0xFF);
+            nodeId[3] = (byte) (segment & 0xFF);
+            nodeIds.add(nodeId);
+            log.debug("Generated gap NodeId: {}", HashUtils.bytesToHex(nodeId));
+        }
+        return nodeIds;
+    }
+    
+    private static long prefixOf(byte[] nodeId) {
+        return ((nodeId[0] & 0xFFL) << 24) | ((nodeId[1] & 0xFFL) << 16) | ((nodeId[2] & 0xFFL) << 8) | (nodeId[3] & 0xFFL);
+    }
+    
+    /**
+     * 生成紧邻 target 的NodeId（爬虫常用的“邻居ID”技巧）
+     * 前 prefixBytes 字节取自 target，其余取自本节点ID：异或距离上我们看起来是离 target 最近的节点，
+     * 对方会把后续的 get_peers/announce_peer 发给我们；后缀保持不变，同一个 target 每次得到相同的ID。
+     *
+     * @param target      查询目标（info_hash 或对方节点ID）所在数组
+     * @param targetOff   target 偏移量
+     * @param ownId       本节点ID所在数组
+     * @param ownOff      本节点ID偏移量
+     * @param prefixBytes 从 target 复制的字节数（0~20）
+     * @param out         输出数组
+     * @param outOff      输出偏移量
+     */
+    public static void neighborNodeId(byte[] target, int targetOff, byte[] ownId, int ownOff, int prefixBytes,
+                                      byte[] out, int outOff) {
+        int prefix = Math.max(0, Math.min(NODE_ID_LENGTH, prefixBytes));
+        System.arraycopy(target, targetOff, out, outOff, prefix);
+        System.arraycopy(ownId, ownOff + prefix, out, outOff + prefix, NODE_ID_LENGTH - prefix);
+    }
+    
     /**
      * 生成完全随机的NodeId
      */
@@ -95,15 +189,4 @@ public class NodeIdGenerator {
             return generateRandomNodeId();
         }
     }
-    
-    /**
-     * 字节数组转十六进制字符串（用于日志）
-     */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xff));
-        }
-        return sb.toString();
-    }
 }
@@ -0,0 +1,114 @@
+package cn.lihongjie.dht.mldht.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路由表快照
+ * 把节点已验证可达的联系人保存到存储目录，重启后直接用这些联系人填充路由表，
+ * 不必每次都从 bootstrap 路由器重新走一遍。
+ * <pre>
+ * 文件头：magic(4) | version(1) | 保存时间毫秒(8) | 联系人数(4)
+ * 联系人：nodeId(20) | 地址长度(1, 4或16) | 地址 | 端口(2, 无符号)
+ * </pre>
+ * 先写临时文件再原子替换，进程中途被杀也不会留下半个快照。
+ */
+public final class RoutingSnapshot {
+
+    public static final String FILE_NAME = "contacts.bin";
+
+    private static final int MAGIC = 0x44485443; // "DHTC"
+    private static final byte VERSION = 1;
+    private static final int ID_LENGTH = 20;
+
+    /**
+     * 快照中的一个联系人
+     */
+    public record Contact(byte[] nodeId, InetSocketAddress address) {
+    }
+
+    /**
+     * @param savedAtMillis 保存时间
+     * @param contacts      联系人列表
+     */
+    public record Snapshot(long savedAtMillis, List<Contact> contacts) {
+    }
+
+    private RoutingSnapshot() {
+    }
+
+    /**
+     * 写入快照
+     */
+    public static void write(Path dir, List<Contact> contacts) throws IOException {
+        List<Contact> valid = new ArrayList<>(contacts.size());
+        int size = 4 + 1 + 8 + 4;
+        for (Contact contact : contacts) {
+            InetAddress address = contact.address().getAddress();
+            if (address == null || contact.nodeId() == null || contact.nodeId().length != ID_LENGTH) {
+                continue;
+            }
+            valid.add(contact);
+            size += ID_LENGTH + 1 + address.getAddress().length + 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).put(VERSION).putLong(System.currentTimeMillis()).putInt(valid.size());
+        for (Contact contact : valid) {
+            byte[] address = contact.address().getAddress().getAddress();
+            buf.put(contact.nodeId()).put((byte) address.length).put(address)
+               .putShort((short) contact.address().getPort());
+        }
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+        Files.write(tmp, buf.array());
+        Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取快照
+     *
+     * @return 快照不存在或已损坏时返回 null
+     */
+    public static Snapshot read(Path dir) throws IOException {
+        Path file = dir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buf.getInt() != MAGIC || buf.get() != VERSION) {
+                return null;
+            }
+            long savedAt = buf.getLong();
+            int count = buf.getInt();
+            if (count < 0) {
+                return null;
+            }
+            List<Contact> contacts = new ArrayList<>(Math.min(count, 65536));
+            for (int i = 0; i < count; i++) {
+                byte[] nodeId = new byte[ID_LENGTH];
+                buf.get(nodeId);
+                int length = buf.get();
+                if (length != 4 && length != 16) {
+                    return null;
+                }
+                byte[] address = new byte[length];
+                buf.get(address);
+                int port = buf.getShort() & 0xFFFF;
+                contacts.add(new Contact(nodeId, new InetSocketAddress(InetAddress.getByAddress(address), port)));
+            }
+            return new Snapshot(savedAt, contacts);
+        } catch (BufferUnderflowException | UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点健康判定与重启退避
+ * 节点线程退出视为已停止；启动宽限期过后，没有活跃的 RPC 服务器或连续 stall-seconds 秒没有收到消息视为卡死。
+ * 不健康的节点按指数退避重启，重启失败同样退避，稳定运行 reset-after-seconds 秒后退避恢复到初始值。
+ * check/onRestarted/onRestartFailed 只在监督线程内调用；查询方法可能在统计线程调用，读到的是近似值。
+ */
+public class SupervisorPolicy {
+
+    /**
+     * 单个节点一次检查的采样
+     *
+     * @param nodeIndex     节点序号
+     * @param alive         节点线程是否仍在运行
+     * @param messages      累计处理的消息数
+     * @param activeServers 活跃的 RPC 服务器（UDP socket）数
+     */
+    public record NodeSample(int nodeIndex, boolean alive, long messages, int activeServers) {
+    }
+
+    /**
+     * 需要重启的节点
+     */
+    public record Restart(int nodeIndex, String reason) {
+    }
+
+    /**
+     * 单个节点的监督状态
+     */
+    private static final class NodeState {
+        volatile long startedNanos;
+        long lastMessages;
+        long lastProgressNanos;
+        long nextAttemptNanos;
+        long backoffSeconds;
+        volatile int restarts;
+        volatile int failedRestarts;
+        volatile String lastReason = "none";
+    }
+
+    private final DhtConfig.Supervisor config;
+    private final Map<Integer, NodeState> states = new ConcurrentHashMap<>();
+
+    public SupervisorPolicy(DhtConfig.Supervisor config) {
+        this.config = config;
+    }
+
+    /**
+     * 检查所有节点，返回本轮应当重启的节点；不在采样中的节点（已退役）会被遗忘
+     */
+    public List<Restart> check(List<NodeSample> nodes, long nowNanos) {
+        List<Restart> restarts = new ArrayList<>();
+        Set<Integer> present = new HashSet<>();
+        for (NodeSample node : nodes) {
+            present.add(node.nodeIndex());
+            NodeState state = states.computeIfAbsent(node.nodeIndex(), k -> newState(node, nowNanos));
+            // 计数变小说明同一序号换了新的节点实例（例如分区重分配），同样算作有进展
+            if (node.messages() != state.lastMessages) {
+                state.lastMessages = node.messages();
+                state.lastProgressNanos = nowNanos;
+            }
+            String reason = unhealthyReason(node, state, nowNanos);
+            if (reason == null) {
+                if (nowNanos - state.startedNanos >= TimeUnit.SECONDS.toNanos(config.getResetAfterSeconds())) {
+                    state.backoffSeconds = config.getInitialBackoffSeconds();
+                }
+            } else if (nowNanos >= state.nextAttemptNanos) {
+                restarts.add(new Restart(node.nodeIndex(), reason));
+            }
+        }
+        states.keySet().retainAll(present);
+        return restarts;
+    }
+
+    /**
+     * 节点已重启：计数加一，下一次重启至少等待当前退避时间，退避翻倍
+     */
+    public void onRestarted(Restart restart, long nowNanos) {
+        NodeState state = states.get(restart.nodeIndex());
+        if (state == null) {
+            return;
+        }
+        state.restarts++;
+        state.lastReason = restart.reason();
+        state.startedNanos = nowNanos;
+        state.lastProgressNanos = nowNanos;
+        backOff(state, nowNanos);
+    }
+
+    /**
+     * 重启失败（抛出异常或旧实例无法停止）：不计入重启次数，同样按当前退避推迟下一次尝试，退避翻倍
+     */
+    public void onRestartFailed(Restart restart, long nowNanos) {
+        NodeState state = states.get(restart.nodeIndex());
+        if (state == null) {
+            return;
+        }
+        state.failedRestarts++;
+        state.lastReason = "restart failed: " + restart.reason();
+        backOff(state, nowNanos);
+    }
+
+    private void backOff(NodeState state, long nowNanos) {
+        state.nextAttemptNanos = nowNanos + TimeUnit.SECONDS.toNanos(state.backoffSeconds);
+        state.backoffSeconds = Math.min(config.getMaxBackoffSeconds(), Math.max(1, state.backoffSeconds * 2));
+    }
+
+    /**
+     * 节点自上次（重）启动以来的运行时间（秒），未知节点返回 -1
+     */
+    public long uptimeSeconds(int nodeIndex, long nowNanos) {
+        NodeState state = states.get(nodeIndex);
+        return state == null ? -1 : TimeUnit.NANOSECONDS.toSeconds(nowNanos - state.startedNanos);
+    }
+
+    /**
+     * 节点被重启的次数
+     */
+    public int restarts(int nodeIndex) {
+        NodeState state = states.get(nodeIndex);
+        return state == null ? 0 : state.restarts;
+    }
+
+    /**
+     * 节点重启失败的次数
+     */
+    public int failedRestarts(int nodeIndex) {
+        NodeState state = states.get(nodeIndex);
+        return state == null ? 0 : state.failedRestarts;
+    }
+
+    /**
+     * 节点最近一次被重启的原因
+     */
+    public String lastReason(int nodeIndex) {
+        NodeState state = states.get(nodeIndex);
+        return state == null ? "none" : state.lastReason;
+    }
+
+    private NodeState newState(NodeSample node, long nowNanos) {
+        NodeState state = new NodeState();
+        state.startedNanos = nowNanos;
+        state.lastMessages = node.messages();
+        state.lastProgressNanos = nowNanos;
+        state.backoffSeconds = config.getInitialBackoffSeconds();
+        return state;
+    }
+
+    /**
+     * @return 健康时返回 null
+     */
+    private String unhealthyReason(NodeSample node, NodeState state, long nowNanos) {
+        if (!node.alive()) {
+            return "stopped";
+        }
+        if (nowNanos - state.startedNanos < TimeUnit.SECONDS.toNanos(config.getGraceSeconds())) {
+            return null;
+        }
+        if (node.activeServers() == 0) {
+            return "no RPC servers";
+        }
+        if (nowNanos - state.lastProgressNanos >= TimeUnit.SECONDS.toNanos(config.getStallSeconds())) {
+            return "no messages for " + config.getStallSeconds() + "s";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,185 @@
+package cn.lihongjie.dht.mldht.dedup;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 进程内分片轮转 Bloom Filter
+ * 每个分片保存当前代和上一代两个位图，当前代写满后整体轮转，上一代被丢弃，从而只记住“最近”的 InfoHash。
+ * 上一代命中的元素会被重新写入当前代，热点 InfoHash 在轮转后仍然能命中。
+ * 写位使用 VarHandle 原子或操作，轮转使用 CAS，全程无锁。
+ */
+public class RotatingBloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final int hashCount;
+    private final long bitsPerShard;
+    private final long capacityPerShard;
+
+    private final AtomicLong rotations = new AtomicLong(0);
+
+    /**
+     * @param totalBytes        单代位图总大小（字节），两代合计占用两倍内存
+     * @param shardCount        分片数，会向上取整为2的幂
+     * @param falsePositiveRate 单代写满时的目标误判率
+     */
+    public RotatingBloomFilter(long totalBytes, int shardCount, double falsePositiveRate) {
+        int shardsPow2 = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new Shard[shardsPow2];
+        this.shardMask = shardsPow2 - 1;
+        // 最优哈希函数个数 k = log2(1/p)，每个元素需要 k / ln2 位
+        this.hashCount = Math.max(1, (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2)));
+        long words = Math.max(1, totalBytes / 8 / shardsPow2);
+        this.bitsPerShard = words * 64;
+        this.capacityPerShard = Math.max(1, (long) (bitsPerShard * Math.log(2) / hashCount));
+        for (int i = 0; i < shardsPow2; i++) {
+            shards[i] = new Shard((int) words);
+        }
+    }
+
+    /**
+     * 检查并记录 InfoHash
+     *
+     * @return true 表示最近（可能）出现过；false 表示第一次出现，已写入过滤器
+     */
+    public boolean checkAndPut(InfoHash infoHash) {
+        long h1 = infoHash.highBits();
+        long h2 = infoHash.middleBits() | 1;
+        Shard shard = shards[infoHash.lowBits() & shardMask];
+
+        Generations g = shard.generations.get();
+        if (contains(shard, g, h1, h2)) {
+            return true;
+        }
+        // 写入失败说明并发线程刚刚写入了同一个元素
+        return !insert(shard, g, h1, h2);
+    }
+
+    /**
+     * 只检查不记录，用于确认之后才写入的场景（见 put）
+     *
+     * @return true 表示最近（可能）出现过
+     */
+    public boolean mightContain(InfoHash infoHash) {
+        Shard shard = shards[infoHash.lowBits() & shardMask];
+        return contains(shard, shard.generations.get(), infoHash.highBits(), infoHash.middleBits() | 1);
+    }
+
+    /**
+     * 记录 InfoHash
+     */
+    public void put(InfoHash infoHash) {
+        Shard shard = shards[infoHash.lowBits() & shardMask];
+        insert(shard, shard.generations.get(), infoHash.highBits(), infoHash.middleBits() | 1);
+    }
+
+    private boolean contains(Shard shard, Generations g, long h1, long h2) {
+        if (g.current.contains(h1, h2)) {
+            return true;
+        }
+        if (g.previous != null && g.previous.contains(h1, h2)) {
+            // 热点元素提升到当前代，同样计入当前代的元素数
+            insert(shard, g, h1, h2);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 写入当前代并计数，达到容量时轮转
+     *
+     * @return 是否有位从0变为1
+     */
+    private boolean insert(Shard shard, Generations g, long h1, long h2) {
+        if (!g.current.put(h1, h2)) {
+            return false;
+        }
+        if (g.count.incrementAndGet() >= capacityPerShard
+                && shard.generations.compareAndSet(g, new Generations(new BitArray(g.current.length()), g.current))) {
+            rotations.incrementAndGet();
+        }
+        return true;
+    }
+
+    public long getRotations() {
+        return rotations.get();
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 每代可容纳的元素总数
+     */
+    public long getCapacity() {
+        return capacityPerShard * shards.length;
+    }
+
+    private final class Shard {
+        final AtomicReference<Generations> generations;
+
+        Shard(int words) {
+            this.generations = new AtomicReference<>(new Generations(new BitArray(words), null));
+        }
+    }
+
+    private static final class Generations {
+        final BitArray current;
+        final BitArray previous;
+        final AtomicLong count = new AtomicLong(0);
+
+        Generations(BitArray current, BitArray previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    private final class BitArray {
+        final long[] words;
+
+        BitArray(int words) {
+            this.words = new long[words];
+        }
+
+        int length() {
+            return words.length;
+        }
+
+        boolean contains(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerShard);
+                long word = (long) WORDS.getOpaque(words, (int) (bit >>> 6));
+                if ((word & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+
+        /**
+         * @return 是否有位从0变为1（即元素之前不存在）
+         */
+        boolean put(long h1, long h2) {
+            boolean changed = false;
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerShard);
+                long mask = 1L << bit;
+                long old = (long) WORDS.getAndBitwiseOr(words, (int) (bit >>> 6), mask);
+                changed |= (old & mask) == 0;
+                combined += h2;
+            }
+            return changed;
+        }
+    }
+}
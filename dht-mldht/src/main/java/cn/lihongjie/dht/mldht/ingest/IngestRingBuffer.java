@@ -0,0 +1,153 @@
+package cn.lihongjie.dht.mldht.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界无锁环形缓冲区（多生产者/多消费者，基于每槽位序号）
+ * 生产者是 DHT 收包线程，submit 永不阻塞：写满时按 OverflowPolicy 丢弃元素并计数。
+ * 消费者是发布线程，poll 为空时返回 null。
+ */
+public class IngestRingBuffer<E> {
+
+    /**
+     * DROP_OLDEST 在竞争下腾位置的最大重试次数，超过后按丢弃新元素处理
+     */
+    private static final int MAX_EVICT_ATTEMPTS = 4;
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong head = new AtomicLong(0);
+
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final AtomicLong droppedOldest = new AtomicLong(0);
+    private final AtomicLong droppedNew = new AtomicLong(0);
+    private final AtomicLong overflowSequence = new AtomicLong(0);
+
+    /**
+     * @param capacity   容量，会向上取整为2的幂
+     * @param policy     写满时的处理策略
+     * @param sampleRate SAMPLE 策略下每多少个溢出元素保留一个
+     */
+    public IngestRingBuffer(int capacity, OverflowPolicy policy, int sampleRate) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 提交元素，永不阻塞
+     *
+     * @return 元素是否进入缓冲区
+     */
+    public boolean submit(E element) {
+        submitted.incrementAndGet();
+        if (offer(element)) {
+            return true;
+        }
+        boolean evict = switch (policy) {
+            case DROP_OLDEST -> true;
+            case DROP_NEW -> false;
+            case SAMPLE -> overflowSequence.getAndIncrement() % sampleRate == 0;
+        };
+        if (evict) {
+            for (int i = 0; i < MAX_EVICT_ATTEMPTS; i++) {
+                if (poll() != null) {
+                    droppedOldest.incrementAndGet();
+                }
+                if (offer(element)) {
+                    return true;
+                }
+            }
+        }
+        droppedNew.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 尝试写入，缓冲区已满时返回 false
+     */
+    public boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.getAcquire(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = element;
+                    sequences.setRelease(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出最旧的元素，缓冲区为空时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.getAcquire(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.setRelease(index, pos + mask + 1);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * 当前元素个数（并发下为近似值）
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getDroppedOldest() {
+        return droppedOldest.get();
+    }
+
+    public long getDroppedNew() {
+        return droppedNew.get();
+    }
+}
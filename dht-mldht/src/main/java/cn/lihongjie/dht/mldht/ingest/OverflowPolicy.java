@@ -0,0 +1,31 @@
+package cn.lihongjie.dht.mldht.ingest;
+
+import java.util.Locale;
+
+/**
+ * 环形缓冲区写满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 丢弃最旧的元素，为新元素腾出位置
+     */
+    DROP_OLDEST,
+
+    /**
+     * 丢弃新元素
+     */
+    DROP_NEW,
+
+    /**
+     * 每 sampleRate 个溢出元素保留一个（丢弃最旧的腾出位置），其余丢弃
+     */
+    SAMPLE;
+
+    /**
+     * 解析配置值，支持 drop-oldest / DROP_OLDEST 两种写法
+     */
+    public static OverflowPolicy parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,134 @@
+package cn.lihongjie.dht.mldht.ingest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按 key 哈希到固定槽位的令牌桶表（无锁，内存固定）
+ * 每个槽位用一个 long 同时保存上次补充时间和剩余令牌，CAS 更新，不需要为每个来源分配对象。
+ * 不同 key 落到同一槽位时共用一个桶；表足够大时碰撞很少，代价只是偶尔多限流一点。
+ * <pre>
+ * 槽位：上次补充时间毫秒(高44位, 相对创建时间) | 剩余令牌 x 1000(低20位)
+ * </pre>
+ */
+public class TokenBucketTable {
+
+    /**
+     * 令牌以千分之一为单位保存，突发容量上限为 1000 个令牌
+     */
+    public static final int MAX_BURST = 1000;
+
+    private static final int TOKEN_BITS = 20;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final int SCALE = 1000;
+
+    /**
+     * 被限流的来源及次数
+     *
+     * @param label 该槽位第一次被限流时记录的来源名称，可能为空
+     * @param count 限流次数
+     */
+    public record Offender(String label, long count) {
+    }
+
+    private final AtomicLongArray buckets;
+    private final AtomicLongArray throttled;
+    /**
+     * 槽位第一次被限流时的来源名称，用于输出限流最多的来源
+     */
+    private final AtomicReferenceArray<String> labels;
+    private final int mask;
+    private final long ratePerSecond;
+    private final long burst;
+    private final long baseMillis;
+
+    /**
+     * @param size          槽位数，会向上取整为2的幂
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量（1 ~ MAX_BURST）
+     * @param nowMillis     当前时间
+     */
+    public TokenBucketTable(int size, int ratePerSecond, int burst, long nowMillis) {
+        if (size <= 0 || ratePerSecond <= 0 || burst <= 0 || burst > MAX_BURST) {
+            throw new IllegalArgumentException("Invalid token bucket settings");
+        }
+        int slots = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.buckets = new AtomicLongArray(slots);
+        this.throttled = new AtomicLongArray(slots);
+        this.labels = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = (long) burst * SCALE;
+        this.baseMillis = nowMillis;
+        long full = pack(0, this.burst);
+        for (int i = 0; i < slots; i++) {
+            buckets.set(i, full);
+        }
+    }
+
+    /**
+     * 尝试取一个令牌
+     *
+     * @param key   来源（如 IPv4 地址或网段）
+     * @param label 被限流时用于统计的来源名称，为空时不记录
+     * @return false 表示被限流
+     */
+    public boolean tryAcquire(long key, String label, long nowMillis) {
+        int slot = slot(key);
+        long elapsedBase = Math.max(0, nowMillis - baseMillis);
+        while (true) {
+            long current = buckets.get(slot);
+            long last = current >>> TOKEN_BITS;
+            long tokens = current & TOKEN_MASK;
+            if (elapsedBase > last) {
+                // 每毫秒补充 rate 个千分之一令牌
+                tokens = Math.min(burst, tokens + (elapsedBase - last) * ratePerSecond);
+                last = elapsedBase;
+            }
+            if (tokens < SCALE) {
+                // 补充按时间差惰性计算，被限流时不需要写回
+                if (throttled.getAndIncrement(slot) == 0 && label != null) {
+                    labels.set(slot, label);
+                }
+                return false;
+            }
+            if (buckets.compareAndSet(slot, current, pack(last, tokens - SCALE))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 限流次数最多的来源，按次数降序
+     */
+    public List<Offender> topThrottled(int limit) {
+        List<Offender> offenders = new ArrayList<>();
+        for (int i = 0; i < throttled.length(); i++) {
+            long count = throttled.get(i);
+            if (count > 0) {
+                offenders.add(new Offender(labels.get(i), count));
+            }
+        }
+        offenders.sort(Comparator.comparingLong(Offender::count).reversed());
+        return offenders.size() > limit ? new ArrayList<>(offenders.subList(0, limit)) : offenders;
+    }
+
+    /**
+     * 槽位数
+     */
+    public int size() {
+        return buckets.length();
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static long pack(long millis, long tokens) {
+        return millis << TOKEN_BITS | tokens;
+    }
+}
@@ -0,0 +1,173 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 最近联系人环形表
+ * 爬虫不需要完整的路由表，只保留最近见过的节点用于回复 nodes 和继续遍历网络。
+ * 数据存放在定长的基本类型数组中，满了以后覆盖最旧的记录。非线程安全，只在节点事件循环内访问。
+ */
+public final class ContactTable {
+
+    private static final int ID_LENGTH = KrpcMessage.ID_LENGTH;
+
+    private final int capacity;
+    private final byte[] ids;
+    private final int[] ips;
+    private final char[] ports;
+
+    private int writeIndex;
+    private int size;
+    private int readCursor;
+    private int walkCursor;
+    private int harvestCursor;
+
+    public ContactTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Contact table capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.ids = new byte[capacity * ID_LENGTH];
+        this.ips = new int[capacity];
+        this.ports = new char[capacity];
+    }
+
+    /**
+     * 添加联系人，忽略端口或地址明显非法的记录
+     */
+    public void add(byte[] src, int idOff, int ip, int port) {
+        if (ip == 0 || port <= 0 || port > 0xffff) {
+            return;
+        }
+        int slot = writeIndex;
+        System.arraycopy(src, idOff, ids, slot * ID_LENGTH, ID_LENGTH);
+        ips[slot] = ip;
+        ports[slot] = (char) port;
+        writeIndex = (slot + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * 解析 compact node info 列表并加入表中
+     *
+     * @return 加入的节点数
+     */
+    public int addCompactNodes(byte[] buf, int off, int len) {
+        int count = len / KrpcEncoder.COMPACT_NODE_LENGTH;
+        for (int i = 0; i < count; i++) {
+            int p = off + i * KrpcEncoder.COMPACT_NODE_LENGTH;
+            int ip = ((buf[p + 20] & 0xff) << 24) | ((buf[p + 21] & 0xff) << 16)
+                    | ((buf[p + 22] & 0xff) << 8) | (buf[p + 23] & 0xff);
+            int port = ((buf[p + 24] & 0xff) << 8) | (buf[p + 25] & 0xff);
+            add(buf, p, ip, port);
+        }
+        return count;
+    }
+
+    /**
+     * 以 compact node info 格式写出 count 个联系人（轮转选取，使不同请求拿到不同节点）
+     */
+    public void writeCompact(ByteBuffer out, int count) {
+        for (int i = 0; i < count && size > 0; i++) {
+            int slot = readCursor++ % size;
+            if (readCursor < 0) {
+                readCursor = 0;
+            }
+            out.put(ids, slot * ID_LENGTH, ID_LENGTH);
+            out.putInt(ips[slot]);
+            out.putChar(ports[slot]);
+        }
+    }
+
+    /**
+     * 轮询返回下一个用于遍历的联系人下标，表为空时返回 -1
+     */
+    public int nextForWalk() {
+        if (size == 0) {
+            return -1;
+        }
+        int slot = walkCursor++ % size;
+        if (walkCursor < 0) {
+            walkCursor = 0;
+        }
+        return slot;
+    }
+
+    /**
+     * 与 nextForWalk 相同，但使用独立游标，供 sample_infohashes 采集使用
+     */
+    public int nextForHarvest() {
+        if (size == 0) {
+            return -1;
+        }
+        int slot = harvestCursor++ % size;
+        if (harvestCursor < 0) {
+            harvestCursor = 0;
+        }
+        return slot;
+    }
+
+    /**
+     * 找出 ID 与 target 最接近的至多 k 个联系人（按 ID 高8字节的异或距离），下标按距离从近到远写入 out
+     *
+     * @return 写入的联系人数
+     */
+    public int closest(byte[] target, int off, int k, int[] out) {
+        int limit = Math.min(k, out.length);
+        if (limit <= 0) {
+            return 0;
+        }
+        long key = prefix(target, off);
+        long[] distances = new long[limit];
+        int found = 0;
+        for (int slot = 0; slot < size; slot++) {
+            long distance = prefix(ids, slot * ID_LENGTH) ^ key;
+            if (found == limit && Long.compareUnsigned(distance, distances[limit - 1]) >= 0) {
+                continue;
+            }
+            int i = found == limit ? limit - 1 : found++;
+            while (i > 0 && Long.compareUnsigned(distances[i - 1], distance) > 0) {
+                distances[i] = distances[i - 1];
+                out[i] = out[i - 1];
+                i--;
+            }
+            distances[i] = distance;
+            out[i] = slot;
+        }
+        return found;
+    }
+
+    static long prefix(byte[] buf, int off) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buf[off + i] & 0xff);
+        }
+        return value;
+    }
+
+    public int ipAt(int slot) {
+        return ips[slot];
+    }
+
+    public int portAt(int slot) {
+        return ports[slot];
+    }
+
+    public byte[] idArray() {
+        return ids;
+    }
+
+    public int idOffset(int slot) {
+        return slot * ID_LENGTH;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,154 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个 socket 上的虚拟节点身份表
+ * 所有节点ID按无符号字节序排好后平铺在一个数组里，编码器直接按偏移量读取，不产生额外对象。
+ * 收到带 target 的查询时用离 target 最近的身份回复，主动查询时轮流使用各个身份，
+ * 事务ID里带上身份序号，以便把响应归属到发出查询的身份。
+ * 只在事件循环线程内修改，统计读取允许轻微不一致。
+ */
+public class IdentityTable {
+
+    /** 事务ID中身份序号占两个字节 */
+    public static final int MAX_IDENTITIES = 0xFFFF;
+
+    private final byte[] ids;
+    private final int count;
+    private final int[] responses;
+    private final int[] announces;
+    private int cursor;
+
+    public IdentityTable(List<byte[]> nodeIds) {
+        if (nodeIds.isEmpty() || nodeIds.size() > MAX_IDENTITIES) {
+            throw new IllegalArgumentException("Identity count must be between 1 and " + MAX_IDENTITIES);
+        }
+        List<byte[]> sorted = new ArrayList<>(nodeIds);
+        sorted.sort(Arrays::compareUnsigned);
+        this.count = sorted.size();
+        this.ids = new byte[count * KrpcMessage.ID_LENGTH];
+        for (int i = 0; i < count; i++) {
+            byte[] id = sorted.get(i);
+            if (id.length != KrpcMessage.ID_LENGTH) {
+                throw new IllegalArgumentException("Node id must be 20 bytes");
+            }
+            System.arraycopy(id, 0, ids, i * KrpcMessage.ID_LENGTH, KrpcMessage.ID_LENGTH);
+        }
+        this.responses = new int[count];
+        this.announces = new int[count];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 平铺的ID数组，配合 offset(index) 传给编码器
+     */
+    public byte[] ids() {
+        return ids;
+    }
+
+    public int offset(int index) {
+        return index * KrpcMessage.ID_LENGTH;
+    }
+
+    /**
+     * 与 target 公共前缀最长的身份（近似异或距离最近）
+     * 有序数组中与 target 公共前缀最长的元素一定与 target 的插入位置相邻，只需比较两侧邻居。
+     */
+    public int closest(byte[] buf, int off) {
+        if (count == 1) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, buf, off) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == 0) {
+            return 0;
+        }
+        if (lo == count) {
+            return count - 1;
+        }
+        return closerOf(lo - 1, lo, buf, off);
+    }
+
+    /**
+     * 轮流返回用于主动查询的身份
+     */
+    public int nextForQuery() {
+        int index = cursor;
+        cursor = index + 1 == count ? 0 : index + 1;
+        return index;
+    }
+
+    public void onResponse(int index) {
+        if (index >= 0 && index < count) {
+            responses[index]++;
+        }
+    }
+
+    public void onAnnounce(int index) {
+        announces[index]++;
+    }
+
+    public int responsesAt(int index) {
+        return responses[index];
+    }
+
+    public int announcesAt(int index) {
+        return announces[index];
+    }
+
+    /**
+     * 收到过响应的身份数
+     */
+    public int respondingIdentities() {
+        return countNonZero(responses);
+    }
+
+    /**
+     * 收到过 announce_peer 的身份数
+     */
+    public int announcedIdentities() {
+        return countNonZero(announces);
+    }
+
+    private static int countNonZero(int[] values) {
+        int n = 0;
+        for (int v : values) {
+            if (v != 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private int compare(int index, byte[] buf, int off) {
+        int base = offset(index);
+        return Arrays.compareUnsigned(ids, base, base + KrpcMessage.ID_LENGTH, buf, off, off + KrpcMessage.ID_LENGTH);
+    }
+
+    private int closerOf(int a, int b, byte[] buf, int off) {
+        int baseA = offset(a);
+        int baseB = offset(b);
+        for (int i = 0; i < KrpcMessage.ID_LENGTH; i++) {
+            int da = (ids[baseA + i] ^ buf[off + i]) & 0xFF;
+            int db = (ids[baseB + i] ^ buf[off + i]) & 0xFF;
+            if (da != db) {
+                return da < db ? a : b;
+            }
+        }
+        return a;
+    }
+}
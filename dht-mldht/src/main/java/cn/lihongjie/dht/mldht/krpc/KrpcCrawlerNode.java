@@ -0,0 +1,651 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.common.util.HashUtils;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
+import cn.lihongjie.dht.mldht.core.DiscoveryTracker;
+import cn.lihongjie.dht.mldht.core.NodeIdGenerator;
+import cn.lihongjie.dht.mldht.metrics.NodeMetrics;
+import cn.lihongjie.dht.mldht.service.InfoHashIngestQueue;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 轻量 KRPC 爬虫节点
+ * 单个 DatagramChannel + 单线程事件循环，只实现爬虫需要的协议子集：
+ * 回复 ping / find_node / get_peers / announce_peer，并持续向已知节点发送 find_node 扩散自身。
+ * 启用采集时还会按独立预算向已知节点发送 BEP 51 sample_infohashes 主动获取 InfoHash。
+ * 收到的 get_peers 的 info_hash 在节点本地去重后作为低可信度来源发布。
+ * 配置了 SwarmScraper 时还会为新发现的 InfoHash 执行 BEP 33 scrape，估计 swarm 大小。
+ * 不维护路由表、不做存储，收发缓冲区与解码器全部复用。
+ * socket 只绑定 IPv4（紧凑节点格式和 announce token 都按 IPv4 地址计算）。
+ * 一个 socket 可以承载多个虚拟节点身份（见 IdentityTable），announce 的捕获量随身份数而不是端口数增长。
+ */
+@Slf4j
+public class KrpcCrawlerNode implements CrawlerNode {
+
+    private static final int MAX_PACKET_SIZE = 1500;
+    private static final int MAX_RECEIVE_BATCH = 256;
+    private static final int TICK_MILLIS = 10;
+    private static final int NODES_PER_RESPONSE = 8;
+    private static final long BOOTSTRAP_INTERVAL_MILLIS = 5000;
+    private static final byte TX_FIND_NODE = 'f';
+    private static final byte TX_SAMPLE = 's';
+    private static final byte TX_SCRAPE = 'c';
+
+    @Getter
+    private final int nodeIndex;
+    @Getter
+    private final int port;
+    @Getter
+    private final IdentityTable identities;
+    private final List<String> bootstrapNodes;
+    private final InfoHashIngestQueue ingestQueue;
+    private final DhtConfig.Krpc settings;
+    @Getter
+    private final SampleHarvester harvester;
+    @Getter
+    private final DiscoveryTracker discoveryTracker;
+    @Getter
+    private final SwarmScraper scraper;
+    /** 节点指标，网络规模按第一个身份估计，announce 距离按应答身份计算 */
+    @Getter
+    private final NodeMetrics metrics;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    @Getter
+    private final AtomicLong discoveredCount = new AtomicLong(0);
+    @Getter
+    private final AtomicLong messageCount = new AtomicLong(0);
+    @Getter
+    private final AtomicLong packetsIn = new AtomicLong(0);
+    @Getter
+    private final AtomicLong packetsOut = new AtomicLong(0);
+    @Getter
+    private final AtomicLong sendDropped = new AtomicLong(0);
+    @Getter
+    private final AtomicLong invalidPackets = new AtomicLong(0);
+    @Getter
+    private final AtomicLong tokenRejected = new AtomicLong(0);
+    @Getter
+    private final AtomicLong neighborReplies = new AtomicLong(0);
+    /** 是否用紧邻查询目标的ID回复 */
+    @Getter
+    private final boolean neighborMode;
+
+    // 以下字段只在事件循环线程内访问
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final KrpcMessage message = new KrpcMessage();
+    private final ContactTable contacts;
+    private final TokenManager tokens;
+    private final byte[] walkTarget = new byte[KrpcMessage.ID_LENGTH];
+    private final byte[] neighborId = new byte[KrpcMessage.ID_LENGTH];
+    private final byte[] txBuffer = new byte[4];
+    /** scrape 事务ID：类型 | 查找序号(4字节)，长度与其他事务不同，不计入身份响应统计 */
+    private final byte[] scrapeTxBuffer = new byte[5];
+    private final List<InetSocketAddress> bootstrapAddresses = new ArrayList<>();
+    private byte txSequence;
+    private double walkCredit;
+    private long lastTick;
+    private long lastBootstrap;
+
+    private volatile DatagramChannel channel;
+    private volatile Selector selector;
+
+    public KrpcCrawlerNode(int nodeIndex, int port, byte[] nodeId, List<String> bootstrapNodes,
+                           InfoHashIngestQueue ingestQueue, DhtConfig.Krpc settings, DhtConfig.Harvest harvest,
+                           DhtConfig.Lookup lookup, SwarmScraper scraper) {
+        this(nodeIndex, port, List.of(nodeId), bootstrapNodes, ingestQueue, settings, harvest, lookup, scraper);
+    }
+
+    /**
+     * @param nodeIds 该 socket 承载的所有虚拟节点ID
+     * @param scraper BEP 33 scrape 采集器，为 null 时不做 scrape
+     */
+    public KrpcCrawlerNode(int nodeIndex, int port, List<byte[]> nodeIds, List<String> bootstrapNodes,
+                           InfoHashIngestQueue ingestQueue, DhtConfig.Krpc settings, DhtConfig.Harvest harvest,
+                           DhtConfig.Lookup lookup, SwarmScraper scraper) {
+        this.nodeIndex = nodeIndex;
+        this.port = port;
+        this.identities = new IdentityTable(nodeIds);
+        this.bootstrapNodes = bootstrapNodes;
+        this.ingestQueue = ingestQueue;
+        this.settings = settings;
+        this.neighborMode = settings.getNodeIdMode().isNeighbor(nodeIndex);
+        this.contacts = new ContactTable(settings.getContactCapacity());
+        this.tokens = new TokenManager(settings.getTokenRotateSeconds() * 1000L);
+        this.harvester = harvest.isEnabled() ? new SampleHarvester(harvest) : null;
+        this.discoveryTracker = lookup.isEnabled()
+                ? new DiscoveryTracker(lookup.getFilterSizeKb() * 1024L, lookup.getFalsePositiveRate())
+                : null;
+        this.scraper = scraper;
+        this.metrics = new NodeMetrics(identities.ids(), 0);
+    }
+
+    /**
+     * 启动节点并运行事件循环（阻塞当前线程）
+     */
+    @Override
+    public void start() throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("KRPC node {} is already running on port {}", nodeIndex, port);
+            return;
+        }
+
+        // 打开和绑定失败（如端口被占用）同样要关闭已打开的 channel/selector 并复位 running，监督器重试时才不会泄漏
+        try {
+            channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, settings.getSocketBufferBytes());
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, settings.getSocketBufferBytes());
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+
+            resolveBootstrapNodes();
+            log.info("KRPC Node {} started - Port: {}, NodeId: {}, Identities: {}, Bootstrap: {}",
+                     nodeIndex, port, HashUtils.bytesToHex(Arrays.copyOf(identities.ids(), KrpcMessage.ID_LENGTH)),
+                     identities.size(), bootstrapAddresses.size());
+
+            lastTick = System.currentTimeMillis();
+            if (scraper != null) {
+                scraper.activate();
+            }
+            runEventLoop();
+        } finally {
+            running.set(false);
+            if (scraper != null) {
+                scraper.deactivate();
+            }
+            closeQuietly();
+        }
+    }
+
+    private void runEventLoop() {
+        try {
+            while (running.get()) {
+                selector.select(TICK_MILLIS);
+                selector.selectedKeys().clear();
+                drainReceive();
+                tick(System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            if (running.get()) {
+                log.error("KRPC node {} event loop failed", nodeIndex, e);
+            }
+        }
+    }
+
+    private void drainReceive() throws IOException {
+        for (int i = 0; i < MAX_RECEIVE_BATCH; i++) {
+            in.clear();
+            SocketAddress from = channel.receive(in);
+            if (from == null) {
+                return;
+            }
+            packetsIn.incrementAndGet();
+            try {
+                handlePacket((InetSocketAddress) from, in.position());
+            } catch (RuntimeException e) {
+                invalidPackets.incrementAndGet();
+                log.debug("KRPC node {} failed to handle packet from {}: {}", nodeIndex, from, e.getMessage());
+            }
+        }
+    }
+
+    private void handlePacket(InetSocketAddress from, int length) throws IOException {
+        InetAddress address = from.getAddress();
+        if (!(address instanceof Inet4Address)) {
+            // 非 IPv4 发送方无法绑定 token，也放不进紧凑节点格式
+            invalidPackets.incrementAndGet();
+            return;
+        }
+        if (!message.parse(in.array(), length)) {
+            invalidPackets.incrementAndGet();
+            return;
+        }
+        messageCount.incrementAndGet();
+        recordMetrics();
+
+        // Inet4Address.hashCode() 即为大端序的 IPv4 地址，避免 getAddress() 分配数组
+        int ip = address.hashCode();
+        byte[] buf = message.buffer();
+
+        if (message.type() == KrpcMessage.TYPE_RESPONSE) {
+            identities.onResponse(identityOf(buf));
+            if (message.nodesOffset() >= 0) {
+                contacts.addCompactNodes(buf, message.nodesOffset(), message.nodesLength());
+            }
+            if (message.idOffset() >= 0) {
+                contacts.add(buf, message.idOffset(), ip, from.getPort());
+            }
+            if (isSampleTransaction(buf)) {
+                handleSamples(from, ip, length);
+            } else if (isScrapeTransaction(buf)) {
+                scraper.onResponse(message, lookupIdOf(buf), length);
+            }
+            return;
+        }
+        if (message.type() == KrpcMessage.TYPE_ERROR) {
+            if (isSampleTransaction(buf)) {
+                harvester.onError(ip, from.getPort(), System.currentTimeMillis(), length);
+            } else if (isScrapeTransaction(buf)) {
+                scraper.onError(lookupIdOf(buf), length);
+            }
+            return;
+        }
+        if (message.type() != KrpcMessage.TYPE_QUERY) {
+            return;
+        }
+
+        if (message.idOffset() >= 0) {
+            contacts.add(buf, message.idOffset(), ip, from.getPort());
+        }
+
+        int tOff = message.transactionOffset();
+        int tLen = message.transactionLength();
+        // 用离 target（ping 时为对方ID）最近的身份回复，对方会把该身份记入路由表对应的桶
+        int identity = respondingIdentity(buf);
+        byte[] ids = identities.ids();
+        int idOff = identities.offset(identity);
+        if (neighborMode) {
+            int targetOff = message.targetOffset() >= 0 ? message.targetOffset() : message.idOffset();
+            if (targetOff >= 0) {
+                NodeIdGenerator.neighborNodeId(buf, targetOff, ids, idOff, settings.getNeighborPrefixBytes(),
+                                               neighborId, 0);
+                ids = neighborId;
+                idOff = 0;
+                neighborReplies.incrementAndGet();
+            }
+        }
+        switch (message.method()) {
+            case KrpcMessage.METHOD_PING -> {
+                KrpcEncoder.writeIdResponse(out, buf, tOff, tLen, ids, idOff);
+                send(from);
+            }
+            case KrpcMessage.METHOD_FIND_NODE -> {
+                KrpcEncoder.writeNodesResponse(out, buf, tOff, tLen, ids, idOff,
+                        contacts, NODES_PER_RESPONSE, false, 0);
+                send(from);
+            }
+            case KrpcMessage.METHOD_GET_PEERS -> {
+                KrpcEncoder.writeNodesResponse(out, buf, tOff, tLen, ids, idOff,
+                        contacts, NODES_PER_RESPONSE, true, tokens.tokenFor(ip));
+                send(from);
+                if (discoveryTracker != null && message.targetOffset() >= 0) {
+                    InfoHash infoHash = InfoHash.of(buf, message.targetOffset());
+                    if (discoveryTracker.onLookup(infoHash)) {
+                        onInfoHashDiscovered(infoHash, from.getAddress(), from.getPort(), DiscoverySource.LOOKUP);
+                    }
+                }
+            }
+            case KrpcMessage.METHOD_ANNOUNCE_PEER -> handleAnnounce(from, ip, buf, tOff, tLen, identity, ids, idOff);
+            default -> {
+                // 爬虫不处理其他查询
+            }
+        }
+    }
+
+    private void handleAnnounce(InetSocketAddress from, int ip, byte[] buf, int tOff, int tLen,
+                                int identity, byte[] ids, int idOff) throws IOException {
+        if (message.targetOffset() < 0) {
+            invalidPackets.incrementAndGet();
+            return;
+        }
+        if (settings.isVerifyTokens()
+                && !tokens.isValid(ip, buf, message.tokenOffset(), message.tokenLength())) {
+            tokenRejected.incrementAndGet();
+            return;
+        }
+        int peerPort = message.impliedPort() || message.port() <= 0 ? from.getPort() : message.port();
+        identities.onAnnounce(identity);
+        metrics.onAnnounce(buf, message.targetOffset(), identities.ids(), identities.offset(identity));
+        InfoHash infoHash = InfoHash.of(buf, message.targetOffset());
+        if (discoveryTracker != null) {
+            discoveryTracker.onAnnounce(infoHash);
+        }
+        onInfoHashDiscovered(infoHash, from.getAddress(), peerPort, DiscoverySource.ANNOUNCE);
+
+        KrpcEncoder.writeIdResponse(out, buf, tOff, tLen, ids, idOff);
+        send(from);
+    }
+
+    /**
+     * 按消息类型计数，并记录发送方的节点ID
+     */
+    private void recordMetrics() {
+        NodeMetrics.MessageKind kind = switch (message.type()) {
+            case KrpcMessage.TYPE_RESPONSE -> NodeMetrics.MessageKind.RESPONSE;
+            case KrpcMessage.TYPE_ERROR -> NodeMetrics.MessageKind.ERROR;
+            default -> switch (message.method()) {
+                case KrpcMessage.METHOD_PING -> NodeMetrics.MessageKind.PING;
+                case KrpcMessage.METHOD_FIND_NODE -> NodeMetrics.MessageKind.FIND_NODE;
+                case KrpcMessage.METHOD_GET_PEERS -> NodeMetrics.MessageKind.GET_PEERS;
+                case KrpcMessage.METHOD_ANNOUNCE_PEER -> NodeMetrics.MessageKind.ANNOUNCE_PEER;
+                case KrpcMessage.METHOD_SAMPLE_INFOHASHES -> NodeMetrics.MessageKind.SAMPLE_INFOHASHES;
+                default -> NodeMetrics.MessageKind.OTHER_QUERY;
+            };
+        };
+        metrics.onMessage(kind);
+        if (message.idOffset() >= 0) {
+            metrics.onNodeSeen(message.buffer(), message.idOffset());
+        }
+    }
+
+    private int respondingIdentity(byte[] buf) {
+        if (identities.size() == 1) {
+            return 0;
+        }
+        if (message.targetOffset() >= 0) {
+            return identities.closest(buf, message.targetOffset());
+        }
+        return message.idOffset() >= 0 ? identities.closest(buf, message.idOffset()) : 0;
+    }
+
+    /**
+     * 从事务ID第3、4字节取出发出查询的身份序号，不是本节点发出的事务返回 -1
+     */
+    private int identityOf(byte[] buf) {
+        if (message.transactionLength() != txBuffer.length) {
+            return -1;
+        }
+        int tOff = message.transactionOffset();
+        return ((buf[tOff + 2] & 0xFF) << 8) | (buf[tOff + 3] & 0xFF);
+    }
+
+    private boolean isSampleTransaction(byte[] buf) {
+        return harvester != null && message.transactionLength() == txBuffer.length
+                && buf[message.transactionOffset()] == TX_SAMPLE;
+    }
+
+    private boolean isScrapeTransaction(byte[] buf) {
+        return scraper != null && message.transactionLength() == scrapeTxBuffer.length
+                && buf[message.transactionOffset()] == TX_SCRAPE;
+    }
+
+    private int lookupIdOf(byte[] buf) {
+        int tOff = message.transactionOffset();
+        return ((buf[tOff + 1] & 0xFF) << 24) | ((buf[tOff + 2] & 0xFF) << 16)
+                | ((buf[tOff + 3] & 0xFF) << 8) | (buf[tOff + 4] & 0xFF);
+    }
+
+    /**
+     * sample_infohashes 响应：更新对方 interval，并发布 samples 中的 InfoHash
+     */
+    private void handleSamples(InetSocketAddress from, int ip, int length) {
+        int count = harvester.onResponse(message, ip, from.getPort(), System.currentTimeMillis(), length);
+        if (count == 0) {
+            return;
+        }
+        byte[] buf = message.buffer();
+        String sourceIp = from.getAddress().getHostAddress();
+        Instant now = Instant.now();
+        for (int i = 0; i < count; i++) {
+            ingestQueue.submit(InfoHashMessage.builder()
+                .infoHash(InfoHash.of(buf, message.samplesOffset() + i * KrpcMessage.ID_LENGTH))
+                .discoveredAt(now)
+                .sourceIp(sourceIp)
+                .sourcePort(from.getPort())
+                .source(DiscoverySource.SAMPLE)
+                .confidence(DiscoverySource.SAMPLE.confidence())
+                .build(), nodeIndex);
+        }
+    }
+
+    /**
+     * 周期任务：轮换 token 密钥、按速率向已知节点发送 find_node，联系人为空时重新 bootstrap，推进 scrape
+     */
+    private void tick(long now) throws IOException {
+        tokens.maybeRotate(now);
+
+        long elapsed = now - lastTick;
+        lastTick = now;
+        walkCredit = Math.min(walkCredit + settings.getWalkRate() * elapsed / 1000.0, settings.getWalkRate());
+
+        if (contacts.size() == 0) {
+            if (now - lastBootstrap >= BOOTSTRAP_INTERVAL_MILLIS) {
+                lastBootstrap = now;
+                for (InetSocketAddress address : bootstrapAddresses) {
+                    sendFindNode(address);
+                }
+            }
+            return;
+        }
+
+        while (walkCredit >= 1) {
+            walkCredit -= 1;
+            int slot = contacts.nextForWalk();
+            if (slot < 0) {
+                break;
+            }
+            InetSocketAddress target = toSocketAddress(contacts.ipAt(slot), contacts.portAt(slot));
+            if (target != null) {
+                sendFindNode(target);
+            }
+        }
+
+        if (harvester != null) {
+            harvest(now);
+        }
+        if (scraper != null) {
+            scraper.tick(now, contacts, this::sendScrape);
+        }
+    }
+
+    /**
+     * 在采集预算内向已知节点发送 sample_infohashes，跳过仍在 interval 内的节点
+     */
+    private void harvest(long now) throws IOException {
+        int budget = harvester.refill(now);
+        // 限制每次扫描的联系人数，避免大部分节点都在 interval 内时空转
+        int attempts = Math.min(contacts.size(), budget * 4);
+        for (int i = 0; i < attempts && budget > 0; i++) {
+            int slot = contacts.nextForHarvest();
+            if (slot < 0) {
+                break;
+            }
+            if (!harvester.tryReserve(contacts.ipAt(slot), contacts.portAt(slot), now)) {
+                continue;
+            }
+            budget--;
+            InetSocketAddress target = toSocketAddress(contacts.ipAt(slot), contacts.portAt(slot));
+            if (target != null) {
+                sendSampleInfohashes(target);
+            }
+        }
+    }
+
+    private void sendSampleInfohashes(InetSocketAddress to) throws IOException {
+        // 随机 target 使响应中的 nodes 覆盖整个 keyspace
+        ThreadLocalRandom.current().nextBytes(walkTarget);
+        int identity = nextTransaction(TX_SAMPLE);
+        KrpcEncoder.writeSampleInfohashesQuery(out, txBuffer, 0, txBuffer.length,
+                identities.ids(), identities.offset(identity), walkTarget, 0);
+        int bytes = out.remaining();
+        send(to);
+        harvester.onQuerySent(bytes);
+    }
+
+    /**
+     * 向 scrape 查找的候选节点发送带 scrape=1 的 get_peers
+     */
+    private int sendScrape(int lookupId, int ip, int port, byte[] infoHash) throws IOException {
+        InetSocketAddress target = toSocketAddress(ip, port);
+        if (target == null) {
+            return 0;
+        }
+        int identity = identities.nextForQuery();
+        scrapeTxBuffer[0] = TX_SCRAPE;
+        scrapeTxBuffer[1] = (byte) (lookupId >>> 24);
+        scrapeTxBuffer[2] = (byte) (lookupId >>> 16);
+        scrapeTxBuffer[3] = (byte) (lookupId >>> 8);
+        scrapeTxBuffer[4] = (byte) lookupId;
+        KrpcEncoder.writeGetPeersScrapeQuery(out, scrapeTxBuffer, 0, scrapeTxBuffer.length,
+                identities.ids(), identities.offset(identity), infoHash, 0);
+        int bytes = out.remaining();
+        send(target);
+        return bytes;
+    }
+
+    private void sendFindNode(InetSocketAddress to) throws IOException {
+        ThreadLocalRandom.current().nextBytes(walkTarget);
+        int identity = nextTransaction(TX_FIND_NODE);
+        KrpcEncoder.writeFindNodeQuery(out, txBuffer, 0, txBuffer.length,
+                identities.ids(), identities.offset(identity), walkTarget, 0);
+        send(to);
+    }
+
+    /**
+     * 填充事务ID：类型 | 序号 | 身份序号(2字节)，返回本次查询使用的身份
+     */
+    private int nextTransaction(byte type) {
+        int identity = identities.nextForQuery();
+        txBuffer[0] = type;
+        txBuffer[1] = txSequence++;
+        txBuffer[2] = (byte) (identity >>> 8);
+        txBuffer[3] = (byte) identity;
+        return identity;
+    }
+
+    private void send(InetSocketAddress to) throws IOException {
+        if (channel.send(out, to) > 0) {
+            packetsOut.incrementAndGet();
+        } else {
+            sendDropped.incrementAndGet();
+        }
+    }
+
+    private static InetSocketAddress toSocketAddress(int ip, int port) {
+        try {
+            byte[] addr = {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip};
+            return new InetSocketAddress(InetAddress.getByAddress(addr), port);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void resolveBootstrapNodes() {
+        bootstrapAddresses.clear();
+        for (String node : bootstrapNodes) {
+            int idx = node.lastIndexOf(':');
+            if (idx <= 0) {
+                continue;
+            }
+            InetSocketAddress address = new InetSocketAddress(node.substring(0, idx),
+                    Integer.parseInt(node.substring(idx + 1)));
+            if (address.isUnresolved()) {
+                log.warn("KRPC node {} cannot resolve bootstrap node {}", nodeIndex, node);
+                continue;
+            }
+            bootstrapAddresses.add(address);
+        }
+    }
+
+    /**
+     * 当发现新的InfoHash时调用
+     */
+    private void onInfoHashDiscovered(InfoHash infoHash, InetAddress sourceIp, int sourcePort, DiscoverySource source) {
+        discoveredCount.incrementAndGet();
+
+        InfoHashMessage infoHashMessage = InfoHashMessage.builder()
+            .infoHash(infoHash)
+            .discoveredAt(Instant.now())
+            .sourceIp(sourceIp.getHostAddress())
+            .sourcePort(sourcePort)
+            .source(source)
+            .confidence(source.confidence())
+            .build();
+
+        ingestQueue.submit(infoHashMessage, nodeIndex);
+
+        if (discoveredCount.get() % 10 == 0) {
+            log.info("KRPC Node {} discovered {} InfoHashes (latest: {})",
+                     nodeIndex, discoveredCount.get(), infoHash);
+        }
+    }
+
+    /**
+     * 停止节点
+     */
+    @Override
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+        log.info("KRPC Node {} stopped. Discovered {} InfoHashes from {} messages",
+                 nodeIndex, discoveredCount.get(), messageCount.get());
+    }
+
+    @Override
+    public int getRoutingTableSize() {
+        return contacts.size();
+    }
+
+    @Override
+    public int getActiveServerCount() {
+        DatagramChannel current = channel;
+        return running.get() && current != null && current.isOpen() ? 1 : 0;
+    }
+
+    private void closeQuietly() {
+        closeQuietly(selector);
+        closeQuietly(channel);
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("KRPC node {} close error: {}", nodeIndex, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取节点统计信息
+     */
+    @Override
+    public String getStats() {
+        return String.format("Node[%d] engine=krpc port=%d, running=%s, identities=%d (responding=%d, announced=%d), "
+                           + "idMode=%s, neighborReplies=%d, contacts=%d, messages=%d, discovered=%d, "
+                           + "packetsIn=%d, packetsOut=%d, sendDropped=%d, invalid=%d, tokenRejected=%d",
+                           nodeIndex, port, running.get(), identities.size(), identities.respondingIdentities(),
+                           identities.announcedIdentities(), neighborMode ? "neighbor" : "distributed",
+                           neighborReplies.get(), contacts.size(), messageCount.get(),
+                           discoveredCount.get(), packetsIn.get(), packetsOut.get(), sendDropped.get(),
+                           invalidPackets.get(), tokenRejected.get())
+             + (harvester != null ? ", " + harvester.getStats() : "")
+             + (discoveryTracker != null ? ", " + discoveryTracker.getStats() : "")
+             + (scraper != null ? ", " + scraper.getStats() : "");
+    }
+}
@@ -0,0 +1,177 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * KRPC 消息编码器
+ * 直接把 bencode 写入调用方复用的 ByteBuffer，不产生中间对象。
+ * 注意 bencode 字典的 key 必须按字节序排列，各方法里的写入顺序即为排序后的顺序。
+ */
+public final class KrpcEncoder {
+
+    /** compact node info：20字节ID + 4字节IPv4 + 2字节端口 */
+    public static final int COMPACT_NODE_LENGTH = 26;
+
+    private static final byte[] RESPONSE_PREFIX = KrpcMessage.ascii("d1:rd2:id20:");
+    private static final byte[] QUERY_PREFIX = KrpcMessage.ascii("d1:ad2:id20:");
+    private static final byte[] NODES_KEY = KrpcMessage.ascii("5:nodes");
+    private static final byte[] TOKEN_KEY = KrpcMessage.ascii("5:token4:");
+    private static final byte[] TARGET_KEY = KrpcMessage.ascii("6:target20:");
+    private static final byte[] T_KEY = KrpcMessage.ascii("e1:t");
+    private static final byte[] Y_RESPONSE = KrpcMessage.ascii("1:y1:re");
+    private static final byte[] Q_FIND_NODE = KrpcMessage.ascii("e1:q9:find_node1:t");
+    private static final byte[] Q_SAMPLE_INFOHASHES = KrpcMessage.ascii("e1:q17:sample_infohashes1:t");
+    private static final byte[] Y_QUERY = KrpcMessage.ascii("1:y1:qe");
+    private static final byte[] INFO_HASH_KEY = KrpcMessage.ascii("9:info_hash20:");
+    private static final byte[] IMPLIED_PORT_KEY = KrpcMessage.ascii("12:implied_porti1e");
+    private static final byte[] PORT_KEY = KrpcMessage.ascii("4:porti");
+    private static final byte[] TOKEN_KEY_PREFIX = KrpcMessage.ascii("5:token");
+    private static final byte[] Q_GET_PEERS = KrpcMessage.ascii("e1:q9:get_peers1:t");
+    private static final byte[] SCRAPE_KEY = KrpcMessage.ascii("6:scrapei1e");
+    private static final byte[] Q_ANNOUNCE_PEER = KrpcMessage.ascii("e1:q13:announce_peer1:t");
+
+    /**
+     * ping / announce_peer 响应，只包含节点ID
+     */
+    public static void writeIdResponse(ByteBuffer out, byte[] tBuf, int tOff, int tLen, byte[] id, int idOff) {
+        out.clear();
+        out.put(RESPONSE_PREFIX).put(id, idOff, KrpcMessage.ID_LENGTH);
+        writeResponseTail(out, tBuf, tOff, tLen);
+    }
+
+    /**
+     * find_node / get_peers 响应：nodes 取自联系人表，token 小于 0 时不写（find_node）
+     */
+    public static void writeNodesResponse(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                          byte[] id, int idOff, ContactTable contacts, int maxNodes,
+                                          boolean withToken, int token) {
+        out.clear();
+        out.put(RESPONSE_PREFIX).put(id, idOff, KrpcMessage.ID_LENGTH);
+        int count = Math.min(maxNodes, contacts.size());
+        out.put(NODES_KEY);
+        putDecimal(out, (long) count * COMPACT_NODE_LENGTH);
+        out.put((byte) ':');
+        contacts.writeCompact(out, count);
+        if (withToken) {
+            out.put(TOKEN_KEY).putInt(token);
+        }
+        writeResponseTail(out, tBuf, tOff, tLen);
+    }
+
+    /**
+     * find_node 查询
+     */
+    public static void writeFindNodeQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                          byte[] id, int idOff, byte[] target, int targetOff) {
+        writeTargetQuery(out, Q_FIND_NODE, tBuf, tOff, tLen, id, idOff, target, targetOff);
+    }
+
+    /**
+     * BEP 51 sample_infohashes 查询，参数格式与 find_node 相同
+     */
+    public static void writeSampleInfohashesQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                                  byte[] id, int idOff, byte[] target, int targetOff) {
+        writeTargetQuery(out, Q_SAMPLE_INFOHASHES, tBuf, tOff, tLen, id, idOff, target, targetOff);
+    }
+
+    /**
+     * get_peers 查询
+     */
+    public static void writeGetPeersQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                          byte[] id, int idOff, byte[] infoHash, int infoHashOff) {
+        writeGetPeersQuery(out, tBuf, tOff, tLen, id, idOff, infoHash, infoHashOff, false);
+    }
+
+    /**
+     * BEP 33 scrape：带 scrape=1 的 get_peers 查询，对方在响应中附带 BFsd / BFpe
+     */
+    public static void writeGetPeersScrapeQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                                byte[] id, int idOff, byte[] infoHash, int infoHashOff) {
+        writeGetPeersQuery(out, tBuf, tOff, tLen, id, idOff, infoHash, infoHashOff, true);
+    }
+
+    private static void writeGetPeersQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                           byte[] id, int idOff, byte[] infoHash, int infoHashOff, boolean scrape) {
+        out.clear();
+        out.put(QUERY_PREFIX).put(id, idOff, KrpcMessage.ID_LENGTH);
+        out.put(INFO_HASH_KEY).put(infoHash, infoHashOff, KrpcMessage.ID_LENGTH);
+        if (scrape) {
+            out.put(SCRAPE_KEY);
+        }
+        out.put(Q_GET_PEERS);
+        putString(out, tBuf, tOff, tLen);
+        out.put(Y_QUERY);
+        out.flip();
+    }
+
+    /**
+     * announce_peer 查询，token 取自之前 get_peers 的响应；impliedPort 为 true 时对方使用 UDP 源端口
+     */
+    public static void writeAnnouncePeerQuery(ByteBuffer out, byte[] tBuf, int tOff, int tLen,
+                                              byte[] id, int idOff, byte[] infoHash, int infoHashOff,
+                                              boolean impliedPort, int port,
+                                              byte[] token, int tokenOff, int tokenLen) {
+        out.clear();
+        out.put(QUERY_PREFIX).put(id, idOff, KrpcMessage.ID_LENGTH);
+        if (impliedPort) {
+            out.put(IMPLIED_PORT_KEY);
+        }
+        out.put(INFO_HASH_KEY).put(infoHash, infoHashOff, KrpcMessage.ID_LENGTH);
+        out.put(PORT_KEY);
+        putDecimal(out, port);
+        out.put((byte) 'e');
+        out.put(TOKEN_KEY_PREFIX);
+        putString(out, token, tokenOff, tokenLen);
+        out.put(Q_ANNOUNCE_PEER);
+        putString(out, tBuf, tOff, tLen);
+        out.put(Y_QUERY);
+        out.flip();
+    }
+
+    private static void writeTargetQuery(ByteBuffer out, byte[] method, byte[] tBuf, int tOff, int tLen,
+                                         byte[] id, int idOff, byte[] target, int targetOff) {
+        out.clear();
+        out.put(QUERY_PREFIX).put(id, idOff, KrpcMessage.ID_LENGTH);
+        out.put(TARGET_KEY).put(target, targetOff, KrpcMessage.ID_LENGTH);
+        out.put(method);
+        putString(out, tBuf, tOff, tLen);
+        out.put(Y_QUERY);
+        out.flip();
+    }
+
+    private static void writeResponseTail(ByteBuffer out, byte[] tBuf, int tOff, int tLen) {
+        out.put(T_KEY);
+        putString(out, tBuf, tOff, tLen);
+        out.put(Y_RESPONSE);
+        out.flip();
+    }
+
+    static void putString(ByteBuffer out, byte[] src, int off, int len) {
+        putDecimal(out, len);
+        out.put((byte) ':');
+        out.put(src, off, len);
+    }
+
+    static void putDecimal(ByteBuffer out, long value) {
+        if (value == 0) {
+            out.put((byte) '0');
+            return;
+        }
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        long div = 1;
+        while (value / div >= 10) {
+            div *= 10;
+        }
+        while (div > 0) {
+            out.put((byte) ('0' + (value / div) % 10));
+            div /= 10;
+        }
+    }
+
+    private KrpcEncoder() {
+        // 工具类，禁止实例化
+    }
+}
@@ -0,0 +1,362 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+/**
+ * KRPC 消息解码器（flyweight）
+ * 直接在接收缓冲区上解析 bencode，只记录爬虫关心字段的偏移量和长度，解析过程不分配对象。
+ * 同一个实例在单个接收线程内复用，每次 parse 都会覆盖上一次的结果。
+ */
+public final class KrpcMessage {
+
+    public static final byte TYPE_QUERY = 'q';
+    public static final byte TYPE_RESPONSE = 'r';
+    public static final byte TYPE_ERROR = 'e';
+
+    public static final int METHOD_UNKNOWN = 0;
+    public static final int METHOD_PING = 1;
+    public static final int METHOD_FIND_NODE = 2;
+    public static final int METHOD_GET_PEERS = 3;
+    public static final int METHOD_ANNOUNCE_PEER = 4;
+    public static final int METHOD_SAMPLE_INFOHASHES = 5;
+
+    public static final int ID_LENGTH = 20;
+
+    /** BEP 33 BFsd / BFpe 长度 */
+    public static final int SCRAPE_FILTER_LENGTH = 256;
+
+    /** compact peer info：4字节IPv4 + 2字节端口 */
+    public static final int COMPACT_PEER_LENGTH = 6;
+
+    /** 每个响应最多记录的 values 条目数 */
+    public static final int MAX_VALUES = 64;
+
+    private static final int MAX_DEPTH = 8;
+
+    private static final byte[] KEY_T = ascii("t");
+    private static final byte[] KEY_Y = ascii("y");
+    private static final byte[] KEY_Q = ascii("q");
+    private static final byte[] KEY_A = ascii("a");
+    private static final byte[] KEY_R = ascii("r");
+    private static final byte[] KEY_ID = ascii("id");
+    private static final byte[] KEY_TARGET = ascii("target");
+    private static final byte[] KEY_INFO_HASH = ascii("info_hash");
+    private static final byte[] KEY_TOKEN = ascii("token");
+    private static final byte[] KEY_PORT = ascii("port");
+    private static final byte[] KEY_IMPLIED_PORT = ascii("implied_port");
+    private static final byte[] KEY_NODES = ascii("nodes");
+    private static final byte[] KEY_SAMPLES = ascii("samples");
+    private static final byte[] KEY_INTERVAL = ascii("interval");
+    private static final byte[] KEY_NUM = ascii("num");
+    private static final byte[] KEY_VALUES = ascii("values");
+    private static final byte[] KEY_BF_SEEDS = ascii("BFsd");
+    private static final byte[] KEY_BF_PEERS = ascii("BFpe");
+
+    private static final byte[] Q_PING = ascii("ping");
+    private static final byte[] Q_FIND_NODE = ascii("find_node");
+    private static final byte[] Q_GET_PEERS = ascii("get_peers");
+    private static final byte[] Q_ANNOUNCE_PEER = ascii("announce_peer");
+    private static final byte[] Q_SAMPLE_INFOHASHES = ascii("sample_infohashes");
+
+    private byte[] buf;
+    private int limit;
+    private int pos;
+
+    // 最近一次 readString 的结果
+    private int strOff;
+    private int strLen;
+    // 最近一次 readInt 的结果
+    private long intValue;
+
+    private byte type;
+    private int method;
+    private int tOff;
+    private int tLen;
+    private int idOff;
+    private int targetOff;
+    private int tokenOff;
+    private int tokenLen;
+    private int port;
+    private boolean impliedPort;
+    private int nodesOff;
+    private int nodesLen;
+    private int samplesOff;
+    private int samplesLen;
+    private int interval;
+    private int num;
+    private int seedsFilterOff;
+    private int peersFilterOff;
+    private final int[] valueOffsets = new int[MAX_VALUES];
+    private int valuesCount;
+
+    /**
+     * 解析一个 KRPC 报文
+     *
+     * @return 报文是否是合法的 KRPC 消息（包含 t 和 y）
+     */
+    public boolean parse(byte[] data, int length) {
+        reset();
+        this.buf = data;
+        this.limit = length;
+        if (length < 2 || data[0] != 'd') {
+            return false;
+        }
+        pos = 1;
+        while (pos < limit && buf[pos] != 'e') {
+            if (!readString()) {
+                return false;
+            }
+            int kOff = strOff;
+            int kLen = strLen;
+            if (keyIs(kOff, kLen, KEY_T)) {
+                if (!readString()) return false;
+                tOff = strOff;
+                tLen = strLen;
+            } else if (keyIs(kOff, kLen, KEY_Y)) {
+                if (!readString()) return false;
+                if (strLen == 1) type = buf[strOff];
+            } else if (keyIs(kOff, kLen, KEY_Q)) {
+                if (!readString()) return false;
+                method = methodOf(strOff, strLen);
+            } else if ((keyIs(kOff, kLen, KEY_A) || keyIs(kOff, kLen, KEY_R)) && pos < limit && buf[pos] == 'd') {
+                if (!parseBody()) return false;
+            } else if (!skip(0)) {
+                return false;
+            }
+        }
+        return pos < limit && type != 0 && tOff >= 0;
+    }
+
+    private boolean parseBody() {
+        pos++; // 'd'
+        while (pos < limit && buf[pos] != 'e') {
+            if (!readString()) {
+                return false;
+            }
+            int kOff = strOff;
+            int kLen = strLen;
+            if (keyIs(kOff, kLen, KEY_ID)) {
+                if (!readString()) return false;
+                if (strLen == ID_LENGTH) idOff = strOff;
+            } else if (keyIs(kOff, kLen, KEY_TARGET) || keyIs(kOff, kLen, KEY_INFO_HASH)) {
+                if (!readString()) return false;
+                if (strLen == ID_LENGTH) targetOff = strOff;
+            } else if (keyIs(kOff, kLen, KEY_TOKEN)) {
+                if (!readString()) return false;
+                tokenOff = strOff;
+                tokenLen = strLen;
+            } else if (keyIs(kOff, kLen, KEY_PORT)) {
+                if (!readInt()) return false;
+                port = (int) intValue;
+            } else if (keyIs(kOff, kLen, KEY_IMPLIED_PORT)) {
+                if (!readInt()) return false;
+                impliedPort = intValue != 0;
+            } else if (keyIs(kOff, kLen, KEY_NODES)) {
+                if (!readString()) return false;
+                nodesOff = strOff;
+                nodesLen = strLen;
+            } else if (keyIs(kOff, kLen, KEY_SAMPLES)) {
+                if (!readString()) return false;
+                samplesOff = strOff;
+                samplesLen = strLen;
+            } else if (keyIs(kOff, kLen, KEY_INTERVAL)) {
+                if (!readInt()) return false;
+                interval = (int) Math.max(0, Math.min(intValue, Integer.MAX_VALUE));
+            } else if (keyIs(kOff, kLen, KEY_NUM)) {
+                if (!readInt()) return false;
+                num = (int) Math.max(0, Math.min(intValue, Integer.MAX_VALUE));
+            } else if (keyIs(kOff, kLen, KEY_BF_SEEDS)) {
+                if (!readString()) return false;
+                if (strLen == SCRAPE_FILTER_LENGTH) seedsFilterOff = strOff;
+            } else if (keyIs(kOff, kLen, KEY_BF_PEERS)) {
+                if (!readString()) return false;
+                if (strLen == SCRAPE_FILTER_LENGTH) peersFilterOff = strOff;
+            } else if (keyIs(kOff, kLen, KEY_VALUES) && pos < limit && buf[pos] == 'l') {
+                if (!readValues()) return false;
+            } else if (!skip(1)) {
+                return false;
+            }
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        pos++; // 'e'
+        return true;
+    }
+
+    /**
+     * values 列表：只记录 IPv4 compact peer 的偏移量，超过 MAX_VALUES 的条目跳过
+     */
+    private boolean readValues() {
+        pos++; // 'l'
+        while (pos < limit && buf[pos] != 'e') {
+            if (!readString()) return false;
+            if (strLen == COMPACT_PEER_LENGTH && valuesCount < MAX_VALUES) {
+                valueOffsets[valuesCount++] = strOff;
+            }
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        pos++; // 'e'
+        return true;
+    }
+
+    private boolean readString() {
+        int len = 0;
+        int p = pos;
+        while (p < limit && buf[p] >= '0' && buf[p] <= '9') {
+            len = len * 10 + (buf[p] - '0');
+            if (len > limit) return false;
+            p++;
+        }
+        if (p == pos || p >= limit || buf[p] != ':') {
+            return false;
+        }
+        p++;
+        if (p + len > limit) {
+            return false;
+        }
+        strOff = p;
+        strLen = len;
+        pos = p + len;
+        return true;
+    }
+
+    private boolean readInt() {
+        if (pos >= limit || buf[pos] != 'i') {
+            return false;
+        }
+        int p = pos + 1;
+        boolean negative = false;
+        if (p < limit && buf[p] == '-') {
+            negative = true;
+            p++;
+        }
+        long v = 0;
+        int digits = 0;
+        while (p < limit && buf[p] >= '0' && buf[p] <= '9') {
+            if (++digits > 18) return false;
+            v = v * 10 + (buf[p] - '0');
+            p++;
+        }
+        if (digits == 0 || p >= limit || buf[p] != 'e') {
+            return false;
+        }
+        intValue = negative ? -v : v;
+        pos = p + 1;
+        return true;
+    }
+
+    private boolean skip(int depth) {
+        if (pos >= limit || depth > MAX_DEPTH) {
+            return false;
+        }
+        byte b = buf[pos];
+        if (b == 'i') {
+            return readInt();
+        }
+        if (b >= '0' && b <= '9') {
+            return readString();
+        }
+        if (b == 'l') {
+            pos++;
+            while (pos < limit && buf[pos] != 'e') {
+                if (!skip(depth + 1)) return false;
+            }
+        } else if (b == 'd') {
+            pos++;
+            while (pos < limit && buf[pos] != 'e') {
+                if (!readString() || !skip(depth + 1)) return false;
+            }
+        } else {
+            return false;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        pos++;
+        return true;
+    }
+
+    private int methodOf(int off, int len) {
+        if (keyIs(off, len, Q_PING)) return METHOD_PING;
+        if (keyIs(off, len, Q_FIND_NODE)) return METHOD_FIND_NODE;
+        if (keyIs(off, len, Q_GET_PEERS)) return METHOD_GET_PEERS;
+        if (keyIs(off, len, Q_ANNOUNCE_PEER)) return METHOD_ANNOUNCE_PEER;
+        if (keyIs(off, len, Q_SAMPLE_INFOHASHES)) return METHOD_SAMPLE_INFOHASHES;
+        return METHOD_UNKNOWN;
+    }
+
+    private boolean keyIs(int off, int len, byte[] literal) {
+        if (len != literal.length) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf[off + i] != literal[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reset() {
+        type = 0;
+        method = METHOD_UNKNOWN;
+        tOff = -1;
+        tLen = 0;
+        idOff = -1;
+        targetOff = -1;
+        tokenOff = -1;
+        tokenLen = 0;
+        port = -1;
+        impliedPort = false;
+        nodesOff = -1;
+        nodesLen = 0;
+        samplesOff = -1;
+        samplesLen = 0;
+        interval = -1;
+        num = -1;
+        seedsFilterOff = -1;
+        peersFilterOff = -1;
+        valuesCount = 0;
+    }
+
+    static byte[] ascii(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) s.charAt(i);
+        }
+        return b;
+    }
+
+    public byte[] buffer() { return buf; }
+    public byte type() { return type; }
+    public int method() { return method; }
+    public int transactionOffset() { return tOff; }
+    public int transactionLength() { return tLen; }
+    /** 发送方节点ID偏移量，-1 表示缺失 */
+    public int idOffset() { return idOff; }
+    /** target / info_hash 偏移量，-1 表示缺失 */
+    public int targetOffset() { return targetOff; }
+    public int tokenOffset() { return tokenOff; }
+    public int tokenLength() { return tokenLen; }
+    /** announce_peer 的 port 参数，-1 表示缺失 */
+    public int port() { return port; }
+    public boolean impliedPort() { return impliedPort; }
+    public int nodesOffset() { return nodesOff; }
+    public int nodesLength() { return nodesLen; }
+    /** BEP 51 samples 偏移量，-1 表示缺失 */
+    public int samplesOffset() { return samplesOff; }
+    public int samplesLength() { return samplesLen; }
+    /** BEP 51 interval（秒），-1 表示缺失 */
+    public int interval() { return interval; }
+    /** BEP 51 num（对方存储的 InfoHash 总数），-1 表示缺失 */
+    public int num() { return num; }
+    /** BEP 33 做种者过滤器 BFsd 偏移量，-1 表示缺失 */
+    public int seedsFilterOffset() { return seedsFilterOff; }
+    /** BEP 33 下载者过滤器 BFpe 偏移量，-1 表示缺失 */
+    public int peersFilterOffset() { return peersFilterOff; }
+    /** get_peers 响应 values 中 IPv4 peer 的数量（最多 MAX_VALUES） */
+    public int valuesCount() { return valuesCount; }
+    /** 第 i 个 values 条目（6字节 compact peer）的偏移量 */
+    public int valueOffset(int i) { return valueOffsets[i]; }
+}
@@ -0,0 +1,206 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BEP 51 sample_infohashes 采集器
+ * 负责查询预算、每个远端节点的 interval 以及采集效果统计；报文收发由所属的 KrpcCrawlerNode 完成。
+ * 除计数器外的状态只在节点事件循环内访问。
+ */
+public class SampleHarvester {
+
+    /** BEP 51 规定 interval 最大为 6 小时 */
+    private static final int MAX_INTERVAL_SECONDS = 21600;
+
+    private final double queryRate;
+    private final long defaultIntervalMillis;
+    private final long unsupportedBackoffMillis;
+
+    /** 远端节点 (ip << 16 | port) -> 下一次允许查询的时间 */
+    private final Map<Long, Long> nextQueryAt;
+
+    /** 去重统计用的指纹表（InfoHash 前8字节），填到 3/4 时清空 */
+    private final long[] fingerprints;
+    private final int fingerprintMask;
+    private int fingerprintCount;
+
+    private double credit;
+    private long lastRefill;
+
+    @Getter
+    private final AtomicLong queriesSent = new AtomicLong(0);
+    @Getter
+    private final AtomicLong responses = new AtomicLong(0);
+    @Getter
+    private final AtomicLong supportedResponses = new AtomicLong(0);
+    @Getter
+    private final AtomicLong unsupportedResponses = new AtomicLong(0);
+    @Getter
+    private final AtomicLong skippedByInterval = new AtomicLong(0);
+    @Getter
+    private final AtomicLong samplesReceived = new AtomicLong(0);
+    @Getter
+    private final AtomicLong uniqueSamples = new AtomicLong(0);
+    @Getter
+    private final AtomicLong bytesOut = new AtomicLong(0);
+    @Getter
+    private final AtomicLong bytesIn = new AtomicLong(0);
+
+    // 统计线程计算 samples/s 使用
+    private long lastStatsAt = System.currentTimeMillis();
+    private long lastStatsSamples;
+
+    public SampleHarvester(DhtConfig.Harvest settings) {
+        this.queryRate = settings.getQueryRate();
+        this.defaultIntervalMillis = settings.getDefaultIntervalSeconds() * 1000L;
+        this.unsupportedBackoffMillis = settings.getUnsupportedBackoffSeconds() * 1000L;
+        int maxTracked = settings.getMaxTrackedNodes();
+        this.nextQueryAt = new LinkedHashMap<>(Math.min(maxTracked, 1 << 16), 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxTracked;
+            }
+        };
+        int capacity = Integer.highestOneBit(Math.max(settings.getUniqueCapacity(), 1024));
+        this.fingerprints = new long[capacity];
+        this.fingerprintMask = capacity - 1;
+    }
+
+    /**
+     * 按时间补充查询预算，返回当前可发送的查询数
+     */
+    public int refill(long now) {
+        if (lastRefill == 0) {
+            lastRefill = now;
+        }
+        credit = Math.min(credit + queryRate * (now - lastRefill) / 1000.0, queryRate);
+        lastRefill = now;
+        return (int) credit;
+    }
+
+    /**
+     * 尝试为远端节点预留一次查询：未到 interval 时返回 false，否则消耗一个预算
+     */
+    public boolean tryReserve(int ip, int port, long now) {
+        if (credit < 1) {
+            return false;
+        }
+        Long key = nodeKey(ip, port);
+        Long next = nextQueryAt.get(key);
+        if (next != null && next > now) {
+            skippedByInterval.incrementAndGet();
+            return false;
+        }
+        // 先按默认间隔占位，收到响应后再用对方的 interval 覆盖
+        nextQueryAt.put(key, now + defaultIntervalMillis);
+        credit -= 1;
+        return true;
+    }
+
+    public void onQuerySent(int bytes) {
+        queriesSent.incrementAndGet();
+        bytesOut.addAndGet(bytes);
+    }
+
+    /**
+     * 处理 sample_infohashes 响应，更新对方的 interval
+     *
+     * @return samples 中的 InfoHash 数量，对方不支持 BEP 51 时为 0
+     */
+    public int onResponse(KrpcMessage message, int ip, int port, long now, int bytes) {
+        responses.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        if (message.samplesOffset() < 0) {
+            // 不支持 BEP 51 的节点会按 find_node 回复，只有 nodes
+            unsupportedResponses.incrementAndGet();
+            nextQueryAt.put(nodeKey(ip, port), now + unsupportedBackoffMillis);
+            return 0;
+        }
+        supportedResponses.incrementAndGet();
+        long intervalMillis = message.interval() >= 0
+                ? Math.min(message.interval(), MAX_INTERVAL_SECONDS) * 1000L
+                : defaultIntervalMillis;
+        nextQueryAt.put(nodeKey(ip, port), now + intervalMillis);
+
+        int count = message.samplesLength() / KrpcMessage.ID_LENGTH;
+        samplesReceived.addAndGet(count);
+        byte[] buf = message.buffer();
+        for (int i = 0; i < count; i++) {
+            if (markSeen(buf, message.samplesOffset() + i * KrpcMessage.ID_LENGTH)) {
+                uniqueSamples.incrementAndGet();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 对方返回 KRPC error（通常是 204 Method Unknown），按不支持处理
+     */
+    public void onError(int ip, int port, long now, int bytes) {
+        responses.incrementAndGet();
+        unsupportedResponses.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        nextQueryAt.put(nodeKey(ip, port), now + unsupportedBackoffMillis);
+    }
+
+    private boolean markSeen(byte[] buf, int off) {
+        long fp = 0;
+        for (int i = 0; i < 8; i++) {
+            fp = (fp << 8) | (buf[off + i] & 0xff);
+        }
+        if (fp == 0) {
+            fp = 1;
+        }
+        int slot = (int) TokenManager.mix(fp) & fingerprintMask;
+        while (fingerprints[slot] != 0) {
+            if (fingerprints[slot] == fp) {
+                return false;
+            }
+            slot = (slot + 1) & fingerprintMask;
+        }
+        if (fingerprintCount >= fingerprints.length - (fingerprints.length >> 2)) {
+            Arrays.fill(fingerprints, 0);
+            fingerprintCount = 0;
+            slot = (int) TokenManager.mix(fp) & fingerprintMask;
+        }
+        fingerprints[slot] = fp;
+        fingerprintCount++;
+        return true;
+    }
+
+    private static Long nodeKey(int ip, int port) {
+        return ((ip & 0xffffffffL) << 16) | (port & 0xffff);
+    }
+
+    /**
+     * 获取采集统计信息（samples/s 按两次调用之间的时间计算）
+     */
+    public synchronized String getStats() {
+        long now = System.currentTimeMillis();
+        long samples = samplesReceived.get();
+        double samplesPerSecond = now > lastStatsAt ? (samples - lastStatsSamples) * 1000.0 / (now - lastStatsAt) : 0;
+        lastStatsAt = now;
+        lastStatsSamples = samples;
+
+        long queries = queriesSent.get();
+        long replies = responses.get();
+        long out = bytesOut.get();
+        long in = bytesIn.get();
+        return String.format("harvest[queries=%d, responseRate=%.1f%%, supportRate=%.1f%%, skipped=%d, "
+                           + "samples=%d (%.1f/s), unique=%d (%.1f%%), bytesOut=%d, bytesIn=%d, uniquePerKB=%.2f]",
+                           queries, percent(replies, queries), percent(supportedResponses.get(), replies),
+                           skippedByInterval.get(), samples, samplesPerSecond, uniqueSamples.get(),
+                           percent(uniqueSamples.get(), samples), out, in,
+                           out + in == 0 ? 0.0 : uniqueSamples.get() * 1024.0 / (out + in));
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0.0 : part * 100.0 / total;
+    }
+}
@@ -0,0 +1,378 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.scrape.ScrapeBloomFilter;
+import cn.lihongjie.dht.mldht.scrape.SwarmEstimate;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BEP 33 scrape 采集器
+ * 其他线程通过 submit 提交新发现的 InfoHash，所属 KrpcCrawlerNode 的事件循环在 tick 中从离 InfoHash 最近的已知联系人
+ * 开始做一次小规模的迭代 get_peers（带 scrape=1），合并各节点返回的 BFsd / BFpe 估计 swarm 大小。
+ * 使用独立于 find_node 和 sample_infohashes 的查询预算；除计数器和提交队列外的状态只在节点事件循环内访问。
+ */
+public class SwarmScraper {
+
+    /** 单个查询超过该时间没有响应视为丢失，空出并发名额 */
+    private static final long QUERY_TIMEOUT_MILLIS = 1000;
+
+    /** 每个查找保留的候选节点数 */
+    private static final int MAX_CANDIDATES = 32;
+
+    /**
+     * 发送 scrape 查询，由所属节点实现
+     */
+    public interface QuerySender {
+
+        /**
+         * @return 发送的字节数
+         */
+        int sendScrape(int lookupId, int ip, int port, byte[] infoHash) throws IOException;
+    }
+
+    private record Job(InfoHash infoHash, CompletableFuture<SwarmEstimate> future) {
+    }
+
+    private final double queryRate;
+    private final int maxQueries;
+    private final int alpha;
+    private final long timeoutMillis;
+    private final int maxActive;
+    private final int maxPending;
+
+    private final Queue<Job> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private volatile boolean active;
+    private volatile int activeLookups;
+
+    // 以下字段只在事件循环线程内访问
+    private final Map<Integer, Lookup> lookups = new HashMap<>();
+    private final int[] closest;
+    private int nextLookupId;
+    private double credit;
+    private long lastRefill;
+
+    @Getter
+    private final AtomicLong scrapes = new AtomicLong(0);
+    @Getter
+    private final AtomicLong dropped = new AtomicLong(0);
+    @Getter
+    private final AtomicLong completed = new AtomicLong(0);
+    @Getter
+    private final AtomicLong timeouts = new AtomicLong(0);
+    @Getter
+    private final AtomicLong known = new AtomicLong(0);
+    @Getter
+    private final AtomicLong dead = new AtomicLong(0);
+    @Getter
+    private final AtomicLong underestimates = new AtomicLong(0);
+    @Getter
+    private final AtomicLong queriesSent = new AtomicLong(0);
+    @Getter
+    private final AtomicLong responses = new AtomicLong(0);
+    @Getter
+    private final AtomicLong bloomResponses = new AtomicLong(0);
+    @Getter
+    private final AtomicLong bytesOut = new AtomicLong(0);
+    @Getter
+    private final AtomicLong bytesIn = new AtomicLong(0);
+    private final AtomicLong lookupQueries = new AtomicLong(0);
+    private final AtomicLong lookupMillis = new AtomicLong(0);
+
+    public SwarmScraper(DhtConfig.Scrape settings) {
+        this.queryRate = settings.getQueryRate();
+        this.maxQueries = Math.max(1, settings.getMaxQueriesPerScrape());
+        this.alpha = Math.max(1, settings.getAlpha());
+        this.timeoutMillis = settings.getTimeoutMillis();
+        this.maxActive = Math.max(1, settings.getMaxActive());
+        this.maxPending = settings.getMaxPending();
+        this.closest = new int[Math.min(maxQueries, MAX_CANDIDATES)];
+    }
+
+    /**
+     * 提交一次 scrape（任意线程）
+     *
+     * @return 查找结束时完成；节点未运行或排队已满时立即以 null 完成
+     */
+    public CompletableFuture<SwarmEstimate> submit(InfoHash infoHash) {
+        CompletableFuture<SwarmEstimate> future = new CompletableFuture<>();
+        if (!active) {
+            future.complete(null);
+            return future;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            future.complete(null);
+            return future;
+        }
+        scrapes.incrementAndGet();
+        submitted.add(new Job(infoHash, future));
+        return future;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 节点启动时激活；停止时（在事件循环线程内）调用 deactivate
+     */
+    public void activate() {
+        active = true;
+    }
+
+    /**
+     * 节点停止：未完成的查找和排队中的任务全部以 null 完成
+     */
+    public void deactivate() {
+        active = false;
+        for (Lookup lookup : lookups.values()) {
+            lookup.future.complete(null);
+        }
+        lookups.clear();
+        activeLookups = 0;
+        Job job;
+        while ((job = submitted.poll()) != null) {
+            pending.decrementAndGet();
+            job.future().complete(null);
+        }
+    }
+
+    /**
+     * 周期任务：启动排队的查找，在预算内发送查询，结束超时或已收敛的查找
+     */
+    public void tick(long now, ContactTable contacts, QuerySender sender) throws IOException {
+        while (lookups.size() < maxActive) {
+            Job job = submitted.poll();
+            if (job == null) {
+                break;
+            }
+            pending.decrementAndGet();
+            begin(job, now, contacts);
+        }
+        if (lookups.isEmpty()) {
+            return;
+        }
+
+        if (lastRefill == 0) {
+            lastRefill = now;
+        }
+        credit = Math.min(credit + queryRate * (now - lastRefill) / 1000.0, queryRate);
+        lastRefill = now;
+
+        Iterator<Lookup> it = lookups.values().iterator();
+        while (it.hasNext()) {
+            Lookup lookup = it.next();
+            if (lookup.inflight > 0 && now - lookup.lastSentAt >= QUERY_TIMEOUT_MILLIS) {
+                lookup.inflight = 0;
+            }
+            while (credit >= 1 && lookup.inflight < alpha && lookup.queries < maxQueries
+                    && lookup.candidateCount > 0) {
+                credit -= 1;
+                long address = lookup.pollCandidate();
+                int bytes = sender.sendScrape(lookup.id, (int) (address >>> 16), (int) (address & 0xffff),
+                                              lookup.infoHash);
+                lookup.queries++;
+                lookup.inflight++;
+                lookup.lastSentAt = now;
+                queriesSent.incrementAndGet();
+                bytesOut.addAndGet(bytes);
+            }
+            boolean expired = now - lookup.startedAt >= timeoutMillis;
+            boolean converged = lookup.inflight == 0 && (lookup.candidateCount == 0 || lookup.queries >= maxQueries);
+            if (expired || converged) {
+                it.remove();
+                if (!converged) {
+                    timeouts.incrementAndGet();
+                }
+                finish(lookup, now);
+            }
+        }
+        activeLookups = lookups.size();
+    }
+
+    private void begin(Job job, long now, ContactTable contacts) {
+        Lookup lookup = new Lookup(nextLookupId++, job.infoHash().toBytes(), job.future(), now);
+        int count = contacts.closest(lookup.infoHash, 0, closest.length, closest);
+        byte[] ids = contacts.idArray();
+        for (int i = 0; i < count; i++) {
+            int slot = closest[i];
+            lookup.addCandidate(ids, contacts.idOffset(slot), contacts.ipAt(slot), contacts.portAt(slot));
+        }
+        lookups.put(lookup.id, lookup);
+        activeLookups = lookups.size();
+    }
+
+    private void finish(Lookup lookup, long now) {
+        SwarmEstimate estimate = new SwarmEstimate(lookup.seeds.estimate(), lookup.peers.estimate(),
+                                                   lookup.bloomResponses, lookup.directPeers.size());
+        completed.incrementAndGet();
+        lookupQueries.addAndGet(lookup.queries);
+        lookupMillis.addAndGet(now - lookup.startedAt);
+        if (estimate.known()) {
+            known.incrementAndGet();
+        }
+        if (estimate.dead()) {
+            dead.incrementAndGet();
+        }
+        if (estimate.underestimated()) {
+            underestimates.incrementAndGet();
+        }
+        lookup.future.complete(estimate);
+    }
+
+    /**
+     * 处理 scrape 查询的响应：合并过滤器、记录 values 中的 peer，把更近的节点加入候选
+     */
+    public void onResponse(KrpcMessage message, int lookupId, int bytes) {
+        responses.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        Lookup lookup = lookups.get(lookupId);
+        if (lookup == null) {
+            return;
+        }
+        lookup.inflight = Math.max(0, lookup.inflight - 1);
+        byte[] buf = message.buffer();
+        if (message.seedsFilterOffset() >= 0 || message.peersFilterOffset() >= 0) {
+            lookup.bloomResponses++;
+            bloomResponses.incrementAndGet();
+            if (message.seedsFilterOffset() >= 0) {
+                lookup.seeds.merge(buf, message.seedsFilterOffset());
+            }
+            if (message.peersFilterOffset() >= 0) {
+                lookup.peers.merge(buf, message.peersFilterOffset());
+            }
+        }
+        for (int i = 0; i < message.valuesCount(); i++) {
+            lookup.directPeers.add(compactAddress(buf, message.valueOffset(i)));
+        }
+        if (message.nodesOffset() >= 0) {
+            int count = message.nodesLength() / KrpcEncoder.COMPACT_NODE_LENGTH;
+            for (int i = 0; i < count; i++) {
+                int p = message.nodesOffset() + i * KrpcEncoder.COMPACT_NODE_LENGTH;
+                long address = compactAddress(buf, p + KrpcMessage.ID_LENGTH);
+                lookup.addCandidate(buf, p, (int) (address >>> 16), (int) (address & 0xffff));
+            }
+        }
+    }
+
+    /**
+     * 对方返回 KRPC error，只释放并发名额
+     */
+    public void onError(int lookupId, int bytes) {
+        responses.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        Lookup lookup = lookups.get(lookupId);
+        if (lookup != null) {
+            lookup.inflight = Math.max(0, lookup.inflight - 1);
+        }
+    }
+
+    /**
+     * 6 字节 compact 地址转成 (ip << 16 | port)
+     */
+    private static long compactAddress(byte[] buf, int off) {
+        long ip = ((buf[off] & 0xffL) << 24) | ((buf[off + 1] & 0xff) << 16)
+                | ((buf[off + 2] & 0xff) << 8) | (buf[off + 3] & 0xff);
+        return (ip << 16) | ((buf[off + 4] & 0xff) << 8) | (buf[off + 5] & 0xff);
+    }
+
+    /**
+     * 一次进行中的 scrape 查找，候选节点按与 InfoHash 的距离从近到远排列，发送查询后移出
+     */
+    private static final class Lookup {
+
+        final int id;
+        final byte[] infoHash;
+        final CompletableFuture<SwarmEstimate> future;
+        final long startedAt;
+        final long key;
+        final ScrapeBloomFilter seeds = new ScrapeBloomFilter();
+        final ScrapeBloomFilter peers = new ScrapeBloomFilter();
+        final Set<Long> directPeers = new HashSet<>();
+        final Set<Long> seen = new HashSet<>();
+        final long[] candidateDistances = new long[MAX_CANDIDATES];
+        final long[] candidateAddresses = new long[MAX_CANDIDATES];
+        int candidateCount;
+        int queries;
+        int inflight;
+        int bloomResponses;
+        long lastSentAt;
+
+        Lookup(int id, byte[] infoHash, CompletableFuture<SwarmEstimate> future, long startedAt) {
+            this.id = id;
+            this.infoHash = infoHash;
+            this.future = future;
+            this.startedAt = startedAt;
+            this.key = ContactTable.prefix(infoHash, 0);
+        }
+
+        void addCandidate(byte[] ids, int idOff, int ip, int port) {
+            if (ip == 0 || port <= 0 || port > 0xffff) {
+                return;
+            }
+            long address = ((ip & 0xffffffffL) << 16) | port;
+            long distance = ContactTable.prefix(ids, idOff) ^ key;
+            if (candidateCount == MAX_CANDIDATES
+                    && Long.compareUnsigned(distance, candidateDistances[MAX_CANDIDATES - 1]) >= 0) {
+                return;
+            }
+            if (!seen.add(address)) {
+                return;
+            }
+            int i = candidateCount == MAX_CANDIDATES ? MAX_CANDIDATES - 1 : candidateCount++;
+            while (i > 0 && Long.compareUnsigned(candidateDistances[i - 1], distance) > 0) {
+                candidateDistances[i] = candidateDistances[i - 1];
+                candidateAddresses[i] = candidateAddresses[i - 1];
+                i--;
+            }
+            candidateDistances[i] = distance;
+            candidateAddresses[i] = address;
+        }
+
+        long pollCandidate() {
+            long address = candidateAddresses[0];
+            candidateCount--;
+            System.arraycopy(candidateDistances, 1, candidateDistances, 0, candidateCount);
+            System.arraycopy(candidateAddresses, 1, candidateAddresses, 0, candidateCount);
+            return address;
+        }
+    }
+
+    /**
+     * 获取 scrape 统计信息：覆盖率为得到任何 swarm 信息的查找占比，低估数为 values 中的 peer 多于过滤器估计的查找数
+     */
+    public String getStats() {
+        long done = completed.get();
+        long queries = queriesSent.get();
+        long out = bytesOut.get();
+        long in = bytesIn.get();
+        return String.format("scrape[active=%d, pending=%d, scrapes=%d, dropped=%d, completed=%d, timeouts=%d, "
+                           + "coverage=%.1f%%, dead=%d, underestimates=%d, queries=%d, responseRate=%.1f%%, "
+                           + "bloomResponses=%d, avgQueries=%.1f, avgMs=%.0f, bytesOut=%d, bytesIn=%d, bytesPerScrape=%.0f]",
+                           activeLookups, pending.get(), scrapes.get(), dropped.get(), done, timeouts.get(),
+                           percent(known.get(), done), dead.get(), underestimates.get(), queries,
+                           percent(responses.get(), queries), bloomResponses.get(),
+                           done == 0 ? 0.0 : lookupQueries.get() / (double) done,
+                           done == 0 ? 0.0 : lookupMillis.get() / (double) done,
+                           out, in, done == 0 ? 0.0 : (out + in) / (double) done);
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0.0 : part * 100.0 / total;
+    }
+}
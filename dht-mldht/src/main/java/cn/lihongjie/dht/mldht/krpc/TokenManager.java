@@ -0,0 +1,58 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import java.security.SecureRandom;
+
+/**
+ * get_peers / announce_peer token 管理
+ * token = hash(请求方IP, 密钥) 的低32位；密钥定期轮换，同时接受当前和上一代密钥签发的 token。
+ */
+public final class TokenManager {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final long rotateIntervalMillis;
+    private long currentSecret = RANDOM.nextLong();
+    private long previousSecret = RANDOM.nextLong();
+    private long nextRotation;
+
+    public TokenManager(long rotateIntervalMillis) {
+        this.rotateIntervalMillis = rotateIntervalMillis;
+        this.nextRotation = System.currentTimeMillis() + rotateIntervalMillis;
+    }
+
+    /**
+     * 到期时轮换密钥（由节点的事件循环调用）
+     */
+    public void maybeRotate(long now) {
+        if (now >= nextRotation) {
+            previousSecret = currentSecret;
+            currentSecret = RANDOM.nextLong();
+            nextRotation = now + rotateIntervalMillis;
+        }
+    }
+
+    public int tokenFor(int ip) {
+        return (int) mix(ip ^ currentSecret);
+    }
+
+    /**
+     * 校验 announce_peer 携带的 token
+     */
+    public boolean isValid(int ip, byte[] buf, int off, int len) {
+        if (off < 0 || len != 4) {
+            return false;
+        }
+        int token = ((buf[off] & 0xff) << 24) | ((buf[off + 1] & 0xff) << 16)
+                | ((buf[off + 2] & 0xff) << 8) | (buf[off + 3] & 0xff);
+        return token == (int) mix(ip ^ currentSecret) || token == (int) mix(ip ^ previousSecret);
+    }
+
+    /**
+     * SplitMix64 终结函数
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
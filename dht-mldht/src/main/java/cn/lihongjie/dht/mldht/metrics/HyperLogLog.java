@@ -0,0 +1,82 @@
+package cn.lihongjie.dht.mldht.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * HyperLogLog 基数估计
+ * 2^p 个寄存器，标准误差约 1.04 / sqrt(2^p)；寄存器只增不减，多个线程可以同时写入，多个实例按寄存器取最大值合并。
+ */
+public final class HyperLogLog {
+
+    private final int p;
+    private final int m;
+    private final AtomicIntegerArray registers;
+
+    public HyperLogLog(int p) {
+        if (p < 4 || p > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be in [4, 18]");
+        }
+        this.p = p;
+        this.m = 1 << p;
+        this.registers = new AtomicIntegerArray(m);
+    }
+
+    /**
+     * 加入一个值（内部会再做一次混合，输入不必均匀分布）
+     */
+    public void offer(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - p));
+        int rank = Long.numberOfLeadingZeros((hash << p) | (1L << (p - 1))) + 1;
+        int current = registers.get(index);
+        while (rank > current && !registers.compareAndSet(index, current, rank)) {
+            current = registers.get(index);
+        }
+    }
+
+    /**
+     * 把寄存器按最大值合并到 target（长度须为 2^p）
+     */
+    public void mergeInto(int[] target) {
+        for (int i = 0; i < m; i++) {
+            target[i] = Math.max(target[i], registers.get(i));
+        }
+    }
+
+    public int registerCount() {
+        return m;
+    }
+
+    public double estimate() {
+        int[] snapshot = new int[m];
+        mergeInto(snapshot);
+        return estimate(snapshot);
+    }
+
+    /**
+     * 按寄存器估计基数，小基数时用线性计数修正
+     */
+    public static double estimate(int[] registers) {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int r : registers) {
+            sum += Math.scalb(1.0, -r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return m * Math.log((double) m / zeros);
+        }
+        return estimate;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,211 @@
+package cn.lihongjie.dht.mldht.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单个爬虫节点的指标
+ * 按类型统计收到的消息；按 announce 目标与本节点ID的公共前缀位数统计分布，检验 NodeIdGenerator 的分布是否让节点
+ * 落在被 announce 的区域；用 HyperLogLog 统计见过的不同节点ID；按离本节点ID最近的 K 个已见节点估计网络规模：
+ * ID 均匀分布时，第 K 近的节点距离约占 keyspace 的 K / N。
+ * 本节点ID在启动后才确定时先以未绑定状态创建，{@link #bindOwnId} 之前只统计消息数和已见节点ID。
+ * 由节点的消息处理线程更新，导出线程读取。
+ */
+public class NodeMetrics {
+
+    /** 估计网络规模使用的最近节点数 */
+    public static final int CLOSEST_K = 16;
+
+    /** 公共前缀位数的取值为 0..160 */
+    public static final int MAX_PREFIX_BITS = 160;
+
+    private static final int ID_LENGTH = 20;
+
+    private static final double TWO_POW_64 = 0x1p64;
+
+    /**
+     * 收到的消息类型
+     */
+    public enum MessageKind {
+        PING,
+        FIND_NODE,
+        GET_PEERS,
+        ANNOUNCE_PEER,
+        SAMPLE_INFOHASHES,
+        OTHER_QUERY,
+        RESPONSE,
+        ERROR;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** 本节点ID及其高 64 位，未绑定时为 null */
+    private volatile OwnId own;
+    private final AtomicLongArray messages = new AtomicLongArray(MessageKind.values().length);
+    private final AtomicLongArray announcePrefixBits = new AtomicLongArray(MAX_PREFIX_BITS + 1);
+    private final HyperLogLog seenIds = new HyperLogLog(12);
+
+    /** 离本节点ID最近的已见节点距离（ID 高 64 位异或，无符号升序），访问时持有自身锁 */
+    private final long[] closest = new long[CLOSEST_K];
+    private int closestCount;
+    /** closest 已满时的最大距离，用于在锁外快速过滤 */
+    private volatile long closestBound = -1L;
+
+    private record OwnId(byte[] id, long prefix) {
+    }
+
+    /**
+     * 创建未绑定本节点ID的指标，ID 确定后调用 {@link #bindOwnId}
+     */
+    public NodeMetrics() {
+    }
+
+    /**
+     * @param ownId 本节点ID（多身份节点取第一个身份）
+     */
+    public NodeMetrics(byte[] ownId, int offset) {
+        bindOwnId(ownId, offset);
+    }
+
+    /**
+     * 绑定本节点ID，清空按旧ID统计的最近节点
+     */
+    public void bindOwnId(byte[] id, int offset) {
+        byte[] copy = Arrays.copyOfRange(id, offset, offset + ID_LENGTH);
+        synchronized (closest) {
+            own = new OwnId(copy, prefix(copy, 0));
+            closestCount = 0;
+            closestBound = -1L;
+        }
+    }
+
+    public boolean isBound() {
+        return own != null;
+    }
+
+    public void onMessage(MessageKind kind) {
+        messages.incrementAndGet(kind.ordinal());
+    }
+
+    /**
+     * 记录一个消息发送方的节点ID
+     */
+    public void onNodeSeen(byte[] id, int off) {
+        long idPrefix = prefix(id, off);
+        seenIds.offer(idPrefix);
+        OwnId current = own;
+        if (current == null) {
+            return;
+        }
+        long distance = idPrefix ^ current.prefix();
+        if (distance == 0 || Long.compareUnsigned(distance, closestBound) >= 0) {
+            return;
+        }
+        synchronized (closest) {
+            if (current != own) {
+                return;
+            }
+            int i = closestCount;
+            for (int j = 0; j < closestCount; j++) {
+                if (closest[j] == distance) {
+                    return;
+                }
+            }
+            if (i == CLOSEST_K) {
+                if (Long.compareUnsigned(distance, closest[CLOSEST_K - 1]) >= 0) {
+                    return;
+                }
+                i--;
+            } else {
+                closestCount++;
+            }
+            while (i > 0 && Long.compareUnsigned(closest[i - 1], distance) > 0) {
+                closest[i] = closest[i - 1];
+                i--;
+            }
+            closest[i] = distance;
+            if (closestCount == CLOSEST_K) {
+                closestBound = closest[CLOSEST_K - 1];
+            }
+        }
+    }
+
+    /**
+     * 记录一次被接受的 announce，按目标与本节点ID的公共前缀位数计入分布；未绑定本节点ID时不计入
+     */
+    public void onAnnounce(byte[] target, int off) {
+        OwnId current = own;
+        if (current != null) {
+            onAnnounce(target, off, current.id(), 0);
+        }
+    }
+
+    /**
+     * 记录一次被接受的 announce，按目标与应答身份的公共前缀位数计入分布
+     */
+    public void onAnnounce(byte[] target, int off, byte[] id, int idOff) {
+        announcePrefixBits.incrementAndGet(commonPrefixBits(target, off, id, idOff));
+    }
+
+    public long getMessages(MessageKind kind) {
+        return messages.get(kind.ordinal());
+    }
+
+    /**
+     * 各公共前缀位数（0..160）的 announce 数
+     */
+    public long[] getAnnouncePrefixBits() {
+        long[] counts = new long[MAX_PREFIX_BITS + 1];
+        for (int i = 0; i <= MAX_PREFIX_BITS; i++) {
+            counts[i] = announcePrefixBits.get(i);
+        }
+        return counts;
+    }
+
+    public HyperLogLog getSeenIds() {
+        return seenIds;
+    }
+
+    /**
+     * 网络节点数估计：(K - 1) / (第 K 近距离占 keyspace 的比例)，已见节点不足 K 个或未绑定本节点ID时返回 0
+     */
+    public double getNetworkSizeEstimate() {
+        long kth;
+        synchronized (closest) {
+            if (closestCount < CLOSEST_K) {
+                return 0;
+            }
+            kth = closest[CLOSEST_K - 1];
+        }
+        double fraction = unsigned(kth) / TWO_POW_64;
+        return (CLOSEST_K - 1) / fraction;
+    }
+
+    /**
+     * 两个 20 字节ID的公共前缀位数
+     */
+    public static int commonPrefixBits(byte[] a, int aOff, byte[] b, int bOff) {
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int x = (a[aOff + i] ^ b[bOff + i]) & 0xff;
+            if (x != 0) {
+                return i * 8 + Integer.numberOfLeadingZeros(x) - 24;
+            }
+        }
+        return MAX_PREFIX_BITS;
+    }
+
+    private static long prefix(byte[] buf, int off) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buf[off + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static double unsigned(long value) {
+        double d = (double) (value >>> 1) * 2.0;
+        return d + (value & 1);
+    }
+}
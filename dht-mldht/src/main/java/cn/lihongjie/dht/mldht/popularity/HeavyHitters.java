@@ -0,0 +1,116 @@
+package cn.lihongjie.dht.mldht.popularity;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Top-K 热门 InfoHash 候选表
+ * 固定大小的槽位数组，每个 InfoHash 有两个候选槽（由 InfoHash 不同位决定），
+ * 已在表中则刷新估计值，否则在估计值超过较小一个槽时通过 CAS 替换它，全程无锁、不随 InfoHash 数量增长。
+ * 估计值来自 SlidingCountMinSketch，输出 Top-K 时重新查询 sketch，窗口外过期的候选自然被淘汰。
+ */
+public class HeavyHitters {
+
+    /**
+     * 候选项
+     *
+     * @param infoHash 资源
+     * @param estimate 写入时的估计次数
+     */
+    public record Entry(InfoHash infoHash, int estimate) {
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    /**
+     * @param capacity 槽位数，会向上取整为2的幂；建议为 K 的4倍以上，降低候选互相挤占的概率
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid heavy hitter capacity: " + capacity);
+        }
+        int size = capacity <= 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 用最新估计值更新候选表
+     */
+    public void offer(InfoHash infoHash, int estimate) {
+        int a = infoHash.lowBits() & mask;
+        int b = (int) (infoHash.middleBits() >>> 32) & mask;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            Entry ea = slots.get(a);
+            Entry eb = slots.get(b);
+            int slot;
+            Entry current;
+            if (ea != null && ea.infoHash().equals(infoHash)) {
+                slot = a;
+                current = ea;
+            } else if (eb != null && eb.infoHash().equals(infoHash)) {
+                slot = b;
+                current = eb;
+            } else if (weight(ea) <= weight(eb)) {
+                slot = a;
+                current = ea;
+            } else {
+                slot = b;
+                current = eb;
+            }
+            boolean same = current != null && current.infoHash().equals(infoHash);
+            if (!same && estimate <= weight(current)) {
+                return;
+            }
+            if (same && estimate == current.estimate()) {
+                return;
+            }
+            if (slots.compareAndSet(slot, current, new Entry(infoHash, estimate))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按 sketch 中的最新估计值返回前 k 个，估计值已降为0的候选会被移出表
+     */
+    public List<Entry> topK(int k, SlidingCountMinSketch sketch, long nowMillis) {
+        List<Entry> entries = new ArrayList<>();
+        Set<InfoHash> seen = new HashSet<>();
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            // 并发写入时同一 InfoHash 可能短暂占据两个候选槽
+            if (entry == null || !seen.add(entry.infoHash())) {
+                continue;
+            }
+            int estimate = sketch.estimate(entry.infoHash(), nowMillis);
+            if (estimate <= 0) {
+                slots.compareAndSet(i, entry, null);
+                continue;
+            }
+            Entry refreshed = new Entry(entry.infoHash(), estimate);
+            slots.compareAndSet(i, entry, refreshed);
+            entries.add(refreshed);
+        }
+        entries.sort(Comparator.comparingInt(Entry::estimate).reversed());
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    /**
+     * 槽位数
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    private static int weight(Entry entry) {
+        return entry == null ? 0 : entry.estimate();
+    }
+}
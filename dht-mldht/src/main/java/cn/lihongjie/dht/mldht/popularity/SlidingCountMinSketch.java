@@ -0,0 +1,112 @@
+package cn.lihongjie.dht.mldht.popularity;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 滑动窗口 Count-Min Sketch
+ * 窗口被分成 buckets 个时间桶，每个桶是一个 depth x width 的计数矩阵，估计值为所有存活桶之和在各行中的最小值。
+ * 进入新的时间桶时由 CAS 胜出的线程清空最旧的桶，其余线程照常计数，全程无锁。
+ * 当前桶使用保守更新（只把各行计数提升到 min+1），显著降低热门元素碰撞带来的高估。
+ * 清空桶与并发写入之间可能丢失极少量计数，对流行度估计没有实际影响。
+ */
+public class SlidingCountMinSketch {
+
+    private final int depth;
+    private final int widthMask;
+    private final int buckets;
+    private final long bucketMillis;
+    private final AtomicIntegerArray[] counters;
+    private final AtomicLong epoch;
+
+    /**
+     * @param depth         行数（哈希函数个数）
+     * @param width         每行计数器个数，会向上取整为2的幂
+     * @param buckets       时间桶个数
+     * @param windowMillis  窗口长度
+     * @param nowMillis     当前时间
+     */
+    public SlidingCountMinSketch(int depth, int width, int buckets, long windowMillis, long nowMillis) {
+        if (depth <= 0 || width <= 0 || buckets <= 0 || windowMillis < buckets) {
+            throw new IllegalArgumentException("Invalid sketch dimensions");
+        }
+        int widthPow2 = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.widthMask = widthPow2 - 1;
+        this.buckets = buckets;
+        this.bucketMillis = windowMillis / buckets;
+        this.counters = new AtomicIntegerArray[buckets];
+        for (int i = 0; i < buckets; i++) {
+            counters[i] = new AtomicIntegerArray(depth * widthPow2);
+        }
+        this.epoch = new AtomicLong(nowMillis / bucketMillis);
+    }
+
+    /**
+     * 计数一次并返回新的估计值
+     */
+    public int add(InfoHash infoHash, long nowMillis) {
+        AtomicIntegerArray current = counters[bucketFor(nowMillis)];
+        long h1 = infoHash.highBits();
+        long h2 = infoHash.middleBits() | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, current.get(index(row, h1, h2)));
+        }
+        int target = min == Integer.MAX_VALUE ? 1 : min + 1;
+        for (int row = 0; row < depth; row++) {
+            current.accumulateAndGet(index(row, h1, h2), target, Math::max);
+        }
+        return estimate(infoHash, nowMillis);
+    }
+
+    /**
+     * 窗口内的估计次数（不小于真实值）
+     */
+    public int estimate(InfoHash infoHash, long nowMillis) {
+        bucketFor(nowMillis);
+        long h1 = infoHash.highBits();
+        long h2 = infoHash.middleBits() | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int idx = index(row, h1, h2);
+            long sum = 0;
+            for (AtomicIntegerArray bucket : counters) {
+                sum += bucket.get(idx);
+            }
+            min = Math.min(min, sum);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, min);
+    }
+
+    /**
+     * 计数器占用的内存（字节）
+     */
+    public long memoryBytes() {
+        return 4L * buckets * depth * (widthMask + 1);
+    }
+
+    /**
+     * 返回当前时间桶下标；时间进入新桶时清空过期的桶
+     */
+    private int bucketFor(long nowMillis) {
+        long now = nowMillis / bucketMillis;
+        long last = epoch.get();
+        if (now > last && epoch.compareAndSet(last, now)) {
+            long expired = Math.min(now - last, buckets);
+            for (long e = now - expired + 1; e <= now; e++) {
+                AtomicIntegerArray bucket = counters[(int) (e % buckets)];
+                for (int i = 0; i < bucket.length(); i++) {
+                    bucket.lazySet(i, 0);
+                }
+            }
+        }
+        return (int) (Math.max(now, last) % buckets);
+    }
+
+    private int index(int row, long h1, long h2) {
+        return row * (widthMask + 1) + (int) ((h1 + row * h2) & widthMask);
+    }
+}
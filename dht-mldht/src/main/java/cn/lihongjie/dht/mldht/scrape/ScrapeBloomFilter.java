@@ -0,0 +1,71 @@
+package cn.lihongjie.dht.mldht.scrape;
+
+import java.net.InetAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * BEP 33 scrape Bloom Filter
+ * 256 字节（m = 2048 位）、k = 2：对 peer IP 做 SHA-1，前两个和接着两个字节按小端序取模 2048 作为两个位下标。
+ * 多个 DHT 节点返回的 BFsd / BFpe 按位或合并，同一个 peer 在多个节点上只计一次，再按置0位数估计集合大小。
+ */
+public final class ScrapeBloomFilter {
+
+    public static final int LENGTH = 256;
+
+    private static final int M = LENGTH * 8;
+
+    private static final int K = 2;
+
+    private final byte[] bits = new byte[LENGTH];
+
+    /**
+     * 合并一个从响应中取出的过滤器
+     */
+    public void merge(byte[] src, int off) {
+        for (int i = 0; i < LENGTH; i++) {
+            bits[i] |= src[off + i];
+        }
+    }
+
+    /**
+     * 加入一个 peer 地址（IPv4 或 IPv6 原始字节）
+     */
+    public void insert(InetAddress address) {
+        byte[] hash = sha1(address.getAddress());
+        int index1 = ((hash[0] & 0xFF) | (hash[1] & 0xFF) << 8) % M;
+        int index2 = ((hash[2] & 0xFF) | (hash[3] & 0xFF) << 8) % M;
+        bits[index1 >>> 3] |= (byte) (1 << (index1 & 7));
+        bits[index2 >>> 3] |= (byte) (1 << (index2 & 7));
+    }
+
+    /**
+     * 按 BFsd / BFpe 的线上格式导出
+     */
+    public byte[] toBytes() {
+        return bits.clone();
+    }
+
+    /**
+     * 估计集合大小：size = ln(c / m) / (k * ln(1 - 1 / m))，c 为置0位数（至少为1）
+     */
+    public int estimate() {
+        int zeros = 0;
+        for (byte b : bits) {
+            zeros += 8 - Integer.bitCount(b & 0xFF);
+        }
+        if (zeros == M) {
+            return 0;
+        }
+        int c = Math.max(1, zeros);
+        return (int) Math.round(Math.log(c / (double) M) / (K * Math.log(1 - 1.0 / M)));
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
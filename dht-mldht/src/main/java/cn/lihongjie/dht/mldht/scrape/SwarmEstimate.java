@@ -0,0 +1,47 @@
+package cn.lihongjie.dht.mldht.scrape;
+
+/**
+ * 一次 BEP 33 scrape 的结果
+ *
+ * @param seeds          合并后的 BFsd 估计的做种者数
+ * @param peers          合并后的 BFpe 估计的下载者数
+ * @param bloomResponses 带 BFsd / BFpe 的响应数，为 0 时 seeds / peers 没有意义
+ * @param directPeers    响应的 values 中直接返回的不同 peer 数
+ */
+public record SwarmEstimate(int seeds, int peers, int bloomResponses, int directPeers) {
+
+    /**
+     * 是否得到了任何关于 swarm 的信息
+     */
+    public boolean known() {
+        return bloomResponses > 0 || directPeers > 0;
+    }
+
+    /**
+     * 附加到 InfoHashMessage 的做种者数：没有过滤器时只知道有 peer，不知道其中多少在做种
+     */
+    public int swarmSeeds() {
+        return bloomResponses > 0 ? seeds : 0;
+    }
+
+    /**
+     * 附加到 InfoHashMessage 的下载者数：values 中的 peer 数作为下限，过滤器为空或饱和时不会报告成 0
+     */
+    public int swarmPeers() {
+        return bloomResponses > 0 ? Math.max(peers, directPeers) : directPeers;
+    }
+
+    /**
+     * 死种：过滤器估计为空，且 values 中也没有任何 peer
+     */
+    public boolean dead() {
+        return bloomResponses > 0 && seeds == 0 && peers == 0 && directPeers == 0;
+    }
+
+    /**
+     * values 中的 peer 比过滤器估计的总数还多，说明估计偏低（过滤器饱和或响应节点太少）
+     */
+    public boolean underestimated() {
+        return bloomResponses > 0 && directPeers > seeds + peers;
+    }
+}
@@ -0,0 +1,152 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.core.KeyspaceSlice;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 多实例 keyspace 分区协调
+ * STATIC 模式使用配置的分片序号；REDIS 模式下每个实例定期把心跳写入有序集合（分值为时间戳），
+ * 按存活成员排序后的位置确定自己的区段，成员增减时通知监听者在新区段内重新分配节点ID。
+ * Redis 不可用时保留当前区段，等待下一次心跳重试。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterCoordinator {
+
+    private final DhtConfig dhtConfig;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final List<Consumer<KeyspaceSlice>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong rebalances = new AtomicLong(0);
+    private final AtomicLong heartbeatErrors = new AtomicLong(0);
+
+    private volatile KeyspaceSlice slice = KeyspaceSlice.FULL;
+    private volatile int members = 1;
+    private String instanceId;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        DhtConfig.Cluster cluster = dhtConfig.getCluster();
+        switch (cluster.getMode()) {
+            case STATIC -> {
+                slice = new KeyspaceSlice(cluster.getShardIndex(), cluster.getShardCount());
+                members = cluster.getShardCount();
+                log.info("Cluster keyspace slice (static): {}", slice);
+            }
+            case REDIS -> {
+                instanceId = cluster.getInstanceId().isEmpty() ? defaultInstanceId() : cluster.getInstanceId();
+                // 先同步完成一次心跳，节点启动时就使用正确的区段
+                heartbeat();
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "dht-cluster-heartbeat");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                scheduler.scheduleWithFixedDelay(this::heartbeat, cluster.getHeartbeatSeconds(),
+                                                 cluster.getHeartbeatSeconds(), TimeUnit.SECONDS);
+                log.info("Cluster coordination via Redis: instance={}, slice={}", instanceId, slice);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 写入心跳、清理过期成员并重新计算区段
+     */
+    void heartbeat() {
+        DhtConfig.Cluster cluster = dhtConfig.getCluster();
+        try {
+            long now = System.currentTimeMillis();
+            long expiry = now - TimeUnit.SECONDS.toMillis(cluster.getMemberTtlSeconds());
+            redisTemplate.opsForZSet().add(cluster.getMembersKey(), instanceId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(cluster.getMembersKey(), 0, expiry);
+            Set<String> alive = redisTemplate.opsForZSet().rangeByScore(cluster.getMembersKey(), expiry, Double.MAX_VALUE);
+            if (alive == null || alive.isEmpty()) {
+                return;
+            }
+            members = alive.size();
+            update(KeyspaceSlice.forMember(instanceId, alive));
+        } catch (Exception e) {
+            heartbeatErrors.incrementAndGet();
+            log.warn("Cluster heartbeat failed, keeping slice {}: {}", slice, e.getMessage());
+        }
+    }
+
+    private void update(KeyspaceSlice newSlice) {
+        if (newSlice.equals(slice)) {
+            return;
+        }
+        log.info("Cluster membership changed ({} instances): keyspace slice {} -> {}", members, slice, newSlice);
+        slice = newSlice;
+        rebalances.incrementAndGet();
+        for (Consumer<KeyspaceSlice> listener : listeners) {
+            try {
+                listener.accept(newSlice);
+            } catch (Exception e) {
+                log.error("Error rebalancing to keyspace slice {}", newSlice, e);
+            }
+        }
+    }
+
+    private String defaultInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + dhtConfig.getStartPort();
+        } catch (Exception e) {
+            return "instance-" + ProcessHandle.current().pid() + ":" + dhtConfig.getStartPort();
+        }
+    }
+
+    /**
+     * 注册区段变化监听者
+     */
+    public void addListener(Consumer<KeyspaceSlice> listener) {
+        listeners.add(listener);
+    }
+
+    public KeyspaceSlice getSlice() {
+        return slice;
+    }
+
+    /**
+     * 停止心跳并立即退出成员列表，其他实例在下一次心跳时接管本实例的区段
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            redisTemplate.opsForZSet().remove(dhtConfig.getCluster().getMembersKey(), instanceId);
+        } catch (Exception e) {
+            log.warn("Failed to leave cluster: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        return String.format("mode=%s, slice=%s, members=%d, rebalances=%d, heartbeatErrors=%d",
+                             dhtConfig.getCluster().getMode(), slice, members, rebalances.get(), heartbeatErrors.get());
+    }
+}
@@ -1,36 +1,63 @@
 package cn.lihongjie.dht.mldht.service;
 
 import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
 import cn.lihongjie.dht.mldht.core.DhtNode;
+import cn.lihongjie.dht.mldht.core.KeyspaceSlice;
 import cn.lihongjie.dht.mldht.core.NodeIdGenerator;
+import cn.lihongjie.dht.mldht.krpc.KrpcCrawlerNode;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lbms.plugins.mldht.kad.DHT;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * DHT节点管理器
- * 使用虚拟线程管理多个DHT节点
+ * 使用虚拟线程管理多个DHT节点，支持运行时增减节点（由 NodeAutoscaler 调用）和原地重启节点（由 NodeSupervisor 调用）
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DhtNodeManager {
     
+    /** IPv6 节点的序号从这里开始，与 IPv4 节点序号区分 */
+    static final int IPV6_INDEX_BASE = 1000;
+    
     private final DhtConfig dhtConfig;
     private final NodeIdGenerator nodeIdGenerator;
     private final InfoHashPublisher publisher;
+    private final InfoHashIngestQueue ingestQueue;
+    private final NodeYieldTracker yieldTracker;
+    private final ClusterCoordinator clusterCoordinator;
+    private final PopularityTracker popularityTracker;
+    private final SourceRateLimiter rateLimiter;
+    private final SwarmScrapeService scrapeService;
     
-    private final List<DhtNode> nodes = new ArrayList<>();
-    private final List<Thread> nodeThreads = new ArrayList<>();
+    private final List<CrawlerNode> nodes = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Thread> nodeThreads = new ConcurrentHashMap<>();
+    /** 可伸缩节点（不含MLDHT引擎下的采集节点）的NodeId */
+    private final Map<Integer, List<byte[]>> scalableNodeIds = new ConcurrentHashMap<>();
+    /** 已占用的节点序号，端口 = start-port + 序号 */
+    private final BitSet usedSlots = new BitSet();
+    private int identitiesPerNode = 1;
+    /** 集群分配给本实例的keyspace区段 */
+    private volatile KeyspaceSlice slice = KeyspaceSlice.FULL;
+    private long startedAtNanos;
     private ScheduledExecutorService statsScheduler;
+    /** 节点监督，启用时由 NodeSupervisor 注册（它依赖本类，不能反向注入） */
+    private volatile NodeSupervisor supervisor;
     
     /**
      * 启动所有DHT节点
@@ -39,63 +66,290 @@ public class DhtNodeManager {
     public void start() {
         log.info("========================================");
         log.info("Starting DHT Node Manager");
-        log.info("Node Count: {}", dhtConfig.getNodeCount());
+        log.info("Engine: {}", dhtConfig.getEngine());
+        log.info("Node Count: {}", dhtConfig.getEffectiveNodeCount());
         log.info("Start Port: {}", dhtConfig.getStartPort());
+        log.info("Ipv6 Nodes: {}", isIpv6Enabled() ? dhtConfig.getIpv6().getNodeCount() : 0);
+        log.info("Lure: {}", dhtConfig.getLure().isEnabled()
+                ? dhtConfig.getLure().getHost() + "/" + dhtConfig.getLure().getHost6() + " port " + dhtConfig.getLure().getPort()
+                : "disabled");
         log.info("Using Virtual Threads: {}", Thread.ofVirtual().name("test").unstarted(() -> {}).isVirtual());
         log.info("========================================");
         
-        // 生成NodeId列表
+        if (dhtConfig.getLure().isEnabled() && dhtConfig.getEngine() != DhtConfig.Engine.MLDHT) {
+            log.warn("dht.lure.enabled requires the MLDHT engine, KRPC nodes do not answer get_peers with peers");
+        }
+        
+        startedAtNanos = System.nanoTime();
+        int nodeCount = dhtConfig.getEffectiveNodeCount();
+        // KRPC引擎下每个socket可以承载多个虚拟节点身份
+        identitiesPerNode = dhtConfig.getEngine() == DhtConfig.Engine.KRPC
+                ? Math.max(1, dhtConfig.getKrpc().getIdentitiesPerSocket()) : 1;
+        int identityCount = nodeCount * identitiesPerNode;
+        slice = clusterCoordinator.getSlice();
+        
+        // 生成NodeId列表；多实例分区时始终在本实例的区段内均匀分布
         List<byte[]> nodeIds;
-        if (dhtConfig.isDistributeNodeIds()) {
-            log.info("Generating distributed NodeIds for {} nodes", dhtConfig.getNodeCount());
-            nodeIds = nodeIdGenerator.generateDistributedNodeIds(dhtConfig.getNodeCount());
+        if (dhtConfig.isDistributeNodeIds() || slice.count() > 1) {
+            log.info("Generating distributed NodeIds for {} identities in keyspace slice {}", identityCount, slice);
+            nodeIds = nodeIdGenerator.generateDistributedNodeIds(identityCount, slice);
         } else {
-            log.info("Generating random NodeIds for {} nodes", dhtConfig.getNodeCount());
+            log.info("Generating random NodeIds for {} identities", identityCount);
             nodeIds = new ArrayList<>();
-            for (int i = 0; i < dhtConfig.getNodeCount(); i++) {
+            for (int i = 0; i < identityCount; i++) {
                 nodeIds.add(nodeIdGenerator.generateRandomNodeId());
             }
         }
         
         // 创建并启动所有节点
-        for (int i = 0; i < dhtConfig.getNodeCount(); i++) {
-            final int nodeIdx = i;
+        for (int i = 0; i < nodeCount; i++) {
+            int nodeIdx = i;
             int port = dhtConfig.getPortForNode(nodeIdx);
-            byte[] nodeId = nodeIds.get(nodeIdx);
-
-            DhtNode node = new DhtNode(
-                nodeIdx,
-                port,
-                nodeId,
-                dhtConfig.getBootstrapNodes(),
-                publisher
-            );
-
-            nodes.add(node);
-
-            // 使用虚拟线程启动节点
-            Thread nodeThread = Thread.ofVirtual()
-                .name("dht-node-" + nodeIdx)
-                .start(() -> {
-                    try {
-                        node.start();
-                    } catch (Exception e) {
-                        log.error("Failed to start DHT node {}", nodeIdx, e);
-                    }
-                });
-
-            nodeThreads.add(nodeThread);
+            List<byte[]> nodeIdsForNode = interleave(nodeIds, nodeIdx, nodeCount);
+            scalableNodeIds.put(nodeIdx, nodeIdsForNode);
+            launch(createNode(nodeIdx, port, nodeIdsForNode));
+        }
 
-            log.info("Started DHT Node {} on port {} (Virtual Thread: {})",
-                     nodeIdx, port, nodeThread.isVirtual());
+        // MLDHT引擎本身不做主动采集和 scrape，额外启动一个KRPC节点负责sample_infohashes和BEP 33 scrape
+        if (dhtConfig.getEngine() == DhtConfig.Engine.MLDHT
+                && (dhtConfig.getHarvest().isEnabled() || dhtConfig.getScrape().isEnabled())) {
+            int port = dhtConfig.getPortForNode(nodeCount);
+            log.info("Starting harvester node on port {} (sample_infohashes: {}, scrape: {})", port,
+                     dhtConfig.getHarvest().isEnabled(), dhtConfig.getScrape().isEnabled());
+            launch(new KrpcCrawlerNode(nodeCount, port, nodeIdGenerator.generateRandomNodeId(),
+                                       dhtConfig.getBootstrapNodes(), ingestQueue,
+                                       dhtConfig.getKrpc(), dhtConfig.getHarvest(), dhtConfig.getLookup(),
+                                       scrapeService.newScraper()));
+        }
+        
+        // 双栈：额外加入 IPv6 DHT，这些节点不参与自动伸缩和分区重分配
+        if (isIpv6Enabled()) {
+            DhtConfig.Ipv6 ipv6 = dhtConfig.getIpv6();
+            for (int j = 0; j < ipv6.getNodeCount(); j++) {
+                launch(new DhtNode(IPV6_INDEX_BASE + j, ipv6.getPortForNode(j), nodeIdGenerator.generateRandomNodeId(),
+                                   dhtConfig.getBootstrapNodes(), ingestQueue, dhtConfig.getLookup(),
+                                   dhtConfig.getPersistence(), DHT.DHTtype.IPV6_DHT, dhtConfig.getLure()));
+            }
         }
         
+        // 集群成员变化时在新的区段内重新分配节点ID
+        clusterCoordinator.addListener(this::reassign);
+        
         // 启动统计信息定时输出
         startStatsReporter();
         
         log.info("All {} DHT nodes started successfully", nodes.size());
     }
     
+    /**
+     * 运行时新增一个节点
+     * 占用最小的空闲序号；KRPC引擎下NodeId取自当前覆盖最稀疏的keyspace区段，
+     * MLDHT引擎不采用传入的NodeId，按空隙放置没有效果，只做普通扩容
+     */
+    public synchronized CrawlerNode addNode() {
+        List<byte[]> nodeIds;
+        if (dhtConfig.getEngine() == DhtConfig.Engine.KRPC) {
+            List<byte[]> existing = new ArrayList<>();
+            for (List<byte[]> ids : scalableNodeIds.values()) {
+                existing.addAll(ids);
+            }
+            nodeIds = nodeIdGenerator.generateNodeIdsInGaps(existing, identitiesPerNode, slice);
+        } else {
+            nodeIds = List.of(nodeIdGenerator.generateRandomNodeId());
+        }
+        int nodeIdx = usedSlots.nextClearBit(0);
+        CrawlerNode node = createNode(nodeIdx, dhtConfig.getPortForNode(nodeIdx), nodeIds);
+        scalableNodeIds.put(nodeIdx, nodeIds);
+        launch(node);
+        return node;
+    }
+    
+    /**
+     * 切换到新的keyspace区段：逐个用新区段内的NodeId重启可伸缩节点，端口和序号保持不变；
+     * 只有KRPC引擎采用分配的NodeId，其他引擎只记录新区段，不重启节点
+     */
+    public synchronized void reassign(KeyspaceSlice newSlice) {
+        if (newSlice.equals(slice)) {
+            return;
+        }
+        if (dhtConfig.getEngine() != DhtConfig.Engine.KRPC) {
+            log.info("Keyspace slice changed from {} to {}, engine {} ignores assigned NodeIds, nodes keep running",
+                     slice, newSlice, dhtConfig.getEngine());
+            slice = newSlice;
+            return;
+        }
+        log.info("Rebalancing nodes from keyspace slice {} to {}", slice, newSlice);
+        slice = newSlice;
+        List<Integer> indexes = new ArrayList<>(scalableNodeIds.keySet());
+        indexes.sort(null);
+        List<byte[]> nodeIds = nodeIdGenerator.generateDistributedNodeIds(
+                Math.max(1, indexes.size() * identitiesPerNode), newSlice);
+        for (int i = 0; i < indexes.size(); i++) {
+            int nodeIdx = indexes.get(i);
+            List<byte[]> nodeIdsForNode = interleave(nodeIds, i, indexes.size());
+            retireNode(nodeIdx);
+            scalableNodeIds.put(nodeIdx, nodeIdsForNode);
+            launch(createNode(nodeIdx, dhtConfig.getPortForNode(nodeIdx), nodeIdsForNode));
+        }
+    }
+    
+    /**
+     * 交错分配，使每个socket上的身份都覆盖整个区段
+     */
+    private List<byte[]> interleave(List<byte[]> nodeIds, int position, int nodeCount) {
+        List<byte[]> result = new ArrayList<>(identitiesPerNode);
+        for (int j = position; j < nodeIds.size(); j += nodeCount) {
+            result.add(nodeIds.get(j));
+        }
+        return result;
+    }
+    
+    /**
+     * 运行时退役一个节点，释放其端口和序号
+     *
+     * @return 节点不存在或不可伸缩时返回 false
+     */
+    public synchronized boolean retireNode(int nodeIdx) {
+        if (scalableNodeIds.remove(nodeIdx) == null) {
+            return false;
+        }
+        CrawlerNode node = nodes.stream().filter(n -> n.getNodeIndex() == nodeIdx).findFirst().orElse(null);
+        if (node != null) {
+            try {
+                node.stop();
+            } catch (Exception e) {
+                log.error("Error stopping node {}", nodeIdx, e);
+            }
+            nodes.remove(node);
+            if (node instanceof KrpcCrawlerNode krpc) {
+                scrapeService.release(krpc.getScraper());
+            }
+        }
+        Thread thread = nodeThreads.remove(nodeIdx);
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        usedSlots.clear(nodeIdx);
+        yieldTracker.forget(nodeIdx);
+        log.info("Retired DHT Node {}", nodeIdx);
+        return true;
+    }
+    
+    /**
+     * 原地重启一个节点：停止后在新的虚拟线程上再次启动同一个实例，
+     * 序号、端口、NodeId 和累计计数不变，mldht 节点从停止时保存的路由表快照热启动
+     *
+     * @return 节点不存在或旧线程无法结束时返回 false
+     */
+    public synchronized boolean restartNode(int nodeIdx) {
+        CrawlerNode node = nodes.stream().filter(n -> n.getNodeIndex() == nodeIdx).findFirst().orElse(null);
+        if (node == null) {
+            return false;
+        }
+        try {
+            node.stop();
+        } catch (Exception e) {
+            log.error("Error stopping node {}", nodeIdx, e);
+        }
+        Thread thread = nodeThreads.remove(nodeIdx);
+        if (thread != null) {
+            try {
+                thread.join(5000);
+                if (thread.isAlive()) {
+                    // 仍阻塞在启动阶段的节点不会检查停止标志，中断其等待
+                    thread.interrupt();
+                    thread.join(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (thread.isAlive()) {
+                log.warn("Node {} did not stop in time, restart skipped", nodeIdx);
+                nodeThreads.put(nodeIdx, thread);
+                return false;
+            }
+        }
+        startThread(node);
+        return true;
+    }
+    
+    /**
+     * 节点线程是否仍在运行（start() 尚未返回）
+     */
+    public boolean isNodeAlive(int nodeIdx) {
+        Thread thread = nodeThreads.get(nodeIdx);
+        return thread != null && thread.isAlive();
+    }
+    
+    /**
+     * 可参与自动伸缩的节点
+     */
+    public List<CrawlerNode> getScalableNodes() {
+        List<CrawlerNode> result = new ArrayList<>();
+        for (CrawlerNode node : nodes) {
+            if (scalableNodeIds.containsKey(node.getNodeIndex())) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 使用虚拟线程启动节点
+     */
+    private void launch(CrawlerNode node) {
+        int nodeIdx = node.getNodeIndex();
+        nodes.add(node);
+        usedSlots.set(nodeIdx);
+        startThread(node);
+    }
+
+    /**
+     * 在新的虚拟线程上运行节点
+     */
+    private void startThread(CrawlerNode node) {
+        int nodeIdx = node.getNodeIndex();
+        Thread nodeThread = Thread.ofVirtual()
+            .name("dht-node-" + nodeIdx)
+            .start(() -> {
+                try {
+                    node.start();
+                } catch (Exception e) {
+                    log.error("Failed to start DHT node {}", nodeIdx, e);
+                }
+            });
+
+        nodeThreads.put(nodeIdx, nodeThread);
+
+        log.info("Started DHT Node {} on port {} (Virtual Thread: {})",
+                 nodeIdx, node.getPort(), nodeThread.isVirtual());
+    }
+
+    /**
+     * 按配置的引擎创建节点
+     */
+    private CrawlerNode createNode(int nodeIdx, int port, List<byte[]> nodeIds) {
+        if (dhtConfig.getEngine() == DhtConfig.Engine.KRPC) {
+            return new KrpcCrawlerNode(nodeIdx, port, nodeIds, dhtConfig.getBootstrapNodes(),
+                                       ingestQueue, dhtConfig.getKrpc(), dhtConfig.getHarvest(),
+                                       dhtConfig.getLookup(), scrapeService.newScraper());
+        }
+        return new DhtNode(nodeIdx, port, nodeIds.get(0), dhtConfig.getBootstrapNodes(), ingestQueue,
+                           dhtConfig.getLookup(), dhtConfig.getPersistence(), DHT.DHTtype.IPV4_DHT, dhtConfig.getLure());
+    }
+    
+    /**
+     * IPv6 只支持 mldht 引擎，KRPC 引擎的紧凑节点格式是 IPv4 的
+     */
+    private boolean isIpv6Enabled() {
+        return dhtConfig.getIpv6().isEnabled() && dhtConfig.getEngine() == DhtConfig.Engine.MLDHT;
+    }
+    
     /**
      * 启动统计信息报告器
      */
@@ -126,18 +380,85 @@ public class DhtNodeManager {
         long totalMessages = 0;
         long totalDiscovered = 0;
         
-        for (DhtNode node : nodes) {
+        NodeSupervisor currentSupervisor = supervisor;
+        for (CrawlerNode node : nodes) {
             totalMessages += node.getMessageCount().get();
             totalDiscovered += node.getDiscoveredCount().get();
-            log.info(node.getStats());
+            if (currentSupervisor == null) {
+                log.info(node.getStats());
+            } else {
+                int idx = node.getNodeIndex();
+                log.info("{} | Uptime: {}s, Restarts: {}, FailedRestarts: {}", node.getStats(),
+                         currentSupervisor.getUptimeSeconds(idx), currentSupervisor.getRestartCount(idx),
+                         currentSupervisor.getFailedRestartCount(idx));
+            }
         }
         
         log.info("Total Messages: {}", totalMessages);
         log.info("Total Discovered: {}", totalDiscovered);
+        if (dhtConfig.getEngine() == DhtConfig.Engine.KRPC) {
+            logUniqueYieldByIdMode();
+        }
+        if (isIpv6Enabled()) {
+            logYieldByFamily();
+        }
+        if (currentSupervisor != null) {
+            log.info("Supervisor: {}", currentSupervisor.getStats());
+        }
+        log.info("Cluster: {}", clusterCoordinator.getStats());
+        log.info("RateLimit: {}", rateLimiter.getStats());
+        log.info("Ingest: {}", ingestQueue.getStats());
+        log.info("Popularity: {}", popularityTracker.getStats());
+        log.info("Scrape: {}", scrapeService.getStats());
         log.info("Publisher: {}", publisher.getStats());
         log.info("========================================");
     }
     
+    /**
+     * 按节点ID模式汇总每个socket每小时的去重产出，用于对比邻居ID与均匀分布ID
+     */
+    private void logUniqueYieldByIdMode() {
+        double hours = Math.max(1e-6, (System.nanoTime() - startedAtNanos) / 3.6e12);
+        long[] unique = new long[2];
+        int[] sockets = new int[2];
+        for (CrawlerNode node : getScalableNodes()) {
+            if (node instanceof KrpcCrawlerNode krpc) {
+                int mode = krpc.isNeighborMode() ? 1 : 0;
+                unique[mode] += yieldTracker.getUniqueCount(node.getNodeIndex());
+                sockets[mode]++;
+            }
+        }
+        for (int mode = 0; mode < 2; mode++) {
+            if (sockets[mode] > 0) {
+                log.info("Unique yield [{}]: sockets={}, unique={}, unique/h/socket={}",
+                         mode == 1 ? "neighbor" : "distributed", sockets[mode], unique[mode],
+                         String.format("%.0f", unique[mode] / hours / sockets[mode]));
+            }
+        }
+    }
+    
+    /**
+     * 按地址族汇总产出，unique 按首次发现的节点计入，两个网络都见到的 InfoHash 只算一次
+     */
+    private void logYieldByFamily() {
+        long[] messages = new long[2];
+        long[] discovered = new long[2];
+        long[] unique = new long[2];
+        int[] count = new int[2];
+        for (CrawlerNode node : nodes) {
+            int family = node.isIpv6() ? 1 : 0;
+            messages[family] += node.getMessageCount().get();
+            discovered[family] += node.getDiscoveredCount().get();
+            unique[family] += yieldTracker.getUniqueCount(node.getNodeIndex());
+            count[family]++;
+        }
+        for (int family = 0; family < 2; family++) {
+            log.info("Family [{}]: nodes={}, messages={}, discovered={}, unique={}",
+                     family == 1 ? "IPv6" : "IPv4", count[family], messages[family],
+                     discovered[family], unique[family]);
+        }
+    }
+    
     /**
      * 停止所有DHT节点
      */
@@ -159,7 +480,7 @@ public class DhtNodeManager {
         }
         
         // 停止所有节点
-        for (DhtNode node : nodes) {
+        for (CrawlerNode node : nodes) {
             try {
                 node.stop();
             } catch (Exception e) {
@@ -168,7 +489,7 @@ public class DhtNodeManager {
         }
         
         // 等待虚拟线程结束
-        for (Thread thread : nodeThreads) {
+        for (Thread thread : nodeThreads.values()) {
             try {
                 thread.join(1000);
             } catch (InterruptedException e) {
@@ -182,10 +503,17 @@ public class DhtNodeManager {
         log.info("DHT Node Manager stopped");
     }
     
+    /**
+     * 注册节点监督，统计日志中附带各节点的运行时间和重启次数
+     */
+    public void setSupervisor(NodeSupervisor supervisor) {
+        this.supervisor = supervisor;
+    }
+    
     /**
      * 获取所有节点
      */
-    public List<DhtNode> getNodes() {
+    public List<CrawlerNode> getNodes() {
         return new ArrayList<>(nodes);
     }
 }
@@ -0,0 +1,157 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.mldht.ingest.IngestRingBuffer;
+import cn.lihongjie.dht.mldht.ingest.OverflowPolicy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * InfoHash接入队列
+ * DHT 收包线程只把消息放入所有节点共享的有界环形缓冲区，由独立的发布线程取出后调用 InfoHashPublisher，
+ * Redis/Kafka 变慢时只会让缓冲区按溢出策略丢弃消息，不会阻塞 UDP 处理。
+ * 入队前先按来源限流，再统计流行度（重复的 announce 也会计数）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InfoHashIngestQueue {
+
+    private final InfoHashPublisher publisher;
+    private final NodeYieldTracker yieldTracker;
+    private final PopularityTracker popularityTracker;
+    private final SourceRateLimiter rateLimiter;
+
+    @Value("${queue.size:10000}")
+    private int capacity;
+
+    @Value("${worker.threads:4}")
+    private int workerThreads;
+
+    @Value("${queue.overflow-policy:drop-oldest}")
+    private String overflowPolicy;
+
+    @Value("${queue.sample-rate:8}")
+    private int sampleRate;
+
+    private final AtomicLong drainedCount = new AtomicLong(0);
+    private final AtomicLong publishErrorCount = new AtomicLong(0);
+    private final AtomicLong highWatermark = new AtomicLong(0);
+
+    private final List<Thread> workers = new ArrayList<>();
+    private IngestRingBuffer<InfoHashMessage> buffer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        buffer = new IngestRingBuffer<>(capacity, OverflowPolicy.parse(overflowPolicy), sampleRate);
+        running = true;
+        for (int i = 0; i < Math.max(1, workerThreads); i++) {
+            Thread worker = new Thread(this::drain, "infohash-publisher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("InfoHash ingest queue started: capacity={}, workers={}, overflowPolicy={}",
+                 buffer.capacity(), workers.size(), buffer.getPolicy());
+    }
+
+    /**
+     * 提交发现的InfoHash，永不阻塞
+     *
+     * @return 是否进入队列（false 表示来源被限流或按溢出策略被丢弃）
+     */
+    public boolean submit(InfoHashMessage message) {
+        if (!rateLimiter.allow(message)) {
+            return false;
+        }
+        popularityTracker.record(message);
+        return buffer.submit(message);
+    }
+
+    /**
+     * 提交发现的InfoHash，并把去重产出记到发现它的节点上
+     */
+    public boolean submit(InfoHashMessage message, int nodeIndex) {
+        if (!rateLimiter.allow(message)) {
+            return false;
+        }
+        yieldTracker.onDiscovered(nodeIndex, message.getInfoHash());
+        popularityTracker.record(message);
+        return buffer.submit(message);
+    }
+
+    /**
+     * 发布线程：取出消息并发布，队列为空时短暂休眠
+     */
+    private void drain() {
+        int idle = 0;
+        while (running || buffer.size() > 0) {
+            InfoHashMessage message = buffer.poll();
+            if (message == null) {
+                // 先自旋让出，再逐步加长休眠，避免空转占满CPU
+                idle = Math.min(idle + 1, 1000);
+                if (idle < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(idle));
+                }
+                continue;
+            }
+            idle = 0;
+            updateHighWatermark();
+            try {
+                publisher.publish(message);
+            } catch (Exception e) {
+                publishErrorCount.incrementAndGet();
+                log.error("Error publishing InfoHash: {}", message.getInfoHash(), e);
+            }
+            drainedCount.incrementAndGet();
+        }
+    }
+
+    private void updateHighWatermark() {
+        long size = buffer.size() + 1L;
+        long current = highWatermark.get();
+        while (size > current && !highWatermark.compareAndSet(current, size)) {
+            current = highWatermark.get();
+        }
+    }
+
+    /**
+     * 停止发布线程，队列中剩余的消息会在退出前发布完
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("InfoHash ingest queue stopped: {}", getStats());
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        return String.format("Submitted: %d, Drained: %d, Queued: %d/%d, HighWatermark: %d, DroppedOldest: %d, "
+                           + "DroppedNew: %d, PublishErrors: %d, Policy: %s",
+                           buffer.getSubmitted(), drainedCount.get(), buffer.size(), buffer.capacity(),
+                           highWatermark.get(), buffer.getDroppedOldest(), buffer.getDroppedNew(),
+                           publishErrorCount.get(), buffer.getPolicy());
+    }
+}
@@ -1,9 +1,15 @@
 package cn.lihongjie.dht.mldht.service;
 
 import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.InfoHash;
 import cn.lihongjie.dht.common.model.InfoHashMessage;
-import cn.lihongjie.dht.common.util.BloomFilterUtils;
+import cn.lihongjie.dht.common.serde.InfoHashMessageCodec;
+import cn.lihongjie.dht.mldht.dedup.RotatingBloomFilter;
+import cn.lihongjie.dht.mldht.spill.SpillLog;
+import cn.lihongjie.dht.springcommon.bloom.BloomFilterBatcher;
 import cn.lihongjie.dht.springcommon.bloom.BloomFilterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,20 +17,43 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * InfoHash发布服务
  * 负责使用Bloom Filter去重和发布InfoHash到Kafka
+ * 去重分两级：进程内轮转 Bloom Filter 先挡住最近重复的 InfoHash，未命中的才访问 Redis Bloom Filter；
+ * Redis 不可用时退化为只使用本地过滤器，而不是把所有 InfoHash 都当作重复丢弃。
+ * 访问 Redis 的 EXISTS/ADD 经过 BloomFilterBatcher 合并，多个节点线程的请求在一次管道往返内完成。
+ * 发往 Kafka 的消息按 envelope-size 打包成二进制信封，凑不满时最多等待 envelope-linger-ms。
+ * Kafka 发送失败或生产者缓冲区已满时信封写入磁盘溢出日志，恢复后按顺序重放（至少一次）；
+ * 只有 broker 确认之后才把 InfoHash 标记到本地过滤器和 Redis Bloom Filter，发送失败的 InfoHash 不会被去重；
+ * 从首次未命中到确认之间（scrape 等待、信封凑批、等待确认）InfoHash 记在有上限的在途集合里，期间重复出现的直接丢弃，
+ * 确认、发送被丢弃或溢出写入失败时移出。
+ * 去重后确认是新的 InfoHash 先经过 BEP 33 scrape 附上 swarm 大小估计，发送时再写入截至此刻的流行度估计。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class InfoHashPublisher {
     
-    private final KafkaTemplate<String, InfoHashMessage> kafkaTemplate;
+    private final KafkaTemplate<String, List<InfoHashMessage>> kafkaTemplate;
     private final RedisTemplate<String, String> redisTemplate; // retained for potential future non-bloom redis ops
     private final BloomFilterService bloomFilterService;
+    private final SwarmScrapeService swarmScrapeService;
+    private final PopularityTracker popularityTracker;
     
     @Value("${dedup.enabled:true}")
     private boolean dedupEnabled;
@@ -32,68 +61,488 @@ public class InfoHashPublisher {
     @Value("${dedup.bloom.key:dht:bloom:infohash}")
     private String bloomFilterKey;
     
+    @Value("${dedup.local.enabled:true}")
+    private boolean localDedupEnabled;
+    
+    @Value("${dedup.local.size-mb:16}")
+    private int localDedupSizeMb;
+    
+    @Value("${dedup.local.shards:16}")
+    private int localDedupShards;
+    
+    @Value("${dedup.local.false-positive-rate:0.001}")
+    private double localDedupFalsePositiveRate;
+    
+    @Value("${dedup.in-flight.max-size:65536}")
+    private int inFlightMaxSize;
+    
+    @Value("${dedup.redis-retry-seconds:10}")
+    private int redisRetrySeconds;
+    
+    @Value("${dedup.batch.max-size:512}")
+    private int batchMaxSize;
+    
+    @Value("${dedup.batch.max-delay-micros:500}")
+    private long batchMaxDelayMicros;
+    
+    @Value("${dedup.batch.queue-capacity:65536}")
+    private int batchQueueCapacity;
+    
+    @Value("${kafka.infohash.envelope-size:64}")
+    private int envelopeSize;
+    
+    @Value("${kafka.infohash.envelope-linger-ms:20}")
+    private int envelopeLingerMs;
+    
+    @Value("${spill.enabled:true}")
+    private boolean spillEnabled;
+    
+    @Value("${spill.dir:./spill}")
+    private String spillDir;
+    
+    @Value("${spill.segment-mb:64}")
+    private int spillSegmentMb;
+    
+    @Value("${spill.max-segments:16}")
+    private int spillMaxSegments;
+    
+    @Value("${spill.replay-batch:64}")
+    private int replayBatch;
+    
+    @Value("${spill.replay-interval-ms:1000}")
+    private int replayIntervalMs;
+    
+    @Value("${spill.ack-timeout-seconds:30}")
+    private int ackTimeoutSeconds;
+    
     private final AtomicLong publishedCount = new AtomicLong(0);
     private final AtomicLong duplicateCount = new AtomicLong(0);
+    private final AtomicLong localHitCount = new AtomicLong(0);
+    private final AtomicLong localMissCount = new AtomicLong(0);
+    private final AtomicLong inFlightHitCount = new AtomicLong(0);
+    private final AtomicLong inFlightOverflowCount = new AtomicLong(0);
+    private final AtomicLong redisCallCount = new AtomicLong(0);
+    private final AtomicLong redisFailureCount = new AtomicLong(0);
+    private final AtomicLong degradedPublishCount = new AtomicLong(0);
+    private final AtomicLong envelopeCount = new AtomicLong(0);
+    private final AtomicLong kafkaFailureCount = new AtomicLong(0);
+    private final AtomicLong spilledCount = new AtomicLong(0);
+    private final AtomicLong spilledBytes = new AtomicLong(0);
+    private final AtomicLong spillNanos = new AtomicLong(0);
+    private final AtomicLong spillDroppedCount = new AtomicLong(0);
+    private final AtomicLong replayedCount = new AtomicLong(0);
+    private final AtomicLong replayNanos = new AtomicLong(0);
+    
+    private RotatingBloomFilter localFilter;
+    
+    /**
+     * 已通过去重、尚未得到 broker 确认的 InfoHash；达到上限后新的 InfoHash 不再记录（只是失去这段时间的去重）
+     */
+    private final Set<InfoHash> inFlight = ConcurrentHashMap.newKeySet();
+    
+    private BloomFilterBatcher bloomBatcher;
+    
+    /**
+     * Bloom Filter 回调与 broker 确认之后的处理都转到这里执行，
+     * 不占用 BloomFilterBatcher 的刷新线程（Kafka 发送可能阻塞到 max.block.ms），也不在生产者 I/O 线程上访问 Redis
+     */
+    private ExecutorService publishExecutor;
+    
+    /**
+     * 当前正在凑的信封，访问时持有 envelopeLock
+     */
+    private final Object envelopeLock = new Object();
+    private List<InfoHashMessage> envelope = new ArrayList<>();
+    private ScheduledExecutorService envelopeFlusher;
+    
+    private SpillLog spillLog;
+    private ScheduledExecutorService spillReplayer;
+    
+    /**
+     * Kafka 是否可用；不可用期间以及溢出日志未重放完之前，新的信封都写入溢出日志以保持顺序
+     */
+    private volatile boolean kafkaHealthy = true;
+    
+    /**
+     * Redis 恢复探测时间，0 表示 Redis 正常
+     */
+    private volatile long redisRetryAt;
+    
+    @PostConstruct
+    public void init() {
+        if (dedupEnabled && localDedupEnabled) {
+            localFilter = new RotatingBloomFilter(localDedupSizeMb * 1024L * 1024L, localDedupShards,
+                                                  localDedupFalsePositiveRate);
+            log.info("Local dedup filter enabled: {} MB x 2 generations, {} shards, {} hashes, capacity {} per generation",
+                     localDedupSizeMb, localDedupShards, localFilter.getHashCount(), localFilter.getCapacity());
+        }
+        if (dedupEnabled) {
+            bloomBatcher = new BloomFilterBatcher(bloomFilterService, bloomFilterKey,
+                                                  batchMaxSize, batchMaxDelayMicros, batchQueueCapacity);
+        }
+        publishExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "infohash-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (envelopeSize > 1) {
+            envelopeFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "infohash-envelope-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            envelopeFlusher.scheduleAtFixedRate(this::flushEnvelope, envelopeLingerMs, envelopeLingerMs, TimeUnit.MILLISECONDS);
+        }
+        if (spillEnabled) {
+            try {
+                spillLog = new SpillLog(Path.of(spillDir), spillSegmentMb * 1024 * 1024, spillMaxSegments);
+                if (!spillLog.isEmpty()) {
+                    kafkaHealthy = false;
+                    log.info("Spill log has {} envelopes ({} bytes) pending replay", spillLog.pendingRecords(),
+                             spillLog.pendingBytes());
+                }
+                spillReplayer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "infohash-spill-replayer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                spillReplayer.scheduleWithFixedDelay(this::replaySpill, replayIntervalMs, replayIntervalMs,
+                                                     TimeUnit.MILLISECONDS);
+                log.info("Spill log enabled: dir={}, {} MB x {} segments", spillDir, spillSegmentMb, spillMaxSegments);
+            } catch (IOException e) {
+                log.error("Failed to open spill log at {}, Kafka failures will drop InfoHashes", spillDir, e);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (envelopeFlusher != null) {
+            envelopeFlusher.shutdown();
+            flushEnvelope();
+        }
+        if (spillReplayer != null) {
+            spillReplayer.shutdownNow();
+        }
+        if (spillLog != null) {
+            spillLog.close();
+        }
+        if (publishExecutor != null) {
+            publishExecutor.shutdown();
+            try {
+                publishExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (bloomBatcher != null) {
+            bloomBatcher.close();
+        }
+    }
     
     /**
      * 发布InfoHash消息
      */
     public void publish(InfoHashMessage message) {
-        String infoHash = message.getInfoHash();
+        // Kafka key 与 Bloom Filter 成员仍使用十六进制，保持与已有数据兼容
+        String infoHash = message.getInfoHash().toHex();
         
-        // 去重检查
-        if (dedupEnabled && isDuplicate(infoHash)) {
-            duplicateCount.incrementAndGet();
-            if (duplicateCount.get() % 100 == 0) {
-                log.debug("Skipped {} duplicate InfoHashes", duplicateCount.get());
+        if (!dedupEnabled) {
+            scrapeAndSend(message, infoHash);
+            return;
+        }
+        
+        // 第一级：本地过滤器（broker 确认后才写入，发送被丢弃的 InfoHash 之后仍会重新发布）
+        if (localFilter != null) {
+            if (localFilter.mightContain(message.getInfoHash())) {
+                localHitCount.incrementAndGet();
+                onDuplicate();
+                return;
             }
+            localMissCount.incrementAndGet();
+        }
+        
+        // 同一 InfoHash 已在途（正在 scrape、凑信封或等待确认）
+        if (!markInFlight(message.getInfoHash())) {
+            inFlightHitCount.incrementAndGet();
+            onDuplicate();
             return;
         }
         
-        // 发布到Kafka
+        if (isRedisDegraded()) {
+            degradedPublishCount.incrementAndGet();
+            scrapeAndSend(message, infoHash);
+            return;
+        }
+        
+        // 第二级：Redis Bloom Filter（批量异步检查）
+        redisCallCount.incrementAndGet();
+        bloomBatcher.exists(infoHash).whenCompleteAsync((exists, ex) -> {
+            if (ex != null) {
+                onRedisFailure(ex);
+                degradedPublishCount.incrementAndGet();
+                scrapeAndSend(message, infoHash);
+            } else {
+                onRedisSuccess();
+                if (exists) {
+                    if (localFilter != null) {
+                        localFilter.put(message.getInfoHash());
+                    }
+                    inFlight.remove(message.getInfoHash());
+                    onDuplicate();
+                } else {
+                    scrapeAndSend(message, infoHash);
+                }
+            }
+        }, publishExecutor);
+    }
+    
+    /**
+     * 记为在途，已在途时返回 false；集合已满时不记录并放行
+     */
+    private boolean markInFlight(InfoHash infoHash) {
+        if (inFlight.size() >= inFlightMaxSize) {
+            if (inFlightOverflowCount.getAndIncrement() == 0) {
+                log.warn("In-flight InfoHash set is full ({}), publishing without in-flight dedup", inFlightMaxSize);
+            }
+            return !inFlight.contains(infoHash);
+        }
+        return inFlight.add(infoHash);
+    }
+    
+    /**
+     * 发送被丢弃的 InfoHash 移出在途集合，之后再次出现时重新发布
+     */
+    private void releaseInFlight(List<InfoHashMessage> messages) {
+        for (InfoHashMessage message : messages) {
+            inFlight.remove(message.getInfoHash());
+        }
+    }
+    
+    private void onDuplicate() {
+        long count = duplicateCount.incrementAndGet();
+        if (count % 100 == 0) {
+            log.debug("Skipped {} duplicate InfoHashes", count);
+        }
+    }
+    
+    /**
+     * 估计 swarm 大小后发送，估计失败不影响发送
+     */
+    private void scrapeAndSend(InfoHashMessage message, String infoHash) {
+        swarmScrapeService.attach(message).whenComplete((ignored, ex) -> send(message, infoHash));
+    }
+    
+    /**
+     * 发送到Kafka（broker 确认后才标记到 Redis Bloom Filter）
+     */
+    private void send(InfoHashMessage message, String infoHash) {
         try {
-            kafkaTemplate.send(KafkaTopics.INFOHASH_DISCOVERED, infoHash, message)
+            popularityTracker.stamp(message);
+            if (envelopeSize <= 1) {
+                // 不打包时仍以 InfoHash 作为 Kafka key
+                sendEnvelope(infoHash, List.of(message));
+            } else {
+                List<InfoHashMessage> full = null;
+                synchronized (envelopeLock) {
+                    envelope.add(message);
+                    if (envelope.size() >= envelopeSize) {
+                        full = envelope;
+                        envelope = new ArrayList<>(envelopeSize);
+                    }
+                }
+                if (full != null) {
+                    sendEnvelope(null, full);
+                }
+            }
+        } catch (Exception e) {
+            inFlight.remove(message.getInfoHash());
+            log.error("Error publishing InfoHash: {}", infoHash, e);
+        }
+    }
+    
+    /**
+     * 发送未凑满的信封（定时调用）
+     */
+    private void flushEnvelope() {
+        List<InfoHashMessage> pending;
+        synchronized (envelopeLock) {
+            if (envelope.isEmpty()) {
+                return;
+            }
+            pending = envelope;
+            envelope = new ArrayList<>(envelopeSize);
+        }
+        try {
+            sendEnvelope(null, pending);
+        } catch (Exception e) {
+            releaseInFlight(pending);
+            log.error("Error publishing InfoHash envelope of {} records", pending.size(), e);
+        }
+    }
+    
+    private void sendEnvelope(String key, List<InfoHashMessage> messages) {
+        if (spillLog != null && (!kafkaHealthy || !spillLog.isEmpty())) {
+            spill(messages);
+            return;
+        }
+        try {
+            kafkaTemplate.send(KafkaTopics.INFOHASH_DISCOVERED, key, messages)
                 .whenComplete((result, ex) -> {
                     if (ex != null) {
-                        log.error("Failed to publish InfoHash: {}", infoHash, ex);
+                        onKafkaFailure(messages, ex);
                     } else {
-                        long count = publishedCount.incrementAndGet();
-                        if (count % 100 == 0) {
-                            log.info("Published {} InfoHashes to Kafka", count);
-                        }
+                        onPublishedAsync(messages);
                     }
                 });
-            
-            // 标记为已处理
-            if (dedupEnabled) {
-                markAsProcessed(infoHash);
-            }
-            
         } catch (Exception e) {
-            log.error("Error publishing InfoHash: {}", infoHash, e);
+            // 生产者缓冲区已满（max.block.ms 超时）等同步抛出的异常
+            onKafkaFailure(messages, e);
         }
     }
     
     /**
-     * 检查InfoHash是否已经处理过（使用Redis原生BF.MEXISTS命令）
+     * 生产者回调在 Kafka I/O 线程上执行，标记 Bloom Filter 在队列满时会同步访问 Redis，转到发布线程处理
      */
-    private boolean isDuplicate(String infoHash) {
+    private void onPublishedAsync(List<InfoHashMessage> messages) {
         try {
-            return bloomFilterService.exists(bloomFilterKey, infoHash);
-        } catch (Exception e) {
-            log.error("Bloom Filter check failed via BloomFilterService for {}: {}", infoHash, e.getMessage());
-            return false;
+            publishExecutor.execute(() -> onPublished(messages));
+        } catch (RejectedExecutionException e) {
+            // 关闭期间的确认
+            onPublished(messages);
+        }
+    }
+    
+    /**
+     * broker 确认后计数，并标记到本地过滤器和 Redis Bloom Filter（批量 BF.MADD），之后移出在途集合
+     */
+    private void onPublished(List<InfoHashMessage> messages) {
+        envelopeCount.incrementAndGet();
+        if (localFilter != null) {
+            for (InfoHashMessage message : messages) {
+                localFilter.put(message.getInfoHash());
+            }
+        }
+        long before = publishedCount.getAndAdd(messages.size());
+        if ((before + messages.size()) / 100 > before / 100) {
+            log.info("Published {} InfoHashes to Kafka", before + messages.size());
+        }
+        if (bloomBatcher != null && !isRedisDegraded()) {
+            for (InfoHashMessage message : messages) {
+                redisCallCount.incrementAndGet();
+                bloomBatcher.add(message.getInfoHash().toHex());
+            }
+        }
+        releaseInFlight(messages);
+    }
+    
+    private void onKafkaFailure(List<InfoHashMessage> messages, Throwable e) {
+        kafkaFailureCount.incrementAndGet();
+        if (spillLog == null) {
+            releaseInFlight(messages);
+            log.error("Failed to publish {} InfoHashes (first: {})", messages.size(),
+                      messages.get(0).getInfoHash(), e);
+            return;
         }
+        if (kafkaHealthy) {
+            kafkaHealthy = false;
+            log.warn("Kafka publish failed, spilling InfoHashes to {} until it recovers: {}", spillDir, e.getMessage());
+        }
+        spill(messages);
     }
     
     /**
-     * 标记InfoHash为已处理（使用Redis原生BF.MADD命令）
+     * 写入溢出日志，日志已满时丢弃；写入成功的 InfoHash 保持在途，重放确认后移出
      */
-    private void markAsProcessed(String infoHash) {
+    private void spill(List<InfoHashMessage> messages) {
+        long start = System.nanoTime();
         try {
-            bloomFilterService.add(bloomFilterKey, infoHash);
+            byte[] data = InfoHashMessageCodec.encode(messages);
+            if (spillLog.append(data)) {
+                spilledCount.addAndGet(messages.size());
+                spilledBytes.addAndGet(data.length);
+            } else {
+                releaseInFlight(messages);
+                if (spillDroppedCount.getAndAdd(messages.size()) == 0) {
+                    log.error("Spill log is full ({} segments), dropping InfoHashes until Kafka recovers", spillMaxSegments);
+                }
+            }
+        } catch (IOException e) {
+            releaseInFlight(messages);
+            spillDroppedCount.addAndGet(messages.size());
+            log.error("Failed to spill {} InfoHashes", messages.size(), e);
+        }
+        spillNanos.addAndGet(System.nanoTime() - start);
+    }
+    
+    /**
+     * 按写入顺序重放溢出日志（定时调用），一批全部确认后才提交读位置
+     */
+    private void replaySpill() {
+        try {
+            while (!spillLog.isEmpty()) {
+                List<byte[]> records = spillLog.peek(replayBatch);
+                long start = System.nanoTime();
+                List<List<InfoHashMessage>> envelopes = new ArrayList<>(records.size());
+                List<CompletableFuture<?>> acks = new ArrayList<>(records.size());
+                for (byte[] record : records) {
+                    List<InfoHashMessage> messages;
+                    try {
+                        messages = InfoHashMessageCodec.decode(record);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Skipping corrupt spill record of {} bytes", record.length);
+                        continue;
+                    }
+                    if (messages.isEmpty()) {
+                        continue;
+                    }
+                    String key = messages.size() == 1 ? messages.get(0).getInfoHash().toHex() : null;
+                    envelopes.add(messages);
+                    acks.add(kafkaTemplate.send(KafkaTopics.INFOHASH_DISCOVERED, key, messages));
+                }
+                CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(ackTimeoutSeconds, TimeUnit.SECONDS);
+                spillLog.commit(records.size());
+                for (List<InfoHashMessage> messages : envelopes) {
+                    onPublished(messages);
+                    replayedCount.addAndGet(messages.size());
+                }
+                replayNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (!kafkaHealthy) {
+                kafkaHealthy = true;
+                log.info("Kafka recovered, spill log drained: {}", getSpillStats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            log.error("Bloom Filter mark failed via BloomFilterService for {}: {}", infoHash, e.getMessage());
+            // Kafka 仍不可用，整批在下个周期重试（已确认的部分会重复发送一次）
+            kafkaHealthy = false;
+            log.debug("Spill replay failed, will retry: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Redis 是否处于降级状态（到达重试时间后放行一次请求探测恢复）
+     */
+    private boolean isRedisDegraded() {
+        long retryAt = redisRetryAt;
+        return retryAt != 0 && System.currentTimeMillis() < retryAt;
+    }
+    
+    private void onRedisSuccess() {
+        if (redisRetryAt != 0) {
+            redisRetryAt = 0;
+            log.info("Redis Bloom Filter recovered, leaving local-only dedup mode");
+        }
+    }
+    
+    private void onRedisFailure(Throwable e) {
+        redisFailureCount.incrementAndGet();
+        boolean entering = redisRetryAt == 0;
+        redisRetryAt = System.currentTimeMillis() + redisRetrySeconds * 1000L;
+        if (entering) {
+            log.warn("Redis Bloom Filter unavailable, using local-only dedup for {}s: {}",
+                     redisRetrySeconds, e.getMessage());
         }
     }
     
@@ -101,7 +550,33 @@ public class InfoHashPublisher {
      * 获取统计信息
      */
     public String getStats() {
-        return String.format("Published: %d, Duplicates: %d", 
-                           publishedCount.get(), duplicateCount.get());
+        long hits = localHitCount.get();
+        long lookups = hits + localMissCount.get();
+        double hitRatio = lookups == 0 ? 0.0 : hits * 100.0 / lookups;
+        // 每次本地命中省去一次 EXISTS 和一次 ADD
+        return String.format("Published: %d, Envelopes: %d, Duplicates: %d, LocalHitRatio: %.1f%%, InFlight: %d (hits %d, overflow %d), "
+                           + "RedisCalls: %d, RedisCallsSaved: %d, "
+                           + "RedisFailures: %d, DegradedPublishes: %d, Degraded: %s, KafkaFailures: %d, Batcher[%s], Spill[%s]",
+                           publishedCount.get(), envelopeCount.get(), duplicateCount.get(), hitRatio, inFlight.size(),
+                           inFlightHitCount.get(), inFlightOverflowCount.get(), redisCallCount.get(), hits * 2,
+                           redisFailureCount.get(), degradedPublishCount.get(), isRedisDegraded(), kafkaFailureCount.get(),
+                           bloomBatcher == null ? "disabled" : bloomBatcher.getStats(), getSpillStats());
+    }
+    
+    /**
+     * 溢出日志统计，吞吐按实际写入/重放耗时计算
+     */
+    private String getSpillStats() {
+        if (spillLog == null) {
+            return "disabled";
+        }
+        return String.format("Spilled: %d (%.1f MB, %.0f/s), Replayed: %d (%.0f/s), Pending: %d envelopes in %d segments, Dropped: %d",
+                             spilledCount.get(), spilledBytes.get() / 1048576.0, rate(spilledCount.get(), spillNanos.get()),
+                             replayedCount.get(), rate(replayedCount.get(), replayNanos.get()),
+                             spillLog.pendingRecords(), spillLog.segmentCount(), spillDroppedCount.get());
+    }
+    
+    private static double rate(long count, long nanos) {
+        return nanos == 0 ? 0.0 : count * 1e9 / nanos;
     }
 }
@@ -0,0 +1,250 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
+import cn.lihongjie.dht.mldht.krpc.KrpcCrawlerNode;
+import cn.lihongjie.dht.mldht.metrics.HyperLogLog;
+import cn.lihongjie.dht.mldht.metrics.NodeMetrics;
+import cn.lihongjie.dht.mldht.metrics.PrometheusText;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 节点指标导出
+ * 本模块不是 Web 应用，用 JDK 自带的 HttpServer 在 metrics.port 上提供 Prometheus 文本格式的 /metrics：
+ * 每个节点按类型的消息数、announce 数、去重产出、路由表大小、RPC 服务器状态、运行时间与重启次数（启用节点监督时），
+ * announce 目标与节点ID公共前缀位数的直方图，以及按已见节点ID数与网络规模估计得到的 keyspace 覆盖率。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricsExporter {
+
+    /** announce 公共前缀位数直方图的桶上界 */
+    private static final int[] PREFIX_BUCKETS = {0, 4, 8, 12, 14, 16, 18, 20, 22, 24, 26, 28, 32, 40, 64};
+
+    private final DhtNodeManager nodeManager;
+    private final NodeYieldTracker yieldTracker;
+    private final NodeSupervisor supervisor;
+
+    @Value("${metrics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${metrics.host:0.0.0.0}")
+    private String host;
+
+    @Value("${metrics.port:9464}")
+    private int port;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 16);
+        } catch (IOException e) {
+            log.error("Failed to start metrics endpoint on {}:{}: {}", host, port, e.getMessage());
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        log.info("Metrics endpoint listening on http://{}:{}/metrics", host, port);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            try {
+                body = render().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                log.warn("Failed to render metrics: {}", e.getMessage());
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", PrometheusText.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * 生成全部指标
+     */
+    String render() {
+        List<CrawlerNode> nodes = nodeManager.getNodes();
+        PrometheusText text = new PrometheusText();
+
+        text.header("dht_node_up", "gauge", "1 if the node has an active RPC server");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_up", node.getActiveServerCount() > 0 ? 1 : 0, labels(node));
+        }
+        if (supervisor.isEnabled()) {
+            text.header("dht_node_uptime_seconds", "gauge", "Seconds since the node was last (re)started by the supervisor");
+            for (CrawlerNode node : nodes) {
+                long uptime = supervisor.getUptimeSeconds(node.getNodeIndex());
+                if (uptime >= 0) {
+                    text.sample("dht_node_uptime_seconds", uptime, labels(node));
+                }
+            }
+            text.header("dht_node_restarts_total", "counter", "Restarts of the node by the supervisor");
+            for (CrawlerNode node : nodes) {
+                text.sample("dht_node_restarts_total", supervisor.getRestartCount(node.getNodeIndex()), labels(node));
+            }
+            text.header("dht_node_failed_restarts_total", "counter", "Supervisor restarts of the node that failed");
+            for (CrawlerNode node : nodes) {
+                text.sample("dht_node_failed_restarts_total", supervisor.getFailedRestartCount(node.getNodeIndex()),
+                            labels(node));
+            }
+        }
+        text.header("dht_node_rpc_servers_active", "gauge", "Active RPC servers (UDP sockets) of the node");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_rpc_servers_active", node.getActiveServerCount(), labels(node));
+        }
+        text.header("dht_node_routing_table_entries", "gauge", "Routing table entries (contact table size for krpc nodes)");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_routing_table_entries", node.getRoutingTableSize(), labels(node));
+        }
+        text.header("dht_node_messages_total", "counter", "Incoming KRPC messages by kind");
+        for (CrawlerNode node : nodes) {
+            for (NodeMetrics.MessageKind kind : NodeMetrics.MessageKind.values()) {
+                text.sample("dht_node_messages_total", node.getMetrics().getMessages(kind),
+                            labels(node, "kind", kind.label()));
+            }
+        }
+        text.header("dht_node_discovered_total", "counter", "InfoHashes discovered by the node, including duplicates");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_discovered_total", node.getDiscoveredCount().get(), labels(node));
+        }
+        text.header("dht_node_unique_yield_total", "counter", "InfoHashes first seen in this process by the node");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_unique_yield_total", yieldTracker.getUniqueCount(node.getNodeIndex()), labels(node));
+        }
+
+        text.header("dht_node_announce_prefix_bits", "histogram",
+                    "Accepted announces by common prefix bits between the target and the node ID");
+        for (CrawlerNode node : nodes) {
+            long[] counts = node.getMetrics().getAnnouncePrefixBits();
+            long cumulative = 0;
+            long sum = 0;
+            int next = 0;
+            for (int bucket : PREFIX_BUCKETS) {
+                for (; next <= bucket; next++) {
+                    cumulative += counts[next];
+                    sum += (long) next * counts[next];
+                }
+                text.sample("dht_node_announce_prefix_bits_bucket", cumulative,
+                            labels(node, "le", Integer.toString(bucket)));
+            }
+            for (; next < counts.length; next++) {
+                cumulative += counts[next];
+                sum += (long) next * counts[next];
+            }
+            text.sample("dht_node_announce_prefix_bits_bucket", cumulative, labels(node, "le", "+Inf"));
+            text.sample("dht_node_announce_prefix_bits_sum", sum, labels(node));
+            text.sample("dht_node_announce_prefix_bits_count", cumulative, labels(node));
+        }
+
+        text.header("dht_node_seen_node_ids", "gauge", "Distinct node IDs seen by the node (HyperLogLog estimate)");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_seen_node_ids", Math.round(node.getMetrics().getSeenIds().estimate()), labels(node));
+        }
+        text.header("dht_node_network_size_estimate", "gauge",
+                    "DHT size estimated from the distance of the closest node IDs seen around the node ID, 0 until enough are seen");
+        for (CrawlerNode node : nodes) {
+            text.sample("dht_node_network_size_estimate", Math.round(node.getMetrics().getNetworkSizeEstimate()),
+                        labels(node));
+        }
+
+        Coverage coverage = coverage(nodes);
+        text.header("dht_seen_node_ids", "gauge", "Distinct node IDs seen by all nodes of this process (HyperLogLog estimate)");
+        text.sample("dht_seen_node_ids", Math.round(coverage.seen()));
+        text.header("dht_network_size_estimate", "gauge", "Median of the per-node DHT size estimates");
+        text.sample("dht_network_size_estimate", Math.round(coverage.networkSize()));
+        text.header("dht_keyspace_coverage_ratio", "gauge", "Fraction of the DHT's node IDs seen by this process");
+        text.sample("dht_keyspace_coverage_ratio", coverage.ratio());
+        return text.toString();
+    }
+
+    /**
+     * 合并各节点的已见节点ID，除以各节点网络规模估计的中位数
+     */
+    static Coverage coverage(List<CrawlerNode> nodes) {
+        int[] registers = null;
+        List<Double> sizes = new ArrayList<>();
+        for (CrawlerNode node : nodes) {
+            NodeMetrics metrics = node.getMetrics();
+            HyperLogLog seenIds = metrics.getSeenIds();
+            if (registers == null) {
+                registers = new int[seenIds.registerCount()];
+            }
+            seenIds.mergeInto(registers);
+            double size = metrics.getNetworkSizeEstimate();
+            if (size > 0) {
+                sizes.add(size);
+            }
+        }
+        double seen = registers == null ? 0 : HyperLogLog.estimate(registers);
+        if (sizes.isEmpty()) {
+            return new Coverage(seen, 0, 0);
+        }
+        sizes.sort(null);
+        int mid = sizes.size() / 2;
+        double median = sizes.size() % 2 == 1 ? sizes.get(mid) : (sizes.get(mid - 1) + sizes.get(mid)) / 2;
+        return new Coverage(seen, median, Math.min(1.0, seen / median));
+    }
+
+    record Coverage(double seen, double networkSize, double ratio) {
+    }
+
+    private static String[] labels(CrawlerNode node, String... extra) {
+        String[] labels = new String[6 + extra.length];
+        labels[0] = "node";
+        labels[1] = Integer.toString(node.getNodeIndex());
+        labels[2] = "engine";
+        labels[3] = node instanceof KrpcCrawlerNode ? "krpc" : "mldht";
+        labels[4] = "family";
+        labels[5] = node.isIpv6() ? "ipv6" : "ipv4";
+        System.arraycopy(extra, 0, labels, 6, extra.length);
+        return labels;
+    }
+}
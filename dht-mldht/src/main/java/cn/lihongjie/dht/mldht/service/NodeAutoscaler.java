@@ -0,0 +1,159 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.core.AutoscalePolicy;
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点自动伸缩
+ * 每个周期采集各节点的去重产出、消息速率和进程CPU，由 AutoscalePolicy 决定扩容、退役或保持。
+ * 扩容节点的NodeId只在KRPC引擎下按keyspace空隙放置；MLDHT节点使用库自己的ID，扩容时不影响keyspace覆盖。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NodeAutoscaler {
+
+    private final DhtConfig dhtConfig;
+    private final DhtNodeManager nodeManager;
+    private final NodeYieldTracker yieldTracker;
+
+    private final Map<Integer, Counters> lastCounters = new HashMap<>();
+    private final AtomicLong added = new AtomicLong(0);
+    private final AtomicLong retired = new AtomicLong(0);
+
+    private AutoscalePolicy policy;
+    private ScheduledExecutorService scheduler;
+    private long lastCpuNanos;
+    private long lastSampleNanos;
+    private volatile String lastDecision = "none";
+    private volatile double lastEfficiency;
+
+    /**
+     * 上一周期的累计计数，用于计算速率
+     */
+    private record Counters(long firstSeenNanos, long unique, long messages) {
+    }
+
+    @PostConstruct
+    public void start() {
+        DhtConfig.Autoscale config = dhtConfig.getAutoscale();
+        if (!config.isEnabled()) {
+            return;
+        }
+        policy = new AutoscalePolicy(config);
+        lastCpuNanos = processCpuNanos();
+        lastSampleNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dht-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                evaluate();
+            } catch (Exception e) {
+                log.error("Error evaluating node autoscaling", e);
+            }
+        }, config.getIntervalSeconds(), config.getIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("Node autoscaler started: nodes {}..{}, interval={}s, warmup={}s, maxCpuLoad={}",
+                 config.getMinNodes(), config.getMaxNodes(), config.getIntervalSeconds(),
+                 config.getWarmupSeconds(), config.getMaxCpuLoad());
+    }
+
+    /**
+     * 一个评估周期
+     */
+    void evaluate() {
+        long now = System.nanoTime();
+        long cpuNanos = processCpuNanos();
+        double elapsedSeconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        double coresUsed = cpuNanos < 0 || lastCpuNanos < 0 ? -1 : (cpuNanos - lastCpuNanos) / 1e9 / elapsedSeconds;
+        double cpuLoad = coresUsed < 0 ? -1 : coresUsed / Runtime.getRuntime().availableProcessors();
+        lastCpuNanos = cpuNanos;
+        lastSampleNanos = now;
+
+        List<AutoscalePolicy.NodeSample> samples = new ArrayList<>();
+        Map<Integer, Counters> current = new HashMap<>();
+        for (CrawlerNode node : nodeManager.getScalableNodes()) {
+            int idx = node.getNodeIndex();
+            long unique = yieldTracker.getUniqueCount(idx);
+            long messages = node.getMessageCount().get();
+            Counters previous = lastCounters.get(idx);
+            Counters counters = previous == null
+                    ? new Counters(now, unique, messages)
+                    : new Counters(previous.firstSeenNanos(), unique, messages);
+            current.put(idx, counters);
+            double uniqueRate = previous == null ? 0 : (unique - previous.unique()) / elapsedSeconds;
+            double packetRate = previous == null ? 0 : (messages - previous.messages()) / elapsedSeconds;
+            long age = TimeUnit.NANOSECONDS.toSeconds(now - counters.firstSeenNanos());
+            samples.add(new AutoscalePolicy.NodeSample(idx, age, uniqueRate, packetRate));
+        }
+        lastCounters.clear();
+        lastCounters.putAll(current);
+
+        lastEfficiency = AutoscalePolicy.efficiency(samples, Math.max(coresUsed, 0));
+        AutoscalePolicy.Decision decision = policy.decide(samples, Math.max(coresUsed, 0), cpuLoad);
+        lastDecision = decision.action() + " (" + decision.reason() + ")";
+        log.info("Autoscale: nodes={}, cores={}, unique/s/core={}, packets/s={}, decision={}",
+                 samples.size(), String.format("%.2f", coresUsed), String.format("%.2f", lastEfficiency),
+                 String.format("%.0f", samples.stream().mapToDouble(AutoscalePolicy.NodeSample::packetRate).sum()),
+                 lastDecision);
+
+        switch (decision.action()) {
+            case ADD -> {
+                CrawlerNode node = nodeManager.addNode();
+                policy.onAdded(node.getNodeIndex());
+                added.incrementAndGet();
+            }
+            case RETIRE -> {
+                if (nodeManager.retireNode(decision.nodeIndex())) {
+                    lastCounters.remove(decision.nodeIndex());
+                    retired.incrementAndGet();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 进程累计CPU时间（纳秒），不支持时返回 -1
+     */
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        return String.format("enabled=%s, added=%d, retired=%d, unique/s/core=%.2f, last=%s",
+                             policy != null, added.get(), retired.get(), lastEfficiency, lastDecision);
+    }
+}
@@ -0,0 +1,152 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
+import cn.lihongjie.dht.mldht.core.SupervisorPolicy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点监督
+ * 定期检查所有节点（含采集节点和 IPv6 节点），已停止或卡死的节点由 SupervisorPolicy 按退避原地重启，
+ * 避免部分节点失效后悄悄拉低发现速率。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NodeSupervisor {
+
+    private final DhtConfig dhtConfig;
+    private final DhtNodeManager nodeManager;
+
+    private final AtomicLong restarts = new AtomicLong(0);
+    private final AtomicLong failedRestarts = new AtomicLong(0);
+
+    private volatile SupervisorPolicy policy;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        DhtConfig.Supervisor config = dhtConfig.getSupervisor();
+        if (!config.isEnabled()) {
+            return;
+        }
+        policy = new SupervisorPolicy(config);
+        nodeManager.setSupervisor(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dht-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (Exception e) {
+                log.error("Error supervising DHT nodes", e);
+            }
+        }, config.getIntervalSeconds(), config.getIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("Node supervisor started: interval={}s, grace={}s, stall={}s, backoff={}..{}s",
+                 config.getIntervalSeconds(), config.getGraceSeconds(), config.getStallSeconds(),
+                 config.getInitialBackoffSeconds(), config.getMaxBackoffSeconds());
+    }
+
+    /**
+     * 一个检查周期
+     */
+    void check() {
+        List<SupervisorPolicy.NodeSample> samples = new ArrayList<>();
+        for (CrawlerNode node : nodeManager.getNodes()) {
+            samples.add(new SupervisorPolicy.NodeSample(node.getNodeIndex(), nodeManager.isNodeAlive(node.getNodeIndex()),
+                                                        node.getMessageCount().get(), node.getActiveServerCount()));
+        }
+        List<SupervisorPolicy.Restart> pending = policy.check(samples, System.nanoTime());
+        for (SupervisorPolicy.Restart restart : pending) {
+            log.warn("Restarting DHT node {} ({}), previous restarts: {}",
+                     restart.nodeIndex(), restart.reason(), policy.restarts(restart.nodeIndex()));
+            boolean restarted;
+            try {
+                restarted = nodeManager.restartNode(restart.nodeIndex());
+            } catch (Exception e) {
+                log.error("Failed to restart DHT node {}", restart.nodeIndex(), e);
+                restarted = false;
+            }
+            if (restarted) {
+                policy.onRestarted(restart, System.nanoTime());
+                restarts.incrementAndGet();
+            } else {
+                // 失败同样退避，避免确定性失败的节点每个周期都被重启
+                policy.onRestartFailed(restart, System.nanoTime());
+                failedRestarts.incrementAndGet();
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Supervisor: {}", getStats());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 节点自上次（重）启动以来的运行时间（秒），未启用或尚未检查过时返回 -1
+     */
+    public long getUptimeSeconds(int nodeIndex) {
+        SupervisorPolicy current = policy;
+        return current == null ? -1 : current.uptimeSeconds(nodeIndex, System.nanoTime());
+    }
+
+    /**
+     * 节点被重启的次数
+     */
+    public int getRestartCount(int nodeIndex) {
+        SupervisorPolicy current = policy;
+        return current == null ? 0 : current.restarts(nodeIndex);
+    }
+
+    /**
+     * 节点重启失败的次数
+     */
+    public int getFailedRestartCount(int nodeIndex) {
+        SupervisorPolicy current = policy;
+        return current == null ? 0 : current.failedRestarts(nodeIndex);
+    }
+
+    public boolean isEnabled() {
+        return policy != null;
+    }
+
+    /**
+     * 获取统计信息，逐个列出重启过的节点
+     */
+    public String getStats() {
+        StringBuilder restarted = new StringBuilder();
+        SupervisorPolicy current = policy;
+        if (current != null) {
+            long now = System.nanoTime();
+            for (CrawlerNode node : nodeManager.getNodes()) {
+                int idx = node.getNodeIndex();
+                if (current.restarts(idx) > 0 || current.failedRestarts(idx) > 0) {
+                    restarted.append(String.format(" [%d: restarts=%d, failed=%d, uptime=%ds, last=%s]", idx,
+                                                   current.restarts(idx), current.failedRestarts(idx),
+                                                   current.uptimeSeconds(idx, now), current.lastReason(idx)));
+                }
+            }
+        }
+        return String.format("enabled=%s, restarts=%d, failed=%d%s",
+                             current != null, restarts.get(), failedRestarts.get(), restarted);
+    }
+}
@@ -0,0 +1,48 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.dedup.RotatingBloomFilter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按节点统计去重产出
+ * 所有节点共用一个进程内轮转过滤器，某个 InfoHash 第一次出现时记到发现它的节点上，
+ * 这样多个节点重复发现的热门资源只算一次，反映的是节点带来的“新”InfoHash。
+ * 自动伸缩和节点ID模式对比都依赖该统计。
+ */
+@Component
+public class NodeYieldTracker {
+
+    private final RotatingBloomFilter seen;
+    private final ConcurrentMap<Integer, LongAdder> unique = new ConcurrentHashMap<>();
+
+    public NodeYieldTracker(DhtConfig dhtConfig) {
+        this.seen = new RotatingBloomFilter(dhtConfig.getAutoscale().getYieldFilterSizeKb() * 1024L, 16, 0.001);
+    }
+
+    public void onDiscovered(int nodeIndex, InfoHash infoHash) {
+        if (!seen.checkAndPut(infoHash)) {
+            unique.computeIfAbsent(nodeIndex, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * 节点累计的去重产出
+     */
+    public long getUniqueCount(int nodeIndex) {
+        LongAdder adder = unique.get(nodeIndex);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * 节点退役后清除计数，序号被新节点复用时从0开始
+     */
+    public void forget(int nodeIndex) {
+        unique.remove(nodeIndex);
+    }
+}
@@ -0,0 +1,197 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.PeerLookupReply;
+import cn.lihongjie.dht.common.model.PeerLookupRequest;
+import cn.lihongjie.dht.common.serde.PeerLookupCodec;
+import cn.lihongjie.dht.mldht.core.CrawlerNode;
+import cn.lihongjie.dht.mldht.core.DhtNode;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peer 查找服务
+ * 为 BT客户端提供 get_peers 查找：消费请求主题，用已经预热的 mldht 节点路由表查找每个 InfoHash 的 peer，
+ * 结果以请求方实例ID为 key 发到回复主题。BT客户端因此不必再自己启动一个 DHT。
+ * 每个 InfoHash 在每个地址族上各用一个节点查找（节点轮流使用），结果合并去重；
+ * 同时进行的查找数有上限，超出的 InfoHash 直接回复空列表，由客户端退回其他 peer 来源。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PeerLookupService {
+
+    private final DhtNodeManager nodeManager;
+    private final KafkaTemplate<String, byte[]> peerLookupKafkaTemplate;
+
+    @Value("${peer-lookup.max-concurrent:256}")
+    private int maxConcurrent;
+
+    @Value("${peer-lookup.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    @Value("${peer-lookup.max-peers:50}")
+    private int maxPeersLimit;
+
+    private Semaphore permits;
+    private final AtomicInteger nextNode = new AtomicInteger(0);
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong lookups = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong empty = new AtomicLong(0);
+    private final AtomicLong peersFound = new AtomicLong(0);
+    private final AtomicLong lookupNanos = new AtomicLong(0);
+    private final AtomicLong replyFailures = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * 处理一个查找请求，查找在 mldht 线程中异步进行，不阻塞消费线程
+     */
+    @KafkaListener(
+        topics = KafkaTopics.PEER_LOOKUP_REQUEST,
+        groupId = "${peer-lookup.group-id:dht-mldht-peer-lookup}",
+        containerFactory = "peerLookupListenerFactory",
+        autoStartup = "${peer-lookup.enabled:true}"
+    )
+    public void onRequest(byte[] payload) {
+        PeerLookupRequest request;
+        try {
+            request = PeerLookupCodec.decodeRequest(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping invalid peer lookup request: {}", e.getMessage());
+            return;
+        }
+        if (requests.incrementAndGet() % 100 == 0) {
+            log.info("PeerLookup: {}", getStats());
+        }
+        int maxPeers = request.getMaxPeers() <= 0 ? maxPeersLimit : Math.min(request.getMaxPeers(), maxPeersLimit);
+        List<InfoHash> infoHashes = request.getInfoHashes();
+        List<CompletableFuture<List<InetSocketAddress>>> futures = new ArrayList<>(infoHashes.size());
+        for (InfoHash infoHash : infoHashes) {
+            futures.add(lookup(infoHash, maxPeers));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).whenComplete((v, ex) -> {
+            Map<InfoHash, List<InetSocketAddress>> peers = new LinkedHashMap<>();
+            for (int i = 0; i < infoHashes.size(); i++) {
+                List<InetSocketAddress> found = futures.get(i).getNow(List.of());
+                peers.put(infoHashes.get(i), found == null ? List.of() : found);
+            }
+            reply(request, peers);
+        });
+    }
+
+    /**
+     * 在每个地址族上各选一个运行中的节点查找并合并结果；没有可用节点或超出并发上限时返回空列表
+     */
+    CompletableFuture<List<InetSocketAddress>> lookup(InfoHash infoHash, int maxPeers) {
+        List<DhtNode> candidates = pickNodes();
+        if (candidates.isEmpty() || !permits.tryAcquire(candidates.size())) {
+            rejected.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of());
+        }
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<List<InetSocketAddress>>> parts = new ArrayList<>(candidates.size());
+        for (DhtNode node : candidates) {
+            CompletableFuture<List<InetSocketAddress>> part = null;
+            try {
+                part = node.lookupPeers(infoHash, maxPeers, timeoutMillis);
+            } catch (Exception e) {
+                log.debug("Node {} peer lookup failed: {}", node.getNodeIndex(), e.getMessage());
+            }
+            parts.add(part == null ? CompletableFuture.completedFuture(List.of()) : part.exceptionally(ex -> List.of()));
+        }
+        lookups.incrementAndGet();
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).handle((v, ex) -> {
+            permits.release(candidates.size());
+            Set<InetSocketAddress> merged = new LinkedHashSet<>();
+            for (CompletableFuture<List<InetSocketAddress>> part : parts) {
+                for (InetSocketAddress peer : part.getNow(List.of())) {
+                    if (merged.size() < maxPeers) {
+                        merged.add(peer);
+                    }
+                }
+            }
+            lookupNanos.addAndGet(System.nanoTime() - startNanos);
+            peersFound.addAndGet(merged.size());
+            if (merged.isEmpty()) {
+                empty.incrementAndGet();
+            }
+            return List.copyOf(merged);
+        });
+    }
+
+    /**
+     * 每个地址族轮流选一个运行中的 mldht 节点
+     */
+    private List<DhtNode> pickNodes() {
+        List<DhtNode> ipv4 = new ArrayList<>();
+        List<DhtNode> ipv6 = new ArrayList<>();
+        for (CrawlerNode node : nodeManager.getNodes()) {
+            if (node instanceof DhtNode dhtNode && dhtNode.getActiveServerCount() > 0) {
+                (dhtNode.isIpv6() ? ipv6 : ipv4).add(dhtNode);
+            }
+        }
+        int turn = nextNode.getAndIncrement() & Integer.MAX_VALUE;
+        List<DhtNode> picked = new ArrayList<>(2);
+        if (!ipv4.isEmpty()) {
+            picked.add(ipv4.get(turn % ipv4.size()));
+        }
+        if (!ipv6.isEmpty()) {
+            picked.add(ipv6.get(turn % ipv6.size()));
+        }
+        return picked;
+    }
+
+    private void reply(PeerLookupRequest request, Map<InfoHash, List<InetSocketAddress>> peers) {
+        try {
+            byte[] payload = PeerLookupCodec.encodeReply(PeerLookupReply.builder()
+                    .requestId(request.getRequestId())
+                    .peers(peers)
+                    .build());
+            peerLookupKafkaTemplate.send(KafkaTopics.PEER_LOOKUP_REPLY, request.getReplyTo(), payload)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        replyFailures.incrementAndGet();
+                        log.warn("Failed to send peer lookup reply {}: {}", request.getRequestId(), ex.getMessage());
+                    }
+                });
+        } catch (Exception e) {
+            replyFailures.incrementAndGet();
+            log.warn("Failed to send peer lookup reply {}: {}", request.getRequestId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        long done = lookups.get();
+        return String.format("requests=%d, lookups=%d, rejected=%d, empty=%d, avgPeers=%.1f, avgLookupMs=%.0f, replyFailures=%d",
+                             requests.get(), done, rejected.get(), empty.get(),
+                             done == 0 ? 0.0 : (double) peersFound.get() / done,
+                             done == 0 ? 0.0 : lookupNanos.get() / 1e6 / done, replyFailures.get());
+    }
+}
@@ -0,0 +1,167 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.constants.KafkaTopics;
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.mldht.popularity.HeavyHitters;
+import cn.lihongjie.dht.mldht.popularity.SlidingCountMinSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InfoHash流行度统计
+ * 在去重之前统计每次 announce（包括重复的），用滑动窗口 Count-Min Sketch 估计次数；
+ * 重复的 InfoHash 不会再次发布，因此估计值在发送时（scrape 等待之后）才写入消息的 popularity 字段，而不是首次发现时，
+ * 同时维护固定大小的 Top-K 候选表，定期把最热门的 InfoHash 发布到 dht.infohash.popular 主题。
+ * 内存占用固定，与见过的 InfoHash 数量无关。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PopularityTracker {
+
+    private final KafkaTemplate<String, List<InfoHashMessage>> kafkaTemplate;
+
+    @Value("${popularity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${popularity.window-seconds:3600}")
+    private long windowSeconds;
+
+    @Value("${popularity.buckets:6}")
+    private int buckets;
+
+    @Value("${popularity.sketch.depth:4}")
+    private int depth;
+
+    @Value("${popularity.sketch.width:131072}")
+    private int width;
+
+    @Value("${popularity.top-k:100}")
+    private int topK;
+
+    @Value("${popularity.emit-interval-seconds:60}")
+    private int emitIntervalSeconds;
+
+    private final AtomicLong recordedCount = new AtomicLong(0);
+    private final AtomicLong emittedCount = new AtomicLong(0);
+
+    private SlidingCountMinSketch sketch;
+    private HeavyHitters heavyHitters;
+    private ScheduledExecutorService emitter;
+    private volatile int lastTopEstimate;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        sketch = new SlidingCountMinSketch(depth, width, buckets, TimeUnit.SECONDS.toMillis(windowSeconds),
+                                           System.currentTimeMillis());
+        heavyHitters = new HeavyHitters(topK * 4);
+        if (topK > 0 && emitIntervalSeconds > 0) {
+            emitter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "popularity-emitter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            emitter.scheduleWithFixedDelay(this::emitTopK, emitIntervalSeconds, emitIntervalSeconds, TimeUnit.SECONDS);
+        }
+        log.info("Popularity tracker enabled: window={}s in {} buckets, sketch {}x{} ({} KB), top-k={} every {}s",
+                 windowSeconds, buckets, depth, width, sketch.memoryBytes() / 1024, topK, emitIntervalSeconds);
+    }
+
+    /**
+     * 统计一次发现
+     * 只有 announce（以及未标注来源的旧路径）计入流行度，其他来源不计数。
+     */
+    public void record(InfoHashMessage message) {
+        if (sketch == null) {
+            return;
+        }
+        DiscoverySource source = message.getSource();
+        if (source == null || source == DiscoverySource.ANNOUNCE) {
+            int estimate = sketch.add(message.getInfoHash(), System.currentTimeMillis());
+            heavyHitters.offer(message.getInfoHash(), estimate);
+            recordedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 把当前估计值写入即将发布的消息：窗口内截至发送时的 announce 次数，包含首次发现之后、发送之前的重复
+     */
+    public void stamp(InfoHashMessage message) {
+        if (sketch == null) {
+            return;
+        }
+        message.setPopularity(estimate(message.getInfoHash()));
+    }
+
+    public int estimate(InfoHash infoHash) {
+        return sketch == null ? 0 : sketch.estimate(infoHash, System.currentTimeMillis());
+    }
+
+    /**
+     * 发布当前 Top-K（定时调用）
+     */
+    private void emitTopK() {
+        try {
+            Instant now = Instant.now();
+            List<HeavyHitters.Entry> top = heavyHitters.topK(topK, sketch, now.toEpochMilli());
+            if (top.isEmpty()) {
+                return;
+            }
+            lastTopEstimate = top.get(0).estimate();
+            List<InfoHashMessage> messages = new ArrayList<>(top.size());
+            for (HeavyHitters.Entry entry : top) {
+                messages.add(InfoHashMessage.builder()
+                        .infoHash(entry.infoHash())
+                        .discoveredAt(now)
+                        .popularity(entry.estimate())
+                        .build());
+            }
+            kafkaTemplate.send(KafkaTopics.INFOHASH_POPULAR, null, messages)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("Failed to publish top {} popular InfoHashes", messages.size(), ex);
+                    } else {
+                        emittedCount.incrementAndGet();
+                    }
+                });
+        } catch (Exception e) {
+            log.error("Error emitting popular InfoHashes", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (emitter != null) {
+            emitter.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        if (sketch == null) {
+            return "disabled";
+        }
+        return String.format("Recorded: %d, TopKEmits: %d, TopEstimate: %d, SketchMemory: %d KB",
+                             recordedCount.get(), emittedCount.get(), lastTopEstimate, sketch.memoryBytes() / 1024);
+    }
+}
@@ -0,0 +1,180 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.mldht.ingest.TokenBucketTable;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按来源限流
+ * 少数异常节点会 announce 大量随机 InfoHash，这些 InfoHash 永远拿不到元数据，却会占用 bt-client 的下载名额。
+ * 按来源 IP 和所在网段（IPv4 /24、IPv6 /64）各维护一张令牌桶表，超出速率的消息在入队前丢弃，
+ * 不会产生 Redis 或 Kafka 调用。主动采集（SAMPLE）的结果是我们自己请求的，不限流。
+ */
+@Slf4j
+@Service
+public class SourceRateLimiter {
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.table-size:65536}")
+    private int tableSize;
+
+    @Value("${ratelimit.ip.rate-per-second:10}")
+    private int ipRate;
+
+    @Value("${ratelimit.ip.burst:100}")
+    private int ipBurst;
+
+    @Value("${ratelimit.subnet.rate-per-second:50}")
+    private int subnetRate;
+
+    @Value("${ratelimit.subnet.burst:500}")
+    private int subnetBurst;
+
+    @Value("${ratelimit.top-offenders:5}")
+    private int topOffenders;
+
+    private final AtomicLong allowedCount = new AtomicLong(0);
+    private final AtomicLong ipThrottledCount = new AtomicLong(0);
+    private final AtomicLong subnetThrottledCount = new AtomicLong(0);
+
+    private TokenBucketTable ipBuckets;
+    private TokenBucketTable subnetBuckets;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ipBuckets = new TokenBucketTable(tableSize, ipRate, ipBurst, now);
+        subnetBuckets = new TokenBucketTable(tableSize, subnetRate, subnetBurst, now);
+        log.info("Source rate limiter enabled: ip {}/s (burst {}), subnet {}/s (burst {}), {} buckets per table",
+                 ipRate, ipBurst, subnetRate, subnetBurst, ipBuckets.size());
+    }
+
+    /**
+     * 检查消息来源是否超出速率
+     *
+     * @return false 表示应丢弃
+     */
+    public boolean allow(InfoHashMessage message) {
+        String ip = message.getSourceIp();
+        if (ipBuckets == null || ip == null || message.getSource() == DiscoverySource.SAMPLE) {
+            return true;
+        }
+        long ipKey;
+        long subnetKey;
+        long v4 = parseIpv4(ip);
+        if (v4 >= 0) {
+            ipKey = v4;
+            subnetKey = v4 >>> 8;
+        } else {
+            long[] v6 = parseIpv6(ip);
+            if (v6 == null) {
+                return true;
+            }
+            ipKey = v6[0] * 31 + v6[1];
+            subnetKey = v6[0];
+        }
+        long now = System.currentTimeMillis();
+        if (!ipBuckets.tryAcquire(ipKey, ip, now)) {
+            ipThrottledCount.incrementAndGet();
+            return false;
+        }
+        if (!subnetBuckets.tryAcquire(subnetKey, ip, now)) {
+            subnetThrottledCount.incrementAndGet();
+            return false;
+        }
+        allowedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 解析点分十进制 IPv4，不是 IPv4 时返回 -1
+     */
+    static long parseIpv4(String ip) {
+        long value = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                value = value << 8 | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        return dots == 3 && octet >= 0 ? value << 8 | octet : -1;
+    }
+
+    /**
+     * 解析 IPv6 字面量为高低两个 long，无法解析时返回 null
+     */
+    private static long[] parseIpv6(String ip) {
+        if (ip.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            // 含冒号的字面量不会触发 DNS 查询
+            byte[] bytes = InetAddress.getByName(ip).getAddress();
+            if (bytes.length != 16) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            return new long[]{buf.getLong(), buf.getLong()};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 网段名称：IPv4 显示为 a.b.c.0/24，IPv6 显示为地址加 /64
+     */
+    static String subnetLabel(String ip) {
+        if (parseIpv4(ip) >= 0) {
+            return ip.substring(0, ip.lastIndexOf('.')) + ".0/24";
+        }
+        return ip + "/64";
+    }
+
+    private static String format(List<TokenBucketTable.Offender> offenders, boolean subnet) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (TokenBucketTable.Offender offender : offenders) {
+            String label = offender.label() == null ? "?" : subnet ? subnetLabel(offender.label()) : offender.label();
+            joiner.add(label + "=" + offender.count());
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        if (ipBuckets == null) {
+            return "disabled";
+        }
+        return String.format("Allowed: %d, ThrottledIp: %d, ThrottledSubnet: %d, TopIps: %s, TopSubnets: %s",
+                             allowedCount.get(), ipThrottledCount.get(), subnetThrottledCount.get(),
+                             format(ipBuckets.topThrottled(topOffenders), false),
+                             format(subnetBuckets.topThrottled(topOffenders), true));
+    }
+}
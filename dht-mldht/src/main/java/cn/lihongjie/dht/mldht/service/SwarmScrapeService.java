@@ -0,0 +1,147 @@
+package cn.lihongjie.dht.mldht.service;
+
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.krpc.SwarmScraper;
+import cn.lihongjie.dht.mldht.scrape.SwarmEstimate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * swarm 大小估计服务
+ * 发布新 InfoHash 之前，轮流交给运行中的 KRPC 节点做 BEP 33 scrape，把估计的做种者和下载者数写入消息，
+ * bt-client 据此跳过或推后死种。没有可用节点、排队已满或超时时不做估计，消息照常发布。
+ * 估计结果在独立线程上写入消息，不占用节点事件循环。
+ */
+@Service
+@RequiredArgsConstructor
+public class SwarmScrapeService {
+
+    private final DhtConfig dhtConfig;
+
+    private final List<SwarmScraper> scrapers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger cursor = new AtomicInteger(0);
+
+    private final AtomicLong attached = new AtomicLong(0);
+    private final AtomicLong unscraped = new AtomicLong(0);
+    private final AtomicLong estimated = new AtomicLong(0);
+    private final AtomicLong unknown = new AtomicLong(0);
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "swarm-scrape");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 为一个 KRPC 节点创建 scrape 采集器
+     *
+     * @return 未启用 scrape 时返回 null
+     */
+    public SwarmScraper newScraper() {
+        if (!dhtConfig.getScrape().isEnabled()) {
+            return null;
+        }
+        SwarmScraper scraper = new SwarmScraper(dhtConfig.getScrape());
+        scrapers.add(scraper);
+        return scraper;
+    }
+
+    /**
+     * 节点退役后不再使用其采集器
+     */
+    public void release(SwarmScraper scraper) {
+        if (scraper != null) {
+            scrapers.remove(scraper);
+        }
+    }
+
+    /**
+     * scrape 并把估计写入消息
+     *
+     * @return 估计写入后完成，放弃估计时同样会完成，调用方在完成后发布消息
+     */
+    public CompletableFuture<Void> attach(InfoHashMessage message) {
+        SwarmScraper scraper = nextActive();
+        if (scraper == null) {
+            unscraped.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+        attached.incrementAndGet();
+        // 节点异常退出时排队的任务可能不会被处理，兜底超时保证消息最终发布
+        return scraper.submit(message.getInfoHash())
+            .completeOnTimeout(null, dhtConfig.getScrape().getTimeoutMillis() * 2L, TimeUnit.MILLISECONDS)
+            .thenAcceptAsync(estimate -> apply(message, estimate), executor);
+    }
+
+    private void apply(InfoHashMessage message, SwarmEstimate estimate) {
+        if (estimate == null || !estimate.known()) {
+            unknown.incrementAndGet();
+            return;
+        }
+        estimated.incrementAndGet();
+        message.setSwarmSeeds(estimate.swarmSeeds());
+        message.setSwarmPeers(estimate.swarmPeers());
+    }
+
+    private SwarmScraper nextActive() {
+        int size = scrapers.size();
+        for (int i = 0; i < size; i++) {
+            SwarmScraper scraper;
+            try {
+                scraper = scrapers.get(Math.floorMod(cursor.getAndIncrement(), size));
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+            if (scraper.isActive()) {
+                return scraper;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取统计信息：已估计占提交 scrape 的比例，以及各节点采集器汇总的查询开销
+     */
+    public String getStats() {
+        long submitted = attached.get();
+        long queries = 0;
+        long bytes = 0;
+        long dead = 0;
+        long underestimates = 0;
+        for (SwarmScraper scraper : scrapers) {
+            queries += scraper.getQueriesSent().get();
+            bytes += scraper.getBytesOut().get() + scraper.getBytesIn().get();
+            dead += scraper.getDead().get();
+            underestimates += scraper.getUnderestimates().get();
+        }
+        return String.format("scrapers=%d, attached=%d, unscraped=%d, estimated=%d (%.1f%%), unknown=%d, dead=%d, "
+                           + "underestimates=%d, queries=%d, bytes=%d",
+                           scrapers.size(), submitted, unscraped.get(), estimated.get(),
+                           submitted == 0 ? 0.0 : estimated.get() * 100.0 / submitted, unknown.get(), dead,
+                           underestimates, queries, bytes);
+    }
+}
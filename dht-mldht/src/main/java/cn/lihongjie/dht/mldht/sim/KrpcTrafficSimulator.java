@@ -0,0 +1,450 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.krpc.ContactTable;
+import cn.lihongjie.dht.mldht.krpc.KrpcEncoder;
+import cn.lihongjie.dht.mldht.krpc.KrpcMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 离线 KRPC 流量模拟器
+ * 在本机回环地址上模拟大量 DHT 节点：先向被测节点发 find_node 完成 bootstrap，
+ * 之后按配置的比例发送 announce（get_peers 取 token 后 announce_peer）、get_peers 和 find_node，
+ * InfoHash 按 Zipf 分布选取，同时回复被测节点发来的 ping/find_node/get_peers。
+ * 每个模拟节点绑定不同的 127.x.y.z 地址（Linux 回环网段全部可用），不会被按来源限流当作同一个节点。
+ * 输出被测节点每秒处理的报文数、RTT、超时丢包率，指定 --kafka 时还输出发现到发布的延迟和丢失率。
+ * <p>
+ * 运行方式（不启动 Spring）：
+ * <pre>
+ * java -cp dht-mldht.jar -Dloader.main=cn.lihongjie.dht.mldht.sim.KrpcTrafficSimulator \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher --targets=127.0.0.1:6881-6900 --kafka=localhost:9092
+ * </pre>
+ * 模拟节点数较多时需要调大 ulimit -n。
+ */
+@Slf4j
+public class KrpcTrafficSimulator {
+
+    /**
+     * 查询类型，BOOTSTRAP 是启动时的 find_node，ANNOUNCE_PEER 是 announce 的第二步
+     */
+    enum Op {
+        ANNOUNCE,
+        GET_PEERS,
+        FIND_NODE,
+        BOOTSTRAP,
+        ANNOUNCE_PEER
+    }
+
+    private static final int ID_LENGTH = KrpcMessage.ID_LENGTH;
+    private static final Op[] OPS = Op.values();
+
+    private final SimulatorOptions options;
+    private final byte[] infohashes;
+    private final ZipfSampler zipf;
+    private final AtomicLongArray firstSentNanos;
+
+    private final AtomicLongArray sent = new AtomicLongArray(OPS.length);
+    private final AtomicLongArray answered = new AtomicLongArray(OPS.length);
+    private final AtomicLongArray errors = new AtomicLongArray(OPS.length);
+    private final AtomicLongArray timeouts = new AtomicLongArray(OPS.length);
+    private final AtomicLong incomingQueries = new AtomicLong(0);
+    private final AtomicLong sendFailures = new AtomicLong(0);
+    private final AtomicLong uniqueSent = new AtomicLong(0);
+    private final LatencyHistogram rtt = new LatencyHistogram();
+
+    private volatile boolean sending = true;
+    private volatile boolean running = true;
+
+    public KrpcTrafficSimulator(SimulatorOptions options) {
+        this.options = options;
+        this.zipf = new ZipfSampler(options.infohashes(), options.zipfExponent());
+        this.infohashes = new byte[options.infohashes() * ID_LENGTH];
+        new SplittableRandom(options.salt()).nextBytes(infohashes);
+        this.firstSentNanos = new AtomicLongArray(options.infohashes());
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulatorOptions options;
+        try {
+            options = SimulatorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(SimulatorOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new KrpcTrafficSimulator(options).run();
+    }
+
+    /**
+     * 运行一次压测并输出报告
+     */
+    public void run() throws Exception {
+        log.info("Simulating {} peers on {} threads against {} targets: {} queries/s for {}s, mix={}/{}/{}, "
+                 + "{} infohashes, zipf={}, seed={}, salt={}",
+                 options.peers(), options.threads(), options.targets().size(), options.rate(),
+                 options.durationSeconds(), options.announceWeight(), options.getPeersWeight(),
+                 options.findNodeWeight(), options.infohashes(), options.zipfExponent(), options.seed(), options.salt());
+
+        PublishProbe probe = null;
+        Thread probeThread = null;
+        if (options.kafka() != null) {
+            Map<InfoHash, Integer> indexes = new HashMap<>(options.infohashes() * 2);
+            for (int i = 0; i < options.infohashes(); i++) {
+                indexes.put(InfoHash.of(infohashes, i * ID_LENGTH), i);
+            }
+            probe = new PublishProbe(options.kafka(), options.topic(), indexes, firstSentNanos);
+            probeThread = new Thread(probe, "sim-publish-probe");
+            probeThread.setDaemon(true);
+            probeThread.start();
+        }
+
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < options.threads(); t++) {
+            workers.add(new Worker(t));
+        }
+        for (int i = 0; i < options.peers(); i++) {
+            workers.get(i % workers.size()).addPeer(i);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, "sim-worker-" + worker.index);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        long lastAnswered = 0;
+        long lastIncoming = 0;
+        long lastReport = start;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(options.reportSeconds()),
+                                  Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long now = System.nanoTime();
+            double seconds = (now - lastReport) / 1e9;
+            long answeredNow = sum(answered) + sum(errors);
+            long incomingNow = incomingQueries.get();
+            log.info("t={}s handled={}/s (responses {}/s, incoming queries {}/s), sent={}, timeouts={}, rtt[{}]{}",
+                     TimeUnit.NANOSECONDS.toSeconds(now - start),
+                     String.format("%.0f", (answeredNow - lastAnswered + incomingNow - lastIncoming) / seconds),
+                     String.format("%.0f", (answeredNow - lastAnswered) / seconds),
+                     String.format("%.0f", (incomingNow - lastIncoming) / seconds),
+                     sum(sent), sum(timeouts), rtt.summary(),
+                     probe == null ? "" : ", published=" + probe.getPublishedUnique()
+                                          + " latency[" + probe.getLatency().summary() + "]");
+            lastAnswered = answeredNow;
+            lastIncoming = incomingNow;
+            lastReport = now;
+        }
+
+        // 停止发送，等待在途查询超时和发布追上
+        sending = false;
+        long elapsed = System.nanoTime() - start;
+        Thread.sleep(Math.max(options.timeoutMillis(), probe == null ? 0 : TimeUnit.SECONDS.toMillis(options.drainSeconds())));
+        running = false;
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (probe != null) {
+            probe.stop();
+            probeThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        report(elapsed, probe);
+    }
+
+    private void report(long elapsedNanos, PublishProbe probe) {
+        double seconds = elapsedNanos / 1e9;
+        log.info("========================================");
+        log.info("Simulation finished after {}s", String.format("%.1f", seconds));
+        for (Op op : OPS) {
+            long s = sent.get(op.ordinal());
+            if (s == 0) {
+                continue;
+            }
+            log.info("  {}: sent={}, answered={}, errors={}, timeouts={} ({}% dropped)", op, s,
+                     answered.get(op.ordinal()), errors.get(op.ordinal()), timeouts.get(op.ordinal()),
+                     String.format("%.2f", timeouts.get(op.ordinal()) * 100.0 / s));
+        }
+        long responses = sum(answered) + sum(errors);
+        log.info("  Handled by nodes: {} packets/s ({} responses/s, {} incoming queries/s)",
+                 String.format("%.0f", (responses + incomingQueries.get()) / seconds),
+                 String.format("%.0f", responses / seconds), String.format("%.0f", incomingQueries.get() / seconds));
+        log.info("  Query loss: {}%, send failures: {}, rtt[{}]",
+                 String.format("%.2f", sum(timeouts) * 100.0 / Math.max(1, sum(sent))), sendFailures.get(), rtt.summary());
+        if (probe != null) {
+            long unique = uniqueSent.get();
+            long published = probe.getPublishedUnique();
+            log.info("  Publish: {} of {} distinct infohashes published ({}% lost), latency[{}], {}",
+                     published, unique, String.format("%.2f", unique == 0 ? 0.0 : (unique - published) * 100.0 / unique),
+                     probe.getLatency().summary(), probe.sourceSummary());
+        }
+        log.info("========================================");
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long total = 0;
+        for (int i = 0; i < counters.length(); i++) {
+            total += counters.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 模拟节点地址：127.b.c.d，每个 /24 最多 250 个节点
+     */
+    static InetAddress peerAddress(int index) throws IOException {
+        int d = index % 250 + 1;
+        int c = index / 250 % 256;
+        int b = 1 + index / (250 * 256);
+        return InetAddress.getByAddress(new byte[]{127, (byte) b, (byte) c, (byte) d});
+    }
+
+    /**
+     * 在途查询
+     */
+    private record Pending(Op op, Peer peer, InetSocketAddress target, int infohash, long sentNanos) {
+    }
+
+    private static final class Peer {
+        final DatagramChannel channel;
+        final byte[] id;
+        final int port;
+
+        Peer(DatagramChannel channel, byte[] id, int port) {
+            this.channel = channel;
+            this.id = id;
+            this.port = port;
+        }
+    }
+
+    /**
+     * 一个收发线程，负责一部分模拟节点；在途查询表只在本线程访问
+     */
+    private final class Worker implements Runnable {
+
+        final int index;
+        final SplittableRandom random;
+        final Selector selector;
+        final List<Peer> peers = new ArrayList<>();
+        final Map<Integer, Pending> pending = new HashMap<>();
+        final ByteBuffer out = ByteBuffer.allocate(1500);
+        final ByteBuffer in = ByteBuffer.allocate(2048);
+        final KrpcMessage msg = new KrpcMessage();
+        final ContactTable noContacts = new ContactTable(1);
+        final byte[] tx = new byte[4];
+        final byte[] target = new byte[ID_LENGTH];
+        int nextTx;
+
+        Worker(int index) throws IOException {
+            this.index = index;
+            this.random = new SplittableRandom(options.seed() * 31 + index);
+            this.selector = Selector.open();
+        }
+
+        void addPeer(int peerIndex) throws IOException {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 20);
+            try {
+                channel.bind(new InetSocketAddress(peerAddress(peerIndex), 0));
+            } catch (IOException e) {
+                // 非 Linux 系统上只有 127.0.0.1 可用
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            }
+            channel.configureBlocking(false);
+            byte[] id = new byte[ID_LENGTH];
+            random.nextBytes(id);
+            Peer peer = new Peer(channel, id, ((InetSocketAddress) channel.getLocalAddress()).getPort());
+            channel.register(selector, SelectionKey.OP_READ, peer);
+            peers.add(peer);
+        }
+
+        @Override
+        public void run() {
+            try {
+                bootstrap();
+                long start = System.nanoTime();
+                long issued = 0;
+                long lastSweep = start;
+                double perNano = options.rate() / 1e9 / options.threads();
+                int totalWeight = options.announceWeight() + options.getPeersWeight() + options.findNodeWeight();
+                while (running) {
+                    long now = System.nanoTime();
+                    if (sending && !peers.isEmpty()) {
+                        long due = (long) ((now - start) * perNano) - issued;
+                        for (long i = 0; i < Math.min(due, 256); i++, issued++) {
+                            int pick = random.nextInt(totalWeight);
+                            Op op = pick < options.announceWeight() ? Op.ANNOUNCE
+                                    : pick < options.announceWeight() + options.getPeersWeight() ? Op.GET_PEERS : Op.FIND_NODE;
+                            query(op, peers.get(random.nextInt(peers.size())), randomTarget(), -1, null, 0, 0);
+                        }
+                    }
+                    if (selector.select(1) > 0) {
+                        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                        while (keys.hasNext()) {
+                            SelectionKey key = keys.next();
+                            keys.remove();
+                            receive((Peer) key.attachment());
+                        }
+                    }
+                    if (now - lastSweep > TimeUnit.MILLISECONDS.toNanos(100)) {
+                        sweep(now);
+                        lastSweep = now;
+                    }
+                }
+                // 退出时仍未收到回复的查询全部计为丢包
+                sweep(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.timeoutMillis()) + 1);
+            } catch (Exception e) {
+                log.error("Simulator worker {} failed", index, e);
+            } finally {
+                for (Peer peer : peers) {
+                    try {
+                        peer.channel.close();
+                    } catch (IOException ignored) {
+                        // 退出时忽略
+                    }
+                }
+            }
+        }
+
+        /**
+         * 每个模拟节点向每个被测节点发一次 find_node(自己的ID)
+         */
+        private void bootstrap() {
+            for (Peer peer : peers) {
+                for (InetSocketAddress address : options.targets()) {
+                    query(Op.BOOTSTRAP, peer, address, -1, null, 0, 0);
+                }
+            }
+        }
+
+        private InetSocketAddress randomTarget() {
+            List<InetSocketAddress> targets = options.targets();
+            return targets.get(random.nextInt(targets.size()));
+        }
+
+        private void query(Op op, Peer peer, InetSocketAddress address, int infohash,
+                           byte[] token, int tokenOff, int tokenLen) {
+            int t = nextTx++;
+            tx[0] = (byte) (t >>> 24);
+            tx[1] = (byte) (t >>> 16);
+            tx[2] = (byte) (t >>> 8);
+            tx[3] = (byte) t;
+            switch (op) {
+                case BOOTSTRAP -> KrpcEncoder.writeFindNodeQuery(out, tx, 0, 4, peer.id, 0, peer.id, 0);
+                case FIND_NODE -> {
+                    random.nextBytes(target);
+                    KrpcEncoder.writeFindNodeQuery(out, tx, 0, 4, peer.id, 0, target, 0);
+                }
+                case ANNOUNCE, GET_PEERS -> {
+                    infohash = zipf.sample(random);
+                    if (firstSentNanos.compareAndSet(infohash, 0, System.nanoTime())) {
+                        uniqueSent.incrementAndGet();
+                    }
+                    KrpcEncoder.writeGetPeersQuery(out, tx, 0, 4, peer.id, 0, infohashes, infohash * ID_LENGTH);
+                }
+                case ANNOUNCE_PEER -> KrpcEncoder.writeAnnouncePeerQuery(out, tx, 0, 4, peer.id, 0,
+                                                                         infohashes, infohash * ID_LENGTH, true, peer.port,
+                                                                         token, tokenOff, tokenLen);
+            }
+            try {
+                if (peer.channel.send(out, address) == 0) {
+                    sendFailures.incrementAndGet();
+                    return;
+                }
+            } catch (IOException e) {
+                sendFailures.incrementAndGet();
+                return;
+            }
+            sent.incrementAndGet(op.ordinal());
+            pending.put(t, new Pending(op, peer, address, infohash, System.nanoTime()));
+        }
+
+        private void receive(Peer peer) throws IOException {
+            while (true) {
+                in.clear();
+                InetSocketAddress from = (InetSocketAddress) peer.channel.receive(in);
+                if (from == null) {
+                    return;
+                }
+                byte[] data = in.array();
+                if (!msg.parse(data, in.position())) {
+                    continue;
+                }
+                if (msg.type() == KrpcMessage.TYPE_QUERY) {
+                    answer(peer, from, data);
+                    continue;
+                }
+                if (msg.transactionLength() != 4) {
+                    continue;
+                }
+                int off = msg.transactionOffset();
+                int t = (data[off] & 0xFF) << 24 | (data[off + 1] & 0xFF) << 16 | (data[off + 2] & 0xFF) << 8 | data[off + 3] & 0xFF;
+                Pending query = pending.remove(t);
+                if (query == null) {
+                    continue;
+                }
+                rtt.record(System.nanoTime() - query.sentNanos());
+                if (msg.type() != KrpcMessage.TYPE_RESPONSE) {
+                    errors.incrementAndGet(query.op().ordinal());
+                    continue;
+                }
+                answered.incrementAndGet(query.op().ordinal());
+                if (query.op() == Op.ANNOUNCE && msg.tokenOffset() >= 0) {
+                    query(Op.ANNOUNCE_PEER, peer, query.target(), query.infohash(),
+                          data, msg.tokenOffset(), msg.tokenLength());
+                }
+            }
+        }
+
+        /**
+         * 回复被测节点发来的查询，模拟节点不保存路由表，nodes 为空
+         */
+        private void answer(Peer peer, InetSocketAddress from, byte[] data) throws IOException {
+            incomingQueries.incrementAndGet();
+            int tOff = msg.transactionOffset();
+            int tLen = msg.transactionLength();
+            switch (msg.method()) {
+                case KrpcMessage.METHOD_FIND_NODE ->
+                        KrpcEncoder.writeNodesResponse(out, data, tOff, tLen, peer.id, 0, noContacts, 0, false, 0);
+                case KrpcMessage.METHOD_GET_PEERS ->
+                        KrpcEncoder.writeNodesResponse(out, data, tOff, tLen, peer.id, 0, noContacts, 0, true, 0);
+                default -> KrpcEncoder.writeIdResponse(out, data, tOff, tLen, peer.id, 0);
+            }
+            peer.channel.send(out, from);
+        }
+
+        /**
+         * 超时的查询计为丢包
+         */
+        private void sweep(long now) {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(options.timeoutMillis());
+            pending.values().removeIf(query -> {
+                if (now - query.sentNanos() > timeout) {
+                    timeouts.incrementAndGet(query.op().ordinal());
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以2为底按微秒分桶的延迟直方图（无锁）
+ * 百分位取所在桶的上界，误差不超过2倍，足够对比不同版本。
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 百分位延迟（微秒），没有样本时返回0
+     *
+     * @param percentile 0 ~ 100
+     */
+    public long percentileMicros(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    /**
+     * 形如 "n=100 p50=256us p99=2048us" 的摘要
+     */
+    public String summary() {
+        return String.format("n=%d p50=%dus p90=%dus p99=%dus", count(), percentileMicros(50),
+                             percentileMicros(90), percentileMicros(99));
+    }
+}
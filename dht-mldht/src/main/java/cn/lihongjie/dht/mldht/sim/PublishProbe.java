@@ -0,0 +1,130 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import cn.lihongjie.dht.common.model.DiscoverySource;
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.common.model.InfoHashMessage;
+import cn.lihongjie.dht.common.serde.InfoHashMessageCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 发布探针
+ * 订阅 InfoHash 发布主题，把收到的 InfoHash 与模拟器第一次发出它的时间对应起来，
+ * 统计发现到发布的端到端延迟（含 Kafka 消费延迟）和从未被发布的 InfoHash 比例。
+ * 不属于本次模拟的 InfoHash（例如被测进程同时连着公网）会被忽略。
+ */
+@Slf4j
+public class PublishProbe implements Runnable {
+
+    private final String bootstrapServers;
+    private final String topic;
+    private final Map<InfoHash, Integer> indexes;
+    private final AtomicLongArray firstSentNanos;
+    private final AtomicLongArray publishedNanos;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong publishedUnique = new AtomicLong(0);
+    private final AtomicLong publishedTotal = new AtomicLong(0);
+    private final AtomicLongArray bySource = new AtomicLongArray(DiscoverySource.values().length + 1);
+
+    private volatile boolean running = true;
+
+    /**
+     * @param indexes        InfoHash 到序号的映射
+     * @param firstSentNanos 每个 InfoHash 第一次出现在查询中的时间，0 表示还没发过
+     */
+    public PublishProbe(String bootstrapServers, String topic, Map<InfoHash, Integer> indexes,
+                        AtomicLongArray firstSentNanos) {
+        this.bootstrapServers = bootstrapServers;
+        this.topic = topic;
+        this.indexes = indexes;
+        this.firstSentNanos = firstSentNanos;
+        this.publishedNanos = new AtomicLongArray(firstSentNanos.length());
+    }
+
+    @Override
+    public void run() {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "dht-simulator-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+            consumer.subscribe(List.of(topic));
+            while (running) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (record.value() != null) {
+                        onRecord(record.value());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Publish probe stopped", e);
+        }
+    }
+
+    private void onRecord(byte[] value) {
+        List<InfoHashMessage> messages;
+        try {
+            messages = InfoHashMessageCodec.decode(value);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (InfoHashMessage message : messages) {
+            Integer index = indexes.get(message.getInfoHash());
+            if (index == null) {
+                continue;
+            }
+            publishedTotal.incrementAndGet();
+            bySource.incrementAndGet(message.getSource() == null ? 0 : message.getSource().ordinal() + 1);
+            long sent = firstSentNanos.get(index);
+            if (sent != 0 && publishedNanos.compareAndSet(index, 0, now)) {
+                publishedUnique.incrementAndGet();
+                latency.record(now - sent);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getPublishedUnique() {
+        return publishedUnique.get();
+    }
+
+    /**
+     * 按来源统计的发布数，如 "announce=10 lookup=3"
+     */
+    public String sourceSummary() {
+        StringBuilder sb = new StringBuilder("total=").append(publishedTotal.get());
+        if (bySource.get(0) > 0) {
+            sb.append(" unknown=").append(bySource.get(0));
+        }
+        for (DiscoverySource source : DiscoverySource.values()) {
+            long count = bySource.get(source.ordinal() + 1);
+            if (count > 0) {
+                sb.append(' ').append(source.name().toLowerCase()).append('=').append(count);
+            }
+        }
+        return sb.toString();
+    }
+}
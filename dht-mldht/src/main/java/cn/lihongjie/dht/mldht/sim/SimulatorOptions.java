@@ -0,0 +1,112 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 流量模拟器参数，命令行格式为 --key=value
+ *
+ * @param targets         被测节点地址，如 127.0.0.1:6881-6900（端口范围）或逗号分隔的多个地址
+ * @param peers           模拟的 DHT 节点数，每个节点一个 UDP socket，绑定在不同的 127.x.y.z 地址上
+ * @param threads         收发线程数
+ * @param rate            每秒发出的查询总数（不含 announce_peer 第二步和回复）
+ * @param durationSeconds 压测时长
+ * @param announceWeight  announce（get_peers 取 token 后 announce_peer）的比例权重
+ * @param getPeersWeight  单独 get_peers 的比例权重
+ * @param findNodeWeight  find_node 的比例权重
+ * @param infohashes      InfoHash 全集大小
+ * @param zipfExponent    InfoHash 流行度的 Zipf 指数
+ * @param seed            流量序列的随机种子，相同参数和种子产生相同的查询序列
+ * @param salt            生成 InfoHash 的盐，默认每次随机，避免被上一次压测写入的去重过滤器挡掉
+ * @param timeoutMillis   查询超时，超时计为丢包
+ * @param reportSeconds   中间报告间隔
+ * @param kafka           Kafka 地址，设置后订阅发布主题，统计发现到发布的端到端延迟和丢失率
+ * @param topic           发布主题
+ * @param drainSeconds    停止发送后继续等待发布的时间
+ */
+public record SimulatorOptions(List<InetSocketAddress> targets, int peers, int threads, int rate,
+                               int durationSeconds, int announceWeight, int getPeersWeight, int findNodeWeight,
+                               int infohashes, double zipfExponent, long seed, long salt, int timeoutMillis,
+                               int reportSeconds, String kafka, String topic, int drainSeconds) {
+
+    public static final String USAGE = """
+            Usage: KrpcTrafficSimulator [--key=value ...]
+              --targets=127.0.0.1:6881-6900   nodes under test (port ranges and comma-separated lists)
+              --peers=2000 --threads=4         simulated DHT peers and I/O threads
+              --rate=20000 --duration=60       queries per second and run time in seconds
+              --mix=60,30,10                   announce,get_peers,find_node weights
+              --infohashes=100000 --zipf=1.0   infohash universe and popularity skew
+              --seed=42 --salt=<random>        traffic sequence seed / infohash salt
+              --timeout-ms=2000 --report=5     query timeout, report interval in seconds
+              --kafka=localhost:9092 --topic=dht.infohash.discovered --drain=10
+                                               measure discovery-to-publish latency and loss
+            """;
+
+    /**
+     * 解析命令行参数
+     */
+    public static SimulatorOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String[] mix = values.getOrDefault("mix", "60,30,10").split(",");
+        if (mix.length != 3) {
+            throw new IllegalArgumentException("--mix needs three weights: announce,get_peers,find_node");
+        }
+        SimulatorOptions options = new SimulatorOptions(
+                parseTargets(values.getOrDefault("targets", "127.0.0.1:6881")),
+                Integer.parseInt(values.getOrDefault("peers", "2000")),
+                Integer.parseInt(values.getOrDefault("threads", "4")),
+                Integer.parseInt(values.getOrDefault("rate", "20000")),
+                Integer.parseInt(values.getOrDefault("duration", "60")),
+                Integer.parseInt(mix[0].trim()),
+                Integer.parseInt(mix[1].trim()),
+                Integer.parseInt(mix[2].trim()),
+                Integer.parseInt(values.getOrDefault("infohashes", "100000")),
+                Double.parseDouble(values.getOrDefault("zipf", "1.0")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                values.containsKey("salt") ? Long.parseLong(values.get("salt")) : ThreadLocalRandom.current().nextLong(),
+                Integer.parseInt(values.getOrDefault("timeout-ms", "2000")),
+                Integer.parseInt(values.getOrDefault("report", "5")),
+                values.get("kafka"),
+                values.getOrDefault("topic", "dht.infohash.discovered"),
+                Integer.parseInt(values.getOrDefault("drain", "10")));
+        if (options.peers() <= 0 || options.threads() <= 0 || options.rate() <= 0 || options.infohashes() <= 0
+                || options.announceWeight() + options.getPeersWeight() + options.findNodeWeight() <= 0) {
+            throw new IllegalArgumentException("peers, threads, rate, infohashes and mix must be positive");
+        }
+        return options;
+    }
+
+    /**
+     * 解析 host:port 或 host:firstPort-lastPort，多个地址用逗号分隔
+     */
+    static List<InetSocketAddress> parseTargets(String spec) {
+        List<InetSocketAddress> targets = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String target = part.trim();
+            int colon = target.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Invalid target: " + target);
+            }
+            String host = target.substring(0, colon);
+            String ports = target.substring(colon + 1);
+            int dash = ports.indexOf('-');
+            int first = Integer.parseInt(dash < 0 ? ports : ports.substring(0, dash));
+            int last = dash < 0 ? first : Integer.parseInt(ports.substring(dash + 1));
+            for (int port = first; port <= last; port++) {
+                targets.add(new InetSocketAddress(host, port));
+            }
+        }
+        return targets;
+    }
+}
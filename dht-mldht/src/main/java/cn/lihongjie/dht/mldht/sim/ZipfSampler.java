@@ -0,0 +1,47 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Zipf 分布采样
+ * 第 k 个元素（从0开始）被选中的概率正比于 1/(k+1)^exponent，用预先计算的累积分布二分查找，线程安全。
+ */
+public class ZipfSampler {
+
+    private final double[] cdf;
+
+    /**
+     * @param size     元素个数
+     * @param exponent 指数，0 为均匀分布，越大越集中在头部
+     */
+    public ZipfSampler(int size, double exponent) {
+        if (size <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Invalid zipf parameters");
+        }
+        cdf = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cdf[k] /= sum;
+        }
+    }
+
+    /**
+     * 采样一个元素序号
+     */
+    public int sample(RandomGenerator random) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(idx >= 0 ? idx : -idx - 1, cdf.length - 1);
+    }
+
+    /**
+     * 元素个数
+     */
+    public int size() {
+        return cdf.length;
+    }
+}
@@ -0,0 +1,270 @@
+package cn.lihongjie.dht.mldht.spill;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 内存映射的追加日志，按段滚动
+ * Kafka 不可用时发布服务把信封写到这里，恢复后按写入顺序取出重放，确认送达后再提交读位置。
+ * <pre>
+ * 段文件 spill-序号.log：magic(4) | 已提交的读位置(4) | 记录... | 0(4)
+ * 记录：长度(4, 大于0) | 数据
+ * </pre>
+ * 每条记录后都写一个0作为结尾标记，数据写完后才写长度，进程被杀时不会读到半条记录；
+ * 重启后从读位置扫描到结尾标记即可恢复写位置。读位置之前的段全部提交后删除。
+ * 所有方法同步调用（写入方是发布线程，读取方是重放线程）。
+ */
+public class SpillLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x44485453; // "DHTS"
+    private static final int HEADER_LENGTH = 8;
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private long nextSequence;
+    private long pendingRecords;
+    private long pendingBytes;
+
+    /**
+     * 一个映射到内存的段
+     */
+    private static final class Segment {
+        final long sequence;
+        final Path file;
+        final MappedByteBuffer buf;
+        int readPosition;
+        int writePosition;
+
+        Segment(long sequence, Path file, MappedByteBuffer buf) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buf = buf;
+        }
+    }
+
+    /**
+     * 打开日志目录，恢复尚未重放的段
+     *
+     * @param segmentBytes 每段大小
+     * @param maxSegments  最多保留的段数，写满后 append 返回 false
+     */
+    public SpillLog(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        if (segmentBytes < HEADER_LENGTH + 8 || maxSegments <= 0) {
+            throw new IllegalArgumentException("Invalid spill log settings");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(p -> parseSequence(p) >= 0)
+                          .sorted((a, b) -> Long.compare(parseSequence(a), parseSequence(b)))
+                          .toList();
+        }
+        for (Path file : files) {
+            Segment segment = recover(file);
+            if (segment == null) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            segments.addLast(segment);
+            nextSequence = segment.sequence + 1;
+        }
+        dropConsumedSegments();
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 段数已达上限时返回 false，记录未写入
+     */
+    public synchronized boolean append(byte[] data) throws IOException {
+        int needed = 4 + data.length + 4;
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + needed > tail.buf.capacity()) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            tail = create(Math.max(segmentBytes, HEADER_LENGTH + needed));
+        }
+        int position = tail.writePosition;
+        tail.buf.put(position + 4, data);
+        tail.buf.putInt(position + 4 + data.length, 0);
+        tail.buf.putInt(position, data.length);
+        tail.writePosition = position + 4 + data.length;
+        pendingRecords++;
+        pendingBytes += data.length;
+        return true;
+    }
+
+    /**
+     * 按写入顺序读取最多 max 条未提交的记录（不移动读位置）
+     */
+    public synchronized List<byte[]> peek(int max) {
+        List<byte[]> records = new ArrayList<>();
+        for (Segment segment : segments) {
+            int position = segment.readPosition;
+            while (records.size() < max && position < segment.writePosition) {
+                int length = segment.buf.getInt(position);
+                byte[] data = new byte[length];
+                segment.buf.get(position + 4, data);
+                records.add(data);
+                position += 4 + length;
+            }
+            if (records.size() >= max) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 提交最前面的 count 条记录（通常是 peek 返回且已确认送达的记录），删除已全部提交的段
+     */
+    public synchronized void commit(int count) throws IOException {
+        int remaining = count;
+        for (Segment segment : segments) {
+            while (remaining > 0 && segment.readPosition < segment.writePosition) {
+                int length = segment.buf.getInt(segment.readPosition);
+                segment.readPosition += 4 + length;
+                pendingRecords--;
+                pendingBytes -= length;
+                remaining--;
+            }
+            segment.buf.putInt(4, segment.readPosition);
+            if (remaining == 0) {
+                break;
+            }
+        }
+        dropConsumedSegments();
+    }
+
+    /**
+     * 是否没有待重放的记录
+     */
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    /**
+     * 待重放的记录数
+     */
+    public synchronized long pendingRecords() {
+        return pendingRecords;
+    }
+
+    /**
+     * 待重放的数据字节数
+     */
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * 当前段数
+     */
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 把映射内容刷到磁盘
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buf.force();
+        }
+    }
+
+    private Segment create(int size) throws IOException {
+        long sequence = nextSequence++;
+        Path file = dir.resolve(PREFIX + String.format("%016d", sequence) + SUFFIX);
+        MappedByteBuffer buf = map(file, size);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, HEADER_LENGTH);
+        buf.putInt(HEADER_LENGTH, 0);
+        Segment segment = new Segment(sequence, file, buf);
+        segment.readPosition = HEADER_LENGTH;
+        segment.writePosition = HEADER_LENGTH;
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * 从已有段文件恢复读写位置，文件损坏时返回 null
+     */
+    private Segment recover(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size < HEADER_LENGTH + 4 || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        MappedByteBuffer buf = map(file, (int) size);
+        int readPosition = buf.getInt(4);
+        if (buf.getInt(0) != MAGIC || readPosition < HEADER_LENGTH || readPosition > size - 4) {
+            return null;
+        }
+        Segment segment = new Segment(parseSequence(file), file, buf);
+        segment.readPosition = readPosition;
+        int position = readPosition;
+        while (position + 4 <= size) {
+            int length = buf.getInt(position);
+            if (length <= 0 || position + 4L + length + 4 > size) {
+                break;
+            }
+            pendingRecords++;
+            pendingBytes += length;
+            position += 4 + length;
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    /**
+     * 删除已全部提交、且不是当前写入段的段
+     */
+    private void dropConsumedSegments() throws IOException {
+        while (segments.size() > 1) {
+            Segment head = segments.peekFirst();
+            if (head.readPosition < head.writePosition) {
+                break;
+            }
+            segments.pollFirst();
+            Files.deleteIfExists(head.file);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long parseSequence(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutoscalePolicyTest {
+
+    private static final long WARM = 1000;
+
+    @Test
+    @DisplayName("Scale up with CPU headroom, then revert when unique/s per core drops")
+    void testScaleUpAndRevert() {
+        AutoscalePolicy policy = new AutoscalePolicy(config());
+        List<AutoscalePolicy.NodeSample> nodes = nodes(10, 10);
+
+        AutoscalePolicy.Decision decision = policy.decide(nodes, 1.0, 0.2);
+        assertEquals(AutoscalePolicy.Action.ADD, decision.action());
+        policy.onAdded(2);
+
+        List<AutoscalePolicy.NodeSample> warming = new ArrayList<>(nodes);
+        warming.add(new AutoscalePolicy.NodeSample(2, 10, 5, 100));
+        assertEquals(AutoscalePolicy.Action.HOLD, policy.decide(warming, 1.5, 0.3).action());
+
+        // 三个节点共 24/s 但用了两个核：每核产出从 20 降到 12，撤销扩容并冷却
+        List<AutoscalePolicy.NodeSample> warmed = nodes(10, 10, 4);
+        decision = policy.decide(warmed, 2.0, 0.3);
+        assertEquals(AutoscalePolicy.Action.RETIRE, decision.action());
+        assertEquals(2, decision.nodeIndex());
+        assertEquals(AutoscalePolicy.Action.HOLD, policy.decide(nodes, 1.0, 0.2).action());
+    }
+
+    @Test
+    @DisplayName("Keep a scale-up that improves unique/s per core")
+    void testKeepScaleUp() {
+        AutoscalePolicy policy = new AutoscalePolicy(config());
+        assertEquals(AutoscalePolicy.Action.ADD, policy.decide(nodes(10, 10), 1.0, 0.2).action());
+        policy.onAdded(2);
+
+        assertEquals(AutoscalePolicy.Action.ADD, policy.decide(nodes(10, 10, 10), 1.2, 0.25).action());
+    }
+
+    @Test
+    @DisplayName("Retire the least productive node on CPU pressure or when far below the median")
+    void testRetire() {
+        AutoscalePolicy policy = new AutoscalePolicy(config());
+
+        AutoscalePolicy.Decision decision = policy.decide(nodes(10, 3, 10), 4.0, 0.95);
+        assertEquals(AutoscalePolicy.Action.RETIRE, decision.action());
+        assertEquals(1, decision.nodeIndex());
+
+        decision = policy.decide(nodes(10, 10, 1, 10), 1.0, 0.2);
+        assertEquals(AutoscalePolicy.Action.RETIRE, decision.action());
+        assertEquals(2, decision.nodeIndex());
+    }
+
+    @Test
+    @DisplayName("Bounds are respected")
+    void testBounds() {
+        DhtConfig.Autoscale config = config();
+        config.setMaxNodes(2);
+        AutoscalePolicy policy = new AutoscalePolicy(config);
+
+        assertEquals(AutoscalePolicy.Action.HOLD, policy.decide(nodes(10, 10), 1.0, 0.1).action());
+        assertEquals(AutoscalePolicy.Action.ADD, policy.decide(nodes(), 0.1, 0.1).action());
+        assertEquals(AutoscalePolicy.Action.HOLD, policy.decide(nodes(10), 1.0, 0.95).action());
+    }
+
+    private static DhtConfig.Autoscale config() {
+        DhtConfig.Autoscale config = new DhtConfig.Autoscale();
+        config.setMinNodes(1);
+        config.setMaxNodes(8);
+        config.setWarmupSeconds((int) WARM);
+        return config;
+    }
+
+    private static List<AutoscalePolicy.NodeSample> nodes(double... uniqueRates) {
+        List<AutoscalePolicy.NodeSample> nodes = new ArrayList<>();
+        for (int i = 0; i < uniqueRates.length; i++) {
+            nodes.add(new AutoscalePolicy.NodeSample(i, WARM, uniqueRates[i], 1000));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,29 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscoveryTrackerTest {
+
+    private static final InfoHash ANNOUNCED = InfoHash.fromHex("ccbd47a30a5a13a5260295e4bd65c038244e9df0");
+    private static final InfoHash LOOKED_UP = InfoHash.fromHex("0000000000000000000000000000000000000001");
+
+    @Test
+    @DisplayName("Lookups are published once and only when not already announced")
+    void testLookupDedup() {
+        DiscoveryTracker tracker = new DiscoveryTracker(64 * 1024, 0.001);
+
+        tracker.onAnnounce(ANNOUNCED);
+        assertFalse(tracker.onLookup(ANNOUNCED));
+        assertTrue(tracker.onLookup(LOOKED_UP));
+        assertFalse(tracker.onLookup(LOOKED_UP));
+
+        assertEquals(1, tracker.getAnnounces());
+        assertEquals(3, tracker.getLookups());
+        assertEquals(1, tracker.getLookupsPublished());
+        assertTrue(tracker.getStats().contains("extraUnique=1"));
+    }
+}
@@ -0,0 +1,55 @@
+package cn.lihongjie.dht.mldht.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyspaceSliceTest {
+
+    private final NodeIdGenerator generator = new NodeIdGenerator();
+
+    @Test
+    @DisplayName("Slices tile the keyspace without overlap")
+    void testTiling() {
+        long next = 0;
+        for (int i = 0; i < 3; i++) {
+            KeyspaceSlice slice = new KeyspaceSlice(i, 3);
+            assertEquals(next, slice.start());
+            next = slice.start() + slice.length();
+        }
+        assertEquals(1L << 32, next);
+        assertThrows(IllegalArgumentException.class, () -> new KeyspaceSlice(3, 3));
+    }
+
+    @Test
+    @DisplayName("Members get disjoint slices by sorted position regardless of order")
+    void testForMember() {
+        Set<String> members = Set.of("host-c:6881", "host-a:6881", "host-b:6881");
+
+        assertEquals(new KeyspaceSlice(0, 3), KeyspaceSlice.forMember("host-a:6881", members));
+        assertEquals(new KeyspaceSlice(2, 3), KeyspaceSlice.forMember("host-c:6881", members));
+        assertEquals(KeyspaceSlice.FULL, KeyspaceSlice.forMember("host-d:6881", members));
+    }
+
+    @Test
+    @DisplayName("Generated NodeIds stay inside the instance's slice")
+    void testNodeIdsInSlice() {
+        KeyspaceSlice slice = new KeyspaceSlice(1, 4);
+
+        List<byte[]> distributed = generator.generateDistributedNodeIds(16, slice);
+        List<byte[]> gaps = generator.generateNodeIdsInGaps(distributed, 16, slice);
+
+        assertEquals(0x40, distributed.get(0)[0] & 0xFF);
+        for (byte[] id : distributed) {
+            assertTrue(slice.contains(id));
+        }
+        for (byte[] id : gaps) {
+            assertTrue(slice.contains(id));
+        }
+        assertFalse(slice.contains(new byte[20]));
+    }
+}
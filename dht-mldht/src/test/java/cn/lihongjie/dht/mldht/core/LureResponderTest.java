@@ -0,0 +1,54 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LureResponderTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private static final InfoHash A = InfoHash.fromHex("ccbd47a30a5a13a5260295e4bd65c038244e9df0");
+    private static final InfoHash B = InfoHash.fromHex("0000000000000000000000000000000000000001");
+
+    @Test
+    @DisplayName("Each infohash is lured once per refresh window")
+    void testOncePerWindow() {
+        LureResponder lure = new LureResponder(new InetSocketAddress("203.0.113.7", 6892), 64 * 1024, 0.001, 900, 0);
+
+        assertTrue(lure.shouldLure(A, 0));
+        assertFalse(lure.shouldLure(A, SECOND));
+        assertTrue(lure.shouldLure(B, 2 * SECOND));
+        assertFalse(lure.shouldLure(A, 899 * SECOND));
+
+        // 窗口到期后 mldht 的 peer 条目可能已经过期，重新存入
+        assertTrue(lure.shouldLure(A, 900 * SECOND));
+        assertFalse(lure.shouldLure(A, 901 * SECOND));
+        assertEquals(3, lure.getLured());
+    }
+
+    @Test
+    @DisplayName("Lure is created only when enabled and the host matches the node's address family")
+    void testCreate() {
+        DhtConfig.Lure config = new DhtConfig.Lure();
+        config.setHost("203.0.113.7");
+        config.setPort(6892);
+        assertNull(LureResponder.create(config, false));
+
+        config.setEnabled(true);
+        LureResponder ipv4 = LureResponder.create(config, false);
+        assertNotNull(ipv4);
+        assertEquals(new InetSocketAddress("203.0.113.7", 6892), ipv4.getEndpoint());
+        assertNull(LureResponder.create(config, true));
+
+        config.setHost6("203.0.113.7");
+        assertNull(LureResponder.create(config, true));
+        config.setHost6("2001:db8::7");
+        assertEquals(new InetSocketAddress("2001:db8::7", 6892), LureResponder.create(config, true).getEndpoint());
+    }
+}
@@ -0,0 +1,58 @@
+package cn.lihongjie.dht.mldht.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeIdGeneratorTest {
+
+    private final NodeIdGenerator generator = new NodeIdGenerator();
+
+    @Test
+    @DisplayName("New NodeIds fill the widest uncovered keyspace segments")
+    void testGapNodeIds() {
+        List<byte[]> existing = new ArrayList<>(generator.generateDistributedNodeIds(4));
+        existing.remove(2); // 0x80000000 区段空出
+
+        List<byte[]> added = generator.generateNodeIdsInGaps(existing, 2);
+
+        assertEquals(2, added.size());
+        assertEquals(0x80, added.get(0)[0] & 0xFF);
+        assertEquals(20, added.get(0).length);
+        // 剩余最大空隙的起点在 0x40000000 或 0xC0000000 区段之后
+        int second = added.get(1)[0] & 0xFF;
+        assertTrue(second == 0x20 || second == 0x60 || second == 0xA0 || second == 0xE0, "second=" + second);
+    }
+
+    @Test
+    @DisplayName("Neighbor IDs share the target prefix and keep the node's own suffix")
+    void testNeighborNodeId() {
+        byte[] target = new byte[24];
+        Arrays.fill(target, (byte) 0x11);
+        byte[] own = new byte[20];
+        Arrays.fill(own, (byte) 0x22);
+        byte[] out = new byte[20];
+
+        NodeIdGenerator.neighborNodeId(target, 4, own, 0, 15, out, 0);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i < 15 ? 0x11 : 0x22, out[i]);
+        }
+        NodeIdGenerator.neighborNodeId(target, 0, own, 0, 99, out, 0);
+        assertEquals(0x11, out[19]);
+    }
+
+    @Test
+    @DisplayName("Generating into an empty keyspace starts at zero")
+    void testEmpty() {
+        List<byte[]> added = generator.generateNodeIdsInGaps(List.of(), 2);
+
+        assertEquals(0, added.get(0)[0]);
+        assertEquals(0x80, added.get(1)[0] & 0xFF);
+    }
+}
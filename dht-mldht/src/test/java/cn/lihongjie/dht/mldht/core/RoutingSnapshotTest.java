@@ -0,0 +1,56 @@
+package cn.lihongjie.dht.mldht.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Contacts round-trip through the snapshot file for IPv4 and IPv6")
+    void testRoundTrip() throws Exception {
+        byte[] id1 = new byte[20];
+        byte[] id2 = new byte[20];
+        Arrays.fill(id2, (byte) 0xAB);
+        List<RoutingSnapshot.Contact> contacts = List.of(
+                new RoutingSnapshot.Contact(id1, new InetSocketAddress(InetAddress.getByName("1.2.3.4"), 6881)),
+                new RoutingSnapshot.Contact(id2, new InetSocketAddress(InetAddress.getByName("2001:db8::1"), 65535)),
+                new RoutingSnapshot.Contact(new byte[3], new InetSocketAddress(InetAddress.getByName("5.6.7.8"), 1)));
+
+        RoutingSnapshot.write(dir, contacts);
+        RoutingSnapshot.Snapshot snapshot = RoutingSnapshot.read(dir);
+
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.contacts().size());
+        assertArrayEquals(id2, snapshot.contacts().get(1).nodeId());
+        assertEquals(contacts.get(0).address(), snapshot.contacts().get(0).address());
+        assertEquals(contacts.get(1).address(), snapshot.contacts().get(1).address());
+        assertTrue(snapshot.savedAtMillis() > 0);
+    }
+
+    @Test
+    @DisplayName("Missing or corrupt snapshots are ignored")
+    void testCorrupt() throws Exception {
+        assertNull(RoutingSnapshot.read(dir));
+
+        RoutingSnapshot.write(dir, List.of(new RoutingSnapshot.Contact(new byte[20],
+                new InetSocketAddress(InetAddress.getByName("1.2.3.4"), 6881))));
+        Path file = dir.resolve(RoutingSnapshot.FILE_NAME);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 3));
+
+        assertNull(RoutingSnapshot.read(dir));
+    }
+}
@@ -0,0 +1,116 @@
+package cn.lihongjie.dht.mldht.core;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SupervisorPolicyTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    @DisplayName("Healthy nodes that keep receiving messages are never restarted")
+    void testHealthy() {
+        SupervisorPolicy policy = new SupervisorPolicy(config());
+        for (int t = 0; t <= 600; t += 10) {
+            assertTrue(policy.check(List.of(sample(0, true, t * 5L, 1)), t * SECOND).isEmpty());
+        }
+        assertEquals(600, policy.uptimeSeconds(0, 600 * SECOND));
+        assertEquals(0, policy.restarts(0));
+    }
+
+    @Test
+    @DisplayName("A stopped node is restarted immediately, a stalled one only after the grace period")
+    void testStoppedAndStalled() {
+        SupervisorPolicy policy = new SupervisorPolicy(config());
+        List<SupervisorPolicy.Restart> restarts = policy.check(
+                List.of(sample(0, false, 0, 0), sample(1, true, 0, 0), sample(2, true, 100, 1)), 0);
+        assertEquals(1, restarts.size());
+        assertEquals(0, restarts.get(0).nodeIndex());
+        assertEquals("stopped", restarts.get(0).reason());
+
+        // 宽限期结束：节点1没有服务器，节点2的消息计数不再增长但还没到卡死阈值
+        restarts = policy.check(List.of(sample(1, true, 0, 0), sample(2, true, 100, 1)), 60 * SECOND);
+        assertEquals(List.of(new SupervisorPolicy.Restart(1, "no RPC servers")), restarts);
+
+        restarts = policy.check(List.of(sample(2, true, 100, 1)), 120 * SECOND);
+        assertEquals(1, restarts.size());
+        assertEquals(2, restarts.get(0).nodeIndex());
+        assertTrue(restarts.get(0).reason().startsWith("no messages"));
+    }
+
+    @Test
+    @DisplayName("Repeated failures back off exponentially up to the cap and reset after a stable run")
+    void testBackoff() {
+        SupervisorPolicy policy = new SupervisorPolicy(config());
+        long now = 0;
+        long[] expectedWaits = {5, 10, 20, 40, 40};
+        for (long wait : expectedWaits) {
+            List<SupervisorPolicy.Restart> restarts = policy.check(List.of(sample(0, false, 0, 0)), now);
+            assertEquals(1, restarts.size());
+            policy.onRestarted(restarts.get(0), now);
+            assertTrue(policy.check(List.of(sample(0, false, 0, 0)), now + (wait - 1) * SECOND).isEmpty());
+            now += wait * SECOND;
+        }
+        assertEquals(5, policy.restarts(0));
+        assertEquals("stopped", policy.lastReason(0));
+
+        // 重启后稳定运行超过 reset-after-seconds，下一次失败又从初始退避开始
+        List<SupervisorPolicy.Restart> restarts = policy.check(List.of(sample(0, false, 0, 0)), now);
+        policy.onRestarted(restarts.get(0), now);
+        for (int t = 10; t <= 300; t += 10) {
+            policy.check(List.of(sample(0, true, t, 1)), now + t * SECOND);
+        }
+        now += 300 * SECOND;
+        restarts = policy.check(List.of(sample(0, false, 300, 0)), now);
+        policy.onRestarted(restarts.get(0), now);
+        assertTrue(policy.check(List.of(sample(0, false, 300, 0)), now + 4 * SECOND).isEmpty());
+        assertEquals(1, policy.check(List.of(sample(0, false, 300, 0)), now + 5 * SECOND).size());
+    }
+
+    @Test
+    @DisplayName("Failed restarts back off like successful ones instead of retrying every check")
+    void testFailedRestartBacksOff() {
+        SupervisorPolicy policy = new SupervisorPolicy(config());
+        List<SupervisorPolicy.Restart> restarts = policy.check(List.of(sample(0, false, 0, 0)), 0);
+        policy.onRestartFailed(restarts.get(0), 0);
+        assertTrue(policy.check(List.of(sample(0, false, 0, 0)), 4 * SECOND).isEmpty());
+
+        restarts = policy.check(List.of(sample(0, false, 0, 0)), 5 * SECOND);
+        assertEquals(1, restarts.size());
+        policy.onRestartFailed(restarts.get(0), 5 * SECOND);
+        assertTrue(policy.check(List.of(sample(0, false, 0, 0)), 14 * SECOND).isEmpty());
+        assertEquals(1, policy.check(List.of(sample(0, false, 0, 0)), 15 * SECOND).size());
+
+        assertEquals(0, policy.restarts(0));
+        assertEquals(2, policy.failedRestarts(0));
+        assertEquals("restart failed: stopped", policy.lastReason(0));
+    }
+
+    @Test
+    @DisplayName("Retired nodes are forgotten")
+    void testForgetRetired() {
+        SupervisorPolicy policy = new SupervisorPolicy(config());
+        policy.check(List.of(sample(0, true, 0, 1), sample(1, true, 0, 1)), 0);
+        policy.check(List.of(sample(0, true, 0, 1)), SECOND);
+        assertEquals(-1, policy.uptimeSeconds(1, SECOND));
+    }
+
+    private static SupervisorPolicy.NodeSample sample(int idx, boolean alive, long messages, int servers) {
+        return new SupervisorPolicy.NodeSample(idx, alive, messages, servers);
+    }
+
+    private static DhtConfig.Supervisor config() {
+        DhtConfig.Supervisor config = new DhtConfig.Supervisor();
+        config.setGraceSeconds(60);
+        config.setStallSeconds(120);
+        config.setInitialBackoffSeconds(5);
+        config.setMaxBackoffSeconds(40);
+        config.setResetAfterSeconds(300);
+        return config;
+    }
+}
@@ -0,0 +1,108 @@
+package cn.lihongjie.dht.mldht.dedup;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RotatingBloomFilterTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    @DisplayName("Repeats are detected after the first sighting")
+    void testRepeatDetected() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(64 * 1024, 4, 0.001);
+        InfoHash hash = randomHash();
+
+        assertFalse(filter.checkAndPut(hash));
+        assertTrue(filter.checkAndPut(hash));
+        assertTrue(filter.checkAndPut(InfoHash.fromHex(hash.toHex())));
+    }
+
+    @Test
+    @DisplayName("Checking without recording leaves the hash unseen until it is put")
+    void testMightContainDoesNotRecord() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(64 * 1024, 4, 0.001);
+        InfoHash hash = randomHash();
+
+        assertFalse(filter.mightContain(hash));
+        assertFalse(filter.mightContain(hash));
+        filter.put(hash);
+        assertTrue(filter.mightContain(hash));
+        assertTrue(filter.checkAndPut(hash));
+    }
+
+    @Test
+    @DisplayName("False positive rate stays near the target at capacity")
+    void testFalsePositiveRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(256 * 1024, 8, 0.01);
+        long inserts = filter.getCapacity() - 16;
+        for (long i = 0; i < inserts; i++) {
+            filter.checkAndPut(randomHash());
+        }
+        int falsePositives = 0;
+        int probes = 20_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.checkAndPut(randomHash())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < probes * 0.03, "False positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Hot hashes survive generation rotation while cold ones expire")
+    void testRotationKeepsHotSet() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(8 * 1024, 1, 0.01);
+        InfoHash hot = randomHash();
+        InfoHash cold = randomHash();
+        filter.checkAndPut(hot);
+        filter.checkAndPut(cold);
+
+        long perGeneration = filter.getCapacity();
+        for (long i = 0; i < perGeneration * 3; i++) {
+            filter.checkAndPut(randomHash());
+            if (i % 100 == 0) {
+                assertTrue(filter.checkAndPut(hot));
+            }
+        }
+
+        assertTrue(filter.getRotations() >= 2);
+        assertTrue(filter.checkAndPut(hot));
+        assertFalse(filter.checkAndPut(cold));
+    }
+
+    @Test
+    @DisplayName("Promoted hashes count toward the current generation's capacity")
+    void testPromotionCountsTowardRotation() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(8 * 1024, 1, 0.01);
+        long perGeneration = filter.getCapacity();
+        List<InfoHash> hashes = new ArrayList<>();
+        while (filter.getRotations() == 0) {
+            InfoHash hash = randomHash();
+            hashes.add(hash);
+            filter.checkAndPut(hash);
+        }
+
+        for (InfoHash hash : hashes) {
+            assertTrue(filter.checkAndPut(hash));
+        }
+        for (long i = 0; i < perGeneration / 10; i++) {
+            filter.checkAndPut(randomHash());
+        }
+
+        assertEquals(2, filter.getRotations());
+    }
+
+    private InfoHash randomHash() {
+        byte[] bytes = new byte[InfoHash.LENGTH];
+        random.nextBytes(bytes);
+        return InfoHash.of(bytes);
+    }
+}
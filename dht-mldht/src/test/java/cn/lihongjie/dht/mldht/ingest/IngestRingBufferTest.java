@@ -0,0 +1,110 @@
+package cn.lihongjie.dht.mldht.ingest;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestRingBufferTest {
+
+    @Test
+    @DisplayName("Elements come out in FIFO order and capacity rounds up to a power of two")
+    void testFifo() {
+        IngestRingBuffer<Integer> buffer = new IngestRingBuffer<>(5, OverflowPolicy.DROP_NEW, 1);
+        assertEquals(8, buffer.capacity());
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    @DisplayName("Overflow policies drop the documented element and count it")
+    void testOverflowPolicies() {
+        IngestRingBuffer<Integer> dropNew = fill(OverflowPolicy.DROP_NEW, 1);
+        assertFalse(dropNew.submit(100));
+        assertEquals(1, dropNew.getDroppedNew());
+        assertEquals(0, dropNew.poll());
+
+        IngestRingBuffer<Integer> dropOldest = fill(OverflowPolicy.DROP_OLDEST, 1);
+        assertTrue(dropOldest.submit(100));
+        assertEquals(1, dropOldest.getDroppedOldest());
+        assertEquals(1, dropOldest.poll());
+
+        IngestRingBuffer<Integer> sample = fill(OverflowPolicy.SAMPLE, 4);
+        int accepted = 0;
+        for (int i = 0; i < 8; i++) {
+            if (sample.submit(100 + i)) {
+                accepted++;
+            }
+        }
+        assertEquals(2, accepted);
+        assertEquals(2, sample.getDroppedOldest());
+        assertEquals(6, sample.getDroppedNew());
+        assertEquals(12, sample.getSubmitted());
+    }
+
+    @Test
+    @DisplayName("Concurrent producers and consumers neither lose nor duplicate elements")
+    void testConcurrent() throws Exception {
+        IngestRingBuffer<Long> buffer = new IngestRingBuffer<>(1024, OverflowPolicy.DROP_NEW, 1);
+        int producers = 4;
+        int perProducer = 100_000;
+        AtomicLong dropped = new AtomicLong();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(producers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!buffer.submit(base + i)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                while (producing.get() || buffer.size() > 0) {
+                    Long value = buffer.poll();
+                    if (value != null) {
+                        assertNull(seen.put(value, Boolean.TRUE), "Duplicate element " + value);
+                    }
+                }
+            }));
+        }
+        done.await();
+        producing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals((long) producers * perProducer, seen.size() + dropped.get());
+        assertEquals(dropped.get(), buffer.getDroppedNew());
+    }
+
+    private IngestRingBuffer<Integer> fill(OverflowPolicy policy, int sampleRate) {
+        IngestRingBuffer<Integer> buffer = new IngestRingBuffer<>(4, policy, sampleRate);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.submit(i));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,50 @@
+package cn.lihongjie.dht.mldht.ingest;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTableTest {
+
+    @Test
+    @DisplayName("A source may burst up to capacity and is then limited to the refill rate")
+    void testBurstAndRefill() {
+        TokenBucketTable table = new TokenBucketTable(1024, 10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(table.tryAcquire(42, "a", 0));
+        }
+        assertFalse(table.tryAcquire(42, "a", 0));
+        assertFalse(table.tryAcquire(42, "a", 99));
+
+        // 10 个/秒，100ms 补充一个令牌
+        assertTrue(table.tryAcquire(42, "a", 100));
+        assertFalse(table.tryAcquire(42, "a", 100));
+
+        // 长时间空闲后最多补满 burst
+        for (int i = 0; i < 5; i++) {
+            assertTrue(table.tryAcquire(42, "a", 60_000));
+        }
+        assertFalse(table.tryAcquire(42, "a", 60_000));
+    }
+
+    @Test
+    @DisplayName("Sources have independent buckets and offenders are ranked by throttled count")
+    void testTopThrottled() {
+        TokenBucketTable table = new TokenBucketTable(1024, 1, 1, 0);
+        for (int i = 0; i < 10; i++) {
+            table.tryAcquire(1, "1.1.1.1", 0);
+        }
+        for (int i = 0; i < 4; i++) {
+            table.tryAcquire(2, "2.2.2.2", 0);
+        }
+        assertTrue(table.tryAcquire(3, "3.3.3.3", 0));
+
+        List<TokenBucketTable.Offender> top = table.topThrottled(5);
+        assertEquals(List.of(new TokenBucketTable.Offender("1.1.1.1", 9), new TokenBucketTable.Offender("2.2.2.2", 3)), top);
+        assertEquals(1, table.topThrottled(1).size());
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketTable(1024, 1, TokenBucketTable.MAX_BURST + 1, 0));
+    }
+}
@@ -0,0 +1,91 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdentityTableTest {
+
+    @Test
+    @DisplayName("Queries are answered by the identity sharing the longest prefix with the target")
+    void testClosest() {
+        IdentityTable table = new IdentityTable(List.of(filled(0xff), filled(0x00), filled(0x80)));
+
+        assertEquals(0x00, idAt(table, table.closest(filled(0x10), 0)));
+        assertEquals(0x80, idAt(table, table.closest(filled(0xab), 0)));
+        assertEquals(0xff, idAt(table, table.closest(filled(0xf0), 0)));
+        assertEquals(0x80, idAt(table, table.closest(filled(0x80), 0)));
+    }
+
+    @Test
+    @DisplayName("Closest identity matches a brute-force common-prefix search")
+    void testClosestMatchesBruteForce() {
+        Random random = new Random(7);
+        List<byte[]> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            byte[] id = new byte[KrpcMessage.ID_LENGTH];
+            random.nextBytes(id);
+            ids.add(id);
+        }
+        IdentityTable table = new IdentityTable(ids);
+
+        for (int i = 0; i < 2000; i++) {
+            byte[] target = new byte[KrpcMessage.ID_LENGTH];
+            random.nextBytes(target);
+            int best = 0;
+            for (byte[] id : ids) {
+                best = Math.max(best, commonPrefixBits(id, target));
+            }
+            int chosen = table.closest(target, 0);
+            byte[] chosenId = Arrays.copyOfRange(table.ids(), table.offset(chosen),
+                    table.offset(chosen) + KrpcMessage.ID_LENGTH);
+            assertEquals(best, commonPrefixBits(chosenId, target));
+        }
+    }
+
+    @Test
+    @DisplayName("Outbound queries rotate through identities and responses are attributed per identity")
+    void testRotationAndCounters() {
+        IdentityTable table = new IdentityTable(List.of(filled(1), filled(2), filled(3)));
+
+        assertEquals(0, table.nextForQuery());
+        assertEquals(1, table.nextForQuery());
+        assertEquals(2, table.nextForQuery());
+        assertEquals(0, table.nextForQuery());
+
+        table.onResponse(1);
+        table.onResponse(1);
+        table.onResponse(-1);
+        table.onResponse(99);
+        table.onAnnounce(2);
+        assertEquals(2, table.responsesAt(1));
+        assertEquals(1, table.respondingIdentities());
+        assertEquals(1, table.announcedIdentities());
+    }
+
+    private static byte[] filled(int value) {
+        byte[] id = new byte[KrpcMessage.ID_LENGTH];
+        Arrays.fill(id, (byte) value);
+        return id;
+    }
+
+    private static int idAt(IdentityTable table, int index) {
+        return table.ids()[table.offset(index)] & 0xFF;
+    }
+
+    private static int commonPrefixBits(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int x = (a[i] ^ b[i]) & 0xFF;
+            if (x != 0) {
+                return i * 8 + Integer.numberOfLeadingZeros(x) - 24;
+            }
+        }
+        return a.length * 8;
+    }
+}
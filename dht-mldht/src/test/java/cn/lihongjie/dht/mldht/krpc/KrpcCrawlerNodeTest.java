@@ -0,0 +1,47 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KrpcCrawlerNodeTest {
+
+    @Test
+    @DisplayName("A failed bind releases the node so a later start can bind again")
+    void testBindFailureResetsRunning() throws Exception {
+        int port;
+        KrpcCrawlerNode node;
+        try (DatagramSocket occupied = new DatagramSocket(new InetSocketAddress(0))) {
+            port = occupied.getLocalPort();
+            node = new KrpcCrawlerNode(0, port, new byte[20], List.of(), null, new DhtConfig.Krpc(),
+                                       new DhtConfig.Harvest(), new DhtConfig.Lookup(), null);
+            assertThrows(SocketException.class, node::start);
+            assertEquals(0, node.getActiveServerCount());
+            assertTrue(node.getStats().contains("running=false"));
+        }
+
+        Thread thread = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                node.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (node.getActiveServerCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, node.getActiveServerCount());
+        node.stop();
+        thread.join(5_000);
+        assertFalse(thread.isAlive());
+        assertEquals(0, node.getActiveServerCount());
+    }
+}
@@ -0,0 +1,216 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KrpcMessageTest {
+
+    private static final byte[] ID = filled((byte) 0x11);
+    private static final byte[] TARGET = filled((byte) 0x22);
+
+    @Test
+    @DisplayName("announce_peer query exposes info_hash, token and port")
+    void testParseAnnounceQuery() {
+        byte[] packet = concat(
+                "d1:ad2:id20:", ID, "12:implied_porti1e9:info_hash20:", TARGET,
+                "4:porti6881e5:token4:abcde1:q13:announce_peer1:t2:aa1:y1:qe");
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.TYPE_QUERY, msg.type());
+        assertEquals(KrpcMessage.METHOD_ANNOUNCE_PEER, msg.method());
+        assertArrayEquals(ID, slice(packet, msg.idOffset(), 20));
+        assertArrayEquals(TARGET, slice(packet, msg.targetOffset(), 20));
+        assertEquals("abcd", new String(packet, msg.tokenOffset(), msg.tokenLength(), StandardCharsets.ISO_8859_1));
+        assertEquals(6881, msg.port());
+        assertTrue(msg.impliedPort());
+        assertEquals("aa", new String(packet, msg.transactionOffset(), msg.transactionLength(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    @DisplayName("Unknown keys and nested values are skipped")
+    void testSkipUnknownKeys() {
+        byte[] packet = concat(
+                "d1:ad2:id20:", ID, "4:wantl2:n42:n6e6:target20:", TARGET,
+                "e1:q9:find_node1:t1:x1:v4:UT  1:y1:qe");
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.METHOD_FIND_NODE, msg.method());
+        assertArrayEquals(TARGET, slice(packet, msg.targetOffset(), 20));
+    }
+
+    @Test
+    @DisplayName("Truncated or non-dictionary packets are rejected")
+    void testRejectMalformed() {
+        byte[] packet = concat("d1:ad2:id20:", ID, "e1:q4:ping1:t2:aa1:y1:qe");
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        for (int len = 0; len < packet.length - 1; len++) {
+            assertFalse(msg.parse(packet, len), "Truncated at " + len);
+        }
+        byte[] list = "l4:spame".getBytes(StandardCharsets.ISO_8859_1);
+        assertFalse(msg.parse(list, list.length));
+    }
+
+    @Test
+    @DisplayName("Encoded get_peers response round-trips through the decoder")
+    void testEncodeNodesResponse() {
+        ContactTable contacts = new ContactTable(4);
+        contacts.add(TARGET, 0, 0x01020304, 6881);
+        byte[] tx = {'t', 'x'};
+        ByteBuffer out = ByteBuffer.allocate(1500);
+
+        KrpcEncoder.writeNodesResponse(out, tx, 0, tx.length, ID, 0, contacts, 8, true, 0x0a0b0c0d);
+        byte[] packet = Arrays.copyOf(out.array(), out.limit());
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.TYPE_RESPONSE, msg.type());
+        assertArrayEquals(ID, slice(packet, msg.idOffset(), 20));
+        assertEquals(KrpcEncoder.COMPACT_NODE_LENGTH, msg.nodesLength());
+        assertEquals(4, msg.tokenLength());
+
+        ContactTable parsed = new ContactTable(4);
+        assertEquals(1, parsed.addCompactNodes(packet, msg.nodesOffset(), msg.nodesLength()));
+        assertEquals(0x01020304, parsed.ipAt(0));
+        assertEquals(6881, parsed.portAt(0));
+    }
+
+    @Test
+    @DisplayName("sample_infohashes response exposes interval, num and samples")
+    void testParseSampleResponse() {
+        byte[] packet = concat(
+                "d1:rd2:id20:", ID, "8:intervali600e5:nodes0:3:numi42e7:samples40:", TARGET, ID,
+                "e1:t2:s11:y1:re");
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.TYPE_RESPONSE, msg.type());
+        assertEquals(600, msg.interval());
+        assertEquals(42, msg.num());
+        assertEquals(40, msg.samplesLength());
+        assertArrayEquals(TARGET, slice(packet, msg.samplesOffset(), 20));
+        assertArrayEquals(ID, slice(packet, msg.samplesOffset() + 20, 20));
+    }
+
+    @Test
+    @DisplayName("Encoded sample_infohashes query is recognised by the decoder")
+    void testEncodeSampleQuery() {
+        byte[] tx = {'s', 1};
+        ByteBuffer out = ByteBuffer.allocate(1500);
+
+        KrpcEncoder.writeSampleInfohashesQuery(out, tx, 0, tx.length, ID, 0, TARGET, 0);
+        byte[] packet = Arrays.copyOf(out.array(), out.limit());
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.TYPE_QUERY, msg.type());
+        assertEquals(KrpcMessage.METHOD_SAMPLE_INFOHASHES, msg.method());
+        assertArrayEquals(TARGET, slice(packet, msg.targetOffset(), 20));
+    }
+
+    @Test
+    @DisplayName("Encoded get_peers and announce_peer queries match the wire format")
+    void testEncodePeerQueries() {
+        byte[] tx = {'a', 'a'};
+        byte[] token = "abcd".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer out = ByteBuffer.allocate(1500);
+
+        KrpcEncoder.writeAnnouncePeerQuery(out, tx, 0, 2, ID, 0, TARGET, 0, true, 6881, token, 0, 4);
+        assertArrayEquals(concat("d1:ad2:id20:", ID, "12:implied_porti1e9:info_hash20:", TARGET,
+                                 "4:porti6881e5:token4:abcde1:q13:announce_peer1:t2:aa1:y1:qe"),
+                          Arrays.copyOf(out.array(), out.limit()));
+
+        KrpcEncoder.writeGetPeersQuery(out, tx, 0, 2, ID, 0, TARGET, 0);
+        byte[] packet = Arrays.copyOf(out.array(), out.limit());
+        KrpcMessage msg = new KrpcMessage();
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.METHOD_GET_PEERS, msg.method());
+        assertArrayEquals(TARGET, slice(packet, msg.targetOffset(), 20));
+    }
+
+    @Test
+    @DisplayName("get_peers scrape response exposes BFsd, BFpe and compact peer values")
+    void testParseScrapeResponse() {
+        byte[] seeds = new byte[256];
+        byte[] peers = new byte[256];
+        seeds[0] = 1;
+        peers[255] = (byte) 0x80;
+        byte[] peer1 = {1, 2, 3, 4, 0x1a, (byte) 0xe1};
+        byte[] peer2 = {5, 6, 7, 8, 0x1a, (byte) 0xe2};
+        byte[] packet = concat("d1:rd4:BFpe256:", peers, "4:BFsd256:", seeds, "2:id20:", ID,
+                               "5:token4:abcd6:valuesl6:", peer1, "6:", peer2, "3:bade",
+                               "e1:t5:c\0\0\0\1", "1:y1:re");
+        KrpcMessage msg = new KrpcMessage();
+
+        assertTrue(msg.parse(packet, packet.length));
+        assertArrayEquals(seeds, slice(packet, msg.seedsFilterOffset(), 256));
+        assertArrayEquals(peers, slice(packet, msg.peersFilterOffset(), 256));
+        assertEquals(2, msg.valuesCount());
+        assertArrayEquals(peer1, slice(packet, msg.valueOffset(0), 6));
+        assertArrayEquals(peer2, slice(packet, msg.valueOffset(1), 6));
+
+        byte[] plain = concat("d1:rd2:id20:", ID, "5:nodes0:e1:t2:aa1:y1:re");
+        assertTrue(msg.parse(plain, plain.length));
+        assertEquals(-1, msg.seedsFilterOffset());
+        assertEquals(-1, msg.peersFilterOffset());
+        assertEquals(0, msg.valuesCount());
+    }
+
+    @Test
+    @DisplayName("Encoded scrape query carries scrape=1 and is recognised as get_peers")
+    void testEncodeScrapeQuery() {
+        byte[] tx = {'c', 0, 0, 0, 7};
+        ByteBuffer out = ByteBuffer.allocate(1500);
+
+        KrpcEncoder.writeGetPeersScrapeQuery(out, tx, 0, tx.length, ID, 0, TARGET, 0);
+        byte[] packet = Arrays.copyOf(out.array(), out.limit());
+        assertArrayEquals(concat("d1:ad2:id20:", ID, "9:info_hash20:", TARGET, "6:scrapei1ee1:q9:get_peers1:t5:",
+                                 tx, "1:y1:qe"), packet);
+
+        KrpcMessage msg = new KrpcMessage();
+        assertTrue(msg.parse(packet, packet.length));
+        assertEquals(KrpcMessage.METHOD_GET_PEERS, msg.method());
+        assertArrayEquals(TARGET, slice(packet, msg.targetOffset(), 20));
+    }
+
+    @Test
+    @DisplayName("Tokens are bound to the requesting IP")
+    void testTokenValidation() {
+        TokenManager tokens = new TokenManager(60_000);
+        int token = tokens.tokenFor(0x7f000001);
+        byte[] raw = ByteBuffer.allocate(4).putInt(token).array();
+
+        assertTrue(tokens.isValid(0x7f000001, raw, 0, 4));
+        assertFalse(tokens.isValid(0x7f000002, raw, 0, 4));
+        assertFalse(tokens.isValid(0x7f000001, raw, 0, 3));
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] b = new byte[20];
+        Arrays.fill(b, value);
+        return b;
+    }
+
+    private static byte[] slice(byte[] src, int off, int len) {
+        return Arrays.copyOfRange(src, off, off + len);
+    }
+
+    private static byte[] concat(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            byte[] b = part instanceof byte[] bytes ? bytes : ((String) part).getBytes(StandardCharsets.ISO_8859_1);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleHarvesterTest {
+
+    private static final int IP = 0x01020304;
+    private static final int PORT = 6881;
+
+    @Test
+    @DisplayName("Query budget refills at the configured rate")
+    void testQueryBudget() {
+        SampleHarvester harvester = new SampleHarvester(settings(10));
+
+        assertEquals(0, harvester.refill(1_000));
+        assertEquals(5, harvester.refill(1_500));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(harvester.tryReserve(IP, PORT + i, 1_500));
+        }
+        assertFalse(harvester.tryReserve(IP, PORT + 5, 1_500));
+    }
+
+    @Test
+    @DisplayName("Remote interval is respected before querying the same node again")
+    void testRespectsInterval() {
+        SampleHarvester harvester = new SampleHarvester(settings(100));
+        harvester.refill(1_000);
+        harvester.refill(2_000);
+
+        assertTrue(harvester.tryReserve(IP, PORT, 2_000));
+        KrpcMessage msg = parse(sampleResponse(60, filled((byte) 1), filled((byte) 2), filled((byte) 1)));
+        assertEquals(3, harvester.onResponse(msg, IP, PORT, 2_000, 100));
+
+        assertFalse(harvester.tryReserve(IP, PORT, 61_000));
+        assertTrue(harvester.tryReserve(IP, PORT, 62_000));
+        assertEquals(3, harvester.getSamplesReceived().get());
+        assertEquals(2, harvester.getUniqueSamples().get());
+        assertEquals(1, harvester.getSkippedByInterval().get());
+    }
+
+    @Test
+    @DisplayName("Nodes without BEP 51 support are backed off")
+    void testUnsupportedBackoff() {
+        SampleHarvester harvester = new SampleHarvester(settings(100));
+        harvester.refill(1_000);
+        harvester.refill(2_000);
+
+        KrpcMessage msg = parse(concat("d1:rd2:id20:", filled((byte) 9), "5:nodes0:e1:t2:s11:y1:re"));
+        assertEquals(0, harvester.onResponse(msg, IP, PORT, 2_000, 50));
+
+        assertFalse(harvester.tryReserve(IP, PORT, 2_000 + 3_599_000));
+        assertTrue(harvester.tryReserve(IP, PORT, 2_000 + 3_600_000));
+        assertEquals(1, harvester.getUnsupportedResponses().get());
+    }
+
+    private static DhtConfig.Harvest settings(int queryRate) {
+        DhtConfig.Harvest settings = new DhtConfig.Harvest();
+        settings.setQueryRate(queryRate);
+        settings.setUniqueCapacity(1024);
+        return settings;
+    }
+
+    private static KrpcMessage parse(byte[] packet) {
+        KrpcMessage msg = new KrpcMessage();
+        assertTrue(msg.parse(packet, packet.length));
+        return msg;
+    }
+
+    private static byte[] sampleResponse(int interval, byte[]... samples) {
+        Object[] parts = new Object[samples.length + 3];
+        parts[0] = "d1:rd2:id20:";
+        parts[1] = filled((byte) 9);
+        parts[2] = "8:intervali" + interval + "e7:samples" + samples.length * 20 + ":";
+        System.arraycopy(samples, 0, parts, 3, samples.length);
+        byte[] head = concat(parts);
+        return concat(head, "e1:t2:s11:y1:re");
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] b = new byte[20];
+        Arrays.fill(b, value);
+        return b;
+    }
+
+    private static byte[] concat(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            byte[] b = part instanceof byte[] bytes ? bytes : ((String) part).getBytes(StandardCharsets.ISO_8859_1);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,137 @@
+package cn.lihongjie.dht.mldht.krpc;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import cn.lihongjie.dht.mldht.config.DhtConfig;
+import cn.lihongjie.dht.mldht.scrape.ScrapeBloomFilter;
+import cn.lihongjie.dht.mldht.scrape.SwarmEstimate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwarmScraperTest {
+
+    private static final InfoHash HASH = InfoHash.fromHex("8000000000000000000000000000000000000000");
+
+    @Test
+    @DisplayName("Scrape queries the closest contacts and merges their filters")
+    void testMergesFilters() throws Exception {
+        SwarmScraper scraper = new SwarmScraper(settings(100, 4, 2));
+        scraper.activate();
+        ContactTable contacts = new ContactTable(16);
+        contacts.add(id(0x00), 0, 0x0a000001, 6881);
+        contacts.add(id(0x81), 0, 0x0a000002, 6881);
+        contacts.add(id(0x80), 0, 0x0a000003, 6881);
+        List<Integer> sent = new ArrayList<>();
+        SwarmScraper.QuerySender sender = (lookupId, ip, port, infoHash) -> {
+            sent.add(ip);
+            return 100;
+        };
+
+        CompletableFuture<SwarmEstimate> future = scraper.submit(HASH);
+        scraper.tick(1_000, contacts, sender);
+        scraper.tick(2_000, contacts, sender);
+        // alpha=2：先查询最近的两个节点
+        assertEquals(List.of(0x0a000003, 0x0a000002), sent);
+
+        ScrapeBloomFilter seeds = new ScrapeBloomFilter();
+        ScrapeBloomFilter peers = new ScrapeBloomFilter();
+        for (int i = 1; i <= 20; i++) {
+            (i <= 5 ? seeds : peers).insert(InetAddress.getByAddress(new byte[]{10, 1, 0, (byte) i}));
+        }
+        scraper.onResponse(scrapeResponse(seeds, peers), 0, 800);
+        scraper.onResponse(scrapeResponse(seeds, peers), 0, 800);
+        scraper.tick(2_100, contacts, sender);
+        assertEquals(3, sent.size());
+        scraper.onError(0, 50);
+        scraper.tick(2_200, contacts, sender);
+
+        SwarmEstimate estimate = future.getNow(null);
+        assertNotNull(estimate);
+        assertEquals(2, estimate.bloomResponses());
+        assertEquals(5, estimate.swarmSeeds());
+        assertEquals(15, estimate.swarmPeers());
+        assertEquals(1, scraper.getCompleted().get());
+        assertEquals(3, scraper.getQueriesSent().get());
+    }
+
+    @Test
+    @DisplayName("Lookups that stop converging finish at the scrape timeout")
+    void testTimeout() throws Exception {
+        SwarmScraper scraper = new SwarmScraper(settings(100, 16, 3));
+        scraper.activate();
+        ContactTable contacts = new ContactTable(16);
+        for (int i = 1; i <= 8; i++) {
+            contacts.add(id(i), 0, 0x0a000000 + i, 6881);
+        }
+        SwarmScraper.QuerySender sender = (lookupId, ip, port, infoHash) -> 100;
+
+        CompletableFuture<SwarmEstimate> future = scraper.submit(HASH);
+        scraper.tick(1_000, contacts, sender);
+        scraper.tick(2_000, contacts, sender);
+        assertFalse(future.isDone());
+        scraper.tick(5_000, contacts, sender);
+
+        assertTrue(future.isDone());
+        assertFalse(future.get().known());
+        assertEquals(1, scraper.getTimeouts().get());
+    }
+
+    @Test
+    @DisplayName("Submissions are refused while inactive or once the queue is full")
+    void testBackpressure() throws Exception {
+        DhtConfig.Scrape config = settings(100, 16, 3);
+        config.setMaxPending(1);
+        SwarmScraper scraper = new SwarmScraper(config);
+
+        assertNull(scraper.submit(HASH).get());
+        scraper.activate();
+        CompletableFuture<SwarmEstimate> queued = scraper.submit(HASH);
+        assertNull(scraper.submit(HASH).get());
+        assertEquals(1, scraper.getDropped().get());
+
+        scraper.deactivate();
+        assertTrue(queued.isDone());
+        assertNull(queued.get());
+    }
+
+    private static DhtConfig.Scrape settings(int rate, int maxQueries, int alpha) {
+        DhtConfig.Scrape settings = new DhtConfig.Scrape();
+        settings.setQueryRate(rate);
+        settings.setMaxQueriesPerScrape(maxQueries);
+        settings.setAlpha(alpha);
+        settings.setTimeoutMillis(3000);
+        return settings;
+    }
+
+    private static byte[] id(int first) {
+        byte[] id = new byte[20];
+        id[0] = (byte) first;
+        return id;
+    }
+
+    private static KrpcMessage scrapeResponse(ScrapeBloomFilter seeds, ScrapeBloomFilter peers) {
+        byte[] packet = concat("d1:rd4:BFpe256:", peers.toBytes(), "4:BFsd256:", seeds.toBytes(),
+                               "2:id20:", id(0x80), "e1:t5:c\0\0\0\0", "1:y1:re");
+        KrpcMessage message = new KrpcMessage();
+        assertTrue(message.parse(packet, packet.length));
+        return message;
+    }
+
+    private static byte[] concat(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            byte[] b = part instanceof byte[] bytes ? bytes : ((String) part).getBytes(StandardCharsets.ISO_8859_1);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+}
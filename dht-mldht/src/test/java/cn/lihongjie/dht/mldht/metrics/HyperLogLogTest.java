@@ -0,0 +1,45 @@
+package cn.lihongjie.dht.mldht.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    @DisplayName("Estimate stays within a few standard errors for small and large cardinalities")
+    void testEstimate() {
+        Random random = new Random(7);
+        for (int n : new int[]{100, 10_000, 1_000_000}) {
+            HyperLogLog hll = new HyperLogLog(12);
+            for (int i = 0; i < n; i++) {
+                long value = random.nextLong();
+                hll.offer(value);
+                hll.offer(value);
+            }
+            assertEquals(n, hll.estimate(), n * 0.05, "n=" + n);
+        }
+    }
+
+    @Test
+    @DisplayName("Merged registers count values shared by several instances once")
+    void testMerge() {
+        HyperLogLog a = new HyperLogLog(12);
+        HyperLogLog b = new HyperLogLog(12);
+        for (long i = 0; i < 20_000; i++) {
+            a.offer(i);
+            if (i >= 10_000) {
+                b.offer(i);
+                b.offer(i + 20_000);
+            }
+        }
+        int[] registers = new int[a.registerCount()];
+        a.mergeInto(registers);
+        b.mergeInto(registers);
+
+        assertEquals(30_000, HyperLogLog.estimate(registers), 30_000 * 0.05);
+    }
+}
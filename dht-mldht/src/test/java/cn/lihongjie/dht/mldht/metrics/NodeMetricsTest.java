@@ -0,0 +1,112 @@
+package cn.lihongjie.dht.mldht.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeMetricsTest {
+
+    @Test
+    @DisplayName("Common prefix bits count matching leading bits of two IDs")
+    void testCommonPrefixBits() {
+        byte[] a = new byte[20];
+        byte[] b = new byte[20];
+        assertEquals(160, NodeMetrics.commonPrefixBits(a, 0, b, 0));
+
+        b[0] = (byte) 0x80;
+        assertEquals(0, NodeMetrics.commonPrefixBits(a, 0, b, 0));
+        b[0] = 0;
+        b[2] = 0x10;
+        assertEquals(19, NodeMetrics.commonPrefixBits(a, 0, b, 0));
+    }
+
+    @Test
+    @DisplayName("Network size is estimated from the closest node IDs seen around the own ID")
+    void testNetworkSizeEstimate() {
+        Random random = new Random(11);
+        byte[] own = new byte[20];
+        random.nextBytes(own);
+        NodeMetrics metrics = new NodeMetrics(own, 0);
+        assertEquals(0, metrics.getNetworkSizeEstimate());
+
+        int network = 200_000;
+        byte[] id = new byte[20];
+        double total = 0;
+        int trials = 20;
+        for (int t = 0; t < trials; t++) {
+            NodeMetrics trial = new NodeMetrics(own, 0);
+            for (int i = 0; i < network; i++) {
+                random.nextBytes(id);
+                trial.onNodeSeen(id, 0);
+            }
+            total += trial.getNetworkSizeEstimate();
+        }
+        assertEquals(network, total / trials, network * 0.15);
+    }
+
+    @Test
+    @DisplayName("Unbound metrics only count seen IDs until the own ID is bound")
+    void testBindOwnId() {
+        Random random = new Random(5);
+        byte[] own = new byte[20];
+        random.nextBytes(own);
+        NodeMetrics metrics = new NodeMetrics();
+        assertFalse(metrics.isBound());
+
+        byte[] id = new byte[20];
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(id);
+            metrics.onNodeSeen(id, 0);
+        }
+        metrics.onAnnounce(own, 0);
+        assertEquals(0, metrics.getNetworkSizeEstimate());
+        assertEquals(0, metrics.getAnnouncePrefixBits()[160]);
+        assertTrue(metrics.getSeenIds().estimate() > 0);
+
+        metrics.bindOwnId(own, 0);
+        assertTrue(metrics.isBound());
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(id);
+            metrics.onNodeSeen(id, 0);
+        }
+        metrics.onAnnounce(own, 0);
+        assertTrue(metrics.getNetworkSizeEstimate() > 0);
+        assertEquals(1, metrics.getAnnouncePrefixBits()[160]);
+    }
+
+    @Test
+    @DisplayName("Announces are bucketed by prefix bits and messages counted by kind")
+    void testAnnouncesAndMessages() {
+        byte[] own = new byte[20];
+        byte[] target = new byte[20];
+        target[1] = 0x01;
+        NodeMetrics metrics = new NodeMetrics(own, 0);
+
+        metrics.onAnnounce(target, 0);
+        metrics.onAnnounce(target, 0);
+        metrics.onMessage(NodeMetrics.MessageKind.ANNOUNCE_PEER);
+        metrics.onMessage(NodeMetrics.MessageKind.RESPONSE);
+
+        assertEquals(2, metrics.getAnnouncePrefixBits()[15]);
+        assertEquals(1, metrics.getMessages(NodeMetrics.MessageKind.ANNOUNCE_PEER));
+        assertEquals(0, metrics.getMessages(NodeMetrics.MessageKind.PING));
+        assertEquals("announce_peer", NodeMetrics.MessageKind.ANNOUNCE_PEER.label());
+    }
+
+    @Test
+    @DisplayName("Prometheus text output escapes labels and formats values")
+    void testPrometheusText() {
+        String text = new PrometheusText()
+                .header("dht_node_up", "gauge", "Node state")
+                .sample("dht_node_up", 1, "node", "0", "note", "a\"b")
+                .sample("dht_ratio", 0.25)
+                .sample("dht_bucket", 3, "le", "+Inf")
+                .toString();
+
+        assertEquals("# HELP dht_node_up Node state\n# TYPE dht_node_up gauge\n"
+                     + "dht_node_up{node=\"0\",note=\"a\\\"b\"} 1\ndht_ratio 0.25\ndht_bucket{le=\"+Inf\"} 3\n", text);
+    }
+}
@@ -0,0 +1,62 @@
+package cn.lihongjie.dht.mldht.popularity;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    private static InfoHash random() {
+        byte[] bytes = new byte[InfoHash.LENGTH];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return InfoHash.of(bytes);
+    }
+
+    @Test
+    @DisplayName("Frequent InfoHashes survive a long tail of one-off announces")
+    void testTopK() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1 << 14, 6, 60_000, 0);
+        HeavyHitters heavyHitters = new HeavyHitters(40);
+        List<InfoHash> hot = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hot.add(random());
+        }
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < hot.size(); i++) {
+                // 第 i 个热门资源每轮出现 i+1 次
+                for (int n = 0; n <= i; n++) {
+                    heavyHitters.offer(hot.get(i), sketch.add(hot.get(i), 1000));
+                }
+            }
+            for (int i = 0; i < 50; i++) {
+                InfoHash tail = random();
+                heavyHitters.offer(tail, sketch.add(tail, 1000));
+            }
+        }
+
+        List<HeavyHitters.Entry> top = heavyHitters.topK(3, sketch, 1000);
+        assertEquals(3, top.size());
+        assertEquals(hot.get(9), top.get(0).infoHash());
+        assertEquals(hot.get(8), top.get(1).infoHash());
+        assertEquals(hot.get(7), top.get(2).infoHash());
+        assertTrue(top.get(0).estimate() >= 1000);
+    }
+
+    @Test
+    @DisplayName("Candidates that fall out of the window are evicted")
+    void testExpiry() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 6, 60_000, 0);
+        HeavyHitters heavyHitters = new HeavyHitters(8);
+        InfoHash infoHash = random();
+        heavyHitters.offer(infoHash, sketch.add(infoHash, 0));
+
+        assertEquals(1, heavyHitters.topK(10, sketch, 0).size());
+        assertTrue(heavyHitters.topK(10, sketch, 120_000).isEmpty());
+    }
+}
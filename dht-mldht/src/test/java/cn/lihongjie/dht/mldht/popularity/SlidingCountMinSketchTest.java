@@ -0,0 +1,59 @@
+package cn.lihongjie.dht.mldht.popularity;
+
+import cn.lihongjie.dht.common.model.InfoHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingCountMinSketchTest {
+
+    private static InfoHash random() {
+        byte[] bytes = new byte[InfoHash.LENGTH];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return InfoHash.of(bytes);
+    }
+
+    @Test
+    @DisplayName("Estimates never undercount and stay close for heavy hitters")
+    void testEstimate() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 6, 60_000, 0);
+        InfoHash hot = random();
+        for (int i = 0; i < 500; i++) {
+            sketch.add(hot, 1000);
+            sketch.add(random(), 1000);
+        }
+
+        int estimate = sketch.estimate(hot, 1000);
+        assertTrue(estimate >= 500);
+        assertTrue(estimate < 520, "estimate " + estimate);
+        assertEquals(0, new SlidingCountMinSketch(4, 1024, 6, 60_000, 0).estimate(hot, 1000));
+    }
+
+    @Test
+    @DisplayName("Counts expire bucket by bucket as the window slides")
+    void testWindowSlides() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 6, 60_000, 0);
+        InfoHash infoHash = random();
+        for (int i = 0; i < 10; i++) {
+            sketch.add(infoHash, 0);
+        }
+        for (int i = 0; i < 5; i++) {
+            sketch.add(infoHash, 30_000);
+        }
+
+        assertEquals(15, sketch.estimate(infoHash, 59_999));
+        assertEquals(5, sketch.estimate(infoHash, 60_000));
+        assertEquals(0, sketch.estimate(infoHash, 200_000));
+        assertEquals(1, sketch.add(infoHash, 200_000));
+    }
+
+    @Test
+    @DisplayName("Width is rounded up to a power of two")
+    void testMemory() {
+        assertEquals(4L * 6 * 4 * 1024, new SlidingCountMinSketch(4, 1000, 6, 60_000, 0).memoryBytes());
+        assertThrows(IllegalArgumentException.class, () -> new SlidingCountMinSketch(0, 1024, 6, 60_000, 0));
+    }
+}
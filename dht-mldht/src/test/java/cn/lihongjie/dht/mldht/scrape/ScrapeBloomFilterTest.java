@@ -0,0 +1,49 @@
+package cn.lihongjie.dht.mldht.scrape;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScrapeBloomFilterTest {
+
+    @Test
+    @DisplayName("Estimate tracks the number of distinct inserted peers")
+    void testEstimate() throws Exception {
+        Random random = new Random(42);
+        for (int n : new int[]{10, 100, 1000}) {
+            ScrapeBloomFilter filter = new ScrapeBloomFilter();
+            for (int i = 0; i < n; i++) {
+                byte[] ip = new byte[4];
+                random.nextBytes(ip);
+                filter.insert(InetAddress.getByAddress(ip));
+            }
+            assertEquals(n, filter.estimate(), Math.max(2, n * 0.1), "n=" + n);
+        }
+        assertEquals(0, new ScrapeBloomFilter().estimate());
+    }
+
+    @Test
+    @DisplayName("Merging filters from several nodes counts a shared peer once")
+    void testMergeDeduplicates() throws Exception {
+        ScrapeBloomFilter a = new ScrapeBloomFilter();
+        ScrapeBloomFilter b = new ScrapeBloomFilter();
+        for (int i = 1; i <= 50; i++) {
+            InetAddress peer = InetAddress.getByAddress(new byte[]{10, 0, 0, (byte) i});
+            a.insert(peer);
+            if (i > 25) {
+                b.insert(peer);
+            }
+        }
+        byte[] wire = new byte[ScrapeBloomFilter.LENGTH + 3];
+        ScrapeBloomFilter merged = new ScrapeBloomFilter();
+        merged.merge(a.toBytes(), 0);
+        System.arraycopy(b.toBytes(), 0, wire, 3, ScrapeBloomFilter.LENGTH);
+        merged.merge(wire, 3);
+
+        assertEquals(a.estimate(), merged.estimate());
+    }
+}
@@ -0,0 +1,28 @@
+package cn.lihongjie.dht.mldht.scrape;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwarmEstimateTest {
+
+    @Test
+    @DisplayName("Peers returned in values bound the estimate from below and keep it from looking dead")
+    void testDirectPeersAreALowerBound() {
+        SwarmEstimate empty = new SwarmEstimate(0, 0, 2, 3);
+        assertEquals(0, empty.swarmSeeds());
+        assertEquals(3, empty.swarmPeers());
+        assertFalse(empty.dead());
+        assertTrue(empty.underestimated());
+
+        SwarmEstimate filtered = new SwarmEstimate(5, 15, 2, 3);
+        assertEquals(5, filtered.swarmSeeds());
+        assertEquals(15, filtered.swarmPeers());
+        assertFalse(filtered.dead());
+
+        assertTrue(new SwarmEstimate(0, 0, 2, 0).dead());
+        assertFalse(new SwarmEstimate(0, 0, 0, 0).dead());
+        assertEquals(4, new SwarmEstimate(0, 0, 0, 4).swarmPeers());
+    }
+}
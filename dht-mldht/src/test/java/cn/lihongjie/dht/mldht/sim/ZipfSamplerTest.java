@@ -0,0 +1,53 @@
+package cn.lihongjie.dht.mldht.sim;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfSamplerTest {
+
+    @Test
+    @DisplayName("Rank frequencies follow 1/k and the sequence is reproducible from the seed")
+    void testDistribution() {
+        ZipfSampler zipf = new ZipfSampler(1000, 1.0);
+        int[] counts = new int[1000];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 200_000; i++) {
+            counts[zipf.sample(random)]++;
+        }
+
+        double ratio = counts[0] / (double) counts[1];
+        assertTrue(ratio > 1.8 && ratio < 2.2, "rank 1 / rank 2 = " + ratio);
+        assertTrue(counts[0] > counts[9] * 8);
+        assertEquals(zipf.sample(new SplittableRandom(3)), zipf.sample(new SplittableRandom(3)));
+    }
+
+    @Test
+    @DisplayName("Exponent 0 samples uniformly")
+    void testUniform() {
+        ZipfSampler zipf = new ZipfSampler(4, 0);
+        int[] counts = new int[4];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 40_000; i++) {
+            counts[zipf.sample(random)]++;
+        }
+        for (int count : counts) {
+            assertEquals(10_000, count, 500);
+        }
+    }
+
+    @Test
+    @DisplayName("Target specs expand port ranges and lists")
+    void testParseTargets() {
+        List<InetSocketAddress> targets = SimulatorOptions.parseTargets("127.0.0.1:6881-6883,127.0.0.2:7000");
+
+        assertEquals(4, targets.size());
+        assertEquals(6883, targets.get(2).getPort());
+        assertEquals(new InetSocketAddress("127.0.0.2", 7000), targets.get(3));
+    }
+}
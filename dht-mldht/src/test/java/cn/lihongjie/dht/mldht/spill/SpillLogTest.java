@@ -0,0 +1,93 @@
+package cn.lihongjie.dht.mldht.spill;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] record(int i) {
+        return ("envelope-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long fileCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    @DisplayName("Records are replayed in append order across segment rolls and consumed segments are deleted")
+    void testAppendPeekCommit() throws Exception {
+        try (SpillLog log = new SpillLog(dir, 64, 100)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(log.append(record(i)));
+            }
+            assertEquals(10, log.pendingRecords());
+            assertTrue(log.segmentCount() > 1);
+
+            List<byte[]> first = log.peek(4);
+            assertEquals(4, first.size());
+            assertArrayEquals(record(0), first.get(0));
+            assertArrayEquals(record(3), first.get(3));
+            // peek 不移动读位置
+            assertArrayEquals(record(0), log.peek(1).get(0));
+
+            log.commit(4);
+            assertArrayEquals(record(4), log.peek(1).get(0));
+            log.commit(6);
+            assertTrue(log.isEmpty());
+            assertEquals(1, log.segmentCount());
+            assertEquals(1, fileCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Uncommitted records survive reopening the log")
+    void testRecovery() throws Exception {
+        try (SpillLog log = new SpillLog(dir, 64, 100)) {
+            for (int i = 0; i < 6; i++) {
+                log.append(record(i));
+            }
+            log.commit(2);
+        }
+
+        try (SpillLog log = new SpillLog(dir, 64, 100)) {
+            assertEquals(4, log.pendingRecords());
+            List<byte[]> records = log.peek(10);
+            assertEquals(4, records.size());
+            assertArrayEquals(record(2), records.get(0));
+            assertArrayEquals(record(5), records.get(3));
+
+            assertTrue(log.append(record(6)));
+            assertArrayEquals(record(6), log.peek(10).get(4));
+        }
+    }
+
+    @Test
+    @DisplayName("Appends are refused once the segment limit is reached")
+    void testFull() throws Exception {
+        try (SpillLog log = new SpillLog(dir, 32, 2)) {
+            int accepted = 0;
+            while (log.append(record(accepted))) {
+                accepted++;
+            }
+            assertTrue(accepted > 0);
+            assertEquals(accepted, log.pendingRecords());
+
+            log.commit(accepted);
+            assertTrue(log.append(record(0)));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package cn.lihongjie.dht.springcommon.bloom;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom Filter 微批处理前端
+ * 多个线程提交的 exists/add 请求先进入队列，由单个刷新线程凑满 maxBatchSize 个或等待 maxDelayMicros 微秒后，
+ * 通过 BloomFilterService 的 existsAll/addAll 在一次管道往返内完成。
+ * exists 的回调在刷新线程上执行，调用方应只在回调中做轻量操作。
+ */
+@Slf4j
+public class BloomFilterBatcher implements AutoCloseable {
+
+    private final BloomFilterService bloomFilterService;
+    private final String key;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request> queue;
+    private final Thread flusher;
+
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong existsCount = new AtomicLong(0);
+    private final AtomicLong addCount = new AtomicLong(0);
+    private final AtomicLong overflowCount = new AtomicLong(0);
+    private final AtomicLong failedBatchCount = new AtomicLong(0);
+
+    private volatile boolean running = true;
+
+    /**
+     * @param key            Bloom Filter 键
+     * @param maxBatchSize   单批最多元素个数
+     * @param maxDelayMicros 第一个元素入队后最多等待的微秒数
+     * @param queueCapacity  队列容量，满了之后调用方线程直接同步访问 Redis
+     */
+    public BloomFilterBatcher(BloomFilterService bloomFilterService, String key,
+                              int maxBatchSize, long maxDelayMicros, int queueCapacity) {
+        this.bloomFilterService = bloomFilterService;
+        this.key = key;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+        this.queue = new LinkedBlockingQueue<>(Math.max(this.maxBatchSize, queueCapacity));
+        this.flusher = new Thread(this::run, "bloom-batcher-" + key);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 异步判断元素是否可能存在；Redis 不可用时 future 以异常结束，由调用方决定如何降级
+     */
+    public CompletableFuture<Boolean> exists(String value) {
+        existsCount.incrementAndGet();
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (!running || !queue.offer(new Request(value, future))) {
+            overflowCount.incrementAndGet();
+            try {
+                future.complete(bloomFilterService.existsOrThrow(key, value));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 异步添加元素，失败只记录日志
+     */
+    public void add(String value) {
+        addCount.incrementAndGet();
+        if (!running || !queue.offer(new Request(value, null))) {
+            overflowCount.incrementAndGet();
+            bloomFilterService.add(key, value);
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                log.error("Bloom Filter batch flush failed for key={}", key, e);
+            } finally {
+                batch.clear();
+            }
+        }
+        // 退出前把剩余请求同步处理掉，避免 future 永远不结束
+        List<Request> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    private void flush(List<Request> batch) {
+        batchCount.incrementAndGet();
+        List<String> existsValues = new ArrayList<>();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        List<String> addValues = new ArrayList<>();
+        for (Request request : batch) {
+            if (request.future == null) {
+                addValues.add(request.value);
+            } else {
+                existsValues.add(request.value);
+                futures.add(request.future);
+            }
+        }
+
+        if (!existsValues.isEmpty()) {
+            boolean[] flags;
+            try {
+                flags = bloomFilterService.existsAllOrThrow(key, existsValues);
+            } catch (Exception e) {
+                failedBatchCount.incrementAndGet();
+                futures.forEach(f -> f.completeExceptionally(e));
+                flags = null;
+            }
+            if (flags != null) {
+                for (int i = 0; i < flags.length; i++) {
+                    futures.get(i).complete(flags[i]);
+                }
+            }
+        }
+        bloomFilterService.addAll(key, addValues);
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        long batches = batchCount.get();
+        long items = existsCount.get() + addCount.get() - overflowCount.get();
+        return String.format("Batches: %d, AvgBatchSize: %.1f, Exists: %d, Adds: %d, Overflow: %d, FailedBatches: %d, Queued: %d",
+                             batches, batches == 0 ? 0.0 : (double) items / batches, existsCount.get(), addCount.get(),
+                             overflowCount.get(), failedBatchCount.get(), queue.size());
+    }
+
+    /**
+     * 停止刷新线程，队列中剩余请求会在退出前处理
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Request(String value, CompletableFuture<Boolean> future) {
+    }
+}
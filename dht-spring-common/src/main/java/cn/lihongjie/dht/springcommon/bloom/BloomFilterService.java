@@ -1,12 +1,17 @@
 package cn.lihongjie.dht.springcommon.bloom;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import io.lettuce.core.RedisCommandExecutionException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * 统一的 RedisBloom BloomFilterService 实现，供多个 Spring 模块复用。
@@ -20,6 +25,15 @@ public class BloomFilterService {
             new DefaultRedisScript<>("return redis.call('BF.ADD', KEYS[1], ARGV[1])", Long.class);
     private static final DefaultRedisScript<String> BF_RESERVE_SCRIPT =
             new DefaultRedisScript<>("return redis.call('BF.RESERVE', KEYS[1], ARGV[1], ARGV[2])", String.class);
+    private static final byte[] BF_MEXISTS_SCRIPT =
+            "return redis.call('BF.MEXISTS', KEYS[1], unpack(ARGV))".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BF_MADD_SCRIPT =
+            "return redis.call('BF.MADD', KEYS[1], unpack(ARGV))".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 单次 EVAL 最多携带的元素个数，Lua unpack 受栈大小限制，超出部分拆成多次调用放在同一个管道里
+     */
+    static final int MAX_ITEMS_PER_CALL = 1000;
 
     private final RedisTemplate<String, String> redisTemplate;
 
@@ -71,6 +85,14 @@ public class BloomFilterService {
         }
     }
 
+    /**
+     * 与 exists 相同，但 Redis 不可用时直接抛出异常，由调用方决定如何降级。
+     */
+    public boolean existsOrThrow(String key, String value) {
+        Long result = redisTemplate.execute(BF_EXISTS_SCRIPT, Collections.singletonList(key), value);
+        return result != null && result == 1L;
+    }
+
     /**
      * 添加元素到 Bloom Filter。
      */
@@ -81,4 +103,73 @@ public class BloomFilterService {
             log.error("Bloom Filter ADD failed for key={}, value={}", key, value, e);
         }
     }
+
+    /**
+     * 批量判断元素是否可能存在（BF.MEXISTS + 管道），一次网络往返完成。
+     * Redis 不可用时全部视为存在，与 exists 的保守退化一致。
+     */
+    public boolean[] existsAll(String key, List<String> values) {
+        try {
+            return existsAllOrThrow(key, values);
+        } catch (Exception e) {
+            log.error("Bloom Filter MEXISTS failed for key={}, {} values", key, values.size(), e);
+            boolean[] result = new boolean[values.size()];
+            Arrays.fill(result, true);
+            return result;
+        }
+    }
+
+    /**
+     * 与 existsAll 相同，但 Redis 不可用时直接抛出异常，由调用方决定如何降级。
+     */
+    public boolean[] existsAllOrThrow(String key, List<String> values) {
+        boolean[] result = new boolean[values.size()];
+        if (values.isEmpty()) {
+            return result;
+        }
+        List<Object> replies = pipelined(BF_MEXISTS_SCRIPT, key, values);
+        int index = 0;
+        for (Object reply : replies) {
+            for (Object flag : (List<?>) reply) {
+                result[index++] = flag instanceof Number n && n.longValue() == 1L;
+            }
+        }
+        if (index != result.length) {
+            throw new IllegalStateException("BF.MEXISTS returned " + index + " flags for " + result.length + " values");
+        }
+        return result;
+    }
+
+    /**
+     * 批量添加元素（BF.MADD + 管道）。
+     */
+    public void addAll(String key, List<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            pipelined(BF_MADD_SCRIPT, key, values);
+        } catch (Exception e) {
+            log.error("Bloom Filter MADD failed for key={}, {} values", key, values.size(), e);
+        }
+    }
+
+    /**
+     * 按 MAX_ITEMS_PER_CALL 拆分后在同一个管道中执行脚本，返回每次调用的结果
+     */
+    private List<Object> pipelined(byte[] script, String key, List<String> values) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int from = 0; from < values.size(); from += MAX_ITEMS_PER_CALL) {
+                int to = Math.min(values.size(), from + MAX_ITEMS_PER_CALL);
+                byte[][] keysAndArgs = new byte[to - from + 1][];
+                keysAndArgs[0] = rawKey;
+                for (int i = from; i < to; i++) {
+                    keysAndArgs[i - from + 1] = values.get(i).getBytes(StandardCharsets.UTF_8);
+                }
+                connection.scriptingCommands().eval(script, ReturnType.MULTI, 1, keysAndArgs);
+            }
+            return null;
+        });
+    }
 }